@@ -0,0 +1,227 @@
+package com.egnoel.backend.core.util;
+
+import com.egnoel.backend.BackendApplication;
+import com.egnoel.backend.modules.academicyear.entity.AcademicYear;
+import com.egnoel.backend.modules.assessment.entity.Assessment;
+import com.egnoel.backend.modules.assessment.repository.AssessmentRepository;
+import com.egnoel.backend.modules.auth.entity.Student;
+import com.egnoel.backend.modules.auth.entity.Teacher;
+import com.egnoel.backend.modules.auth.entity.User;
+import com.egnoel.backend.modules.classe.entity.Classe;
+import com.egnoel.backend.modules.institution.entity.Institution;
+import com.egnoel.backend.modules.quiz.entity.Answer;
+import com.egnoel.backend.modules.quiz.entity.Question;
+import com.egnoel.backend.modules.quiz.entity.QuestionType;
+import com.egnoel.backend.modules.quiz.entity.Quiz;
+import com.egnoel.backend.modules.quiz.repository.AnswerRepository;
+import com.egnoel.backend.modules.quiz.repository.QuestionRepository;
+import com.egnoel.backend.modules.subject.entity.Subject;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Linhas inseridas por segundo em questions, answers e assessments, com os ids de antes (IDENTITY: um INSERT por
+ * linha, executado logo para ler a chave) e os atuais (@TableGenerator pooled-lo com batches JDBC de
+ * hibernate.jdbc.batch_size). Cada invocação grava ROWS linhas numa transação, pelos repositórios da aplicação.
+ * <p>
+ * Corre contra H2 em memória, sem ida e volta pela rede: em MySQL a diferença é maior, porque cada INSERT
+ * poupado é uma ida e volta ao servidor.
+ * <p>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args=EntityInsertBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntityInsertBenchmark {
+    private static final int ROWS = 200;
+
+    /**
+     * identity: os ids de antes, repostos por jmh/identity-ids-orm.xml; pooled: o mapeamento atual.
+     */
+    @Param({"identity", "pooled"})
+    String ids;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private QuestionRepository questionRepository;
+    private AnswerRepository answerRepository;
+    private AssessmentRepository assessmentRepository;
+
+    private Teacher teacher;
+    private Subject subject;
+    private Classe classe;
+    private final List<Student> students = new ArrayList<>();
+    private Quiz questionsQuiz;
+
+    @Setup
+    public void setUp() {
+        // Argumentos da linha de comandos: sobrepõem-se a application.properties (a base de dados MySQL)
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.profiles.active=dev",
+                "--spring.datasource.url=jdbc:h2:mem:insert-" + ids + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        if (ids.equals("identity")) {
+            args.add("--spring.jpa.mapping-resources=jmh/identity-ids-orm.xml");
+        }
+        context = new SpringApplicationBuilder(BackendApplication.class).run(args.toArray(String[]::new));
+
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManager = context.getBean(EntityManager.class);
+        questionRepository = context.getBean(QuestionRepository.class);
+        answerRepository = context.getBean(AnswerRepository.class);
+        assessmentRepository = context.getBean(AssessmentRepository.class);
+        transactionTemplate.executeWithoutResult(status -> createFixture());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertQuestions() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Question> questions = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                Question question = new Question();
+                question.setText("Pergunta " + i);
+                question.setType(QuestionType.MULTIPLA_ESCOLHA);
+                question.setOptions("A,B,C,D");
+                question.setCorrectAnswer("B");
+                question.setScore(1);
+                question.setQuiz(questionsQuiz);
+                questions.add(question);
+            }
+            questionRepository.saveAll(questions);
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertAnswers() {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Uma resposta por aluno em cada quiz: um quiz novo por invocação
+            Quiz quiz = newQuiz();
+            List<Answer> answers = new ArrayList<>(ROWS);
+            for (Student student : students) {
+                Answer answer = new Answer();
+                answer.setQuiz(quiz);
+                answer.setStudent(student);
+                answer.setAnswers("[{\"questionId\":1,\"answer\":\"B\"}]");
+                answer.setScore(1);
+                answers.add(answer);
+            }
+            answerRepository.saveAll(answers);
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertAssessments() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Assessment> assessments = new ArrayList<>(ROWS);
+            for (Student student : students) {
+                Assessment assessment = new Assessment();
+                assessment.setTitle("Teste");
+                assessment.setGrade(14.0);
+                assessment.setDate(LocalDateTime.now());
+                assessment.setStudent(student);
+                assessment.setClasse(classe);
+                assessments.add(assessment);
+            }
+            assessmentRepository.saveAll(assessments);
+        });
+    }
+
+    private void createFixture() {
+        Institution institution = new Institution();
+        institution.setName("Benchmark");
+        entityManager.persist(institution);
+
+        subject = new Subject();
+        subject.setName("Matemática");
+        subject.setInstitution(institution);
+        entityManager.persist(subject);
+
+        AcademicYear year = new AcademicYear();
+        year.setName("2026");
+        year.setStartDate(LocalDate.now());
+        year.setEndDate(LocalDate.now().plusMonths(9));
+        year.setInstitution(institution);
+        entityManager.persist(year);
+
+        teacher = new Teacher();
+        fill(teacher, "professor", institution);
+        teacher.setEmployeeNumber("PROF-1");
+        entityManager.persist(teacher);
+
+        for (int i = 0; i < ROWS; i++) {
+            Student student = new Student();
+            fill(student, "aluno" + i, institution);
+            student.setStudentNumber("EST-" + i);
+            entityManager.persist(student);
+            students.add(student);
+        }
+
+        classe = new Classe();
+        classe.setName("A");
+        classe.setSubject(subject);
+        classe.setAcademicYear(year);
+        classe.setTeacher(teacher);
+        classe.setStudents(new ArrayList<>(students));
+        entityManager.persist(classe);
+
+        questionsQuiz = newQuiz();
+    }
+
+    private Quiz newQuiz() {
+        Quiz quiz = new Quiz();
+        quiz.setTitle("Quiz");
+        quiz.setTeacher(teacher);
+        quiz.setSubject(subject);
+        quiz.setClasse(classe);
+        entityManager.persist(quiz);
+        return quiz;
+    }
+
+    private static void fill(User user, String name, Institution institution) {
+        user.setFirstName(name);
+        user.setLastName("Benchmark");
+        user.setEmail(name + "@benchmark.local");
+        user.setPassword("x");
+        user.setInstitution(institution);
+    }
+}
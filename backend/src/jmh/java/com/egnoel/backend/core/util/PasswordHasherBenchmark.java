@@ -0,0 +1,81 @@
+package com.egnoel.backend.core.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo do BCrypt por fator de trabalho (security.bcrypt.strength), no encoder e através do pool do PasswordHasher.
+ * O fator escolhe-se pelo tempo de matches face ao orçamento de latência do login; a diferença entre matches e
+ * hasherMatches é o custo da fila e da troca de thread.
+ * <p>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args=PasswordHasherBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHasherBenchmark {
+    private static final String PASSWORD = "correct-horse-battery-staple";
+
+    @Param({"10", "11", "12"})
+    int strength;
+
+    private BCryptPasswordEncoder encoder;
+    private PasswordHasher hasher;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(strength);
+        // Pool com um thread por núcleo, como em produção; timeout largo para não medir rejeições
+        hasher = new PasswordHasher(encoder, new SimpleMeterRegistry(), 0, 64, Duration.ofMinutes(1));
+        hash = encoder.encode(PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches(PASSWORD, hash);
+    }
+
+    @Benchmark
+    public boolean hasherMatches() {
+        return hasher.matches(PASSWORD, hash);
+    }
+
+    /**
+     * Logins simultâneos: com mais pedidos do que threads no pool, a latência inclui a espera na fila.
+     */
+    @Benchmark
+    @Threads(16)
+    public boolean hasherMatchesConcurrent() {
+        return hasher.matches(PASSWORD, hash);
+    }
+}
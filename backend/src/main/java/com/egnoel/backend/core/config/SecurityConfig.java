@@ -32,6 +32,9 @@ public class SecurityConfig {
     @Value("${cors.allowed-origins}")
     private String allowedOrigins;
 
+    @Value("${security.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     public SecurityConfig(JwtRequestFilter jwtRequestFilter) {
         this.jwtRequestFilter = jwtRequestFilter;
     }
@@ -45,6 +48,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/swagger-ui/**", "/swagger-ui/index.html", "/api-docs/**").permitAll()
                         .requestMatchers("/api/auth/**", "/api/auth/register/**", "/api/auth/login").permitAll()
+                        .requestMatchers("/api/materials/files/**").permitAll() // Links assinados: a assinatura é a autorização
+                        .requestMatchers("/error").permitAll() // Mantém o estado original (ex.: 429) nas respostas de erro
                         .requestMatchers("/materials/**").hasRole("TEACHER")
                         .requestMatchers("/materials").hasAnyRole("TEACHER", "STUDENT")
                         .requestMatchers("/subjects/**").hasRole("TEACHER") // Ajustado de PROFESSOR para TEACHER
@@ -78,6 +83,8 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList(allowedOrigins.split(","))); // Support multiple origins
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        // Lidos pelo frontend: cursor da listagem paginada de materiais
+        configuration.setExposedHeaders(Arrays.asList("X-Next-Cursor"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -88,7 +95,8 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        // O custo é calibrado pela métrica auth.password-hashing.latency (ver PasswordHasher)
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -0,0 +1,218 @@
+package com.egnoel.backend.core.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Envia um ficheiro do disco como resposta HTTP, sem o copiar para a heap.
+ * Suporta pedidos condicionais (ETag/Last-Modified, 304), um intervalo de bytes (Range/If-Range, 206)
+ * e, quando o Tomcat o permite, sendfile: o ficheiro é enviado pelo kernel depois de o servlet terminar.
+ * Caso contrário usa FileChannel.transferTo para o stream de saída. Conteúdo remoto (sem ficheiro local)
+ * é lido por um RangeSource, só no intervalo pedido.
+ */
+@Component
+public class FileContentWriter {
+    // Atributos do Tomcat para sendfile (ver org.apache.coyote.Constants)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final long sendfileThreshold;
+
+    public FileContentWriter(@Value("${materials.download.sendfile-threshold:49152}") long sendfileThreshold) {
+        // Abaixo deste tamanho escrever diretamente é mais barato do que passar o ficheiro ao poller do Tomcat
+        this.sendfileThreshold = sendfileThreshold;
+    }
+
+    public void write(HttpServletRequest request, HttpServletResponse response, Path file, String fileName) throws IOException {
+        write(request, response, file, fileName, null);
+    }
+
+    /**
+     * @param file O ficheiro a enviar (já validado pelo chamador)
+     * @param fileName O nome sugerido ao cliente em Content-Disposition
+     * @param etag ETag forte do conteúdo (entre aspas); se nulo é derivado do tamanho e da data de modificação
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, Path file, String fileName,
+                      String etag) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Range range = prepare(request, response, attributes.size(), attributes.lastModifiedTime().toMillis(), fileName, etag);
+        if (range == null) {
+            return;
+        }
+
+        if (range.count() >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             WritableByteChannel out = Channels.newChannel(response.getOutputStream())) {
+            long position = range.start();
+            long remaining = range.count();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Envia conteúdo que não está no disco local (ex.: num armazenamento remoto), lendo só o intervalo pedido.
+     * @param length O tamanho total do conteúdo
+     * @param lastModified A data de modificação, em milissegundos
+     * @param source Abre um stream com os bytes de start a end (inclusive)
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, long length, long lastModified,
+                      String fileName, String etag, RangeSource source) throws IOException {
+        Range range = prepare(request, response, length, lastModified, fileName, etag);
+        if (range == null) {
+            return;
+        }
+        try (InputStream in = source.open(range.start(), range.end())) {
+            in.transferTo(response.getOutputStream());
+        }
+    }
+
+    /**
+     * Envia conteúdo que já está em memória (ex.: um ByteBuffer direto ou mapeado da cache de ficheiros).
+     * @param content O conteúdo completo; a posição e o limite do buffer recebido não são alterados
+     * @return O número de bytes do corpo da resposta (0 para 304, 416 ou HEAD)
+     */
+    public long write(HttpServletRequest request, HttpServletResponse response, ByteBuffer content, long lastModified,
+                      String fileName, String etag) throws IOException {
+        Range range = prepare(request, response, content.remaining(), lastModified, fileName, etag);
+        if (range == null) {
+            return 0;
+        }
+        ByteBuffer slice = content.duplicate();
+        slice.position(slice.position() + (int) range.start()).limit(slice.position() + (int) range.count());
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (slice.hasRemaining()) {
+            out.write(slice);
+        }
+        return range.count();
+    }
+
+    /**
+     * Trata os pedidos condicionais e o Range e escreve os cabeçalhos.
+     * @return O intervalo a enviar, ou nulo se a resposta já está completa (304, 416, HEAD ou conteúdo vazio)
+     */
+    private Range prepare(HttpServletRequest request, HttpServletResponse response, long length, long lastModifiedMillis,
+                          String fileName, String etag) {
+        // Precisão de segundos, como no cabeçalho Last-Modified
+        long lastModified = lastModifiedMillis / 1000 * 1000;
+        if (etag == null) {
+            etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+
+        // Conteúdo autenticado: o browser pode guardá-lo, mas revalida sempre (304 se não mudou)
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return null;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        boolean partial = false;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && length > 0 && rangeStillValid(request, etag, lastModified)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // Vários intervalos (multipart/byteranges) não são suportados: envia-se o ficheiro inteiro
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    if (start >= length || end < start) {
+                        throw new IllegalArgumentException("Intervalo fora do ficheiro: " + rangeHeader);
+                    }
+                    partial = true;
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return null;
+            }
+        }
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.inline().filename(fileName, StandardCharsets.UTF_8).build().toString());
+        if (partial) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        Range range = new Range(start, end);
+        response.setContentLengthLong(range.count());
+        if (HttpMethod.HEAD.matches(request.getMethod()) || range.count() == 0) {
+            return null;
+        }
+        return range;
+    }
+
+    /**
+     * If-Range: o intervalo só é respeitado se o ficheiro for o mesmo que o cliente já tem; senão envia-se tudo.
+     */
+    private static boolean rangeStillValid(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Comparação forte: ETags fracos nunca validam um intervalo
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Abre os bytes de start a end (inclusive) de um conteúdo.
+     */
+    @FunctionalInterface
+    public interface RangeSource {
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    private record Range(long start, long end) {
+        long count() {
+            return end - start + 1;
+        }
+    }
+}
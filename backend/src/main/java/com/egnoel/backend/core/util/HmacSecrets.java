@@ -0,0 +1,50 @@
+package com.egnoel.backend.core.util;
+
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Segredos HMAC configurados em propriedades (chaves JWT, links de download): texto UTF-8 ou "base64:...",
+ * com pelo menos 256 bits.
+ * <p>
+ * Os valores por omissão de application.properties começam por "dev-only-" e estão no repositório: quem os
+ * conhecer assina tokens ou links à vontade. Só são aceites com o perfil dev ativo, por isso um deploy que
+ * não definiu os segredos falha no arranque em vez de os usar.
+ */
+public final class HmacSecrets {
+    private static final String BASE64_PREFIX = "base64:";
+    private static final String DEV_PREFIX = "dev-only-";
+    private static final int MIN_BYTES = 32;
+
+    private HmacSecrets() {
+    }
+
+    /**
+     * @param name O segredo nas mensagens de erro (ex.: a propriedade e a variável de ambiente)
+     * @return Os bytes da chave
+     * @throws IllegalStateException Se o segredo for curto, base64 inválido ou de desenvolvimento fora do perfil dev
+     */
+    public static byte[] decode(String name, String secret, Environment environment) {
+        if (secret.startsWith(DEV_PREFIX) && !environment.acceptsProfiles(Profiles.of("dev"))) {
+            throw new IllegalStateException(name + " tem o valor de desenvolvimento (" + DEV_PREFIX
+                    + "...), só aceite no perfil dev: defina o segredo");
+        }
+        byte[] bytes;
+        if (secret.startsWith(BASE64_PREFIX)) {
+            try {
+                bytes = Base64.getDecoder().decode(secret.substring(BASE64_PREFIX.length()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(name + " não é base64 válido", e);
+            }
+        } else {
+            bytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        if (bytes.length < MIN_BYTES) {
+            throw new IllegalStateException(name + " deve ter pelo menos 256 bits");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,38 @@
+package com.egnoel.backend.core.util;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Alinha os segmentos da tabela id_generators com os dados existentes no arranque.
+ * As tabelas vieram de colunas IDENTITY; sem este passo o @TableGenerator começaria em 1 e colidiria
+ * com os ids já atribuídos. Cada segmento tem o nome da tabela da entidade (pkColumnValue).
+ */
+@Component
+public class IdGeneratorSeeder {
+    private static final List<String> SEGMENTS = List.of(
+            "users", "institutions", "academic_years", "subjects", "classes",
+            "materials", "quiz", "questions", "answers", "assessments");
+
+    private final SequenceBlockAllocator allocator;
+    private final JdbcTemplate jdbcTemplate;
+
+    // EntityManagerFactory garante que o esquema já foi criado/atualizado pelo Hibernate
+    public IdGeneratorSeeder(SequenceBlockAllocator allocator, JdbcTemplate jdbcTemplate,
+                             EntityManagerFactory entityManagerFactory) {
+        this.allocator = allocator;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void seed() {
+        for (String segment : SEGMENTS) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + segment, Long.class);
+            allocator.ensureAbove(segment, maxId == null ? 0 : maxId);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.egnoel.backend.core.util;
+
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Conjunto de chaves HMAC partilhado por todos os nós da aplicação.
+ * A chave ativa assina os novos tokens (com o seu "kid" no cabeçalho); todas as chaves do anel
+ * verificam tokens. Para rodar a chave: configurar a nova como ativa e mover a antiga para
+ * jwt.previous-keys, mantendo-a até passar jwt.expiration, altura em que pode ser removida.
+ * <p>
+ * Os segredos podem vir das propriedades (ver HmacSecrets: os "dev-only-..." só no perfil dev)
+ * ou de um keystore (PKCS12/JCEKS), em que cada alias de chave secreta é um kid.
+ */
+@Component
+public class JwtKeyRing {
+    private final String activeKid;
+    private final Map<String, SecretKey> keys;
+
+    public JwtKeyRing(Environment environment,
+                      @Value("${jwt.secret:}") String secret,
+                      @Value("${jwt.kid:default}") String activeKid,
+                      @Value("${jwt.previous-keys:}") String previousKeys,
+                      @Value("${jwt.keystore.path:}") String keystorePath,
+                      @Value("${jwt.keystore.type:PKCS12}") String keystoreType,
+                      @Value("${jwt.keystore.password:}") String keystorePassword) {
+        Map<String, SecretKey> ring = new LinkedHashMap<>();
+
+        if (!keystorePath.isBlank()) {
+            ring.putAll(loadKeystore(Path.of(keystorePath), keystoreType, keystorePassword.toCharArray()));
+        }
+
+        // Chaves antigas, apenas para verificação: "kid1=segredo1,kid2=base64:..."
+        for (String entry : previousKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalStateException("Entrada inválida em jwt.previous-keys: esperado kid=segredo");
+            }
+            ring.put(parts[0].trim(), toKey("A chave JWT antiga '" + parts[0].trim() + "' (jwt.previous-keys)",
+                    parts[1].trim(), environment));
+        }
+
+        if (!secret.isBlank()) {
+            ring.put(activeKid, toKey("jwt.secret (JWT_SECRET)", secret, environment));
+        }
+
+        if (!ring.containsKey(activeKid)) {
+            throw new IllegalStateException("Chave JWT ativa '" + activeKid + "' não configurada (jwt.secret ou keystore)");
+        }
+
+        this.activeKid = activeKid;
+        this.keys = Collections.unmodifiableMap(ring);
+    }
+
+    public String activeKid() {
+        return activeKid;
+    }
+
+    public SecretKey activeKey() {
+        return keys.get(activeKid);
+    }
+
+    /**
+     * Devolve a chave de verificação para o kid do cabeçalho.
+     * Tokens sem kid são verificados com a chave ativa.
+     * @param kid O identificador da chave (pode ser null)
+     * @return A chave, ou null se o kid for desconhecido
+     */
+    public SecretKey verificationKey(String kid) {
+        return kid == null ? activeKey() : keys.get(kid);
+    }
+
+    private static SecretKey toKey(String name, String secret, Environment environment) {
+        return Keys.hmacShaKeyFor(HmacSecrets.decode(name, secret, environment));
+    }
+
+    private static Map<String, SecretKey> loadKeystore(Path path, String type, char[] password) {
+        Map<String, SecretKey> loaded = new LinkedHashMap<>();
+        try (InputStream in = Files.newInputStream(path)) {
+            KeyStore keyStore = KeyStore.getInstance(type);
+            keyStore.load(in, password);
+            Enumeration<String> aliases = keyStore.aliases();
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+                Key key = keyStore.getKey(alias, password);
+                if (key instanceof SecretKey) {
+                    loaded.put(alias, Keys.hmacShaKeyFor(key.getEncoded()));
+                }
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Não foi possível carregar o keystore JWT: " + path, e);
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,44 @@
+package com.egnoel.backend.core.util;
+
+import java.security.Principal;
+import java.time.Instant;
+
+/**
+ * Resultado imutável da verificação de um token JWT.
+ * Cada token é analisado e verificado uma única vez; o resto do pedido usa apenas este objeto.
+ * Os campos a partir de userId só existem em tokens emitidos com o conjunto de claims do utilizador;
+ * tokens antigos trazem-nos a null.
+ * @param email O e-mail do utilizador (subject do token)
+ * @param role O papel do utilizador ("TEACHER", "STUDENT" ou "ADMIN")
+ * @param expiresAt O instante de expiração do token
+ * @param userId O id do utilizador
+ * @param institutionId O id da instituição do utilizador
+ * @param number O número de aluno ou de funcionário
+ * @param firstName O primeiro nome
+ * @param lastName O apelido
+ */
+public record JwtPrincipal(String email,
+                           String role,
+                           Instant expiresAt,
+                           Long userId,
+                           Long institutionId,
+                           String number,
+                           String firstName,
+                           String lastName) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public boolean isExpired() {
+        return !expiresAt.isAfter(Instant.now());
+    }
+
+    /**
+     * Indica se o token traz os claims suficientes para dispensar a consulta ao utilizador.
+     */
+    public boolean hasUserClaims() {
+        return userId != null && institutionId != null && firstName != null && lastName != null;
+    }
+}
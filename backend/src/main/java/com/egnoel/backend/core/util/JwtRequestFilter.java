@@ -1,5 +1,6 @@
 package com.egnoel.backend.core.util;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -18,23 +19,31 @@ import java.util.Collections;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter{
-    private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
+    // Modo de compatibilidade: aceita tokens emitidos antes dos claims do utilizador (uid, iid, ...)
+    private final boolean acceptLegacyTokens;
 
-    public JwtRequestFilter(JwtUtil jwtUtil) {
-        this.jwtUtil = jwtUtil;
+    public JwtRequestFilter(VerifiedTokenCache verifiedTokenCache,
+                            @Value("${jwt.legacy-tokens.enabled:true}") boolean acceptLegacyTokens) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.acceptLegacyTokens = acceptLegacyTokens;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
         String token = extractToken(request);
-        if (token != null && jwtUtil.validateToken(token, jwtUtil.extractEmail(token))) {
-            String email = jwtUtil.extractEmail(token);
-            String role = jwtUtil.extractRole(token);
-            // Configura o contexto de segurança (opcional, para Spring Security)
-            SecurityContextHolder.getContext().setAuthentication(
-                    new UsernamePasswordAuthenticationToken(email, null, Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role)))
-            );
+        if (token != null) {
+            // Uma única análise/verificação por token; pedidos repetidos são servidos pela cache
+            verifiedTokenCache.verify(token)
+                    .filter(principal -> acceptLegacyTokens || principal.hasUserClaims())
+                    .ifPresent(principal ->
+                            // O principal tipado fica no contexto; getName() continua a devolver o e-mail
+                            SecurityContextHolder.getContext().setAuthentication(
+                                    new UsernamePasswordAuthenticationToken(principal, null,
+                                            Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + principal.role())))
+                            )
+                    );
         }
         chain.doFilter(request, response);
     }
@@ -1,16 +1,17 @@
 package com.egnoel.backend.core.util;
 
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.SignatureException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
@@ -19,10 +20,36 @@ import java.util.function.Function;
 
 @Component
 public class JwtUtil {
-    // Chave secreta gerada para assinatura do token (HS256)
-    private final SecretKey SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
-    // Tempo de expiração do token: 24 horas (em milissegundos)
-    private final long EXPIRATION_TIME = 1000 * 60 * 60 * 24;
+    // Claims opcionais que identificam o utilizador sem consultar a base de dados
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_INSTITUTION_ID = "iid";
+    public static final String CLAIM_NUMBER = "num";
+    public static final String CLAIM_FIRST_NAME = "given_name";
+    public static final String CLAIM_LAST_NAME = "family_name";
+
+    // Chaves partilhadas entre nós: a ativa assina, todas verificam (HS256)
+    private final JwtKeyRing keyRing;
+    // Tempo de expiração do token em milissegundos (jwt.expiration, por omissão 24 horas)
+    private final long expirationTime;
+    // O parser é imutável e thread-safe: construído uma vez em vez de a cada verificação
+    private final JwtParser parser;
+
+    public JwtUtil(JwtKeyRing keyRing, @Value("${jwt.expiration:86400000}") long expirationTime) {
+        this.keyRing = keyRing;
+        this.expirationTime = expirationTime;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key = keyRing.verificationKey(header.getKeyId());
+                        if (key == null) {
+                            throw new SignatureException("Chave de assinatura desconhecida: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+    }
 
     /**
      * Gera um token JWT com base no e-mail e no papel do utilizador.
@@ -36,6 +63,19 @@ public class JwtUtil {
         return createToken(claims, email);
     }
 
+    /**
+     * Gera um token JWT com claims adicionais sobre o utilizador (ver constantes CLAIM_*).
+     * @param email O e-mail do utilizador (subject do token)
+     * @param role O papel do utilizador ("TEACHER", "STUDENT" ou "ADMIN")
+     * @param userClaims Claims adicionais (id, instituição, número, nome)
+     * @return O token JWT gerado
+     */
+    public String generateToken(String email, String role, Map<String, Object> userClaims) {
+        Map<String, Object> claims = new HashMap<>(userClaims);
+        claims.put("role", role);
+        return createToken(claims, email);
+    }
+
     /**
      * Cria o token JWT com os claims e o subject fornecidos.
      * @param claims Mapa de claims adicionais (ex.: role)
@@ -47,11 +87,31 @@ public class JwtUtil {
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(SECRET_KEY, SignatureAlgorithm.HS256)
+                .setExpiration(new Date(System.currentTimeMillis() + expirationTime))
+                .setHeaderParam(JwsHeader.KEY_ID, keyRing.activeKid())
+                .signWith(keyRing.activeKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Analisa e verifica o token uma única vez, devolvendo todos os dados necessários ao pedido.
+     * @param token O token JWT
+     * @return O principal imutável com e-mail, papel, expiração e, se existirem, os claims do utilizador
+     */
+    public JwtPrincipal parseToken(String token) {
+        Claims claims = extractAllClaims(token);
+        return new JwtPrincipal(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                claims.getExpiration().toInstant(),
+                claims.get(CLAIM_USER_ID, Long.class),
+                claims.get(CLAIM_INSTITUTION_ID, Long.class),
+                claims.get(CLAIM_NUMBER, String.class),
+                claims.get(CLAIM_FIRST_NAME, String.class),
+                claims.get(CLAIM_LAST_NAME, String.class)
+        );
+    }
+
     /**
      * Extrai o e-mail (subject) do token.
      * @param token O token JWT
@@ -88,11 +148,7 @@ public class JwtUtil {
      */
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(SECRET_KEY)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            return parser.parseClaimsJws(token).getBody();
         } catch (JwtException e) {
             throw new RuntimeException("Token inválido ou expirado", e);
         }
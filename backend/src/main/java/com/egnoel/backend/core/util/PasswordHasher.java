@@ -0,0 +1,161 @@
+package com.egnoel.backend.core.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executa o hashing BCrypt num pool dedicado, limitado ao número de núcleos e com fila limitada.
+ * Em picos de login/registo o trabalho de CPU deixa de ocupar as threads do Tomcat; quando a fila
+ * está cheia o pedido é rejeitado de imediato com 429 em vez de degradar todos os outros endpoints.
+ */
+@Component
+public class PasswordHasher {
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final int bulkWindow;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+                          @Value("${security.password-hashing.threads:0}") int threads,
+                          @Value("${security.password-hashing.queue-capacity:64}") int queueCapacity,
+                          @Value("${security.password-hashing.timeout:5s}") Duration timeout) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeout = timeout;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // Lotes grandes usam no máximo metade do pool, deixando capacidade para os logins
+        this.bulkWindow = Math.max(1, poolSize / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.password-hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Pedidos de hashing à espera de uma thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password-hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("auth.password-hashing.latency")
+                .tag("operation", "encode")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("auth.password-hashing.latency")
+                .tag("operation", "matches")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password-hashing.rejected")
+                .description("Pedidos rejeitados por saturação do pool de hashing")
+                .register(meterRegistry);
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Codifica várias palavras-passe em paralelo (ex.: importação em massa), mantendo a ordem.
+     * Tem no máximo metade do pool em curso de cada vez; se a fila estiver cheia, a tarefa corre
+     * no thread de quem chama, o que trava o lote em vez de o rejeitar.
+     * @param rawPasswords As palavras-passe em claro
+     * @return Os hashes, pela mesma ordem
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        List<String> encoded = new ArrayList<>(rawPasswords.size());
+        for (int i = 0; i < rawPasswords.size(); i++) {
+            if (i >= bulkWindow) {
+                encoded.add(await(futures.get(i - bulkWindow)));
+            }
+            CharSequence rawPassword = rawPasswords.get(i);
+            Callable<String> task = () -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword));
+            try {
+                futures.add(executor.submit(task));
+            } catch (RejectedExecutionException e) {
+                futures.add(CompletableFuture.completedFuture(encodeTimer.record(() -> passwordEncoder.encode(rawPassword))));
+            }
+        }
+        for (int i = encoded.size(); i < futures.size(); i++) {
+            encoded.add(await(futures.get(i)));
+        }
+        return encoded;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Hashing da palavra-passe interrompido", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Erro ao processar a palavra-passe", e.getCause());
+        }
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw busy();
+        }
+
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw busy();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Hashing da palavra-passe interrompido", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Erro ao processar a palavra-passe", e.getCause());
+        }
+    }
+
+    private static ResponseStatusException busy() {
+        return new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                "Servidor ocupado, tente novamente dentro de instantes");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+package com.egnoel.backend.core.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Reserva blocos de valores de uma sequência guardada na tabela id_generators (sequence_name, next_val).
+ * Cada reserva é uma única transação curta (SELECT ... FOR UPDATE + UPDATE) que avança a sequência em
+ * "count" valores, pelo que vários nós podem partilhar a mesma sequência sem colisões.
+ * Valores reservados e não usados (ex.: reinício da aplicação) ficam como buracos na sequência.
+ * <p>
+ * A semântica é a do @TableGenerator do Hibernate com o otimizador pooled-lo: next_val guarda o último
+ * valor já reservado e um bloco de n valores é (next_val, next_val + n]. Assim as mesmas linhas servem
+ * as entidades e as inserções JDBC com ids explícitos sem colisões.
+ */
+@Component
+public class SequenceBlockAllocator {
+    public static final String TABLE = "id_generators";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private volatile boolean tableReady;
+
+    public SequenceBlockAllocator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  @Value("${sequences.block-size:50}") int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Independente da transação de quem pede, para não manter a linha bloqueada até ao fim do pedido
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Reserva "count" valores consecutivos.
+     * @param sequence O nome da sequência
+     * @param count O número de valores a reservar
+     * @param lastUsedValue O último valor já usado, consultado apenas se a sequência ainda não existir
+     * @return O primeiro valor do bloco [primeiro, primeiro + count)
+     */
+    public long allocate(String sequence, int count, LongSupplier lastUsedValue) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count deve ser positivo");
+        }
+        ensureTable();
+        return transactionTemplate.execute(status -> {
+            Long last = selectForUpdate(sequence);
+            if (last == null) {
+                insertIfMissing(sequence, lastUsedValue.getAsLong());
+                last = selectForUpdate(sequence);
+            }
+            jdbcTemplate.update("UPDATE " + TABLE + " SET next_val = ? WHERE sequence_name = ?", last + count, sequence);
+            return last + 1;
+        });
+    }
+
+    /**
+     * Devolve o próximo valor da sequência, servido a partir de um bloco reservado em memória.
+     * Só vai à base de dados uma vez a cada sequences.block-size valores.
+     */
+    public long next(String sequence, LongSupplier lastUsedValue) {
+        Block block = blocks.computeIfAbsent(sequence, s -> new Block());
+        synchronized (block) {
+            if (block.next >= block.end) {
+                block.next = allocate(sequence, blockSize, lastUsedValue);
+                block.end = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * Garante que a sequência existe e que os próximos valores ficam acima de usedValue
+     * (ex.: o maior id já existente na tabela).
+     */
+    public void ensureAbove(String sequence, long usedValue) {
+        ensureTable();
+        transactionTemplate.executeWithoutResult(status -> {
+            Long last = selectForUpdate(sequence);
+            if (last == null) {
+                insertIfMissing(sequence, usedValue);
+            } else if (last < usedValue) {
+                jdbcTemplate.update("UPDATE " + TABLE + " SET next_val = ? WHERE sequence_name = ?", usedValue, sequence);
+            }
+        });
+    }
+
+    private void insertIfMissing(String sequence, long lastUsedValue) {
+        try {
+            jdbcTemplate.update("INSERT INTO " + TABLE + " (sequence_name, next_val) VALUES (?, ?)", sequence, lastUsedValue);
+        } catch (DuplicateKeyException e) {
+            // Outro nó criou a sequência em simultâneo
+        }
+    }
+
+    private Long selectForUpdate(String sequence) {
+        List<Long> values = jdbcTemplate.queryForList(
+                "SELECT next_val FROM " + TABLE + " WHERE sequence_name = ? FOR UPDATE", Long.class, sequence);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    private void ensureTable() {
+        if (!tableReady) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE +
+                    " (sequence_name VARCHAR(255) NOT NULL, next_val BIGINT, PRIMARY KEY (sequence_name))");
+            tableReady = true;
+        }
+    }
+
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+}
@@ -0,0 +1,90 @@
+package com.egnoel.backend.core.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Cache limitado de tokens já verificados.
+ * A chave é o SHA-256 do token (o token em claro nunca fica em memória) e cada entrada
+ * expira no mesmo instante que o próprio token, pelo que pedidos repetidos com o mesmo
+ * bearer token não voltam a fazer a verificação HMAC.
+ */
+@Component
+public class VerifiedTokenCache {
+    private final JwtUtil jwtUtil;
+    private final Cache<String, JwtPrincipal> cache;
+
+    public VerifiedTokenCache(JwtUtil jwtUtil, MeterRegistry meterRegistry,
+                              @Value("${jwt.cache.max-size:10000}") long maxSize) {
+        this.jwtUtil = jwtUtil;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        // Expõe jwt.verified-tokens hits/misses/evictions via Micrometer
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    /**
+     * Verifica o token, usando o resultado em cache quando existe.
+     * @param token O token JWT
+     * @return O principal verificado, ou vazio se o token for inválido ou estiver expirado
+     */
+    public Optional<JwtPrincipal> verify(String token) {
+        String key = digest(token);
+        JwtPrincipal cached = cache.getIfPresent(key);
+        if (cached != null && !cached.isExpired()) {
+            return Optional.of(cached);
+        }
+
+        JwtPrincipal principal;
+        try {
+            principal = jwtUtil.parseToken(token);
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+        cache.put(key, principal);
+        return Optional.of(principal);
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 não disponível", e);
+        }
+    }
+
+    private static class TokenExpiry implements Expiry<String, JwtPrincipal> {
+        @Override
+        public long expireAfterCreate(String key, JwtPrincipal value, long currentTime) {
+            long nanos = Duration.between(Instant.now(), value.expiresAt()).toNanos();
+            return Math.max(nanos, 0);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtPrincipal value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtPrincipal value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -25,7 +25,9 @@ import java.util.List;
 public class AcademicYear {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "academic_years_id")
+    @TableGenerator(name = "academic_years_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "academic_years", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
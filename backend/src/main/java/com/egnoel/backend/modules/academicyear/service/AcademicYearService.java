@@ -5,9 +5,11 @@ import com.egnoel.backend.modules.academicyear.dto.AcademicYearResponseDTO;
 import com.egnoel.backend.modules.academicyear.dto.AcademicYearUpdateDTO;
 import com.egnoel.backend.modules.academicyear.entity.AcademicYear;
 import com.egnoel.backend.modules.academicyear.repository.AcademicYearRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
 import com.egnoel.backend.modules.institution.entity.Institution;
 import com.egnoel.backend.modules.institution.repository.InstitutionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,12 +21,15 @@ import java.util.stream.Collectors;
 public class AcademicYearService {
     private final AcademicYearRepository academicYearRepository;
     private final InstitutionRepository institutionRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public AcademicYearService(AcademicYearRepository academicYearRepository,
-                               InstitutionRepository institutionRepository) {
+                               InstitutionRepository institutionRepository,
+                               ApplicationEventPublisher eventPublisher) {
         this.academicYearRepository = academicYearRepository;
         this.institutionRepository = institutionRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -66,6 +71,8 @@ public class AcademicYearService {
         academicYear.setActive(dto.getActive());
 
         academicYear = academicYearRepository.save(academicYear);
+        // O nome do ano letivo aparece nos dashboards; mudanças raras, descarta todos os snapshots
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forAllUsers());
 
         return new AcademicYearResponseDTO(
                 academicYear.getId(),
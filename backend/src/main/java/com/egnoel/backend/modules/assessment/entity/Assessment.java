@@ -16,12 +16,17 @@ import java.time.LocalDateTime;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "assessments")
+@Table(name = "assessments", indexes = {
+        @Index(name = "idx_assessments_student_date", columnList = "student_id, date"),
+        @Index(name = "idx_assessments_classe_date", columnList = "classe_id, date")
+})
 @Data
 public class Assessment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "assessments_id")
+    @TableGenerator(name = "assessments_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "assessments", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
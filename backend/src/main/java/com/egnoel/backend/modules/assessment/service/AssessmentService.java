@@ -5,14 +5,15 @@ import com.egnoel.backend.modules.assessment.dto.AssessmentResponseDTO;
 import com.egnoel.backend.modules.assessment.dto.AssessmentUpdateDTO;
 import com.egnoel.backend.modules.assessment.entity.Assessment;
 import com.egnoel.backend.modules.assessment.repository.AssessmentRepository;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
 import com.egnoel.backend.modules.auth.entity.Student;
-import com.egnoel.backend.modules.auth.entity.Teacher;
-import com.egnoel.backend.modules.auth.entity.User;
 import com.egnoel.backend.modules.auth.repository.UserRepository;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
 import com.egnoel.backend.modules.classe.entity.Classe;
 import com.egnoel.backend.modules.classe.repository.ClasseRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,23 +25,27 @@ public class AssessmentService {
     private final AssessmentRepository assessmentRepository;
     private final UserRepository userRepository;
     private final ClasseRepository classeRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public AssessmentService(AssessmentRepository assessmentRepository,
                              UserRepository userRepository,
-                             ClasseRepository classeRepository) {
+                             ClasseRepository classeRepository,
+                             CurrentUserResolver currentUserResolver,
+                             ApplicationEventPublisher eventPublisher) {
         this.assessmentRepository = assessmentRepository;
         this.userRepository = userRepository;
         this.classeRepository = classeRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
     public AssessmentResponseDTO createAssessment(AssessmentCreateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User teacher =  userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilizador não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.resolve();
 
-        if (!(teacher instanceof Teacher)) {
+        if (!teacher.isTeacher()) {
             throw new RuntimeException("Apenas professores podem criar avaliações");
         }
 
@@ -56,13 +61,13 @@ public class AssessmentService {
         }
 
         // Validar se o professor leciona a turma
-        if (!classe.getTeacher().getId().equals(teacher.getId())) {
+        if (!classe.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("O professor não leciona esta turma");
         }
 
         // Validar se a instituição do professor, aluno e turma coincidem
-        if (!teacher.getInstitution().getId().equals(student.getInstitution().getId()) ||
-                !teacher.getInstitution().getId().equals(classe.getAcademicYear().getInstitution().getId())) {
+        if (!student.getInstitution().getId().equals(teacher.institutionId()) ||
+                !classe.getAcademicYear().getInstitution().getId().equals(teacher.institutionId())) {
             throw new RuntimeException("Instituições não coincidem");
         }
 
@@ -74,6 +79,8 @@ public class AssessmentService {
         assessment.setClasse(classe);
 
         assessment = assessmentRepository.save(assessment);
+        // O aluno avaliado e o professor da turma
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(student.getId(), teacher.id()));
 
         return new AssessmentResponseDTO(
                 assessment.getId(),
@@ -88,11 +95,9 @@ public class AssessmentService {
 
     @Transactional
     public AssessmentResponseDTO updateAssessment(Long id, AssessmentUpdateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User teacher =  userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilizador não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.resolve();
 
-        if (!(teacher instanceof Teacher)) {
+        if (!teacher.isTeacher()) {
             throw new RuntimeException("Apenas professores podem atualizar avaliações");
         }
 
@@ -100,7 +105,7 @@ public class AssessmentService {
                 .orElseThrow(() -> new RuntimeException("Avaliação não encontrada"));
 
         // Validar se o professor leciona a turma associada
-        if (!assessment.getClasse().getTeacher().getId().equals(teacher.getId())) {
+        if (!assessment.getClasse().getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("O professor não leciona esta turma");
         }
 
@@ -109,6 +114,7 @@ public class AssessmentService {
         assessment.setDate(dto.getDate());
 
         assessment = assessmentRepository.save(assessment);
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(assessment.getStudent().getId(), teacher.id()));
 
         return new AssessmentResponseDTO(
                 assessment.getId(),
@@ -123,11 +129,9 @@ public class AssessmentService {
 
     @Transactional
     public void deleteAssessment(Long id) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User teacher =  userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilizador não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.resolve();
 
-        if (!(teacher instanceof Teacher)) {
+        if (!teacher.isTeacher()) {
             throw new RuntimeException("Apenas professores podem excluir avaliações");
         }
 
@@ -135,10 +139,11 @@ public class AssessmentService {
                 .orElseThrow(() -> new RuntimeException("Avaliação não encontrada"));
 
         // Validar se o professor leciona a turma associada
-        if (!assessment.getClasse().getTeacher().getId().equals(teacher.getId())) {
+        if (!assessment.getClasse().getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("O professor não leciona esta turma");
         }
 
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(assessment.getStudent().getId(), teacher.id()));
         assessmentRepository.delete(assessment);
     }
 
@@ -163,16 +168,14 @@ public class AssessmentService {
         Classe classe = classeRepository.findById(classeId)
                 .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
 
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user =  userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilizador não encontrado"));
+        AuthenticatedUser user = currentUserResolver.resolve();
 
         // Apenas professores da turma ou alunos inscritos podem listar
-        if (user instanceof Teacher) {
-            if (!classe.getTeacher().getId().equals(user.getId())) {
+        if (user.isTeacher()) {
+            if (!classe.getTeacher().getId().equals(user.id())) {
                 throw new RuntimeException("O professor não leciona esta turma");
             }
-        } else if (user instanceof Student) {
+        } else if (user.isStudent()) {
             // Supondo validação de inscrição na turma, a implementar conforme necessário
         } else {
             throw new RuntimeException("Acesso não autorizado");
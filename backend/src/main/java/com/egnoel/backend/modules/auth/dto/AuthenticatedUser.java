@@ -0,0 +1,25 @@
+package com.egnoel.backend.modules.auth.dto;
+
+/**
+ * Representação leve do utilizador autenticado, partilhada entre pedidos.
+ * Contém apenas o necessário para verificações de posse e respostas, sem carregar a entidade completa.
+ */
+public record AuthenticatedUser(Long id,
+                                String email,
+                                String role,
+                                Long institutionId,
+                                String firstName,
+                                String lastName) {
+
+    public String displayName() {
+        return firstName + " " + lastName;
+    }
+
+    public boolean isTeacher() {
+        return "TEACHER".equals(role);
+    }
+
+    public boolean isStudent() {
+        return "STUDENT".equals(role);
+    }
+}
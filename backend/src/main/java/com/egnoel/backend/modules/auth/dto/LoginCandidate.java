@@ -0,0 +1,29 @@
+package com.egnoel.backend.modules.auth.dto;
+
+/**
+ * Projeção usada no login: tudo o que é preciso para verificar a palavra-passe e emitir o token,
+ * obtido numa única consulta sobre a tabela users (e as tabelas dos subtipos).
+ */
+public interface LoginCandidate {
+    Long getId();
+
+    String getEmail();
+
+    String getPassword();
+
+    /**
+     * "TEACHER", "STUDENT" ou "ADMIN".
+     */
+    String getRole();
+
+    /**
+     * Número de funcionário ou de aluno; null para administradores.
+     */
+    String getNumber();
+
+    Long getInstitutionId();
+
+    String getFirstName();
+
+    String getLastName();
+}
@@ -0,0 +1,17 @@
+package com.egnoel.backend.modules.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportReportDTO {
+    private int total;
+    private int created;
+    private int failed;
+    private List<UserImportRowResultDTO> rows;
+}
@@ -0,0 +1,19 @@
+package com.egnoel.backend.modules.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Uma linha da importação em massa (coluna do CSV ou objeto de uma linha NDJSON).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportRowDTO {
+    private String type; // "STUDENT" ou "TEACHER"
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String password;
+}
@@ -0,0 +1,17 @@
+package com.egnoel.backend.modules.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportRowResultDTO {
+    private long line;
+    private String email;
+    private String status; // "CREATED" ou "FAILED"
+    private Long userId;
+    private String number;
+    private String message;
+}
@@ -1,10 +1,37 @@
 package com.egnoel.backend.modules.auth.repository;
 
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.dto.LoginCandidate;
 import com.egnoel.backend.modules.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    @Query("SELECT new com.egnoel.backend.modules.auth.dto.AuthenticatedUser(u.id, u.email, " +
+            "CASE TYPE(u) WHEN Teacher THEN 'TEACHER' WHEN Student THEN 'STUDENT' WHEN Admin THEN 'ADMIN' ELSE 'UNKNOWN' END, " +
+            "i.id, u.firstName, u.lastName) " +
+            "FROM User u LEFT JOIN u.institution i WHERE u.email = :email")
+    Optional<AuthenticatedUser> findAuthenticatedUserByEmail(String email);
+
+    /**
+     * Procura o utilizador para o login com uma única consulta pelo índice único de users.email,
+     * resolvendo o subtipo e o número (de funcionário ou de aluno) na mesma ida à base de dados.
+     */
+    @Query(value = "SELECT u.id AS id, u.email AS email, u.password AS password, " +
+            "CASE WHEN t.user_id IS NOT NULL THEN 'TEACHER' WHEN s.user_id IS NOT NULL THEN 'STUDENT' " +
+            "WHEN a.user_id IS NOT NULL THEN 'ADMIN' ELSE 'UNKNOWN' END AS role, " +
+            "COALESCE(t.employee_number, s.student_number) AS number, u.institution_id AS institutionId, " +
+            "u.first_name AS firstName, u.last_name AS lastName " +
+            "FROM users u " +
+            "LEFT JOIN teachers t ON t.user_id = u.id " +
+            "LEFT JOIN students s ON s.user_id = u.id " +
+            "LEFT JOIN admins a ON a.user_id = u.id " +
+            "WHERE u.email = :email", nativeQuery = true)
+    Optional<LoginCandidate> findLoginCandidateByEmail(String email);
 }
@@ -1,19 +1,33 @@
 package com.egnoel.backend.modules.auth.service;
 
 import com.egnoel.backend.core.util.JwtUtil;
+import com.egnoel.backend.core.util.PasswordHasher;
 import com.egnoel.backend.modules.auth.dto.*;
 import com.egnoel.backend.modules.auth.entity.Admin;
 import com.egnoel.backend.modules.auth.entity.Student;
 import com.egnoel.backend.modules.auth.entity.Teacher;
+import com.egnoel.backend.modules.auth.entity.User;
 import com.egnoel.backend.modules.auth.repository.AdminRepository;
 import com.egnoel.backend.modules.auth.repository.StudentRepository;
 import com.egnoel.backend.modules.auth.repository.TeacherRepository;
+import com.egnoel.backend.modules.auth.repository.UserRepository;
 import com.egnoel.backend.modules.institution.entity.Institution;
 import com.egnoel.backend.modules.institution.repository.InstitutionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 @Service
 public class AuthService {
@@ -21,30 +35,51 @@ public class AuthService {
     private final TeacherRepository teacherRepository;
     private final StudentRepository studentRepository;
     private final AdminRepository adminRepository;
+    private final UserRepository userRepository;
     private final InstitutionRepository institutionRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final JwtUtil jwtUtil;
+    private final CurrentUserResolver currentUserResolver;
+    private final UserNumberGenerator userNumberGenerator;
+    // E-mails sem conta: tentativas repetidas de login não voltam à base de dados até expirar o TTL.
+    // A cache é de cada nó e só os registos feitos no próprio nó a limpam: uma conta criada noutro nó pode ser
+    // recusada aqui durante o TTL, por isso este é de segundos (absorve rajadas de tentativas, não mais do que isso)
+    private final Cache<String, Boolean> unknownEmails;
 
     @Autowired
     public AuthService(TeacherRepository teacherRepository,
                      StudentRepository studentRepository,
                      InstitutionRepository institutionRepository,
                         AdminRepository adminRepository,
-                     PasswordEncoder passwordEncoder,
-                     JwtUtil jwtUtil) {
+                     UserRepository userRepository,
+                     PasswordHasher passwordHasher,
+                     JwtUtil jwtUtil,
+                     CurrentUserResolver currentUserResolver,
+                     UserNumberGenerator userNumberGenerator,
+                     MeterRegistry meterRegistry,
+                     @Value("${auth.unknown-email-cache.ttl:PT10S}") Duration unknownEmailTtl,
+                     @Value("${auth.unknown-email-cache.max-size:100000}") long unknownEmailMaxSize) {
         this.teacherRepository = teacherRepository;
         this.studentRepository = studentRepository;
         this.institutionRepository = institutionRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
         this.jwtUtil = jwtUtil;
         this.adminRepository = adminRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.userRepository = userRepository;
+        this.userNumberGenerator = userNumberGenerator;
+        this.unknownEmails = Caffeine.newBuilder()
+                .maximumSize(unknownEmailMaxSize)
+                .expireAfterWrite(unknownEmailTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownEmails, "auth.unknown-emails");
     }
 
     @Transactional
     public AuthResponseDTO registerTeacher(TeacherRegisterDTO dto){
 
-        if(teacherRepository.findByEmail(dto.getEmail()).isPresent() ||
-                studentRepository.findByEmail(dto.getEmail()).isPresent()){
+        if(userRepository.existsByEmail(dto.getEmail())){
             throw new RuntimeException("Email already in use");
         }
 
@@ -55,16 +90,16 @@ public class AuthService {
         teacher.setFirstName(dto.getFirstName());
         teacher.setLastName(dto.getLastName());
         teacher.setEmail(dto.getEmail());
-        teacher.setPassword(passwordEncoder.encode(dto.getPassword()));
+        teacher.setPassword(passwordHasher.encode(dto.getPassword()));
         teacher.setInstitution(institution);
 
-        teacherRepository.save(teacher);
-
-        String employeeNumber = String.format("PROF-%03d", teacher.getId());
+        // Número reservado antes do INSERT: uma única escrita em vez de save + update
+        String employeeNumber = userNumberGenerator.nextEmployeeNumber();
         teacher.setEmployeeNumber(employeeNumber);
         teacherRepository.save(teacher);
+        forgetAfterCommit(teacher.getEmail());
 
-        String token = jwtUtil.generateToken(teacher.getEmail(), "TEACHER");
+        String token = issueToken(teacher, "TEACHER", employeeNumber);
 
         return new AuthResponseDTO(token, teacher.getFirstName(), teacher.getLastName(), "TEACHER", employeeNumber);
     }
@@ -72,8 +107,7 @@ public class AuthService {
     @Transactional
     public AuthResponseDTO registerStudent(StudentRegisterDTO dto){
 
-        if(teacherRepository.findByEmail(dto.getEmail()).isPresent() ||
-                studentRepository.findByEmail(dto.getEmail()).isPresent()){
+        if(userRepository.existsByEmail(dto.getEmail())){
             throw new RuntimeException("Email already in use");
         }
 
@@ -85,38 +119,39 @@ public class AuthService {
         student.setFirstName(dto.getFirstName());
         student.setLastName(dto.getLastName());
         student.setEmail(dto.getEmail());
-        student.setPassword(passwordEncoder.encode(dto.getPassword()));
+        student.setPassword(passwordHasher.encode(dto.getPassword()));
         student.setInstitution(institution);
 
-
-        studentRepository.save(student);
-
-        String studentNumber = String.format("EST-%03d", student.getId());
+        String studentNumber = userNumberGenerator.nextStudentNumber();
         student.setStudentNumber(studentNumber);
         studentRepository.save(student);
+        forgetAfterCommit(student.getEmail());
 
-        String token = jwtUtil.generateToken(student.getEmail(), "STUDENT");
+        String token = issueToken(student, "STUDENT", studentNumber);
 
         return new AuthResponseDTO(token, student.getFirstName(), student.getLastName(), "STUDENT", studentNumber);
     }
 
     public AuthResponseDTO login(LoginRequestDTO dto){
-        var teacher = teacherRepository.findByEmail(dto.getEmail());
-        var student = studentRepository.findByEmail(dto.getEmail());
+        if(unknownEmails.getIfPresent(dto.getEmail()) != null){
+            throw new RuntimeException("Invalid Credentials");
+        }
 
-        if(teacher.isPresent()){
-            if(passwordEncoder.matches(dto.getPassword(), teacher.get().getPassword())){
-                String token = jwtUtil.generateToken(teacher.get().getEmail(), "TEACHER");
-                return new AuthResponseDTO(token, teacher.get().getFirstName(), teacher.get().getLastName(), "TEACHER", teacher.get().getEmployeeNumber());
-            }
-        } else if(student.isPresent()){
-            if(passwordEncoder.matches(dto.getPassword(), student.get().getPassword())){
-                String token = jwtUtil.generateToken(student.get().getEmail(), "STUDENT");
-                return new AuthResponseDTO(token, student.get().getFirstName(), student.get().getLastName(), "STUDENT", student.get().getStudentNumber());
-            }
+        // Uma única consulta resolve professor, aluno ou administrador
+        var candidate = userRepository.findLoginCandidateByEmail(dto.getEmail());
+        if(candidate.isEmpty()){
+            unknownEmails.put(dto.getEmail(), Boolean.TRUE);
+            throw new RuntimeException("Invalid Credentials");
+        }
+
+        LoginCandidate user = candidate.get();
+        if(!passwordHasher.matches(dto.getPassword(), user.getPassword())){
+            throw new RuntimeException("Invalid Credentials");
         }
 
-        throw new RuntimeException("Invalid Credentials");
+        String token = issueToken(user.getId(), user.getEmail(), user.getRole(), user.getInstitutionId(),
+                user.getNumber(), user.getFirstName(), user.getLastName());
+        return new AuthResponseDTO(token, user.getFirstName(), user.getLastName(), user.getRole(), user.getNumber());
     }
 
     public AuthResponseDTO registerAdmin(AdminRegisterDTO dto){
@@ -125,18 +160,74 @@ public class AuthService {
         }
         Institution institution = institutionRepository.findById(dto.getInstitutionId())
                 .orElseThrow(() -> new RuntimeException("Institution not found"));
-        if(adminRepository.findByEmail(dto.getEmail()).isPresent()){
+        if(userRepository.existsByEmail(dto.getEmail())){
             throw new RuntimeException("Email already in use");
         }
         Admin admin = new Admin();
         admin.setFirstName(dto.getFirstName());
         admin.setLastName(dto.getLastName());
         admin.setEmail(dto.getEmail());
-        admin.setPassword(passwordEncoder.encode(dto.getPassword()));
+        admin.setPassword(passwordHasher.encode(dto.getPassword()));
         admin.setInstitution(institution);
         adminRepository.save(admin);
+        forgetAfterCommit(admin.getEmail());
 
-        String token = jwtUtil.generateToken(admin.getEmail(), "ADMIN");
+        String token = issueToken(admin, "ADMIN", null);
         return new AuthResponseDTO(token, admin.getFirstName(), admin.getLastName(), "ADMIN", null);
     }
+
+    /**
+     * Tira o e-mail das caches só depois do commit: antes disso um login concorrente ainda não vê a conta e
+     * voltaria a pô-lo na cache negativa.
+     */
+    private void forgetAfterCommit(String email) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            forget(email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                forget(email);
+            }
+        });
+    }
+
+    private void forget(String email) {
+        unknownEmails.invalidate(email);
+        currentUserResolver.evict(email);
+    }
+
+    /**
+     * Remove e-mails acabados de criar (ex.: importação em massa) da cache negativa do login.
+     * Deve ser chamado depois do commit.
+     */
+    void forgetUnknownEmails(Collection<String> emails) {
+        unknownEmails.invalidateAll(emails);
+    }
+
+    /**
+     * Emite o token com o conjunto de claims do utilizador, para que os pedidos seguintes
+     * não precisem de o procurar na base de dados.
+     */
+    private String issueToken(User user, String role, String number) {
+        return issueToken(user.getId(), user.getEmail(), role,
+                user.getInstitution() != null ? user.getInstitution().getId() : null,
+                number, user.getFirstName(), user.getLastName());
+    }
+
+    private String issueToken(Long userId, String email, String role, Long institutionId,
+                              String number, String firstName, String lastName) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtUtil.CLAIM_USER_ID, userId);
+        if (institutionId != null) {
+            claims.put(JwtUtil.CLAIM_INSTITUTION_ID, institutionId);
+        }
+        if (number != null) {
+            claims.put(JwtUtil.CLAIM_NUMBER, number);
+        }
+        claims.put(JwtUtil.CLAIM_FIRST_NAME, firstName);
+        claims.put(JwtUtil.CLAIM_LAST_NAME, lastName);
+        return jwtUtil.generateToken(email, role, claims);
+    }
 }
@@ -0,0 +1,140 @@
+package com.egnoel.backend.modules.auth.service;
+
+import com.egnoel.backend.core.util.JwtPrincipal;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Resolve o utilizador autenticado uma única vez por pedido.
+ * Tokens com claims do utilizador (uid, iid, nome) são resolvidos sem qualquer consulta; para tokens
+ * antigos o resultado fica guardado no próprio pedido e numa cache partilhada (com TTL) indexada por e-mail,
+ * pelo que os serviços deixam de fazer findByEmail (join de todas as tabelas de User) em cada chamada.
+ * Os claims refletem o utilizador no momento do login e só são renovados com um novo token.
+ */
+@Component
+public class CurrentUserResolver {
+    private static final String REQUEST_ATTRIBUTE = CurrentUserResolver.class.getName() + ".user";
+
+    private final UserRepository userRepository;
+    private final Cache<String, AuthenticatedUser> cache;
+
+    public CurrentUserResolver(UserRepository userRepository, MeterRegistry meterRegistry,
+                               @Value("${auth.principal-cache.ttl:PT5M}") Duration ttl,
+                               @Value("${auth.principal-cache.max-size:10000}") long maxSize) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.principals");
+    }
+
+    /**
+     * Devolve o utilizador autenticado no pedido atual.
+     * @return O principal leve do utilizador
+     */
+    public AuthenticatedUser resolve() {
+        AuthenticatedUser user = resolveOrNull();
+        if (user == null) {
+            throw new RuntimeException("Utilizador não encontrado");
+        }
+        return user;
+    }
+
+    /**
+     * Devolve o utilizador autenticado, exigindo que seja professor.
+     */
+    public AuthenticatedUser requireTeacher() {
+        AuthenticatedUser user = resolveOrNull();
+        if (user == null || !user.isTeacher()) {
+            throw new RuntimeException("Professor não encontrado");
+        }
+        return user;
+    }
+
+    /**
+     * Devolve o utilizador autenticado, exigindo que seja aluno.
+     */
+    public AuthenticatedUser requireStudent() {
+        AuthenticatedUser user = resolveOrNull();
+        if (user == null || !user.isStudent()) {
+            throw new RuntimeException("Aluno não encontrado");
+        }
+        return user;
+    }
+
+    /**
+     * Remove o utilizador da cache; deve ser chamado sempre que os seus dados mudam.
+     * @param email O e-mail do utilizador alterado
+     */
+    public void evict(String email) {
+        cache.invalidate(email);
+    }
+
+    public void evictAll(Collection<String> emails) {
+        cache.invalidateAll(emails);
+    }
+
+    /**
+     * Como evictAll, mas só depois do commit da transação atual: evitar antes do commit deixaria um pedido
+     * concorrente voltar a guardar os dados antigos, ainda visíveis até ao commit.
+     * Sem transação ativa remove já.
+     */
+    public void evictAllAfterCommit(Collection<String> emails) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictAll(emails);
+            return;
+        }
+        List<String> pending = List.copyOf(emails);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictAll(pending);
+            }
+        });
+    }
+
+    private AuthenticatedUser resolveOrNull() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        String email = authentication.getName();
+
+        if (authentication.getPrincipal() instanceof JwtPrincipal jwt && jwt.hasUserClaims()) {
+            return new AuthenticatedUser(jwt.userId(), email, jwt.role(), jwt.institutionId(),
+                    jwt.firstName(), jwt.lastName());
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof AuthenticatedUser cached
+                && cached.email().equals(email)) {
+            return cached;
+        }
+
+        // Utilizadores inexistentes não ficam em cache (o loader devolve null)
+        AuthenticatedUser user = cache.get(email, e -> userRepository.findAuthenticatedUserByEmail(e).orElse(null));
+        if (user != null && attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,329 @@
+package com.egnoel.backend.modules.auth.service;
+
+import com.egnoel.backend.core.util.PasswordHasher;
+import com.egnoel.backend.core.util.SequenceBlockAllocator;
+import com.egnoel.backend.modules.auth.dto.UserImportReportDTO;
+import com.egnoel.backend.modules.auth.dto.UserImportRowDTO;
+import com.egnoel.backend.modules.auth.dto.UserImportRowResultDTO;
+import com.egnoel.backend.modules.institution.repository.InstitutionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Importação em massa de alunos e professores de uma instituição.
+ * O ficheiro (CSV com cabeçalho ou NDJSON) é lido em streaming e processado em lotes: cada lote
+ * verifica e-mails existentes numa só consulta, codifica as palavras-passe em paralelo, reserva os
+ * números de aluno/funcionário de uma vez e grava tudo em batches JDBC numa transação própria.
+ */
+@Service
+public class UserImportService {
+    private static final String INSERT_USER =
+            "INSERT INTO users (id, first_name, last_name, email, password, institution_id, create_time) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_STUDENT = "INSERT INTO students (user_id, student_number) VALUES (?, ?)";
+    private static final String INSERT_TEACHER = "INSERT INTO teachers (user_id, employee_number) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InstitutionRepository institutionRepository;
+    private final PasswordHasher passwordHasher;
+    private final UserNumberGenerator userNumberGenerator;
+    private final SequenceBlockAllocator sequenceBlockAllocator;
+    private final AuthService authService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    @Autowired
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             InstitutionRepository institutionRepository,
+                             PasswordHasher passwordHasher,
+                             UserNumberGenerator userNumberGenerator,
+                             SequenceBlockAllocator sequenceBlockAllocator,
+                             AuthService authService,
+                             ObjectMapper objectMapper,
+                             @Value("${users.import.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.institutionRepository = institutionRepository;
+        this.passwordHasher = passwordHasher;
+        this.userNumberGenerator = userNumberGenerator;
+        this.sequenceBlockAllocator = sequenceBlockAllocator;
+        this.authService = authService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Importa os utilizadores do ficheiro para a instituição.
+     * Os lotes já gravados mantêm-se mesmo que um lote seguinte falhe; o relatório indica o resultado de cada linha.
+     * @param institutionId O id da instituição
+     * @param body O conteúdo do ficheiro
+     * @param ndjson true para NDJSON, false para CSV
+     * @return O relatório da importação, linha a linha
+     */
+    public UserImportReportDTO importUsers(Long institutionId, InputStream body, boolean ndjson) {
+        if (!institutionRepository.existsById(institutionId)) {
+            throw new RuntimeException("Instituição não encontrada");
+        }
+
+        List<UserImportRowResultDTO> results = new ArrayList<>();
+        Set<String> seenEmails = new HashSet<>();
+        List<PendingRow> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (!ndjson && header == null) {
+                    header = parseHeader(line);
+                    continue;
+                }
+
+                UserImportRowDTO row;
+                try {
+                    row = ndjson ? objectMapper.readValue(line, UserImportRowDTO.class) : fromCsv(header, splitCsv(line));
+                } catch (IOException | RuntimeException e) {
+                    results.add(failed(lineNumber, null, "Linha inválida"));
+                    continue;
+                }
+
+                String error = validate(row, seenEmails);
+                if (error != null) {
+                    results.add(failed(lineNumber, row.getEmail(), error));
+                    continue;
+                }
+
+                chunk.add(new PendingRow(lineNumber, row));
+                if (chunk.size() >= chunkSize) {
+                    processChunk(institutionId, chunk, results);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao ler o ficheiro de importação", e);
+        }
+
+        if (!chunk.isEmpty()) {
+            processChunk(institutionId, chunk, results);
+        }
+
+        results.sort(Comparator.comparingLong(UserImportRowResultDTO::getLine));
+        int created = (int) results.stream().filter(r -> "CREATED".equals(r.getStatus())).count();
+        return new UserImportReportDTO(results.size(), created, results.size() - created, results);
+    }
+
+    private void processChunk(Long institutionId, List<PendingRow> chunk, List<UserImportRowResultDTO> results) {
+        // E-mails já registados, numa única consulta para o lote inteiro
+        List<String> emails = chunk.stream().map(r -> r.row().getEmail()).toList();
+        Set<String> existing = new HashSet<>();
+        namedParameterJdbcTemplate.queryForList("SELECT email FROM users WHERE email IN (:emails)",
+                Map.of("emails", emails), String.class).forEach(e -> existing.add(e.toLowerCase(Locale.ROOT)));
+
+        List<PendingRow> toCreate = new ArrayList<>(chunk.size());
+        for (PendingRow pending : chunk) {
+            if (existing.contains(pending.row().getEmail().toLowerCase(Locale.ROOT))) {
+                results.add(failed(pending.line(), pending.row().getEmail(), "Email already in use"));
+            } else {
+                toCreate.add(pending);
+            }
+        }
+        if (toCreate.isEmpty()) {
+            return;
+        }
+
+        List<String> hashes = passwordHasher.encodeAll(toCreate.stream().map(r -> r.row().getPassword()).toList());
+
+        int students = (int) toCreate.stream().filter(r -> "STUDENT".equals(r.row().getType())).count();
+        Iterator<String> studentNumbers = userNumberGenerator.studentNumbers(students).iterator();
+        Iterator<String> employeeNumbers = userNumberGenerator.employeeNumbers(toCreate.size() - students).iterator();
+        List<String> numbers = new ArrayList<>(toCreate.size());
+        for (PendingRow pending : toCreate) {
+            numbers.add("STUDENT".equals(pending.row().getType()) ? studentNumbers.next() : employeeNumbers.next());
+        }
+
+        // Ids reservados no mesmo segmento do @TableGenerator de User: sem chaves geradas a recolher
+        long firstId = sequenceBlockAllocator.allocate("users", toCreate.size(), this::maxUserId);
+        List<Long> ids = new ArrayList<>(toCreate.size());
+        for (int i = 0; i < toCreate.size(); i++) {
+            ids.add(firstId + i);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(institutionId, toCreate, ids, hashes, numbers));
+        } catch (DataAccessException e) {
+            for (PendingRow pending : toCreate) {
+                results.add(failed(pending.line(), pending.row().getEmail(), "Erro ao gravar o lote: " + e.getMostSpecificCause().getMessage()));
+            }
+            return;
+        }
+
+        for (int i = 0; i < toCreate.size(); i++) {
+            PendingRow pending = toCreate.get(i);
+            results.add(new UserImportRowResultDTO(pending.line(), pending.row().getEmail(), "CREATED", ids.get(i), numbers.get(i), null));
+        }
+        authService.forgetUnknownEmails(toCreate.stream().map(r -> r.row().getEmail()).toList());
+    }
+
+    private void insert(Long institutionId, List<PendingRow> rows, List<Long> ids, List<String> hashes, List<String> numbers) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_USER, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                UserImportRowDTO row = rows.get(i).row();
+                ps.setLong(1, ids.get(i));
+                ps.setString(2, row.getFirstName());
+                ps.setString(3, row.getLastName());
+                ps.setString(4, row.getEmail());
+                ps.setString(5, hashes.get(i));
+                ps.setLong(6, institutionId);
+                ps.setTimestamp(7, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+
+        List<Object[]> studentRows = new ArrayList<>();
+        List<Object[]> teacherRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] values = {ids.get(i), numbers.get(i)};
+            if ("STUDENT".equals(rows.get(i).row().getType())) {
+                studentRows.add(values);
+            } else {
+                teacherRows.add(values);
+            }
+        }
+        if (!studentRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_STUDENT, studentRows);
+        }
+        if (!teacherRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TEACHER, teacherRows);
+        }
+    }
+
+    private long maxUserId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    private static String validate(UserImportRowDTO row, Set<String> seenEmails) {
+        if (isBlank(row.getType()) || isBlank(row.getFirstName()) || isBlank(row.getLastName())
+                || isBlank(row.getEmail()) || isBlank(row.getPassword())) {
+            return "Campos obrigatórios em falta (type, firstName, lastName, email, password)";
+        }
+        row.setType(row.getType().trim().toUpperCase(Locale.ROOT));
+        row.setEmail(row.getEmail().trim());
+        if (!"STUDENT".equals(row.getType()) && !"TEACHER".equals(row.getType())) {
+            return "Tipo inválido: " + row.getType();
+        }
+        if (!row.getEmail().contains("@")) {
+            return "E-mail inválido";
+        }
+        if (!seenEmails.add(row.getEmail().toLowerCase(Locale.ROOT))) {
+            return "E-mail repetido no ficheiro";
+        }
+        return null;
+    }
+
+    private static Map<String, Integer> parseHeader(String line) {
+        Map<String, Integer> header = new HashMap<>();
+        List<String> columns = splitCsv(line);
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        return header;
+    }
+
+    private static UserImportRowDTO fromCsv(Map<String, Integer> header, List<String> values) {
+        return new UserImportRowDTO(
+                column(header, values, "type"),
+                column(header, values, "firstname"),
+                column(header, values, "lastname"),
+                column(header, values, "email"),
+                column(header, values, "password"));
+    }
+
+    private static String column(Map<String, Integer> header, List<String> values, String name) {
+        Integer index = header.get(name);
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    /**
+     * Divide uma linha CSV separada por vírgulas, com suporte para campos entre aspas ("a, b" e "").
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static UserImportRowResultDTO failed(long line, String email, String message) {
+        return new UserImportRowResultDTO(line, email, "FAILED", null, null, message);
+    }
+
+    private record PendingRow(long line, UserImportRowDTO row) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.egnoel.backend.modules.auth.service;
+
+import com.egnoel.backend.core.util.SequenceBlockAllocator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gera os números de aluno (EST-...) e de funcionário (PROF-...) a partir de sequências pré-reservadas,
+ * para que o número seja conhecido antes do INSERT e o utilizador seja gravado uma única vez.
+ * As sequências começam acima do maior id de utilizador, onde terminam os números antigos (derivados do id).
+ */
+@Component
+public class UserNumberGenerator {
+    private static final String STUDENT_SEQUENCE = "student_number";
+    private static final String EMPLOYEE_SEQUENCE = "employee_number";
+
+    private final SequenceBlockAllocator allocator;
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserNumberGenerator(SequenceBlockAllocator allocator, JdbcTemplate jdbcTemplate) {
+        this.allocator = allocator;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public String nextStudentNumber() {
+        return formatStudentNumber(allocator.next(STUDENT_SEQUENCE, this::maxUserId));
+    }
+
+    public String nextEmployeeNumber() {
+        return formatEmployeeNumber(allocator.next(EMPLOYEE_SEQUENCE, this::maxUserId));
+    }
+
+    public List<String> studentNumbers(int count) {
+        List<String> numbers = new ArrayList<>(count);
+        if (count > 0) {
+            long first = allocator.allocate(STUDENT_SEQUENCE, count, this::maxUserId);
+            for (int i = 0; i < count; i++) {
+                numbers.add(formatStudentNumber(first + i));
+            }
+        }
+        return numbers;
+    }
+
+    public List<String> employeeNumbers(int count) {
+        List<String> numbers = new ArrayList<>(count);
+        if (count > 0) {
+            long first = allocator.allocate(EMPLOYEE_SEQUENCE, count, this::maxUserId);
+            for (int i = 0; i < count; i++) {
+                numbers.add(formatEmployeeNumber(first + i));
+            }
+        }
+        return numbers;
+    }
+
+    private static String formatStudentNumber(long value) {
+        return String.format("EST-%03d", value);
+    }
+
+    private static String formatEmployeeNumber(long value) {
+        return String.format("PROF-%03d", value);
+    }
+
+    private long maxUserId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+}
@@ -25,7 +25,9 @@ import java.util.List;
 public class Classe {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "classes_id")
+    @TableGenerator(name = "classes_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "classes", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -12,4 +12,11 @@ public interface ClasseRepository extends JpaRepository<Classe, Long> {
     List<Classe> findByAcademicYearId(Long academicYearId);
     @Query("SELECT c FROM Classe c JOIN c.students s WHERE s.id = :studentId")
     List<Classe> findByStudentId(Long studentId);
+
+    /**
+     * O aluno está numa turma da disciplina e, se classeId não for nulo, nessa turma.
+     */
+    @Query("SELECT COUNT(c) > 0 FROM Classe c JOIN c.students s WHERE s.id = :studentId " +
+            "AND c.subject.id = :subjectId AND (:classeId IS NULL OR c.id = :classeId)")
+    boolean isEnrolled(Long studentId, Long subjectId, Long classeId);
 }
@@ -2,21 +2,25 @@ package com.egnoel.backend.modules.classe.service;
 
 import com.egnoel.backend.modules.academicyear.entity.AcademicYear;
 import com.egnoel.backend.modules.academicyear.repository.AcademicYearRepository;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
 import com.egnoel.backend.modules.auth.entity.Student;
-import com.egnoel.backend.modules.auth.entity.Teacher;
 import com.egnoel.backend.modules.auth.repository.StudentRepository;
 import com.egnoel.backend.modules.auth.repository.TeacherRepository;
 import com.egnoel.backend.modules.auth.repository.UserRepository;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
 import com.egnoel.backend.modules.classe.dto.*;
 import com.egnoel.backend.modules.classe.entity.Classe;
 import com.egnoel.backend.modules.classe.repository.ClasseRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
 import com.egnoel.backend.modules.subject.entity.Subject;
 import com.egnoel.backend.modules.subject.repository.SubjectRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -28,24 +32,27 @@ public class ClasseService {
     private final SubjectRepository subjectRepository;
     private final AcademicYearRepository academicYearRepository;
     private final StudentRepository studentRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public ClasseService(ClasseRepository classeRepository, TeacherRepository teacherRepository,
                          SubjectRepository subjectRepository, AcademicYearRepository academicYearRepository,
-                         UserRepository userRepository,  StudentRepository studentRepository) {
+                         UserRepository userRepository,  StudentRepository studentRepository,
+                         CurrentUserResolver currentUserResolver, ApplicationEventPublisher eventPublisher) {
         this.classeRepository = classeRepository;
         this.teacherRepository = teacherRepository;
         this.subjectRepository = subjectRepository;
         this.academicYearRepository = academicYearRepository;
         this.studentRepository = studentRepository;
         this.userRepository = userRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
     public ClasseResponseDTO createClasse(ClasseCreateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         AcademicYear academicYear = academicYearRepository.findById(dto.getAcademicYearId())
                 .orElseThrow(() -> new RuntimeException("Ano letivo não encontrado"));
@@ -54,7 +61,7 @@ public class ClasseService {
             throw new RuntimeException("Não é possível criar turmas em um ano letivo inativo");
         }
 
-        if (!teacher.getInstitution().getId().equals(academicYear.getInstitution().getId())) {
+        if (!academicYear.getInstitution().getId().equals(teacher.institutionId())) {
             throw new RuntimeException("O professor deve pertencer à mesma instituição do ano letivo");
         }
 
@@ -65,9 +72,10 @@ public class ClasseService {
         classe.setName(dto.getName());
         classe.setAcademicYear(academicYear);
         classe.setSubject(subject);
-        classe.setTeacher(teacher);
+        classe.setTeacher(teacherRepository.getReferenceById(teacher.id()));
 
         classe = classeRepository.save(classe);
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(teacher.id()));
 
         return new ClasseResponseDTO(
                 classe.getId(),
@@ -75,21 +83,19 @@ public class ClasseService {
                 classe.getCreationDate(),
                 academicYear.getName(),
                 subject.getName(),
-                teacher.getFirstName() + " " + teacher.getLastName(),
+                teacher.displayName(),
                 List.of()
         );
     }
 
     @Transactional
     public ClasseResponseDTO addStudentsToClasse(Long classeId, AddStudentsToClasseDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = (Teacher) userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Classe classe = classeRepository.findById(classeId)
                 .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
 
-        if (!classe.getTeacher().getId().equals(teacher.getId())) {
+        if (!classe.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o professor da turma pode adicionar alunos");
         }
 
@@ -112,6 +118,7 @@ public class ClasseService {
         }
 
         classe = classeRepository.save(classe);
+        publishEnrollmentChange(teacher.id(), students);
 
         return new ClasseResponseDTO(
                 classe.getId(),
@@ -119,7 +126,7 @@ public class ClasseService {
                 classe.getCreationDate(),
                 classe.getAcademicYear().getName(),
                 classe.getSubject().getName(),
-                teacher.getFirstName() + " " + teacher.getLastName(),
+                teacher.displayName(),
                 classe.getStudents().stream()
                         .map(s -> s.getFirstName() + " " + s.getLastName())
                         .collect(Collectors.toList())
@@ -128,14 +135,12 @@ public class ClasseService {
 
     @Transactional
     public ClasseResponseDTO removeStudentsFromClasse(Long classeId, AddStudentsToClasseDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = (Teacher) userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Classe classe = classeRepository.findById(classeId)
                 .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
 
-        if (!classe.getTeacher().getId().equals(teacher.getId())) {
+        if (!classe.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o professor da turma pode remover alunos");
         }
 
@@ -156,6 +161,7 @@ public class ClasseService {
         }
 
         classe = classeRepository.save(classe);
+        publishEnrollmentChange(teacher.id(), students);
 
         return new ClasseResponseDTO(
                 classe.getId(),
@@ -163,7 +169,7 @@ public class ClasseService {
                 classe.getCreationDate(),
                 classe.getAcademicYear().getName(),
                 classe.getSubject().getName(),
-                teacher.getFirstName() + " " + teacher.getLastName(),
+                teacher.displayName(),
                 classe.getStudents().stream()
                         .map(s -> s.getFirstName() + " " + s.getLastName())
                         .collect(Collectors.toList())
@@ -191,19 +197,18 @@ public class ClasseService {
 
     @Transactional
     public ClasseResponseDTO updateClasse(Long id, ClasseUpdateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Classe classe = classeRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
 
-        if (!classe.getTeacher().getId().equals(teacher.getId())) {
+        if (!classe.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o professor responsável pode editar esta turma");
         }
 
         classe.setName(dto.getName());
         classe = classeRepository.save(classe);
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forClasse(teacher.id(), classe.getId()));
 
         return new ClasseResponseDTO(
                 classe.getId(),
@@ -211,41 +216,36 @@ public class ClasseService {
                 classe.getCreationDate(),
                 classe.getAcademicYear().getName(),
                 classe.getSubject().getName(),
-                teacher.getFirstName() + " " + teacher.getLastName(),
+                teacher.displayName(),
                 classe.getStudents().stream().map(Student::getFirstName).collect(Collectors.toList())
         );
     }
 
     @Transactional
     public void deleteClasse(Long id) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Classe classe = classeRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
 
-        if (!classe.getTeacher().getId().equals(teacher.getId())) {
+        if (!classe.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o professor responsável pode excluir esta turma");
         }
 
+        // Depois do commit a turma já não existe: os membros são recolhidos antes
+        publishEnrollmentChange(teacher.id(), classe.getStudents());
         classeRepository.delete(classe);
     }
 
     public List<ClasseResponseDTO> listClasses() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        AuthenticatedUser user = currentUserResolver.resolve();
         List<Classe> classes;
 
-        if (SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_TEACHER"))) {
-            Teacher teacher = teacherRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
-            classes = classeRepository.findByTeacherId(teacher.getId());
-        } else if (SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_STUDENT"))) {
-            Student student = studentRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Aluno não encontrado"));
-            classes = student.getClasses();
+        if (user.isTeacher()) {
+            classes = classeRepository.findByTeacherId(user.id());
+        } else if (user.isStudent()) {
+            // Inscrições vivem em classe_students (Classe.students), a mesma tabela usada ao adicionar alunos
+            classes = classeRepository.findByStudentId(user.id());
         } else {
             classes = classeRepository.findAll();
         }
@@ -265,14 +265,12 @@ public class ClasseService {
 
     @Transactional
     public ClasseResponseDTO addStudents(Long classeId, AddStudentsDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Classe classe = classeRepository.findById(classeId)
                 .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
 
-        if (!classe.getTeacher().getId().equals(teacher.getId())) {
+        if (!classe.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o professor responsável pode adicionar alunos");
         }
 
@@ -283,6 +281,7 @@ public class ClasseService {
 
         classe.getStudents().addAll(students);
         classe = classeRepository.save(classe);
+        publishEnrollmentChange(teacher.id(), students);
 
         return new ClasseResponseDTO(
                 classe.getId(),
@@ -290,27 +289,26 @@ public class ClasseService {
                 classe.getCreationDate(),
                 classe.getAcademicYear().getName(),
                 classe.getSubject().getName(),
-                teacher.getFirstName() + " " + teacher.getLastName(),
+                teacher.displayName(),
                 classe.getStudents().stream().map(Student::getFirstName).collect(Collectors.toList())
         );
     }
 
     @Transactional
     public ClasseResponseDTO removeStudents(Long classeId, AddStudentsDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Classe classe = classeRepository.findById(classeId)
                 .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
 
-        if (!classe.getTeacher().getId().equals(teacher.getId())) {
+        if (!classe.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o professor responsável pode remover alunos");
         }
 
         List<Student> studentsToRemove = studentRepository.findAllById(dto.getStudentIds());
         classe.getStudents().removeAll(studentsToRemove);
         classe = classeRepository.save(classe);
+        publishEnrollmentChange(teacher.id(), studentsToRemove);
 
         return new ClasseResponseDTO(
                 classe.getId(),
@@ -318,8 +316,18 @@ public class ClasseService {
                 classe.getCreationDate(),
                 classe.getAcademicYear().getName(),
                 classe.getSubject().getName(),
-                teacher.getFirstName() + " " + teacher.getLastName(),
+                teacher.displayName(),
                 classe.getStudents().stream().map(Student::getFirstName).collect(Collectors.toList())
         );
     }
+
+    /**
+     * Inscrições alteradas: mudam os dashboards do professor e dos alunos envolvidos.
+     */
+    private void publishEnrollmentChange(Long teacherId, Collection<Student> students) {
+        List<Long> userIds = new ArrayList<>(students.size() + 1);
+        userIds.add(teacherId);
+        students.forEach(student -> userIds.add(student.getId()));
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(userIds));
+    }
 }
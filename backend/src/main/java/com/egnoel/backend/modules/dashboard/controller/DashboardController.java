@@ -2,8 +2,10 @@ package com.egnoel.backend.modules.dashboard.controller;
 
 
 import com.egnoel.backend.modules.dashboard.dto.DashboardResponseDTO;
+import com.egnoel.backend.modules.dashboard.dto.DashboardSnapshot;
 import com.egnoel.backend.modules.dashboard.service.DashboardService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -23,6 +25,11 @@ public class DashboardController {
     @GetMapping
     @PreAuthorize("hasAnyRole('TEACHER', 'STUDENT')")
     public ResponseEntity<DashboardResponseDTO> getDashboard() {
-        return ResponseEntity.ok(dashboardService.getDashboard());
+        // Com If-None-Match igual ao ETag o Spring responde 304 sem corpo
+        DashboardSnapshot snapshot = dashboardService.getDashboardSnapshot();
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(snapshot.dashboard());
     }
 }
@@ -0,0 +1,13 @@
+package com.egnoel.backend.modules.dashboard.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dashboard já montado de um utilizador, guardado em cache até uma alteração o invalidar.
+ * @param dashboard O conteúdo devolvido ao cliente
+ * @param etag Resumo do conteúdo serializado, usado para responder 304 quando nada mudou
+ * @param staleAt Quando o conteúdo deixa de estar certo só pela passagem do tempo (ex.: fecho de um quiz pendente);
+ *                null se não depender da hora
+ */
+public record DashboardSnapshot(DashboardResponseDTO dashboard, String etag, LocalDateTime staleAt) {
+}
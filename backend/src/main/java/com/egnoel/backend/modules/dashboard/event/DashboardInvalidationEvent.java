@@ -0,0 +1,41 @@
+package com.egnoel.backend.modules.dashboard.event;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Publicado pelos serviços quando muda algo que aparece no dashboard.
+ * É tratado depois do commit: os utilizadores indicados e os membros (professor e alunos) das turmas indicadas
+ * perdem o snapshot do dashboard, que é reconstruído no pedido seguinte.
+ * @param allUsers Se verdadeiro, todos os snapshots são descartados (ex.: mudança de nome de uma disciplina)
+ * @param userIds Utilizadores afetados diretamente
+ * @param classeIds Turmas cujos membros são afetados
+ */
+public record DashboardInvalidationEvent(boolean allUsers, Set<Long> userIds, Set<Long> classeIds) {
+
+    public static DashboardInvalidationEvent forUsers(Long... userIds) {
+        return forUsers(Arrays.asList(userIds));
+    }
+
+    public static DashboardInvalidationEvent forUsers(Collection<Long> userIds) {
+        return new DashboardInvalidationEvent(false, nonNull(userIds), Set.of());
+    }
+
+    /**
+     * O autor da alteração e, se existir, todos os membros da turma.
+     */
+    public static DashboardInvalidationEvent forClasse(Long userId, Long classeId) {
+        return new DashboardInvalidationEvent(false, nonNull(Arrays.asList(userId)), nonNull(Arrays.asList(classeId)));
+    }
+
+    public static DashboardInvalidationEvent forAllUsers() {
+        return new DashboardInvalidationEvent(true, Set.of(), Set.of());
+    }
+
+    private static Set<Long> nonNull(Collection<Long> ids) {
+        return ids.stream().filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+    }
+}
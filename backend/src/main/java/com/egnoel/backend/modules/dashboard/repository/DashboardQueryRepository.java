@@ -0,0 +1,157 @@
+package com.egnoel.backend.modules.dashboard.repository;
+
+import com.egnoel.backend.modules.dashboard.dto.AssessmentDTO;
+import com.egnoel.backend.modules.dashboard.dto.ClasseDTO;
+import com.egnoel.backend.modules.dashboard.dto.MaterialDTO;
+import com.egnoel.backend.modules.dashboard.dto.QuizDTO;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Consultas Top-N do dashboard: cada secção é uma única consulta ordenada e limitada na base de dados,
+ * projetada diretamente nos DTOs (sem carregar entidades nem associações lazy).
+ * O EntityManager partilhado é seguro para uso concorrente: fora de uma transação cada consulta usa o seu.
+ */
+@Repository
+public class DashboardQueryRepository {
+    private static final String DTO = "com.egnoel.backend.modules.dashboard.dto.";
+
+    private final EntityManager entityManager;
+
+    public DashboardQueryRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public List<ClasseDTO> findTeacherClasses(Long teacherId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "ClasseDTO(c.id, c.name, s.name, ay.name, c.creationDate) " +
+                                "FROM Classe c JOIN c.subject s JOIN c.academicYear ay " +
+                                "WHERE c.teacher.id = :userId " +
+                                "ORDER BY c.creationDate DESC, c.id DESC", ClasseDTO.class)
+                .setParameter("userId", teacherId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<ClasseDTO> findStudentClasses(Long studentId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "ClasseDTO(c.id, c.name, s.name, ay.name, c.creationDate) " +
+                                "FROM Classe c JOIN c.students st JOIN c.subject s JOIN c.academicYear ay " +
+                                "WHERE st.id = :userId " +
+                                "ORDER BY c.creationDate DESC, c.id DESC", ClasseDTO.class)
+                .setParameter("userId", studentId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<MaterialDTO> findTeacherMaterials(Long teacherId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "MaterialDTO(m.id, m.title, cl.name, s.name, m.uploadDate) " +
+                                "FROM Material m JOIN m.subject s LEFT JOIN m.classe cl " +
+                                "WHERE m.teacher.id = :userId " +
+                                "ORDER BY m.uploadDate DESC, m.id DESC", MaterialDTO.class)
+                .setParameter("userId", teacherId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<MaterialDTO> findStudentMaterials(Long studentId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "MaterialDTO(m.id, m.title, cl.name, s.name, m.uploadDate) " +
+                                "FROM Material m JOIN m.classe cl JOIN cl.students st JOIN m.subject s " +
+                                "WHERE st.id = :userId " +
+                                "ORDER BY m.uploadDate DESC, m.id DESC", MaterialDTO.class)
+                .setParameter("userId", studentId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<QuizDTO> findTeacherQuizzes(Long teacherId, int limit) {
+        // Pendente = respostas DISCURSIVA por corrigir, lido do contador do próprio quiz
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "QuizDTO(q.id, q.title, cl.name, q.creationDate, " +
+                                "CASE WHEN q.pendingReviewCount > 0 THEN true ELSE false END) " +
+                                "FROM Quiz q LEFT JOIN q.classe cl " +
+                                "WHERE q.teacher.id = :userId " +
+                                "ORDER BY q.creationDate DESC, q.id DESC", QuizDTO.class)
+                .setParameter("userId", teacherId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<QuizDTO> findStudentQuizzes(Long studentId, LocalDateTime now, int limit) {
+        // Pendente = ainda aberto e sem submissão do aluno (anti-join pelo índice answers(quiz_id, student_id))
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "QuizDTO(q.id, q.title, cl.name, q.creationDate, " +
+                                "CASE WHEN (q.terminationDate IS NULL OR q.terminationDate > :now) " +
+                                "AND NOT EXISTS (SELECT a.id FROM Answer a WHERE a.quiz.id = q.id AND a.student.id = :userId) " +
+                                "THEN true ELSE false END) " +
+                                "FROM Quiz q JOIN q.classe cl JOIN cl.students st " +
+                                "WHERE st.id = :userId " +
+                                "ORDER BY q.creationDate DESC, q.id DESC", QuizDTO.class)
+                .setParameter("userId", studentId)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * O fecho mais próximo, depois de now, de um quiz pendente do aluno: nesse instante o "pendente" calculado por
+     * findStudentQuizzes muda sem nenhuma alteração na base de dados.
+     * @return null se nenhum quiz pendente tiver data de fecho
+     */
+    public LocalDateTime findNextStudentQuizDeadline(Long studentId, LocalDateTime now) {
+        return entityManager.createQuery(
+                        "SELECT MIN(q.terminationDate) FROM Quiz q JOIN q.classe cl JOIN cl.students st " +
+                                "WHERE st.id = :userId AND q.terminationDate > :now " +
+                                "AND NOT EXISTS (SELECT a.id FROM Answer a WHERE a.quiz.id = q.id AND a.student.id = :userId)",
+                        LocalDateTime.class)
+                .setParameter("userId", studentId)
+                .setParameter("now", now)
+                .getSingleResult();
+    }
+
+    public List<AssessmentDTO> findTeacherAssessments(Long teacherId, int limit) {
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "AssessmentDTO(a.id, a.title, a.grade, cl.name, " +
+                                "CONCAT(st.firstName, ' ', st.lastName), a.date) " +
+                                "FROM Assessment a JOIN a.classe cl JOIN a.student st " +
+                                "WHERE cl.teacher.id = :userId " +
+                                "ORDER BY a.date DESC, a.id DESC", AssessmentDTO.class)
+                .setParameter("userId", teacherId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<AssessmentDTO> findStudentAssessments(Long studentId, int limit) {
+        // O nome do aluno não é incluído na vista do próprio aluno
+        return entityManager.createQuery(
+                        "SELECT new " + DTO + "AssessmentDTO(a.id, a.title, a.grade, cl.name, CAST(NULL AS String), a.date) " +
+                                "FROM Assessment a JOIN a.classe cl " +
+                                "WHERE a.student.id = :userId " +
+                                "ORDER BY a.date DESC, a.id DESC", AssessmentDTO.class)
+                .setParameter("userId", studentId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Professores e alunos inscritos das turmas indicadas, ou seja, os utilizadores cujo dashboard as mostra.
+     */
+    public Set<Long> findClasseMemberIds(Collection<Long> classeIds) {
+        List<?> ids = entityManager.createNativeQuery(
+                        "SELECT c.teacher_id FROM classes c WHERE c.id IN (:classeIds) " +
+                                "UNION SELECT cs.student_id FROM classe_students cs WHERE cs.classe_id IN (:classeIds)")
+                .setParameter("classeIds", classeIds)
+                .getResultList();
+        return ids.stream()
+                .map(id -> ((Number) id).longValue())
+                .collect(Collectors.toSet());
+    }
+}
@@ -1,199 +1,224 @@
 package com.egnoel.backend.modules.dashboard.service;
 
 
-import com.egnoel.backend.modules.assessment.entity.Assessment;
-import com.egnoel.backend.modules.assessment.repository.AssessmentRepository;
-import com.egnoel.backend.modules.auth.entity.Student;
-import com.egnoel.backend.modules.auth.entity.Teacher;
-import com.egnoel.backend.modules.auth.entity.User;
-import com.egnoel.backend.modules.auth.repository.UserRepository;
-import com.egnoel.backend.modules.classe.entity.Classe;
-import com.egnoel.backend.modules.classe.repository.ClasseRepository;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
 import com.egnoel.backend.modules.dashboard.dto.AssessmentDTO;
 import com.egnoel.backend.modules.dashboard.dto.ClasseDTO;
 import com.egnoel.backend.modules.dashboard.dto.DashboardResponseDTO;
+import com.egnoel.backend.modules.dashboard.dto.DashboardSnapshot;
 import com.egnoel.backend.modules.dashboard.dto.MaterialDTO;
 import com.egnoel.backend.modules.dashboard.dto.QuizDTO;
-import com.egnoel.backend.modules.material.entity.Material;
-import com.egnoel.backend.modules.material.repository.MaterialRepository;
-import com.egnoel.backend.modules.quiz.entity.Quiz;
-import com.egnoel.backend.modules.quiz.repository.QuizRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
+import com.egnoel.backend.modules.dashboard.repository.DashboardQueryRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-
-import java.util.Collections;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.stream.Collectors;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Dashboard de cada utilizador, servido a partir de um snapshot em cache (chave: id do utilizador).
+ * Os serviços publicam DashboardInvalidationEvent quando alteram turmas, inscrições, materiais, quizzes ou
+ * avaliações; depois do commit só os snapshots dos utilizadores afetados são descartados.
+ * <p>
+ * Os eventos só chegam à cache do nó onde a alteração foi feita: nos outros nós é a TTL (curta) que limita o tempo
+ * em que um dashboard fica desatualizado, tal como para as alterações que não publicam eventos. Um snapshot de aluno
+ * também expira quando fecha o próximo quiz que mostra como pendente.
+ */
 @Service
 public class DashboardService {
-    private final UserRepository userRepository;
-    private final ClasseRepository classeRepository;
-    private final MaterialRepository materialRepository;
-    private final QuizRepository quizRepository;
-    private final AssessmentRepository assessmentRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final DashboardQueryRepository dashboardQueryRepository;
+    // As quatro secções são independentes: cada uma corre no seu virtual thread
+    private final ExecutorService sectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int sectionSize;
+    private final ObjectMapper objectMapper;
+    // Assíncrona: uma reconstrução em curso não bloqueia a invalidação, e pedidos simultâneos partilham-na
+    private final AsyncCache<Long, DashboardSnapshot> snapshots;
+    private final MeterRegistry meterRegistry;
+
+    private final Duration ttl;
 
     @Autowired
-    public DashboardService(UserRepository userRepository,
-                            ClasseRepository classeRepository,
-                            MaterialRepository materialRepository,
-                            QuizRepository quizRepository,
-                            AssessmentRepository assessmentRepository) {
-        this.userRepository = userRepository;
-        this.classeRepository = classeRepository;
-        this.materialRepository = materialRepository;
-        this.quizRepository = quizRepository;
-        this.assessmentRepository = assessmentRepository;
+    public DashboardService(CurrentUserResolver currentUserResolver,
+                            DashboardQueryRepository dashboardQueryRepository,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${dashboard.section-size:5}") int sectionSize,
+                            @Value("${dashboard.cache.ttl:PT1M}") Duration ttl,
+                            @Value("${dashboard.cache.max-size:10000}") long maxSize) {
+        this.currentUserResolver = currentUserResolver;
+        this.dashboardQueryRepository = dashboardQueryRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.sectionSize = sectionSize; // Limitar para evitar respostas pesadas
+        this.ttl = ttl;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new SnapshotExpiry())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots.synchronous(), "dashboard.snapshots");
     }
 
     public DashboardResponseDTO getDashboard() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilizador não encontrado"));
-
-        String role = user instanceof Teacher ? "TEACHER" : user instanceof Student ? "STUDENT" : "UNKNOWN";
-        String userName = user.getFirstName() + " " + user.getLastName();
-
-        if (role.equals("TEACHER")) {
-            return getTeacherDashboard((Teacher) user, userName);
-        } else if (role.equals("STUDENT")) {
-            return getStudentDashboard((Student) user, userName);
-        } else {
+        return getDashboardSnapshot().dashboard();
+    }
+
+    public DashboardSnapshot getDashboardSnapshot() {
+        AuthenticatedUser user = currentUserResolver.resolve();
+        if (!user.isTeacher() && !user.isStudent()) {
             throw new RuntimeException("Papel de utilizador não suportado");
         }
+        return join(snapshots.get(user.id(), (id, executor) ->
+                CompletableFuture.supplyAsync(() -> rebuild(user), sectionExecutor)));
     }
 
-    private DashboardResponseDTO getTeacherDashboard(Teacher teacher, String userName) {
-        // Turmas lecionadas
-        List<Classe> classes = classeRepository.findByTeacherId(teacher.getId());
-        List<ClasseDTO> classeDTOs = classes.stream()
-                .map(c -> new ClasseDTO(
-                        c.getId(),
-                        c.getName(),
-                        c.getSubject().getName(),
-                        c.getAcademicYear().getName(),
-                        c.getCreationDate()
-                ))
-                .limit(5) // Limitar para evitar respostas pesadas
-                .collect(Collectors.toList());
-
-        // Materiais criados
-        List<Material> materials = materialRepository.findByTeacherId(teacher.getId());
-        List<MaterialDTO> materialDTOs = materials.stream()
-                .map(m -> new MaterialDTO(
-                        m.getId(),
-                        m.getTitle(),
-                        m.getClasse() != null ? m.getClasse().getName() : null,
-                        m.getSubject().getName(),
-                        m.getUploadDate()
-                ))
-                .limit(5)
-                .collect(Collectors.toList());
-
-        // Quizzes criados
-        List<Quiz> quizzes = quizRepository.findByTeacherId(teacher.getId());
-        List<QuizDTO> quizDTOs = quizzes.stream()
-                .map(q -> new QuizDTO(
-                        q.getId(),
-                        q.getTitle(),
-                        q.getClasse() != null ? q.getClasse().getName() : null,
-                        q.getCreationDate(),
-                        false // Simplificação: lógica de respostas pendentes a implementar
-                ))
-                .limit(5)
-                .collect(Collectors.toList());
-
-        // Avaliações recentes
-        List<Assessment> assessments = assessmentRepository.findByClasseIdIn(
-                classes.stream().map(Classe::getId).collect(Collectors.toList())
-        );
-        List<AssessmentDTO> assessmentDTOs = assessments.stream()
-                .map(a -> new AssessmentDTO(
-                        a.getId(),
-                        a.getTitle(),
-                        a.getGrade(),
-                        a.getClasse() != null ? a.getClasse().getName() : null,
-                        a.getStudent().getFirstName() + " " + a.getStudent().getLastName(),
-                        a.getDate()
-                ))
-                .limit(5)
-                .collect(Collectors.toList());
+    /**
+     * Corre depois do commit, para que a reconstrução seguinte já veja os dados novos.
+     * Sem transação ativa (ex.: chamada direta) corre de imediato.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onInvalidation(DashboardInvalidationEvent event) {
+        if (event.allUsers()) {
+            snapshots.synchronous().invalidateAll();
+            return;
+        }
+        Set<Long> userIds = new HashSet<>(event.userIds());
+        if (!event.classeIds().isEmpty()) {
+            userIds.addAll(dashboardQueryRepository.findClasseMemberIds(event.classeIds()));
+        }
+        snapshots.synchronous().invalidateAll(userIds);
+    }
+
+    private DashboardSnapshot rebuild(AuthenticatedUser user) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // O mesmo instante para o "pendente" dos quizzes e para a validade do snapshot
+        LocalDateTime now = LocalDateTime.now();
+        CompletableFuture<LocalDateTime> staleAt = user.isTeacher()
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> dashboardQueryRepository.findNextStudentQuizDeadline(user.id(), now),
+                        sectionExecutor);
+        DashboardResponseDTO dashboard = user.isTeacher()
+                ? getTeacherDashboard(user.id(), user.displayName())
+                : getStudentDashboard(user.id(), user.displayName(), now);
+        DashboardSnapshot snapshot = new DashboardSnapshot(dashboard, etag(dashboard), join(staleAt));
+        sample.stop(Timer.builder("dashboard.rebuild")
+                .description("Tempo de reconstrução do dashboard de um utilizador")
+                .tag("role", user.role())
+                .register(meterRegistry));
+        return snapshot;
+    }
+
+    private String etag(DashboardResponseDTO dashboard) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(dashboard));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Erro ao calcular o ETag do dashboard", e);
+        }
+    }
+
+    private DashboardResponseDTO getTeacherDashboard(Long teacherId, String userName) {
+        // Turmas lecionadas, materiais e quizzes criados, avaliações recentes nas suas turmas
+        CompletableFuture<List<ClasseDTO>> classes = section(() -> dashboardQueryRepository.findTeacherClasses(teacherId, sectionSize));
+        CompletableFuture<List<MaterialDTO>> materials = section(() -> dashboardQueryRepository.findTeacherMaterials(teacherId, sectionSize));
+        CompletableFuture<List<QuizDTO>> quizzes = section(() -> dashboardQueryRepository.findTeacherQuizzes(teacherId, sectionSize));
+        CompletableFuture<List<AssessmentDTO>> assessments = section(() -> dashboardQueryRepository.findTeacherAssessments(teacherId, sectionSize));
 
         return new DashboardResponseDTO(
                 userName,
                 "TEACHER",
-                classeDTOs,
-                materialDTOs,
-                quizDTOs,
-                assessmentDTOs
+                join(classes),
+                join(materials),
+                join(quizzes),
+                join(assessments)
         );
     }
 
-    private DashboardResponseDTO getStudentDashboard(Student student, String userName) {
-        // Turmas em que o aluno está inscrito
-        List<Classe> classes = classeRepository.findByStudentId(student.getId());
-        List<ClasseDTO> classeDTOs = classes.stream()
-                .map(c -> new ClasseDTO(
-                        c.getId(),
-                        c.getName(),
-                        c.getSubject().getName(),
-                        c.getAcademicYear().getName(),
-                        c.getCreationDate()
-                ))
-                .limit(5)
-                .collect(Collectors.toList());
-
-        // IDs das turmas
-        List<Long> classeIds = classes.stream().map(Classe::getId).collect(Collectors.toList());
-
-        // Materiais disponíveis nas turmas
-        List<Material> materials = materialRepository.findByClasseIdIn(classeIds);
-        List<MaterialDTO> materialDTOs = materials.stream()
-                .map(m -> new MaterialDTO(
-                        m.getId(),
-                        m.getTitle(),
-                        m.getClasse() != null ? m.getClasse().getName() : null,
-                        m.getSubject().getName(),
-                        m.getUploadDate()
-                ))
-                .limit(5)
-                .collect(Collectors.toList());
-
-        // Quizzes pendentes
-        List<Quiz> quizzes = quizRepository.findByClasseIdIn(classeIds);
-        List<QuizDTO> quizDTOs = quizzes.stream()
-                .map(q -> new QuizDTO(
-                        q.getId(),
-                        q.getTitle(),
-                        q.getClasse() != null ? q.getClasse().getName() : null,
-                        q.getCreationDate(),
-                        true // Simplificação: assumir pendente até lógica de respostas
-                ))
-                .limit(5)
-                .collect(Collectors.toList());
-
-        // Avaliações do aluno
-        List<Assessment> assessments = assessmentRepository.findByStudentId(student.getId());
-        List<AssessmentDTO> assessmentDTOs = assessments.stream()
-                .map(a -> new AssessmentDTO(
-                        a.getId(),
-                        a.getTitle(),
-                        a.getGrade(),
-                        a.getClasse() != null ? a.getClasse().getName() : null,
-                        null, // Não incluir studentName para aluno
-                        a.getDate()
-                ))
-                .limit(5)
-                .collect(Collectors.toList());
+    private DashboardResponseDTO getStudentDashboard(Long studentId, String userName, LocalDateTime now) {
+        // Turmas em que o aluno está inscrito e materiais/quizzes dessas turmas; avaliações do aluno
+        CompletableFuture<List<ClasseDTO>> classes = section(() -> dashboardQueryRepository.findStudentClasses(studentId, sectionSize));
+        CompletableFuture<List<MaterialDTO>> materials = section(() -> dashboardQueryRepository.findStudentMaterials(studentId, sectionSize));
+        CompletableFuture<List<QuizDTO>> quizzes = section(() -> dashboardQueryRepository.findStudentQuizzes(studentId, now, sectionSize));
+        CompletableFuture<List<AssessmentDTO>> assessments = section(() -> dashboardQueryRepository.findStudentAssessments(studentId, sectionSize));
 
         return new DashboardResponseDTO(
                 userName,
                 "STUDENT",
-                classeDTOs,
-                materialDTOs,
-                quizDTOs,
-                assessmentDTOs
+                join(classes),
+                join(materials),
+                join(quizzes),
+                join(assessments)
         );
     }
+
+    private <T> CompletableFuture<List<T>> section(Supplier<List<T>> query) {
+        return CompletableFuture.supplyAsync(query, sectionExecutor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cada snapshot vive a TTL, ou menos se deixar de estar certo antes (staleAt).
+     */
+    private class SnapshotExpiry implements Expiry<Long, DashboardSnapshot> {
+        @Override
+        public long expireAfterCreate(Long userId, DashboardSnapshot snapshot, long currentTime) {
+            Duration lifetime = ttl;
+            if (snapshot.staleAt() != null) {
+                Duration untilStale = Duration.between(LocalDateTime.now(), snapshot.staleAt());
+                lifetime = untilStale.isNegative() ? Duration.ZERO : untilStale.compareTo(ttl) < 0 ? untilStale : ttl;
+            }
+            return lifetime.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long userId, DashboardSnapshot snapshot, long currentTime, long currentDuration) {
+            return expireAfterCreate(userId, snapshot, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long userId, DashboardSnapshot snapshot, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sectionExecutor.shutdown();
+    }
 }
@@ -1,23 +1,29 @@
 package com.egnoel.backend.modules.institution.controller;
 
+import com.egnoel.backend.modules.auth.dto.UserImportReportDTO;
+import com.egnoel.backend.modules.auth.service.UserImportService;
 import com.egnoel.backend.modules.institution.dto.*;
 import com.egnoel.backend.modules.institution.service.InstitutionService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/institutions")
 public class InstitutionController {
     private final InstitutionService institutionService;
+    private final UserImportService userImportService;
 
     @Autowired
-    public InstitutionController(InstitutionService institutionService) {
+    public InstitutionController(InstitutionService institutionService, UserImportService userImportService) {
         this.institutionService = institutionService;
+        this.userImportService = userImportService;
     }
 
     @PostMapping
@@ -66,6 +72,19 @@ public class InstitutionController {
         return ResponseEntity.ok(institutionService.removeUsersFromInstitution(id, dto));
     }
 
+    /**
+     * Importa alunos e professores em massa a partir de um CSV (type,firstName,lastName,email,password)
+     * ou de NDJSON com os mesmos campos, lido em streaming do corpo do pedido.
+     */
+    @PostMapping(value = "/{id}/users/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserImportReportDTO> importUsers(@PathVariable Long id,
+                                                           @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                           InputStream body) {
+        boolean ndjson = contentType.toLowerCase().contains("ndjson");
+        return ResponseEntity.ok(userImportService.importUsers(id, body, ndjson));
+    }
+
     @GetMapping("/{id}/users")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<UserResponseDTO>> listInstitutionUsers(@PathVariable Long id) {
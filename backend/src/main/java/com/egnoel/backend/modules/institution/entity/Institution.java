@@ -21,7 +21,9 @@ import java.util.List;
 public class Institution {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "institutions_id")
+    @TableGenerator(name = "institutions_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "institutions", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -5,6 +5,7 @@ import com.egnoel.backend.modules.auth.entity.Student;
 import com.egnoel.backend.modules.auth.entity.Teacher;
 import com.egnoel.backend.modules.auth.entity.User;
 import com.egnoel.backend.modules.auth.repository.UserRepository;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
 import com.egnoel.backend.modules.classe.entity.Classe;
 import com.egnoel.backend.modules.classe.repository.ClasseRepository;
 import com.egnoel.backend.modules.institution.dto.*;
@@ -23,13 +24,15 @@ public class InstitutionService {
     private final InstitutionRepository institutionRepository;
     private final UserRepository userRepository;
     private final ClasseRepository classeRepository;
+    private final CurrentUserResolver currentUserResolver;
 
     @Autowired
     public InstitutionService(InstitutionRepository institutionRepository, UserRepository userRepository,
-                              ClasseRepository classeRepository) {
+                              ClasseRepository classeRepository, CurrentUserResolver currentUserResolver) {
         this.institutionRepository = institutionRepository;
         this.userRepository = userRepository;
         this.classeRepository = classeRepository;
+        this.currentUserResolver = currentUserResolver;
     }
 
     @Transactional
@@ -133,6 +136,7 @@ public class InstitutionService {
         }
 
         userRepository.saveAll(users);
+        currentUserResolver.evictAllAfterCommit(users.stream().map(User::getEmail).toList());
 
         return new InstitutionResponseDTO(
                 institution.getId(),
@@ -172,6 +176,7 @@ public class InstitutionService {
         }
 
         userRepository.saveAll(users);
+        currentUserResolver.evictAllAfterCommit(users.stream().map(User::getEmail).toList());
 
         return new InstitutionResponseDTO(
                 institution.getId(),
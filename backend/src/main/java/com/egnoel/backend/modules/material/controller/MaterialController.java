@@ -1,10 +1,19 @@
 package com.egnoel.backend.modules.material.controller;
 
 
+import com.egnoel.backend.modules.material.dto.DownloadLinkDTO;
+import com.egnoel.backend.modules.material.dto.MaterialContent;
 import com.egnoel.backend.modules.material.dto.MaterialCreateDTO;
+import com.egnoel.backend.modules.material.dto.MaterialPage;
 import com.egnoel.backend.modules.material.dto.MaterialResponseDTO;
 import com.egnoel.backend.modules.material.dto.MaterialUpdateDTO;
+import com.egnoel.backend.modules.material.dto.ReconciliationReport;
+import com.egnoel.backend.modules.material.service.MaterialDownloadService;
+import com.egnoel.backend.modules.material.service.MaterialLinkService;
 import com.egnoel.backend.modules.material.service.MaterialService;
+import com.egnoel.backend.modules.material.service.MaterialStorageReconciler;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -12,17 +21,26 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/materials")
 public class MaterialController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     private final MaterialService materialService;
+    private final MaterialDownloadService materialDownloadService;
+    private final MaterialLinkService materialLinkService;
+    private final MaterialStorageReconciler storageReconciler;
 
     @Autowired
-    public MaterialController(MaterialService materialService) {
+    public MaterialController(MaterialService materialService, MaterialDownloadService materialDownloadService,
+                              MaterialLinkService materialLinkService, MaterialStorageReconciler storageReconciler) {
         this.materialService = materialService;
+        this.materialDownloadService = materialDownloadService;
+        this.materialLinkService = materialLinkService;
+        this.storageReconciler = storageReconciler;
     }
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -44,9 +62,45 @@ public class MaterialController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Lista paginada por cursor. O corpo continua a ser a lista de materiais; o cursor da página seguinte vai no
+     * cabeçalho X-Next-Cursor (ausente na última página).
+     */
     @GetMapping
     @PreAuthorize("hasAnyRole('TEACHER', 'STUDENT')")
-    public ResponseEntity<List<MaterialResponseDTO>> listMaterials() {
-        return ResponseEntity.ok(materialService.listMaterials());
+    public ResponseEntity<List<MaterialResponseDTO>> listMaterials(@RequestParam(required = false) Long subjectId,
+                                                                   @RequestParam(required = false) Long classeId,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "50") int size) {
+        MaterialPage page = materialService.listMaterials(subjectId, classeId, cursor, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+
+    @GetMapping("/{id}/content")
+    @PreAuthorize("hasAnyRole('TEACHER', 'STUDENT')")
+    public void downloadContent(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MaterialContent content = materialDownloadService.resolveContent(id);
+        materialDownloadService.sendContent(content, request, response);
+    }
+
+    @PostMapping("/{id}/download-link")
+    @PreAuthorize("hasAnyRole('TEACHER', 'STUDENT')")
+    public ResponseEntity<DownloadLinkDTO> createDownloadLink(@PathVariable Long id) {
+        return ResponseEntity.ok(materialLinkService.createLink(id));
+    }
+
+    /**
+     * O resultado da última reconciliação entre a loja de blobs e os materiais; 204 se ainda não correu nenhuma.
+     */
+    @GetMapping("/reconciliation")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationReport> lastReconciliation() {
+        return storageReconciler.lastReport()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
     }
 }
@@ -0,0 +1,41 @@
+package com.egnoel.backend.modules.material.controller;
+
+import com.egnoel.backend.modules.material.dto.MaterialContent;
+import com.egnoel.backend.modules.material.service.MaterialDownloadService;
+import com.egnoel.backend.modules.material.service.MaterialLinkService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Downloads por link assinado (ver MaterialLinkService): público, sem JWT nem acesso à base de dados.
+ */
+@RestController
+@RequestMapping("/api/materials/files")
+public class MaterialFileController {
+
+    private final MaterialLinkService materialLinkService;
+    private final MaterialDownloadService materialDownloadService;
+
+    @Autowired
+    public MaterialFileController(MaterialLinkService materialLinkService, MaterialDownloadService materialDownloadService) {
+        this.materialLinkService = materialLinkService;
+        this.materialDownloadService = materialDownloadService;
+    }
+
+    @GetMapping("/{id}")
+    public void download(@PathVariable Long id, @RequestParam("u") Long userId, @RequestParam("e") long expires,
+                         @RequestParam("r") String ref, @RequestParam("n") String fileName,
+                         @RequestParam("s") String signature,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MaterialContent content = materialLinkService.verify(id, userId, expires, ref, fileName, signature);
+        materialDownloadService.sendContent(content, request, response);
+    }
+}
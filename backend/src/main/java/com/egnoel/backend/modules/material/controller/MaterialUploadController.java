@@ -0,0 +1,66 @@
+package com.egnoel.backend.modules.material.controller;
+
+import com.egnoel.backend.modules.material.dto.UploadCompleteDTO;
+import com.egnoel.backend.modules.material.dto.UploadInitiateDTO;
+import com.egnoel.backend.modules.material.dto.UploadStatusDTO;
+import com.egnoel.backend.modules.material.service.MaterialUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Upload retomável: POST inicia, PUT ?offset=N envia um pedaço (corpo binário), GET consulta quantos bytes
+ * já chegaram, POST /complete pede a conclusão (202: o SHA-256 é verificado e o material criado em segundo
+ * plano; GET devolve depois state=COMPLETED com o materialId, ou FAILED com o erro), DELETE cancela.
+ */
+@RestController
+@RequestMapping("/api/materials/uploads")
+public class MaterialUploadController {
+
+    private final MaterialUploadService materialUploadService;
+
+    @Autowired
+    public MaterialUploadController(MaterialUploadService materialUploadService) {
+        this.materialUploadService = materialUploadService;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<UploadStatusDTO> initiateUpload(@Valid @RequestBody UploadInitiateDTO dto) {
+        return ResponseEntity.ok(materialUploadService.initiate(dto));
+    }
+
+    @PutMapping(value = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<UploadStatusDTO> uploadChunk(@PathVariable String uploadId, @RequestParam long offset,
+                                                       HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(materialUploadService.appendChunk(uploadId, offset, request.getContentLengthLong(),
+                request.getInputStream()));
+    }
+
+    @GetMapping("/{uploadId}")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<UploadStatusDTO> getUploadStatus(@PathVariable String uploadId) {
+        return ResponseEntity.ok(materialUploadService.getStatus(uploadId));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<UploadStatusDTO> completeUpload(@PathVariable String uploadId,
+                                                          @Valid @RequestBody UploadCompleteDTO dto) {
+        return ResponseEntity.accepted().body(materialUploadService.complete(uploadId, dto));
+    }
+
+    @DeleteMapping("/{uploadId}")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) {
+        materialUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+}
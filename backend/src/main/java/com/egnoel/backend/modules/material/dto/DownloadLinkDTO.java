@@ -0,0 +1,16 @@
+package com.egnoel.backend.modules.material.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DownloadLinkDTO {
+    // Caminho relativo à API, já assinado (não precisa de cabeçalho Authorization)
+    private String url;
+    private Instant expiresAt;
+}
@@ -0,0 +1,13 @@
+package com.egnoel.backend.modules.material.dto;
+
+import java.nio.file.Path;
+
+/**
+ * Ficheiro de um material já autorizado e pronto a enviar.
+ * @param path O caminho no disco, para materiais anteriores à loja de blobs (senão nulo)
+ * @param hash O hash do conteúdo na loja de blobs (nulo para materiais antigos)
+ * @param fileName O nome original do ficheiro, sugerido ao cliente
+ * @param etag ETag forte derivado do hash do conteúdo, ou nulo para materiais antigos
+ */
+public record MaterialContent(Path path, String hash, String fileName, String etag) {
+}
@@ -0,0 +1,18 @@
+package com.egnoel.backend.modules.material.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * O mínimo necessário para servir o ficheiro de um material, projetado diretamente da consulta de acesso.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MaterialFileDTO {
+    private Long id;
+    private String filePath;
+    private String contentHash;
+    private String originalFileName;
+}
@@ -0,0 +1,9 @@
+package com.egnoel.backend.modules.material.dto;
+
+import java.util.List;
+
+/**
+ * @param nextCursor Cursor da página seguinte; nulo se esta for a última
+ */
+public record MaterialPage(List<MaterialResponseDTO> items, String nextCursor) {
+}
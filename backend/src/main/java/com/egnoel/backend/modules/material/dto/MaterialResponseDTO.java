@@ -1,5 +1,6 @@
 package com.egnoel.backend.modules.material.dto;
 
+import com.egnoel.backend.modules.material.entity.MaterialProcessingStatus;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,4 +18,9 @@ public class MaterialResponseDTO {
     private String teacherName;
     private String subjectName;
     private String classeName;
+    // Preenchidos pelo processamento assíncrono; nulos enquanto processingStatus for PENDING
+    private Long sizeBytes;
+    private String mimeType;
+    private Integer pageCount;
+    private MaterialProcessingStatus processingStatus;
 }
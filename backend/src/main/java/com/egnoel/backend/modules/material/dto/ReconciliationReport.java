@@ -0,0 +1,41 @@
+package com.egnoel.backend.modules.material.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Resultado de uma reconciliação entre a loja de blobs e a tabela de materiais.
+ * As listas trazem no máximo as primeiras entradas encontradas; os contadores trazem o total.
+ *
+ * @param blobs Blobs encontrados no armazenamento
+ * @param orphansInGrace Órfãos ainda recentes, que ficam para a próxima reconciliação
+ * @param quarantined Órfãos movidos para a quarentena
+ * @param restored Blobs em falta que estavam na quarentena e voltaram ao lugar
+ * @param purged Entradas da quarentena apagadas por terem passado o tempo de retenção, e uploads por partes
+ *               concluídos mas nunca adotados
+ * @param missing Hashes referenciados por materiais sem blob no armazenamento
+ * @param unknownKeys Objetos fora do formato da loja, ignorados
+ * @param failedShards Pastas que não foi possível reconciliar (ver os logs)
+ * @param missingLegacyFiles Materiais anteriores à loja de blobs cujo ficheiro não existe
+ * @param unreferencedLegacyFiles Ficheiros soltos na pasta de uploads sem material; nunca são movidos
+ */
+public record ReconciliationReport(
+        Instant startedAt,
+        long durationMillis,
+        long blobs,
+        long orphansInGrace,
+        long quarantined,
+        long restored,
+        long purged,
+        long missing,
+        List<MissingBlob> missingBlobs,
+        long unknownKeys,
+        int failedShards,
+        long missingLegacyFiles,
+        List<Long> missingLegacyMaterialIds,
+        long unreferencedLegacyFiles,
+        List<String> unreferencedLegacyFileNames
+) {
+    public record MissingBlob(String hash, List<Long> materialIds) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.egnoel.backend.modules.material.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class UploadCompleteDTO {
+    @NotBlank(message = "O título é obrigatório")
+    private String title;
+
+    @NotNull(message = "A disciplina é obrigatória")
+    private Long subjectId;
+
+    private Long classeId;
+
+    // SHA-256 do ficheiro completo, calculado pelo cliente
+    @NotBlank(message = "O checksum SHA-256 é obrigatório")
+    private String sha256;
+}
@@ -0,0 +1,16 @@
+package com.egnoel.backend.modules.material.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+@Data
+public class UploadInitiateDTO {
+    @NotBlank(message = "O nome do ficheiro é obrigatório")
+    private String fileName;
+
+    @NotNull(message = "O tamanho do ficheiro é obrigatório")
+    @Positive(message = "O tamanho do ficheiro deve ser positivo")
+    private Long size;
+}
@@ -0,0 +1,34 @@
+package com.egnoel.backend.modules.material.dto;
+
+import com.egnoel.backend.modules.material.entity.MaterialUploadState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * O estado de um upload retomável, projetado da tabela material_uploads (sem ficar na sessão JPA, por isso
+ * cada leitura vê o que outros pedidos e nós gravaram entretanto).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionInfo {
+    private String id;
+    private Long teacherId;
+    private String fileName;
+    private long size;
+    private long received;
+    private String partUploadId;
+    private long partSize;
+    private MaterialUploadState state;
+    private int attempt;
+    private String title;
+    private Long subjectId;
+    private Long classeId;
+    private String sha256;
+    private Long materialId;
+    private String error;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,27 @@
+package com.egnoel.backend.modules.material.dto;
+
+import com.egnoel.backend.modules.material.entity.MaterialUploadState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadStatusDTO {
+    private String uploadId;
+    private String fileName;
+    private long size;
+    // Bytes já recebidos: o próximo pedaço deve começar neste offset
+    private long received;
+    // Com storage.type=s3 cada pedaço tem de ter exatamente partSize bytes (o último, o que faltar); 0 = qualquer
+    private long partSize;
+    private MaterialUploadState state;
+    // Preenchido quando state=COMPLETED
+    private Long materialId;
+    // Motivo, quando state=FAILED
+    private String error;
+    private Instant expiresAt;
+}
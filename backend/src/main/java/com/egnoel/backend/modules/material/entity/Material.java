@@ -14,12 +14,22 @@ import java.time.LocalDateTime;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "materials")
+@Table(name = "materials", indexes = {
+        // Top-N por data (dashboard e listagens)
+        @Index(name = "idx_materials_teacher_upload", columnList = "teacher_id, upload_date"),
+        @Index(name = "idx_materials_classe_upload", columnList = "classe_id, upload_date"),
+        // Contagem de referências de cada blob
+        @Index(name = "idx_materials_content_hash", columnList = "content_hash"),
+        // Varredura dos materiais por processar
+        @Index(name = "idx_materials_processing_status", columnList = "processing_status")
+})
 @Data
 public class Material {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "materials_id")
+    @TableGenerator(name = "materials_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "materials", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -28,6 +38,33 @@ public class Material {
     @Column(nullable = false)
     private String filePath;
 
+    // SHA-256 do conteúdo (ver MaterialBlobStore); nulo em materiais gravados antes da loja de blobs
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "original_file_name")
+    private String originalFileName;
+
+    // Preenchidos pelo processamento assíncrono depois do upload (ver MaterialProcessingService)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "processing_status", length = 16)
+    private MaterialProcessingStatus processingStatus;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Column(name = "mime_type", length = 127)
+    private String mimeType;
+
+    @Column(name = "page_count")
+    private Integer pageCount;
+
+    @Column(name = "processing_error")
+    private String processingError;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
     @Column(updatable = false)
     private LocalDateTime uploadDate= LocalDateTime.now();
 
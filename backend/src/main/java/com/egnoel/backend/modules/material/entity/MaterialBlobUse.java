@@ -0,0 +1,32 @@
+package com.egnoel.backend.modules.material.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Quando um blob da loja foi gravado ou reutilizado pela última vez. Um blob usado há menos de
+ * materials.blobs.release-grace não é apagado (ver MaterialBlobStore.release), mesmo sem materiais.
+ * <p>
+ * Fica na base de dados e não na data do objeto porque no S3 mudar a data obriga a copiar o objeto.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "material_blob_uses")
+@Data
+public class MaterialBlobUse {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "last_used_at", nullable = false)
+    private LocalDateTime lastUsedAt;
+}
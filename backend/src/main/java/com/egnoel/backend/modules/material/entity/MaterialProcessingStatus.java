@@ -0,0 +1,10 @@
+package com.egnoel.backend.modules.material.entity;
+
+/**
+ * Estado do processamento assíncrono de um material depois do upload (ver MaterialProcessingService).
+ */
+public enum MaterialProcessingStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -0,0 +1,30 @@
+package com.egnoel.backend.modules.material.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Texto extraído do ficheiro de um material. Fica numa tabela própria para que as listagens de materiais
+ * nunca o carreguem.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "material_texts")
+@Data
+public class MaterialText {
+
+    @Id
+    @Column(name = "material_id")
+    private Long materialId;
+
+    @Lob
+    @Column(nullable = false)
+    private String content;
+}
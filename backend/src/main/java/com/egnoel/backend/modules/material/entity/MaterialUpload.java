@@ -0,0 +1,85 @@
+package com.egnoel.backend.modules.material.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Um upload retomável em curso (ver MaterialUploadService). Fica na base de dados para que qualquer nó, ou o
+ * mesmo nó depois de um reinício, possa receber os pedaços seguintes.
+ * <p>
+ * received e o estado só mudam por atualizações condicionais (MaterialUploadRepository), nunca pela entidade.
+ * Depois de concluído (ou falhado) o registo fica até materials.uploads.session-ttl, para o cliente consultar
+ * o resultado.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "material_uploads", indexes = {
+        @Index(name = "idx_material_uploads_teacher", columnList = "teacher_id"),
+        // Limpeza das sessões paradas
+        @Index(name = "idx_material_uploads_updated", columnList = "updated_at")
+})
+@Data
+public class MaterialUpload {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "teacher_id", nullable = false, updatable = false)
+    private Long teacherId;
+
+    @Column(name = "file_name", nullable = false, updatable = false)
+    private String fileName;
+
+    @Column(nullable = false, updatable = false)
+    private long size;
+
+    @Column(nullable = false, updatable = false)
+    private long received;
+
+    // Multipart upload no armazenamento (storage.type=s3); nulo quando as partes vão para um ficheiro local
+    @Column(name = "part_upload_id", length = 1024, updatable = false)
+    private String partUploadId;
+
+    // Tamanho exigido a cada pedaço no upload por partes; 0 quando os pedaços podem ter qualquer tamanho
+    @Column(name = "part_size", nullable = false, updatable = false)
+    private long partSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16, updatable = false)
+    private MaterialUploadState state = MaterialUploadState.RECEIVING;
+
+    // Incrementado a cada tentativa de conclusão: só a tentativa atual pode gravar o resultado
+    @Column(nullable = false, updatable = false)
+    private int attempt;
+
+    // Pedido de conclusão: o material a criar e o checksum indicado pelo cliente
+    @Column(updatable = false)
+    private String title;
+
+    @Column(name = "subject_id", updatable = false)
+    private Long subjectId;
+
+    @Column(name = "classe_id", updatable = false)
+    private Long classeId;
+
+    @Column(length = 64, updatable = false)
+    private String sha256;
+
+    @Column(name = "material_id", updatable = false)
+    private Long materialId;
+
+    @Column(updatable = false)
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at", nullable = false, updatable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
@@ -0,0 +1,13 @@
+package com.egnoel.backend.modules.material.entity;
+
+/**
+ * Estado de um upload retomável (ver MaterialUploadService).
+ */
+public enum MaterialUploadState {
+    // A receber pedaços
+    RECEIVING,
+    // Todos os bytes recebidos; a verificar o checksum e a criar o material em segundo plano
+    COMPLETING,
+    COMPLETED,
+    FAILED
+}
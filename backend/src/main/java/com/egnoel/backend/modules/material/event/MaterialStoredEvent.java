@@ -0,0 +1,8 @@
+package com.egnoel.backend.modules.material.event;
+
+/**
+ * Publicado quando um material recebe um ficheiro novo (criação ou substituição). Depois do commit
+ * o material entra na fila de processamento (ver MaterialProcessingService).
+ */
+public record MaterialStoredEvent(Long materialId) {
+}
@@ -0,0 +1,12 @@
+package com.egnoel.backend.modules.material.processing;
+
+/**
+ * Metadados extraídos do ficheiro de um material.
+ * @param size Tamanho em bytes
+ * @param sha256 SHA-256 do conteúdo lido, em hexadecimal
+ * @param mimeType Tipo detetado pelo conteúdo (e pelo nome, quando o conteúdo não chega)
+ * @param pageCount Número de páginas (PDF), ou nulo
+ * @param text Texto extraído e truncado (PDF e ficheiros de texto), ou nulo
+ */
+public record MaterialAnalysis(long size, String sha256, String mimeType, Integer pageCount, String text) {
+}
@@ -0,0 +1,127 @@
+package com.egnoel.backend.modules.material.processing;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Extrai os metadados de um ficheiro: uma única leitura calcula o tamanho e o SHA-256 e guarda o cabeçalho para
+ * detetar o tipo. Só o que é barato vai além disso: páginas e texto de PDFs (até materials.processing.max-text-pages
+ * páginas e só para ficheiros até max-text-file-size) e o início dos ficheiros de texto.
+ */
+@Component
+public class MaterialAnalyzer {
+    private static final int HEADER_SIZE = 8192;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final int maxTextChars;
+    private final int maxTextPages;
+    private final long maxTextFileSize;
+
+    public MaterialAnalyzer(@Value("${materials.processing.max-text-chars:200000}") int maxTextChars,
+                            @Value("${materials.processing.max-text-pages:200}") int maxTextPages,
+                            @Value("${materials.processing.max-text-file-size:52428800}") long maxTextFileSize) {
+        this.maxTextChars = maxTextChars;
+        this.maxTextPages = maxTextPages;
+        this.maxTextFileSize = maxTextFileSize;
+    }
+
+    public MaterialAnalysis analyze(Path file, String fileName) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] header = new byte[HEADER_SIZE];
+        int headerLength = 0;
+        long size = 0;
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (headerLength < HEADER_SIZE) {
+                    int copied = Math.min(read, HEADER_SIZE - headerLength);
+                    System.arraycopy(buffer, 0, header, headerLength, copied);
+                    headerLength += copied;
+                }
+                digest.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        String mimeType = MimeSniffer.sniff(header, headerLength, fileName);
+
+        Integer pageCount = null;
+        String text = null;
+        if (MimeSniffer.PDF.equals(mimeType)) {
+            // Os buffers internos do PDFBox vão para ficheiros temporários, não para a heap
+            try (PDDocument document = Loader.loadPDF(file.toFile(), IOUtils.createTempFileOnlyStreamCache())) {
+                pageCount = document.getNumberOfPages();
+                if (size <= maxTextFileSize) {
+                    PDFTextStripper stripper = new PDFTextStripper();
+                    stripper.setEndPage(maxTextPages);
+                    text = stripper.getText(document);
+                }
+            } catch (InvalidPasswordException e) {
+                // PDF cifrado: fica sem páginas nem texto
+            } catch (IOException e) {
+                // PDF danificado: o tipo e o tamanho continuam a valer
+            }
+        } else if (MimeSniffer.isText(mimeType)) {
+            text = readText(file);
+        }
+
+        return new MaterialAnalysis(size, HexFormat.of().formatHex(digest.digest()), mimeType, pageCount, normalize(text));
+    }
+
+    private String readText(Path file) throws IOException {
+        var decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), decoder)) {
+            char[] chars = new char[maxTextChars];
+            int length = 0;
+            int read;
+            while (length < chars.length && (read = reader.read(chars, length, chars.length - length)) != -1) {
+                length += read;
+            }
+            return new String(chars, 0, length);
+        }
+    }
+
+    private String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        // Espaços repetidos (comuns no texto de PDFs) não acrescentam nada à pesquisa
+        String normalized = text.replaceAll("[ \\t\\x0B\\f\\r]+", " ").replaceAll("\\n\\s*\\n+", "\n\n").strip();
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        if (normalized.length() <= maxTextChars) {
+            return normalized;
+        }
+        // Não corta um carácter fora do plano básico (par de surrogates) a meio
+        int end = Character.isHighSurrogate(normalized.charAt(maxTextChars - 1)) ? maxTextChars - 1 : maxTextChars;
+        return normalized.substring(0, end);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.egnoel.backend.modules.material.processing;
+
+import org.springframework.http.MediaTypeFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Deteta o tipo MIME pelos primeiros bytes do ficheiro (assinaturas conhecidas), usando a extensão do nome
+ * só quando o conteúdo não é conclusivo (ex.: os formatos do Office são todos ZIP).
+ */
+final class MimeSniffer {
+    static final String PDF = "application/pdf";
+    static final String OCTET_STREAM = "application/octet-stream";
+
+    private MimeSniffer() {
+    }
+
+    /**
+     * @param header Os primeiros bytes do ficheiro (bastam alguns KB)
+     * @param length Quantos bytes de header são válidos
+     * @param fileName O nome original, usado como pista
+     */
+    static String sniff(byte[] header, int length, String fileName) {
+        if (startsWith(header, length, "%PDF-")) {
+            return PDF;
+        }
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, "GIF87a") || startsWith(header, length, "GIF89a")) {
+            return "image/gif";
+        }
+        if (startsWith(header, length, "RIFF") && length >= 12 && new String(header, 8, 4, StandardCharsets.US_ASCII).equals("WEBP")) {
+            return "image/webp";
+        }
+        if (length >= 12 && new String(header, 4, 4, StandardCharsets.US_ASCII).equals("ftyp")) {
+            return "video/mp4";
+        }
+        if (startsWith(header, length, "ID3") || startsWith(header, length, 0xFF, 0xFB)) {
+            return "audio/mpeg";
+        }
+        if (startsWith(header, length, 'P', 'K', 0x03, 0x04)) {
+            // docx, xlsx, pptx, odt... são contentores ZIP: o nome distingue-os
+            String byName = byName(fileName);
+            return byName.startsWith("application/vnd.") ? byName : "application/zip";
+        }
+        if (startsWith(header, length, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1)) {
+            // Formatos binários antigos do Office (doc, xls, ppt)
+            String byName = byName(fileName);
+            return byName.startsWith("application/") && !byName.equals(OCTET_STREAM) ? byName : "application/x-ole-storage";
+        }
+        if (isText(header, length)) {
+            String byName = byName(fileName);
+            return byName.startsWith("text/") ? byName : "text/plain";
+        }
+        return byName(fileName);
+    }
+
+    static boolean isText(String mimeType) {
+        return mimeType.startsWith("text/");
+    }
+
+    private static String byName(String fileName) {
+        if (fileName == null) {
+            return OCTET_STREAM;
+        }
+        return MediaTypeFactory.getMediaType(fileName.toLowerCase(Locale.ROOT))
+                .map(Object::toString)
+                .orElse(OCTET_STREAM);
+    }
+
+    /**
+     * Texto se for UTF-8 válido sem bytes de controlo (exceto mudanças de linha e tabulações).
+     */
+    private static boolean isText(byte[] header, int length) {
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int b = header[i] & 0xFF;
+            if (b < 0x20 && b != '\n' && b != '\r' && b != '\t' && b != '\f') {
+                return false;
+            }
+        }
+        // O cabeçalho pode cortar um carácter multibyte a meio: ignoram-se os últimos 3 bytes
+        int checked = length == header.length ? Math.max(0, length - 3) : length;
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(header, 0, checked));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    private static boolean startsWith(byte[] header, int length, String prefix) {
+        return startsWith(header, length, prefix.chars().toArray());
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((header[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
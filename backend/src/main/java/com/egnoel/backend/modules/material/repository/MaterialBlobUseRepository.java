@@ -0,0 +1,36 @@
+package com.egnoel.backend.modules.material.repository;
+
+import com.egnoel.backend.modules.material.entity.MaterialBlobUse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * As escritas têm transação própria: o uso fica visível aos outros nós logo, e uma chave duplicada no insert
+ * não invalida a transação de quem chama.
+ */
+public interface MaterialBlobUseRepository extends JpaRepository<MaterialBlobUse, String> {
+
+    @Query("SELECT u.lastUsedAt FROM MaterialBlobUse u WHERE u.contentHash = :hash")
+    Optional<LocalDateTime> findLastUsedAt(String hash);
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE MaterialBlobUse u SET u.lastUsedAt = :now WHERE u.contentHash = :hash")
+    int markUsed(String hash, LocalDateTime now);
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "INSERT INTO material_blob_uses (content_hash, last_used_at) VALUES (:hash, :now)", nativeQuery = true)
+    void insertUse(String hash, LocalDateTime now);
+
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("DELETE FROM MaterialBlobUse u WHERE u.contentHash = :hash")
+    void forget(String hash);
+}
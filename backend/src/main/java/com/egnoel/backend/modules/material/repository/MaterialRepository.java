@@ -1,13 +1,116 @@
 package com.egnoel.backend.modules.material.repository;
 
+import com.egnoel.backend.modules.material.dto.MaterialFileDTO;
+import com.egnoel.backend.modules.material.dto.MaterialResponseDTO;
 import com.egnoel.backend.modules.material.entity.Material;
+import com.egnoel.backend.modules.material.entity.MaterialProcessingStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface MaterialRepository extends JpaRepository<Material, Long> {
     List<Material> findByTeacherId(Long teacherId);
     List<Material> findBySubjectId(Long subjectId);
     List<Material> findByClasseId(Long classeId);
     List<Material> findByClasseIdIn(List<Long> classeIds);
+    long countByContentHash(String contentHash);
+
+    /**
+     * O ficheiro do material, apenas se o utilizador o puder ver: o autor, o professor ou um aluno da turma,
+     * ou, para materiais sem turma, qualquer utilizador da instituição da disciplina.
+     * Uma única consulta sobre chaves indexadas, sem carregar entidades.
+     */
+    @Query("SELECT new com.egnoel.backend.modules.material.dto.MaterialFileDTO(m.id, m.filePath, " +
+            "m.contentHash, m.originalFileName) FROM Material m " +
+            "WHERE m.id = :materialId AND (m.teacher.id = :userId " +
+            "OR EXISTS (SELECT c.id FROM Classe c LEFT JOIN c.students s " +
+            "WHERE c.id = m.classe.id AND (c.teacher.id = :userId OR s.id = :userId)) " +
+            "OR (m.classe IS NULL AND m.subject.institution.id = :institutionId))")
+    Optional<MaterialFileDTO> findAccessibleFile(Long materialId, Long userId, Long institutionId);
+
+    /**
+     * Página de materiais do professor, do mais recente para o mais antigo, a seguir ao cursor (uploadDate, id).
+     * Percorre o índice (teacher_id, upload_date) a partir da posição do cursor, em vez de saltar linhas com OFFSET.
+     */
+    @Query("SELECT new com.egnoel.backend.modules.material.dto.MaterialResponseDTO(m.id, m.title, m.filePath, " +
+            "m.uploadDate, t.firstName, s.name, cl.name, m.sizeBytes, m.mimeType, m.pageCount, m.processingStatus) " +
+            "FROM Material m JOIN m.teacher t JOIN m.subject s LEFT JOIN m.classe cl " +
+            "WHERE t.id = :teacherId " +
+            "AND (:subjectId IS NULL OR s.id = :subjectId) AND (:classeId IS NULL OR cl.id = :classeId) " +
+            "AND (:cursorDate IS NULL OR m.uploadDate < :cursorDate OR (m.uploadDate = :cursorDate AND m.id < :cursorId)) " +
+            "ORDER BY m.uploadDate DESC, m.id DESC")
+    List<MaterialResponseDTO> findPageForTeacher(Long teacherId, Long subjectId, Long classeId,
+                                                 LocalDateTime cursorDate, Long cursorId, Limit limit);
+
+    /**
+     * Página de materiais das turmas em que o aluno está inscrito, pela mesma ordem e cursor que findPageForTeacher.
+     */
+    @Query("SELECT new com.egnoel.backend.modules.material.dto.MaterialResponseDTO(m.id, m.title, m.filePath, " +
+            "m.uploadDate, t.firstName, s.name, cl.name, m.sizeBytes, m.mimeType, m.pageCount, m.processingStatus) " +
+            "FROM Material m JOIN m.classe cl JOIN cl.students st JOIN m.teacher t JOIN m.subject s " +
+            "WHERE st.id = :studentId " +
+            "AND (:subjectId IS NULL OR s.id = :subjectId) AND (:classeId IS NULL OR cl.id = :classeId) " +
+            "AND (:cursorDate IS NULL OR m.uploadDate < :cursorDate OR (m.uploadDate = :cursorDate AND m.id < :cursorId)) " +
+            "ORDER BY m.uploadDate DESC, m.id DESC")
+    List<MaterialResponseDTO> findPageForStudent(Long studentId, Long subjectId, Long classeId,
+                                                 LocalDateTime cursorDate, Long cursorId, Limit limit);
+
+    /**
+     * Página de materiais sem turma das disciplinas da instituição, que qualquer aluno dela pode ver
+     * (findAccessibleFile); o serviço junta-a à de findPageForStudent. Percorre idx_materials_classe_upload
+     * com classe_id nulo.
+     */
+    @Query("SELECT new com.egnoel.backend.modules.material.dto.MaterialResponseDTO(m.id, m.title, m.filePath, " +
+            "m.uploadDate, t.firstName, s.name, CAST(NULL AS String), m.sizeBytes, m.mimeType, m.pageCount, " +
+            "m.processingStatus) " +
+            "FROM Material m JOIN m.teacher t JOIN m.subject s " +
+            "WHERE m.classe IS NULL AND s.institution.id = :institutionId " +
+            "AND (:subjectId IS NULL OR s.id = :subjectId) " +
+            "AND (:cursorDate IS NULL OR m.uploadDate < :cursorDate OR (m.uploadDate = :cursorDate AND m.id < :cursorId)) " +
+            "ORDER BY m.uploadDate DESC, m.id DESC")
+    List<MaterialResponseDTO> findInstitutionPage(Long institutionId, Long subjectId,
+                                                  LocalDateTime cursorDate, Long cursorId, Limit limit);
+
+    @Query("SELECT new com.egnoel.backend.modules.material.dto.MaterialFileDTO(m.id, m.filePath, " +
+            "m.contentHash, m.originalFileName) FROM Material m WHERE m.id = :id")
+    Optional<MaterialFileDTO> findFileById(Long id);
+
+    /**
+     * Hashes distintos que começam por prefix, por ordem, a seguir a after: a reconciliação lê assim cada pasta da
+     * loja de blobs por lotes, sobre o índice de content_hash.
+     */
+    @Query("SELECT DISTINCT m.contentHash FROM Material m " +
+            "WHERE m.contentHash LIKE CONCAT(:prefix, '%') AND m.contentHash > :after ORDER BY m.contentHash")
+    List<String> findContentHashesAfter(String prefix, String after, Limit limit);
+
+    @Query("SELECT m.id FROM Material m WHERE m.contentHash = :contentHash ORDER BY m.id")
+    List<Long> findIdsByContentHash(String contentHash, Limit limit);
+
+    /**
+     * Materiais anteriores à loja de blobs (com ficheiro próprio), por lotes ordenados pelo id.
+     */
+    @Query("SELECT new com.egnoel.backend.modules.material.dto.MaterialFileDTO(m.id, m.filePath, " +
+            "m.contentHash, m.originalFileName) FROM Material m WHERE m.contentHash IS NULL AND m.id > :afterId " +
+            "ORDER BY m.id")
+    List<MaterialFileDTO> findLegacyFiles(Long afterId, Limit limit);
+
+    @Query("SELECT m.id FROM Material m WHERE m.processingStatus = :status ORDER BY m.id")
+    List<Long> findIdsByProcessingStatus(MaterialProcessingStatus status, Pageable pageable);
+
+    /**
+     * Grava o resultado do processamento, só se o ficheiro não tiver sido substituído entretanto.
+     * @return 1 se gravou, 0 se o material já não existe ou tem outro conteúdo
+     */
+    @Modifying
+    @Query("UPDATE Material m SET m.processingStatus = :status, m.sizeBytes = :sizeBytes, m.mimeType = :mimeType, " +
+            "m.pageCount = :pageCount, m.processingError = :error, m.processedAt = :processedAt " +
+            "WHERE m.id = :id AND m.contentHash = :contentHash")
+    int updateProcessingResult(Long id, String contentHash, MaterialProcessingStatus status, Long sizeBytes,
+                               String mimeType, Integer pageCount, String error, LocalDateTime processedAt);
 }
@@ -0,0 +1,12 @@
+package com.egnoel.backend.modules.material.repository;
+
+import com.egnoel.backend.modules.material.entity.MaterialText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface MaterialTextRepository extends JpaRepository<MaterialText, Long> {
+    @Modifying
+    @Query("DELETE FROM MaterialText t WHERE t.materialId = :materialId")
+    int deleteByMaterialId(Long materialId);
+}
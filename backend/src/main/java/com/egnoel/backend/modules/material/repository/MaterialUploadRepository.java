@@ -0,0 +1,86 @@
+package com.egnoel.backend.modules.material.repository;
+
+import com.egnoel.backend.modules.material.dto.UploadSessionInfo;
+import com.egnoel.backend.modules.material.entity.MaterialUpload;
+import com.egnoel.backend.modules.material.entity.MaterialUploadState;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface MaterialUploadRepository extends JpaRepository<MaterialUpload, String> {
+    String INFO = "SELECT new com.egnoel.backend.modules.material.dto.UploadSessionInfo(u.id, u.teacherId, u.fileName, " +
+            "u.size, u.received, u.partUploadId, u.partSize, u.state, u.attempt, u.title, u.subjectId, u.classeId, " +
+            "u.sha256, u.materialId, u.error, u.updatedAt) FROM MaterialUpload u ";
+
+    long countByTeacherIdAndState(Long teacherId, MaterialUploadState state);
+
+    @Query(INFO + "WHERE u.id = :id")
+    Optional<UploadSessionInfo> findInfoById(String id);
+
+    /**
+     * Avança os bytes recebidos, só se ninguém o tiver feito entretanto (pedaços simultâneos ou noutro nó).
+     * @return 1 se avançou, 0 se received já não era "from" ou o upload já não está a receber
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MaterialUpload u SET u.received = :to, u.updatedAt = :now WHERE u.id = :id AND u.received = :from " +
+            "AND u.state = :receiving")
+    int advance(String id, long from, long to, LocalDateTime now, MaterialUploadState receiving);
+
+    /**
+     * Passa um upload completo a COMPLETING com o pedido de conclusão: só um pedido (em qualquer nó) consegue
+     * concluir o upload.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MaterialUpload u SET u.state = :completing, u.attempt = u.attempt + 1, u.title = :title, " +
+            "u.subjectId = :subjectId, u.classeId = :classeId, u.sha256 = :sha256, u.updatedAt = :now " +
+            "WHERE u.id = :id AND u.received = u.size AND u.state = :receiving")
+    int claimCompletion(String id, String title, Long subjectId, Long classeId, String sha256, LocalDateTime now,
+                        MaterialUploadState receiving, MaterialUploadState completing);
+
+    /**
+     * Nova tentativa de uma conclusão parada (ex.: o nó parou a meio); a tentativa anterior deixa de poder
+     * gravar o resultado.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MaterialUpload u SET u.attempt = u.attempt + 1, u.updatedAt = :now " +
+            "WHERE u.id = :id AND u.state = :completing AND u.attempt = :attempt")
+    int retryCompletion(String id, int attempt, LocalDateTime now, MaterialUploadState completing);
+
+    /**
+     * Grava o resultado da tentativa de conclusão, se ainda for a atual.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MaterialUpload u SET u.state = :state, u.materialId = :materialId, u.error = :error, " +
+            "u.updatedAt = :now WHERE u.id = :id AND u.state = :completing AND u.attempt = :attempt")
+    int finishCompletion(String id, int attempt, MaterialUploadState state, Long materialId, String error,
+                         LocalDateTime now, MaterialUploadState completing);
+
+    /**
+     * Remove a sessão, exceto durante a conclusão.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MaterialUpload u WHERE u.id = :id AND u.state <> :completing")
+    int deleteSession(String id, MaterialUploadState completing);
+
+    /**
+     * Remove a sessão se não tiver mudado desde a leitura (a limpeza não apaga um upload que retomou).
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MaterialUpload u WHERE u.id = :id AND u.updatedAt = :updatedAt")
+    int deleteIfUnchanged(String id, LocalDateTime updatedAt);
+
+    @Query(INFO + "WHERE u.state = :state AND u.updatedAt < :before ORDER BY u.updatedAt")
+    List<UploadSessionInfo> findStale(MaterialUploadState state, LocalDateTime before, Limit limit);
+}
@@ -0,0 +1,153 @@
+package com.egnoel.backend.modules.material.service;
+
+import com.egnoel.backend.core.util.FileContentWriter;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
+import com.egnoel.backend.modules.material.dto.MaterialContent;
+import com.egnoel.backend.modules.material.dto.MaterialFileDTO;
+import com.egnoel.backend.modules.material.repository.MaterialRepository;
+import com.egnoel.backend.modules.material.storage.HotContentCache;
+import com.egnoel.backend.modules.material.storage.MaterialBlobStore;
+import com.egnoel.backend.modules.material.storage.MaterialStorage;
+import com.egnoel.backend.modules.material.storage.StorageObject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Resolve o ficheiro de um material para download, verificando o acesso do utilizador autenticado, e envia-o.
+ * Num armazenamento remoto o cliente é redirecionado para um URL pré-assinado (os bytes não passam pela JVM).
+ * Caso contrário os blobs populares são servidos da memória (HotContentCache) e os restantes por sendfile
+ * (disco local) ou por streaming a partir do armazenamento.
+ */
+@Service
+public class MaterialDownloadService {
+    // Uploads anteriores à loja de blobs foram gravados como "<millis>_<nome original>"
+    private static final Pattern UPLOAD_PREFIX = Pattern.compile("^\\d+_");
+
+    private final MaterialRepository materialRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final MaterialBlobStore blobStore;
+    private final MaterialStorage storage;
+    private final HotContentCache hotContentCache;
+    private final FileContentWriter fileContentWriter;
+    private final boolean presignedReads;
+    private final Duration presignedTtl;
+    private final Path uploadRoot = Paths.get(System.getProperty("user.dir"), "uploads").toAbsolutePath().normalize();
+
+    @Autowired
+    public MaterialDownloadService(MaterialRepository materialRepository, CurrentUserResolver currentUserResolver,
+                                   MaterialBlobStore blobStore, MaterialStorage storage,
+                                   HotContentCache hotContentCache, FileContentWriter fileContentWriter,
+                                   @Value("${storage.presigned-reads.enabled:true}") boolean presignedReads,
+                                   @Value("${storage.presigned-reads.ttl:PT5M}") Duration presignedTtl) {
+        this.materialRepository = materialRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.blobStore = blobStore;
+        this.storage = storage;
+        this.hotContentCache = hotContentCache;
+        this.fileContentWriter = fileContentWriter;
+        this.presignedReads = presignedReads;
+        this.presignedTtl = presignedTtl;
+    }
+
+    public MaterialContent resolveContent(Long materialId) {
+        AuthenticatedUser user = currentUserResolver.resolve();
+
+        // Sem acesso responde-se como se não existisse, para não revelar ids de outras turmas
+        MaterialFileDTO file = materialRepository.findAccessibleFile(materialId, user.id(), user.institutionId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Material não encontrado"));
+
+        if (file.getContentHash() == null) {
+            Path path = Paths.get(file.getFilePath()).toAbsolutePath().normalize();
+            if (!path.startsWith(uploadRoot)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ficheiro do material não encontrado");
+            }
+            return legacyContent(uploadRoot.relativize(path).toString());
+        }
+        String fileName = file.getOriginalFileName() != null ? file.getOriginalFileName() : file.getContentHash();
+        return blobContent(file.getContentHash(), fileName);
+    }
+
+    /**
+     * O conteúdo de um blob, sem verificar acessos (o chamador já o fez).
+     */
+    public MaterialContent blobContent(String hash, String fileName) {
+        // O hash identifica o conteúdo: é um ETag forte que não muda se o blob for reutilizado
+        return new MaterialContent(null, hash, fileName, "\"" + hash + "\"");
+    }
+
+    /**
+     * O conteúdo de um material anterior à loja de blobs, sem verificar acessos (o chamador já o fez).
+     * @param relativePath O caminho do ficheiro dentro da pasta de uploads
+     */
+    public MaterialContent legacyContent(String relativePath) {
+        Path path = uploadRoot.resolve(relativePath).normalize();
+        if (!path.startsWith(uploadRoot) || !Files.isRegularFile(path)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ficheiro do material não encontrado");
+        }
+        return new MaterialContent(path, null, UPLOAD_PREFIX.matcher(path.getFileName().toString()).replaceFirst(""), null);
+    }
+
+    /**
+     * O caminho de um material antigo dentro da pasta de uploads (ver legacyContent).
+     */
+    public String relativeLegacyPath(MaterialContent content) {
+        return uploadRoot.relativize(content.path()).toString();
+    }
+
+    public void sendContent(MaterialContent content, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (content.hash() == null) {
+            fileContentWriter.write(request, response, content.path(), content.fileName(), content.etag());
+            return;
+        }
+
+        String key = blobStore.keyFor(content.hash());
+        Optional<Path> localPath = storage.localPath(key);
+        if (localPath.isEmpty() && presignedReads) {
+            String contentType = MediaTypeFactory.getMediaType(content.fileName())
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+            Optional<URI> url = storage.presignedGet(key, content.fileName(), contentType, presignedTtl);
+            if (url.isPresent()) {
+                // O URL expira: não pode ficar em cache
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+                response.sendRedirect(url.get().toString());
+                return;
+            }
+        }
+
+        Optional<HotContentCache.CachedContent> cached = hotContentCache.get(content.hash(), key);
+        if (cached.isPresent()) {
+            long sent = fileContentWriter.write(request, response, cached.get().buffer(), cached.get().lastModified(),
+                    content.fileName(), content.etag());
+            hotContentCache.recordServed(sent);
+            return;
+        }
+
+        if (localPath.isPresent()) {
+            fileContentWriter.write(request, response, localPath.get(), content.fileName(), content.etag());
+            return;
+        }
+
+        StorageObject object = storage.stat(key)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ficheiro do material não encontrado"));
+        fileContentWriter.write(request, response, object.size(), object.lastModified().toEpochMilli(),
+                content.fileName(), content.etag(), (start, end) -> storage.getRange(key, start, end));
+    }
+}
@@ -0,0 +1,120 @@
+package com.egnoel.backend.modules.material.service;
+
+import com.egnoel.backend.core.util.HmacSecrets;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
+import com.egnoel.backend.modules.material.dto.DownloadLinkDTO;
+import com.egnoel.backend.modules.material.dto.MaterialContent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.regex.Pattern;
+
+/**
+ * Links de download assinados (HMAC-SHA256) e com validade curta. O acesso ao material é verificado uma vez,
+ * quando o link é criado; depois o link identifica o conteúdo e é validado só pela assinatura, sem consultar
+ * a base de dados. Uma turma inteira a abrir o mesmo ficheiro não gera uma verificação de permissões por pedido.
+ * <p>
+ * A assinatura cobre o material, o utilizador, a validade, a referência do conteúdo (hash do blob ou caminho
+ * de um ficheiro antigo) e o nome do ficheiro. Um link continua válido até expirar, mesmo que o acesso
+ * seja retirado entretanto: por isso a validade (materials.links.ttl) deve ser curta.
+ */
+@Service
+public class MaterialLinkService {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Pattern CONTENT_HASH = Pattern.compile("^[0-9a-f]{64}$");
+
+    private final MaterialDownloadService materialDownloadService;
+    private final CurrentUserResolver currentUserResolver;
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    @Autowired
+    public MaterialLinkService(MaterialDownloadService materialDownloadService, CurrentUserResolver currentUserResolver,
+                               Environment environment,
+                               @Value("${materials.links.secret}") String secret,
+                               @Value("${materials.links.ttl:PT10M}") Duration ttl) {
+        this.materialDownloadService = materialDownloadService;
+        this.currentUserResolver = currentUserResolver;
+        this.key = new SecretKeySpec(HmacSecrets.decode("materials.links.secret (MATERIAL_LINKS_SECRET)", secret,
+                environment), ALGORITHM);
+        this.ttl = ttl;
+    }
+
+    public DownloadLinkDTO createLink(Long materialId) {
+        AuthenticatedUser user = currentUserResolver.resolve();
+        // A única verificação de acesso: a partir daqui o link fala por si
+        MaterialContent content = materialDownloadService.resolveContent(materialId);
+
+        String ref = content.hash() != null ? content.hash() : materialDownloadService.relativeLegacyPath(content);
+        long expires = Instant.now().plus(ttl).getEpochSecond();
+        String signature = sign(materialId, user.id(), expires, ref, content.fileName());
+
+        // Valores como variáveis do template: são codificados por completo (ex.: "+" num nome de ficheiro)
+        String url = UriComponentsBuilder.fromPath("/api/materials/files/{id}")
+                .query("u={u}&e={e}&r={r}&n={n}&s={s}")
+                .encode()
+                .buildAndExpand(materialId, user.id(), expires, ref, content.fileName(), signature)
+                .toUriString();
+        return new DownloadLinkDTO(url, Instant.ofEpochSecond(expires));
+    }
+
+    /**
+     * Valida um link e devolve o conteúdo a enviar. Não acede à base de dados.
+     */
+    public MaterialContent verify(Long materialId, Long userId, long expires, String ref, String fileName, String signature) {
+        byte[] given;
+        try {
+            given = Base64.getUrlDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Link inválido");
+        }
+        byte[] expected = mac(materialId, userId, expires, ref, fileName);
+        // Comparação em tempo constante: não revela quantos bytes da assinatura estão certos
+        if (!MessageDigest.isEqual(expected, given)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Link inválido");
+        }
+        if (Instant.now().getEpochSecond() > expires) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Link expirado");
+        }
+        return CONTENT_HASH.matcher(ref).matches()
+                ? materialDownloadService.blobContent(ref, fileName)
+                : materialDownloadService.legacyContent(ref);
+    }
+
+    private String sign(Long materialId, Long userId, long expires, String ref, String fileName) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac(materialId, userId, expires, ref, fileName));
+    }
+
+    private byte[] mac(Long materialId, Long userId, long expires, String ref, String fileName) {
+        try {
+            // Mac não é thread-safe; criar um por assinatura é barato comparado com o envio do ficheiro
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(ByteBuffer.allocate(3 * Long.BYTES).putLong(materialId).putLong(userId).putLong(expires).array());
+            // Cada texto leva o comprimento à frente, para que não se possa mover bytes de um campo para o outro
+            for (String field : new String[]{ref, fileName}) {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                mac.update(bytes);
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
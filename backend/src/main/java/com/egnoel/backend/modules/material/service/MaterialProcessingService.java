@@ -0,0 +1,233 @@
+package com.egnoel.backend.modules.material.service;
+
+import com.egnoel.backend.modules.material.dto.MaterialFileDTO;
+import com.egnoel.backend.modules.material.entity.MaterialProcessingStatus;
+import com.egnoel.backend.modules.material.entity.MaterialText;
+import com.egnoel.backend.modules.material.event.MaterialStoredEvent;
+import com.egnoel.backend.modules.material.processing.MaterialAnalysis;
+import com.egnoel.backend.modules.material.processing.MaterialAnalyzer;
+import com.egnoel.backend.modules.material.repository.MaterialRepository;
+import com.egnoel.backend.modules.material.repository.MaterialTextRepository;
+import com.egnoel.backend.modules.material.storage.MaterialBlobStore;
+import com.egnoel.backend.modules.material.storage.MaterialStorage;
+import com.egnoel.backend.modules.search.event.SearchIndexEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processamento dos materiais depois do upload, fora do pedido HTTP: verifica o checksum, mede o tamanho,
+ * deteta o tipo MIME e, quando é barato, conta as páginas e extrai o texto (ver MaterialAnalyzer).
+ * Os resultados ficam no próprio Material, para que as listagens mostrem tamanho e tipo sem tocar no disco.
+ * <p>
+ * O material entra na fila depois do commit que o gravou. A fila e o pool de workers são limitados; se a fila
+ * estiver cheia o material fica PENDING e a varredura periódica volta a pô-lo na fila, tal como os que ficaram
+ * por processar num reinício.
+ */
+@Service
+public class MaterialProcessingService {
+    private static final Logger log = LoggerFactory.getLogger(MaterialProcessingService.class);
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final MaterialRepository materialRepository;
+    private final MaterialTextRepository materialTextRepository;
+    private final MaterialBlobStore blobStore;
+    private final MaterialStorage storage;
+    private final MaterialAnalyzer analyzer;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ThreadPoolExecutor executor;
+    // Materiais na fila ou em processamento: a varredura não os volta a enfileirar
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Timer processingTimer;
+    private final Counter failed;
+    private final Counter rejected;
+
+    @Autowired
+    public MaterialProcessingService(MaterialRepository materialRepository, MaterialTextRepository materialTextRepository,
+                                     MaterialBlobStore blobStore, MaterialStorage storage, MaterialAnalyzer analyzer,
+                                     PlatformTransactionManager transactionManager,
+                                     ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                                     @Value("${materials.processing.threads:2}") int threads,
+                                     @Value("${materials.processing.queue-capacity:200}") int queueCapacity) {
+        this.materialRepository = materialRepository;
+        this.materialTextRepository = materialTextRepository;
+        this.blobStore = blobStore;
+        this.storage = storage;
+        this.analyzer = analyzer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "material-processor-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("materials.processing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Materiais à espera de processamento")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("materials.processing.duration")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.failed = Counter.builder("materials.processing.failed")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("materials.processing.rejected")
+                .description("Materiais que não couberam na fila (ficam para a varredura)")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMaterialStored(MaterialStoredEvent event) {
+        enqueue(event.materialId());
+    }
+
+    /**
+     * @return Falso se o material já estava na fila ou a fila está cheia
+     */
+    public boolean enqueue(Long materialId) {
+        if (!inFlight.add(materialId)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> process(materialId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(materialId);
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Volta a enfileirar os materiais PENDING (fila cheia no upload ou reinício a meio), até encher a fila.
+     */
+    @Scheduled(fixedDelayString = "${materials.processing.sweep-interval:PT5M}",
+            initialDelayString = "${materials.processing.sweep-initial-delay:PT1M}")
+    public void sweepPending() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        // Os que já estão na fila também estão PENDING: pedem-se mais ids para os poder saltar
+        for (Long id : materialRepository.findIdsByProcessingStatus(MaterialProcessingStatus.PENDING,
+                PageRequest.of(0, capacity + inFlight.size()))) {
+            enqueue(id);
+        }
+    }
+
+    private void process(Long materialId) {
+        try {
+            Optional<MaterialFileDTO> file = materialRepository.findFileById(materialId);
+            if (file.isEmpty() || file.get().getContentHash() == null) {
+                // Apagado entretanto, ou anterior à loja de blobs
+                return;
+            }
+            processingTimer.record(() -> analyzeAndSave(file.get()));
+        } finally {
+            inFlight.remove(materialId);
+        }
+    }
+
+    private void analyzeAndSave(MaterialFileDTO file) {
+        String hash = file.getContentHash();
+        MaterialAnalysis analysis;
+        try {
+            analysis = analyzeBlob(hash, file.getOriginalFileName());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Falha ao processar o material {}: {}", file.getId(), e.getMessage());
+            saveFailure(file, "Erro ao ler o ficheiro: " + e.getMessage());
+            return;
+        }
+        if (!analysis.sha256().equals(hash)) {
+            // O conteúdo guardado não é o que foi enviado: não se extrai nada de um ficheiro corrompido
+            saveFailure(file, "O checksum do ficheiro guardado não corresponde ao do upload");
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            int updated = materialRepository.updateProcessingResult(file.getId(), hash, MaterialProcessingStatus.READY,
+                    analysis.size(), analysis.mimeType(), analysis.pageCount(), null, LocalDateTime.now());
+            if (updated == 0) {
+                // Ficheiro substituído ou material apagado durante o processamento
+                return;
+            }
+            materialTextRepository.deleteByMaterialId(file.getId());
+            if (analysis.text() != null) {
+                materialTextRepository.save(new MaterialText(file.getId(), analysis.text()));
+            }
+            // O texto extraído passa a ser pesquisável
+            eventPublisher.publishEvent(SearchIndexEvent.material(file.getId()));
+        });
+    }
+
+    private MaterialAnalysis analyzeBlob(String hash, String fileName) throws IOException {
+        String key = blobStore.keyFor(hash);
+        Optional<Path> localPath = storage.localPath(key);
+        if (localPath.isPresent()) {
+            return analyzer.analyze(localPath.get(), fileName);
+        }
+        // Armazenamento remoto: o PDFBox precisa de acesso aleatório, por isso copia-se para um temporário local
+        Path temp = blobStore.createTempFile("processing-");
+        try {
+            try (InputStream in = storage.get(key)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return analyzer.analyze(temp, fileName);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void saveFailure(MaterialFileDTO file, String error) {
+        failed.increment();
+        String message = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        transactionTemplate.executeWithoutResult(status -> {
+            int updated = materialRepository.updateProcessingResult(file.getId(), file.getContentHash(),
+                    MaterialProcessingStatus.FAILED, null, null, null, message, LocalDateTime.now());
+            if (updated > 0) {
+                materialTextRepository.deleteByMaterialId(file.getId());
+                eventPublisher.publishEvent(SearchIndexEvent.material(file.getId()));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // O que ficar na fila continua PENDING e é retomado pela varredura no próximo arranque
+        executor.shutdownNow();
+    }
+}
@@ -1,198 +1,317 @@
 package com.egnoel.backend.modules.material.service;
 
-import com.egnoel.backend.modules.auth.entity.Teacher;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
 import com.egnoel.backend.modules.auth.repository.TeacherRepository;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
 import com.egnoel.backend.modules.classe.entity.Classe;
 import com.egnoel.backend.modules.classe.repository.ClasseRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
 import com.egnoel.backend.modules.material.dto.MaterialCreateDTO;
+import com.egnoel.backend.modules.material.dto.MaterialCursor;
+import com.egnoel.backend.modules.material.dto.MaterialPage;
 import com.egnoel.backend.modules.material.dto.MaterialResponseDTO;
 import com.egnoel.backend.modules.material.dto.MaterialUpdateDTO;
 import com.egnoel.backend.modules.material.entity.Material;
+import com.egnoel.backend.modules.material.entity.MaterialProcessingStatus;
+import com.egnoel.backend.modules.material.event.MaterialStoredEvent;
 import com.egnoel.backend.modules.material.repository.MaterialRepository;
+import com.egnoel.backend.modules.material.repository.MaterialTextRepository;
+import com.egnoel.backend.modules.material.storage.MaterialBlobStore;
+import com.egnoel.backend.modules.material.storage.StoredBlob;
+import com.egnoel.backend.modules.search.event.SearchIndexEvent;
 import com.egnoel.backend.modules.subject.entity.Subject;
 import com.egnoel.backend.modules.subject.repository.SubjectRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class MaterialService {
+    private static final int MAX_PAGE_SIZE = 100;
+    // A ordem das páginas: (uploadDate, id) decrescente, a mesma das consultas
+    private static final Comparator<MaterialResponseDTO> PAGE_ORDER = Comparator
+            .comparing(MaterialResponseDTO::getUploadDate)
+            .thenComparing(MaterialResponseDTO::getId)
+            .reversed();
 
     private final MaterialRepository materialRepository;
     private final TeacherRepository teacherRepository;
     private final SubjectRepository subjectRepository;
     private final ClasseRepository classeRepository;
-
-    private static final String UPLOAD_DIR = System.getProperty("user.dir") + "/uploads/";
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MaterialBlobStore blobStore;
+    private final MaterialTextRepository materialTextRepository;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public MaterialService(MaterialRepository materialRepository, TeacherRepository teacherRepository,
-                           SubjectRepository subjectRepository, ClasseRepository classeRepository) {
+                           SubjectRepository subjectRepository, ClasseRepository classeRepository,
+                           CurrentUserResolver currentUserResolver, ApplicationEventPublisher eventPublisher,
+                           MaterialBlobStore blobStore, MaterialTextRepository materialTextRepository,
+                           PlatformTransactionManager transactionManager) {
         this.materialRepository = materialRepository;
         this.teacherRepository = teacherRepository;
         this.subjectRepository = subjectRepository;
         this.classeRepository = classeRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.eventPublisher = eventPublisher;
+        this.blobStore = blobStore;
+        this.materialTextRepository = materialTextRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
+    /**
+     * O ficheiro é gravado antes de abrir a transação: a transferência (no S3, um upload) não prende uma
+     * ligação à base de dados.
+     */
     public MaterialResponseDTO createMaterial(MaterialCreateDTO dto) {
-        // Obtém o email do professor autenticado
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        // Obtém o professor autenticado
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
-        Subject subject = subjectRepository.findById(dto.getSubjectId())
-                .orElseThrow(() -> new RuntimeException("Disciplina não encontrada"));
-
-        Classe classe = null;
-        if (dto.getClasseId() != null) {
-            classe = classeRepository.findById(dto.getClasseId())
-                    .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
-        }
+        checkTarget(dto.getSubjectId(), dto.getClasseId());
 
         if (dto.getFile() == null || dto.getFile().isEmpty()) {
             throw new RuntimeException("Ficheiro não fornecido");
         }
 
-        String fileName = dto.getFile().getOriginalFilename();
-        String filePath = UPLOAD_DIR + System.currentTimeMillis() + "_" + fileName; // Evita sobrescrita
-        try {
-            File directory = new File(UPLOAD_DIR);
-            if (!directory.exists()) {
-                boolean created = directory.mkdirs();
-                if (!created) {
-                    throw new RuntimeException("Não foi possível criar o diretório: " + UPLOAD_DIR);
-                }
-            }
-            File destFile = new File(filePath);
-            dto.getFile().transferTo(destFile);
-        } catch (IOException e) {
-            throw new RuntimeException("Erro ao salvar o ficheiro: " + e.getMessage(), e);
-        }
+        // Conteúdo já existente (o mesmo PDF em várias turmas) não ocupa espaço novo
+        StoredBlob blob = storeUpload(dto.getFile());
 
+        return transactionTemplate.execute(status -> {
+            // Se o material não chegar a ser gravado, o blob não fica órfão
+            blobStore.releaseOnRollback(blob.hash());
+            return saveMaterial(teacher.id(), teacher.firstName(), dto.getTitle(), findSubject(dto.getSubjectId()),
+                    findClasse(dto.getClasseId()), blob, dto.getFile().getOriginalFilename());
+        });
+    }
+
+    /**
+     * Cria o material para um conteúdo já gravado na loja de blobs, em nome do professor indicado (ex.: no fim
+     * de um upload por partes, concluído fora do pedido).
+     */
+    @Transactional
+    public MaterialResponseDTO createMaterial(Long teacherId, String title, Long subjectId, Long classeId,
+                                              StoredBlob blob, String originalFileName) {
+        blobStore.releaseOnRollback(blob.hash());
+
+        String teacherName = teacherRepository.findById(teacherId)
+                .orElseThrow(() -> new RuntimeException("Professor não encontrado"))
+                .getFirstName();
+        Subject subject = findSubject(subjectId);
+        Classe classe = findClasse(classeId);
+
+        return saveMaterial(teacherId, teacherName, title, subject, classe, blob, originalFileName);
+    }
+
+    /**
+     * Verifica a disciplina e a turma antes de receber o ficheiro.
+     */
+    void checkTarget(Long subjectId, Long classeId) {
+        findSubject(subjectId);
+        findClasse(classeId);
+    }
 
+    private MaterialResponseDTO saveMaterial(Long teacherId, String teacherName, String title, Subject subject,
+                                             Classe classe, StoredBlob blob, String originalFileName) {
         Material material = new Material();
-        material.setTitle(dto.getTitle());
-        material.setFilePath(filePath);
-        material.setTeacher(teacher);
+        material.setTitle(title);
+        material.setFilePath(blob.location());
+        material.setContentHash(blob.hash());
+        material.setOriginalFileName(originalFileName);
+        material.setTeacher(teacherRepository.getReferenceById(teacherId));
         material.setSubject(subject);
         material.setClasse(classe);
+        material.setProcessingStatus(MaterialProcessingStatus.PENDING);
 
         material = materialRepository.save(material);
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forClasse(teacherId, classe != null ? classe.getId() : null));
+        // Tamanho, tipo e texto são calculados em segundo plano: o pedido responde já
+        eventPublisher.publishEvent(new MaterialStoredEvent(material.getId()));
+        eventPublisher.publishEvent(SearchIndexEvent.material(material.getId()));
 
-        return new MaterialResponseDTO(
-                material.getId(),
-                material.getTitle(),
-                material.getFilePath(),
-                material.getUploadDate(),
-                teacher.getFirstName(),
-                subject.getName(),
-                classe != null ? classe.getName() : null
-        );
+        return toResponse(material, teacherName);
     }
 
-    @Transactional
+    private Subject findSubject(Long subjectId) {
+        return subjectRepository.findById(subjectId)
+                .orElseThrow(() -> new RuntimeException("Disciplina não encontrada"));
+    }
+
+    private Classe findClasse(Long classeId) {
+        if (classeId == null) {
+            return null;
+        }
+        return classeRepository.findById(classeId)
+                .orElseThrow(() -> new RuntimeException("Turma não encontrada"));
+    }
+
+    /**
+     * Como em createMaterial, o novo ficheiro é gravado antes de abrir a transação.
+     */
     public MaterialResponseDTO updateMaterial(Long id, MaterialUpdateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
+
+        // Verificado antes de receber o ficheiro e outra vez na transação
+        findOwnMaterial(id, teacher);
+        StoredBlob blob = dto.getFile() != null && !dto.getFile().isEmpty() ? storeUpload(dto.getFile()) : null;
+
+        return transactionTemplate.execute(status -> applyUpdate(findOwnMaterial(id, teacher), teacher, dto, blob));
+    }
 
+    private Material findOwnMaterial(Long id, AuthenticatedUser teacher) {
         Material material = materialRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Material não encontrado"));
 
         // Verifica se o material pertence ao professor autenticado
-        if (!material.getTeacher().getId().equals(teacher.getId())) {
+        if (!material.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o autor pode editar este material");
         }
+        return material;
+    }
 
+    private MaterialResponseDTO applyUpdate(Material material, AuthenticatedUser teacher, MaterialUpdateDTO dto,
+                                            StoredBlob blob) {
         // Atualiza o título
         material.setTitle(dto.getTitle());
 
         // Atualiza o ficheiro, se fornecido
-        if (dto.getFile() != null && !dto.getFile().isEmpty()) {
-            // Remove o ficheiro antigo
-            File oldFile = new File(material.getFilePath());
-            if (oldFile.exists()) {
-                oldFile.delete();
-            }
+        if (blob != null) {
+            blobStore.releaseOnRollback(blob.hash());
+            // O ficheiro antigo só é libertado depois do commit
+            releaseFile(material);
 
-            // Salva o novo ficheiro
-            String fileName = dto.getFile().getOriginalFilename();
-            String newFilePath = UPLOAD_DIR + System.currentTimeMillis() + "_" + fileName;
-            try {
-                dto.getFile().transferTo(new File(newFilePath));
-                material.setFilePath(newFilePath);
-            } catch (Exception e) {
-                throw new RuntimeException("Erro ao atualizar o ficheiro: " + e.getMessage());
-            }
+            material.setFilePath(blob.location());
+            material.setContentHash(blob.hash());
+            material.setOriginalFileName(dto.getFile().getOriginalFilename());
+            // Os metadados do ficheiro antigo deixam de valer até o novo ser processado
+            material.setProcessingStatus(MaterialProcessingStatus.PENDING);
+            material.setSizeBytes(null);
+            material.setMimeType(null);
+            material.setPageCount(null);
+            material.setProcessingError(null);
+            material.setProcessedAt(null);
+            materialTextRepository.deleteByMaterialId(material.getId());
+            eventPublisher.publishEvent(new MaterialStoredEvent(material.getId()));
         }
 
         material = materialRepository.save(material);
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forClasse(teacher.id(),
+                material.getClasse() != null ? material.getClasse().getId() : null));
+        eventPublisher.publishEvent(SearchIndexEvent.material(material.getId()));
 
-        return new MaterialResponseDTO(
-                material.getId(),
-                material.getTitle(),
-                material.getFilePath(),
-                material.getUploadDate(),
-                teacher.getFirstName(),
-                material.getSubject().getName(),
-                material.getClasse() != null ? material.getClasse().getName() : null
-        );
+        return toResponse(material, teacher.firstName());
     }
 
     @Transactional
     public void deleteMaterial(Long id) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Material material = materialRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Material não encontrado"));
 
         // Verifica se o material pertence ao professor autenticado
-        if (!material.getTeacher().getId().equals(teacher.getId())) {
+        if (!material.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o autor pode excluir este material");
         }
 
-        // Remove o ficheiro do sistema
-        File file = new File(material.getFilePath());
-        if (file.exists()) {
-            file.delete();
-        }
+        // Remove o ficheiro do sistema, se nenhum outro material o partilhar
+        releaseFile(material);
 
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forClasse(teacher.id(),
+                material.getClasse() != null ? material.getClasse().getId() : null));
+        eventPublisher.publishEvent(SearchIndexEvent.material(material.getId()));
+        materialTextRepository.deleteByMaterialId(material.getId());
         materialRepository.delete(material);
     }
 
+    private StoredBlob storeUpload(MultipartFile file) {
+        StoredBlob blob;
+        try (InputStream content = file.getInputStream()) {
+            blob = blobStore.store(content);
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao salvar o ficheiro: " + e.getMessage(), e);
+        }
+        return blob;
+    }
 
-    public List<MaterialResponseDTO> listMaterials() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        // Para professores, listar apenas os seus materiais; para alunos, listar todos os disponíveis
-        List<Material> materials;
-        if (SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_TEACHER"))) {
-            Teacher teacher = teacherRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
-            materials = materialRepository.findByTeacherId(teacher.getId());
+    private void releaseFile(Material material) {
+        if (material.getContentHash() != null) {
+            blobStore.releaseAfterCommit(material.getContentHash());
         } else {
-            materials = materialRepository.findAll();
+            // Materiais anteriores à loja de blobs têm um ficheiro próprio
+            blobStore.deleteLegacyFileAfterCommit(Paths.get(material.getFilePath()));
         }
+    }
 
-        return materials.stream()
-                .map(m -> new MaterialResponseDTO(
-                        m.getId(),
-                        m.getTitle(),
-                        m.getFilePath(),
-                        m.getUploadDate(),
-                        m.getTeacher().getFirstName(),
-                        m.getSubject().getName(),
-                        m.getClasse() != null ? m.getClasse().getName() : null
-                ))
-                .collect(Collectors.toList());
+    /**
+     * Uma página de materiais: os do professor, ou, para um aluno, os das turmas em que está inscrito e os sem turma
+     * da sua instituição. Projetada diretamente no DTO e paginada por cursor (para o aluno, duas consultas com o
+     * mesmo cursor, juntas pela mesma ordem), por isso o custo de cada página não cresce com o número de materiais.
+     * @param cursor O nextCursor da página anterior; nulo para a primeira
+     */
+    public MaterialPage listMaterials(Long subjectId, Long classeId, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size deve estar entre 1 e " + MAX_PAGE_SIZE);
+        }
+        MaterialCursor after = cursor != null ? MaterialCursor.decode(cursor) : null;
+        LocalDateTime cursorDate = after != null ? after.uploadDate() : null;
+        Long cursorId = after != null ? after.id() : null;
+        // Um a mais só para saber se há página seguinte
+        Limit limit = Limit.of(size + 1);
+
+        AuthenticatedUser user = currentUserResolver.resolve();
+        List<MaterialResponseDTO> materials;
+        if (user.isTeacher()) {
+            materials = materialRepository.findPageForTeacher(user.id(), subjectId, classeId, cursorDate, cursorId, limit);
+        } else {
+            materials = new ArrayList<>(
+                    materialRepository.findPageForStudent(user.id(), subjectId, classeId, cursorDate, cursorId, limit));
+            // Os materiais sem turma não passam num filtro por turma
+            if (classeId == null) {
+                materials.addAll(materialRepository.findInstitutionPage(user.institutionId(), subjectId,
+                        cursorDate, cursorId, limit));
+                materials.sort(PAGE_ORDER);
+                materials = materials.subList(0, Math.min(materials.size(), limit.max()));
+            }
+        }
+
+        if (materials.size() <= size) {
+            return new MaterialPage(materials, null);
+        }
+        List<MaterialResponseDTO> page = materials.subList(0, size);
+        MaterialResponseDTO last = page.get(size - 1);
+        return new MaterialPage(page, new MaterialCursor(last.getUploadDate(), last.getId()).encode());
+    }
+
+    private MaterialResponseDTO toResponse(Material material, String teacherName) {
+        return new MaterialResponseDTO(
+                material.getId(),
+                material.getTitle(),
+                material.getFilePath(),
+                material.getUploadDate(),
+                teacherName,
+                material.getSubject().getName(),
+                material.getClasse() != null ? material.getClasse().getName() : null,
+                material.getSizeBytes(),
+                material.getMimeType(),
+                material.getPageCount(),
+                material.getProcessingStatus()
+        );
     }
 }
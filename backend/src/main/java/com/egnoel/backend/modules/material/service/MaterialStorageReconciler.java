@@ -0,0 +1,371 @@
+package com.egnoel.backend.modules.material.service;
+
+import com.egnoel.backend.modules.material.dto.MaterialFileDTO;
+import com.egnoel.backend.modules.material.dto.ReconciliationReport;
+import com.egnoel.backend.modules.material.repository.MaterialRepository;
+import com.egnoel.backend.modules.material.repository.MaterialUploadRepository;
+import com.egnoel.backend.modules.material.storage.MaterialBlobStore;
+import com.egnoel.backend.modules.material.storage.MaterialStorage;
+import com.egnoel.backend.modules.material.storage.StorageEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Compara a loja de blobs com a tabela de materiais e corrige o que ficou para trás: blobs que nenhum material
+ * referencia (libertações perdidas num crash ou numa fila cheia) e materiais cujo blob desapareceu.
+ * <p>
+ * As 256 pastas de primeiro nível da loja são percorridas em paralelo (materials.reconciler.parallelism).
+ * Em cada pasta, a listagem do armazenamento e os content_hash da base de dados, lidos por lotes, vêm ambos
+ * ordenados e são comparados num único passo, sem carregar a tabela toda em memória. O caminho do ficheiro
+ * (file_path) deriva do hash, por isso é o hash que se compara.
+ * <p>
+ * Os órfãos não são apagados logo: vão para a quarentena (ver MaterialBlobStore.quarantineIfOrphan) e só
+ * são apagados passado materials.reconciler.quarantine-retention. Um material que volte a precisar de um blob
+ * de quarentena (ex.: um material restaurado de um backup) recupera-o na reconciliação seguinte.
+ * Os ficheiros de materiais anteriores à loja de blobs são apenas reportados, nunca movidos.
+ */
+@Service
+public class MaterialStorageReconciler {
+    private static final Logger log = LoggerFactory.getLogger(MaterialStorageReconciler.class);
+    private static final int BATCH_SIZE = 1000;
+    // Entradas listadas no relatório; os contadores contam todas
+    private static final int MAX_REPORTED = 100;
+    private static final int MAX_MATERIAL_IDS = 10;
+    private static final Pattern BLOB_KEY = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})");
+
+    private final MaterialRepository materialRepository;
+    private final MaterialUploadRepository uploadRepository;
+    private final MaterialStorage storage;
+    private final MaterialBlobStore blobStore;
+    private final boolean enabled;
+    private final int parallelism;
+    private final Duration orphanGrace;
+    private final Duration quarantineRetention;
+    private final Path uploadRoot = Paths.get(System.getProperty("user.dir"), "uploads").toAbsolutePath().normalize();
+    private final Timer durationTimer;
+    private final Counter quarantinedCounter;
+    private volatile ReconciliationReport lastReport;
+
+    @Autowired
+    public MaterialStorageReconciler(MaterialRepository materialRepository, MaterialUploadRepository uploadRepository,
+                                     MaterialStorage storage,
+                                     MaterialBlobStore blobStore, MeterRegistry meterRegistry,
+                                     @Value("${materials.reconciler.enabled:true}") boolean enabled,
+                                     @Value("${materials.reconciler.parallelism:4}") int parallelism,
+                                     @Value("${materials.reconciler.orphan-grace:PT1H}") Duration orphanGrace,
+                                     @Value("${materials.reconciler.quarantine-retention:P7D}") Duration quarantineRetention) {
+        this.materialRepository = materialRepository;
+        this.uploadRepository = uploadRepository;
+        this.storage = storage;
+        this.blobStore = blobStore;
+        this.enabled = enabled;
+        this.parallelism = Math.max(1, parallelism);
+        this.orphanGrace = orphanGrace;
+        this.quarantineRetention = quarantineRetention;
+
+        this.durationTimer = Timer.builder("materials.reconciler.duration")
+                .register(meterRegistry);
+        this.quarantinedCounter = Counter.builder("materials.reconciler.quarantined")
+                .description("Blobs órfãos movidos para a quarentena")
+                .register(meterRegistry);
+        Gauge.builder("materials.reconciler.missing", this,
+                        r -> r.lastReport != null ? r.lastReport.missing() + r.lastReport.missingLegacyFiles() : 0)
+                .description("Materiais sem ficheiro na última reconciliação")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${materials.reconciler.cron:0 30 3 * * *}")
+    public void scheduledReconcile() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    public Optional<ReconciliationReport> lastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    public synchronized ReconciliationReport reconcile() {
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        Tally tally = new Tally();
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "storage-reconciler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> shards = new ArrayList<>(256);
+            for (int shard = 0; shard < 256; shard++) {
+                String prefix = String.format("%02x", shard);
+                shards.add(pool.submit(() -> {
+                    reconcileShard(prefix, startedAt, tally);
+                    return null;
+                }));
+            }
+            for (Future<?> shard : shards) {
+                try {
+                    shard.get();
+                } catch (ExecutionException e) {
+                    tally.failedShards.incrementAndGet();
+                    log.warn("Falha ao reconciliar uma pasta da loja de blobs: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        purgeQuarantine(startedAt, tally);
+        purgeStaging(startedAt, tally);
+        reconcileLegacyFiles(tally);
+
+        long durationNanos = System.nanoTime() - start;
+        durationTimer.record(Duration.ofNanos(durationNanos));
+        ReconciliationReport report = tally.toReport(startedAt, Duration.ofNanos(durationNanos).toMillis());
+        lastReport = report;
+        log.info("Reconciliação da loja de blobs: {} blobs, {} em quarentena, {} recuperados, {} em falta, " +
+                        "{} ficheiros antigos em falta, {} ficheiros antigos sem material ({} ms)",
+                report.blobs(), report.quarantined(), report.restored(), report.missing(),
+                report.missingLegacyFiles(), report.unreferencedLegacyFiles(), report.durationMillis());
+        return report;
+    }
+
+    private void reconcileShard(String prefix, Instant now, Tally tally) throws IOException {
+        Instant orphanCutoff = now.minus(orphanGrace);
+        // A chave é <2>/<2>/<hash>, por isso a ordem das chaves é a ordem dos hashes
+        Iterator<StorageEntry> stored = storage.list(prefix + "/").iterator();
+        ReferencedHashes referenced = new ReferencedHashes(prefix);
+
+        String hash = referenced.next();
+        StorageEntry entry = nextBlob(stored, tally);
+        while (hash != null || entry != null) {
+            String storedHash = entry != null ? hashOf(entry) : null;
+            int comparison = hash == null ? 1 : storedHash == null ? -1 : hash.compareTo(storedHash);
+            if (comparison == 0) {
+                hash = referenced.next();
+                entry = nextBlob(stored, tally);
+            } else if (comparison < 0) {
+                missing(hash, tally);
+                hash = referenced.next();
+            } else {
+                orphan(storedHash, entry, orphanCutoff, tally);
+                entry = nextBlob(stored, tally);
+            }
+        }
+    }
+
+    private StorageEntry nextBlob(Iterator<StorageEntry> stored, Tally tally) {
+        while (stored.hasNext()) {
+            StorageEntry entry = stored.next();
+            if (BLOB_KEY.matcher(entry.key()).matches()) {
+                tally.blobs.incrementAndGet();
+                return entry;
+            }
+            tally.unknownKeys.incrementAndGet();
+        }
+        return null;
+    }
+
+    private static String hashOf(StorageEntry entry) {
+        Matcher matcher = BLOB_KEY.matcher(entry.key());
+        matcher.matches();
+        return matcher.group(1);
+    }
+
+    private void orphan(String hash, StorageEntry entry, Instant orphanCutoff, Tally tally) throws IOException {
+        if (entry.lastModified().isAfter(orphanCutoff)) {
+            // Pode ser um upload cujo material ainda não foi gravado
+            tally.orphansInGrace.incrementAndGet();
+            return;
+        }
+        if (blobStore.quarantineIfOrphan(hash)) {
+            tally.quarantined.incrementAndGet();
+            quarantinedCounter.increment();
+        }
+    }
+
+    private void missing(String hash, Tally tally) throws IOException {
+        if (blobStore.restoreFromQuarantine(hash)) {
+            tally.restored.incrementAndGet();
+            log.info("Blob {} recuperado da quarentena", hash);
+            return;
+        }
+        if (tally.missing.incrementAndGet() <= MAX_REPORTED) {
+            List<Long> materialIds = materialRepository.findIdsByContentHash(hash, Limit.of(MAX_MATERIAL_IDS));
+            tally.missingBlobs.add(new ReconciliationReport.MissingBlob(hash, materialIds));
+            log.warn("Blob {} em falta no armazenamento (materiais {})", hash, materialIds);
+        }
+    }
+
+    private void purgeQuarantine(Instant now, Tally tally) {
+        Instant cutoff = now.minus(quarantineRetention);
+        try {
+            for (StorageEntry entry : storage.list(MaterialBlobStore.QUARANTINE_PREFIX)) {
+                if (entry.lastModified().isBefore(cutoff)) {
+                    Matcher matcher = BLOB_KEY.matcher(entry.key().substring(MaterialBlobStore.QUARANTINE_PREFIX.length()));
+                    if (matcher.matches()) {
+                        blobStore.purgeQuarantined(matcher.group(1));
+                    } else {
+                        storage.delete(entry.key());
+                    }
+                    tally.purged.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Não foi possível limpar a quarentena: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Objetos de uploads por partes concluídos que não chegaram a ser adotados (ex.: o nó parou a meio) e cuja
+     * sessão já não existe.
+     */
+    private void purgeStaging(Instant now, Tally tally) {
+        Instant cutoff = now.minus(orphanGrace);
+        try {
+            for (StorageEntry entry : storage.list(MaterialBlobStore.STAGING_PREFIX)) {
+                String uploadId = entry.key().substring(MaterialBlobStore.STAGING_PREFIX.length());
+                if (entry.lastModified().isBefore(cutoff) && !uploadRepository.existsById(uploadId)) {
+                    storage.delete(entry.key());
+                    tally.purged.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Não foi possível limpar os uploads por adotar: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Materiais anteriores à loja de blobs: o ficheiro de cada um existe, e cada ficheiro solto na pasta de
+     * uploads pertence a algum. Estes materiais já não são criados, por isso o conjunto de caminhos é limitado.
+     */
+    private void reconcileLegacyFiles(Tally tally) {
+        Set<Path> referenced = new HashSet<>();
+        long afterId = 0;
+        List<MaterialFileDTO> batch;
+        do {
+            batch = materialRepository.findLegacyFiles(afterId, Limit.of(BATCH_SIZE));
+            for (MaterialFileDTO file : batch) {
+                afterId = file.getId();
+                Path path = Paths.get(file.getFilePath()).toAbsolutePath().normalize();
+                referenced.add(path);
+                if (!Files.isRegularFile(path) && tally.missingLegacyFiles.incrementAndGet() <= MAX_REPORTED) {
+                    tally.missingLegacyMaterialIds.add(file.getId());
+                }
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        if (!Files.isDirectory(uploadRoot)) {
+            return;
+        }
+        // Só o primeiro nível: as subpastas são da loja de blobs e dos uploads temporários
+        try (Stream<Path> files = Files.list(uploadRoot)) {
+            files.filter(Files::isRegularFile)
+                    .filter(path -> !referenced.contains(path))
+                    .forEach(path -> {
+                        if (tally.unreferencedLegacyFiles.incrementAndGet() <= MAX_REPORTED) {
+                            tally.unreferencedLegacyFileNames.add(path.getFileName().toString());
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Não foi possível listar a pasta de uploads: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Os content_hash de uma pasta da loja, por ordem, lidos da base de dados um lote de cada vez.
+     */
+    private final class ReferencedHashes {
+        private final String prefix;
+        private String after = "";
+        private List<String> batch = List.of();
+        private int position;
+        private boolean exhausted;
+
+        ReferencedHashes(String prefix) {
+            this.prefix = prefix;
+        }
+
+        String next() {
+            if (position == batch.size()) {
+                if (exhausted) {
+                    return null;
+                }
+                batch = materialRepository.findContentHashesAfter(prefix, after, Limit.of(BATCH_SIZE));
+                position = 0;
+                exhausted = batch.size() < BATCH_SIZE;
+                if (batch.isEmpty()) {
+                    return null;
+                }
+            }
+            after = batch.get(position++);
+            return after;
+        }
+    }
+
+    private static final class Tally {
+        final AtomicLong blobs = new AtomicLong();
+        final AtomicLong orphansInGrace = new AtomicLong();
+        final AtomicLong quarantined = new AtomicLong();
+        final AtomicLong restored = new AtomicLong();
+        final AtomicLong purged = new AtomicLong();
+        final AtomicLong missing = new AtomicLong();
+        final AtomicLong unknownKeys = new AtomicLong();
+        final AtomicInteger failedShards = new AtomicInteger();
+        final AtomicLong missingLegacyFiles = new AtomicLong();
+        final AtomicLong unreferencedLegacyFiles = new AtomicLong();
+        final List<ReconciliationReport.MissingBlob> missingBlobs = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> missingLegacyMaterialIds = new ArrayList<>();
+        final List<String> unreferencedLegacyFileNames = new ArrayList<>();
+
+        ReconciliationReport toReport(Instant startedAt, long durationMillis) {
+            List<ReconciliationReport.MissingBlob> sortedMissing;
+            synchronized (missingBlobs) {
+                sortedMissing = missingBlobs.stream()
+                        .sorted(Comparator.comparing(ReconciliationReport.MissingBlob::hash))
+                        .toList();
+            }
+            return new ReconciliationReport(startedAt, durationMillis, blobs.get(), orphansInGrace.get(),
+                    quarantined.get(), restored.get(), purged.get(), missing.get(), sortedMissing, unknownKeys.get(),
+                    failedShards.get(), missingLegacyFiles.get(), List.copyOf(missingLegacyMaterialIds),
+                    unreferencedLegacyFiles.get(), unreferencedLegacyFileNames.stream().sorted().toList());
+        }
+    }
+}
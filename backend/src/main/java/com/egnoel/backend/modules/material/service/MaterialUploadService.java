@@ -0,0 +1,623 @@
+package com.egnoel.backend.modules.material.service;
+
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
+import com.egnoel.backend.modules.material.dto.MaterialResponseDTO;
+import com.egnoel.backend.modules.material.dto.UploadCompleteDTO;
+import com.egnoel.backend.modules.material.dto.UploadInitiateDTO;
+import com.egnoel.backend.modules.material.dto.UploadSessionInfo;
+import com.egnoel.backend.modules.material.dto.UploadStatusDTO;
+import com.egnoel.backend.modules.material.entity.MaterialUpload;
+import com.egnoel.backend.modules.material.entity.MaterialUploadState;
+import com.egnoel.backend.modules.material.repository.MaterialUploadRepository;
+import com.egnoel.backend.modules.material.storage.MaterialBlobStore;
+import com.egnoel.backend.modules.material.storage.MaterialStorage;
+import com.egnoel.backend.modules.material.storage.StoredBlob;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads retomáveis de materiais grandes: iniciar, enviar pedaços com o respetivo offset e concluir.
+ * <p>
+ * A sessão (dono, tamanho, bytes recebidos) fica na tabela material_uploads, por isso sobrevive a reinícios e
+ * é vista por todos os nós; received só avança por atualizações condicionais. Os bytes vão para:
+ * <ul>
+ *     <li>com storage.type=s3, um multipart upload no bucket, uma parte por pedaço: qualquer nó recebe o pedaço
+ *     seguinte e nenhum guarda bytes em disco. Cada pedaço tem de ter exatamente partSize bytes (o último, o
+ *     que faltar) e começar num múltiplo de partSize;</li>
+ *     <li>com armazenamento local, um ficheiro com nome fixo na pasta temporária da loja de blobs, escrito com
+ *     escritas posicionais. Um pedaço que comece antes do offset atual tem a parte já recebida ignorada.</li>
+ * </ul>
+ * O SHA-256 é atualizado à medida que os pedaços chegam, em memória no nó que os recebe. Se o estado faltar
+ * (reinício, pedaço recebido noutro nó) é recalculado: no ficheiro local, lendo o prefixo já gravado ao
+ * retomar; no S3, lendo o objeto ao concluir. Sessões paradas há mais de materials.uploads.session-ttl são
+ * apagadas, com as partes e o ficheiro parcial.
+ * <p>
+ * A conclusão é assíncrona: o pedido só reserva o upload (estado COMPLETING) e responde logo; a verificação do
+ * checksum, a passagem para a loja de blobs (no S3, uma cópia de até 5 GB) e a criação do material correm numa
+ * fila própria, e o resultado fica no estado da sessão. Uma conclusão parada há mais de
+ * materials.uploads.completion-timeout (ex.: o nó parou a meio) é retomada por qualquer nó.
+ */
+@Service
+public class MaterialUploadService {
+    private static final Logger log = LoggerFactory.getLogger(MaterialUploadService.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final String PART_FILE_PREFIX = "upload-";
+    private static final int CLEANUP_BATCH = 100;
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final MaterialBlobStore blobStore;
+    private final MaterialStorage storage;
+    private final MaterialService materialService;
+    private final MaterialUploadRepository uploadRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxSize;
+    private final int maxSessionsPerUser;
+    private final Duration sessionTtl;
+    private final Duration completionTimeout;
+    // SHA-256 parcial dos uploads recebidos neste nó; cada entrada serve também de lock do upload no nó
+    private final Cache<String, PartialDigest> digests;
+    private final ThreadPoolExecutor completionExecutor;
+
+    @Autowired
+    public MaterialUploadService(MaterialBlobStore blobStore, MaterialStorage storage, MaterialService materialService,
+                                 MaterialUploadRepository uploadRepository, CurrentUserResolver currentUserResolver,
+                                 PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                 @Value("${materials.uploads.max-size:5368709120}") long maxSize,
+                                 @Value("${materials.uploads.max-sessions-per-user:10}") int maxSessionsPerUser,
+                                 @Value("${materials.uploads.session-ttl:PT24H}") Duration sessionTtl,
+                                 @Value("${materials.uploads.completion-threads:2}") int completionThreads,
+                                 @Value("${materials.uploads.completion-queue-capacity:100}") int completionQueueCapacity,
+                                 @Value("${materials.uploads.completion-timeout:PT1H}") Duration completionTimeout) {
+        this.blobStore = blobStore;
+        this.storage = storage;
+        this.materialService = materialService;
+        this.uploadRepository = uploadRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSize = maxSize;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.sessionTtl = sessionTtl;
+        this.completionTimeout = completionTimeout;
+        this.digests = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(sessionTtl)
+                .build();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.completionExecutor = new ThreadPoolExecutor(completionThreads, completionThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(completionQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "upload-completion-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("materials.uploads.completion.queue.depth", completionExecutor, e -> e.getQueue().size())
+                .description("Uploads à espera de serem concluídos")
+                .register(meterRegistry);
+    }
+
+    public UploadStatusDTO initiate(UploadInitiateDTO dto) {
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
+
+        if (dto.getSize() > maxSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "O ficheiro excede o tamanho máximo permitido");
+        }
+        if (uploadRepository.countByTeacherIdAndState(teacher.id(), MaterialUploadState.RECEIVING) >= maxSessionsPerUser) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Demasiados uploads em curso");
+        }
+
+        MaterialUpload upload = new MaterialUpload();
+        upload.setId(UUID.randomUUID().toString());
+        upload.setTeacherId(teacher.id());
+        upload.setFileName(dto.getFileName());
+        upload.setSize(dto.getSize());
+        try {
+            if (storage.supportsPartUploads()) {
+                upload.setPartSize(storage.partSize());
+                upload.setPartUploadId(storage.startPartUpload(stagingKey(upload.getId())));
+            } else {
+                Files.createFile(partFile(upload.getId()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao iniciar o upload: " + e.getMessage(), e);
+        }
+        uploadRepository.save(upload);
+        digests.put(upload.getId(), new PartialDigest());
+        return toStatus(requireUpload(upload.getId()));
+    }
+
+    /**
+     * Escreve um pedaço que começa em offset. O offset não pode ultrapassar os bytes já recebidos.
+     * @param contentLength O tamanho do pedaço, se conhecido (-1 caso contrário; obrigatório com storage.type=s3)
+     */
+    public UploadStatusDTO appendChunk(String uploadId, long offset, long contentLength, InputStream body) {
+        requireUpload(uploadId);
+        PartialDigest partial = digests.get(uploadId, id -> new PartialDigest());
+        synchronized (partial) {
+            // Relido com o lock: outro pedido pode ter avançado o upload enquanto este esperava
+            UploadSessionInfo upload = requireUpload(uploadId);
+            if (upload.getState() != MaterialUploadState.RECEIVING) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "O upload já não está a receber pedaços");
+            }
+            if (offset < 0 || offset > upload.getReceived()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Offset inválido: o próximo pedaço deve começar em " + upload.getReceived());
+            }
+            if (contentLength >= 0 && offset + contentLength > upload.getSize()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "O pedaço excede o tamanho declarado do ficheiro");
+            }
+
+            long received = upload.getPartUploadId() != null
+                    ? appendPart(upload, partial, offset, contentLength, body)
+                    : appendToFile(upload, partial, offset, body);
+            if (received != upload.getReceived()
+                    && uploadRepository.advance(uploadId, upload.getReceived(), received, LocalDateTime.now(),
+                    MaterialUploadState.RECEIVING) == 0) {
+                // Cancelado ou avançado por outro pedido (ex.: noutro nó) entretanto
+                partial.invalidate();
+            }
+            return toStatus(requireUpload(uploadId));
+        }
+    }
+
+    /**
+     * Um pedaço é uma parte do multipart upload: o número da parte deriva do offset, e reenviar um pedaço
+     * substitui a parte.
+     * @return Os bytes recebidos depois deste pedaço
+     */
+    private long appendPart(UploadSessionInfo upload, PartialDigest partial, long offset, long contentLength,
+                            InputStream body) {
+        long partSize = upload.getPartSize();
+        if (offset % partSize != 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Offset inválido: os pedaços começam em múltiplos de " + partSize + "; o próximo é " + upload.getReceived());
+        }
+        long expected = Math.min(partSize, upload.getSize() - offset);
+        if (contentLength < 0) {
+            throw new ResponseStatusException(HttpStatus.LENGTH_REQUIRED, "O tamanho do pedaço é obrigatório");
+        }
+        if (contentLength != expected) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Este pedaço deve ter " + expected + " bytes (cada pedaço tem " + partSize + " bytes, o último o que faltar)");
+        }
+
+        // O SHA-256 só acompanha pedaços novos, por ordem; de resto é recalculado ao concluir
+        boolean inOrder = offset == upload.getReceived() && partial.offset == offset;
+        if (offset == upload.getReceived() && !inOrder) {
+            partial.invalidate();
+        }
+        InputStream content = inOrder ? new DigestInputStream(body, partial.digest) : body;
+        try {
+            storage.putPart(stagingKey(upload.getId()), upload.getPartUploadId(), (int) (offset / partSize) + 1,
+                    content, expected);
+        } catch (IOException | RuntimeException e) {
+            if (inOrder) {
+                // Parte dos bytes pode já ter entrado no digest
+                partial.invalidate();
+            }
+            throw e instanceof ResponseStatusException status ? status
+                    : new RuntimeException("Erro ao gravar o pedaço: " + e.getMessage(), e);
+        }
+        if (inOrder) {
+            partial.offset = offset + expected;
+        }
+        return Math.max(upload.getReceived(), offset + expected);
+    }
+
+    /**
+     * @return Os bytes recebidos depois deste pedaço
+     */
+    private long appendToFile(UploadSessionInfo upload, PartialDigest partial, long offset, InputStream body) {
+        Path file = partFile(upload.getId());
+        if (!Files.exists(file)) {
+            // Só acontece com armazenamento local e vários nós: o ficheiro parcial está no nó que iniciou o upload
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Os pedaços já recebidos deste upload estão noutro servidor");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long received = upload.getReceived();
+            if (channel.size() < received) {
+                // Bytes confirmados que não chegaram ao disco (ex.: falha da máquina): o cliente retoma a partir daqui
+                uploadRepository.advance(upload.getId(), received, channel.size(), LocalDateTime.now(),
+                        MaterialUploadState.RECEIVING);
+                partial.invalidate();
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Offset inválido: o próximo pedaço deve começar em " + channel.size());
+            }
+            if (channel.size() > received) {
+                // Escrita de um pedaço que falhou antes de ser confirmado
+                channel.truncate(received);
+            }
+            if (partial.offset != received) {
+                // Retoma depois de um reinício: o SHA-256 do que já está no disco
+                partial.rehash(Channels.newInputStream(channel.position(0)), received);
+            }
+
+            long skip = received - offset;
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            long position = received;
+            try {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    int start = 0;
+                    if (skip > 0) {
+                        // Bytes já recebidos num envio anterior
+                        start = (int) Math.min(skip, read);
+                        skip -= start;
+                    }
+                    int length = read - start;
+                    if (length == 0) {
+                        continue;
+                    }
+                    if (position + length > upload.getSize()) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "O pedaço excede o tamanho declarado do ficheiro");
+                    }
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, start, length);
+                    long at = position;
+                    while (chunk.hasRemaining()) {
+                        at += channel.write(chunk, at);
+                    }
+                    partial.digest.update(buffer, start, length);
+                    position = at;
+                    partial.offset = position;
+                }
+            } finally {
+                // O que já foi escrito conta: fica no disco antes de ser confirmado na base de dados
+                channel.force(false);
+            }
+            return position;
+        } catch (IOException e) {
+            partial.invalidate();
+            throw new RuntimeException("Erro ao gravar o pedaço: " + e.getMessage(), e);
+        }
+    }
+
+    public UploadStatusDTO getStatus(String uploadId) {
+        return toStatus(requireUpload(uploadId));
+    }
+
+    /**
+     * Reserva o upload completo para conclusão e agenda-a; o cliente acompanha o resultado com getStatus.
+     * Repetir o pedido depois de reservado devolve apenas o estado.
+     */
+    public UploadStatusDTO complete(String uploadId, UploadCompleteDTO dto) {
+        requireUpload(uploadId);
+        PartialDigest partial = digests.get(uploadId, id -> new PartialDigest());
+        UploadSessionInfo upload;
+        synchronized (partial) {
+            upload = requireUpload(uploadId);
+            if (upload.getState() != MaterialUploadState.RECEIVING) {
+                return toStatus(upload);
+            }
+            if (upload.getReceived() != upload.getSize()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Upload incompleto: recebidos " + upload.getReceived() + " de " + upload.getSize() + " bytes");
+            }
+            // Erros do pedido são devolvidos já, não no estado
+            materialService.checkTarget(dto.getSubjectId(), dto.getClasseId());
+
+            // Só um pedido, em qualquer nó, fica com o upload
+            if (uploadRepository.claimCompletion(uploadId, dto.getTitle(), dto.getSubjectId(), dto.getClasseId(),
+                    dto.getSha256().trim().toLowerCase(), LocalDateTime.now(),
+                    MaterialUploadState.RECEIVING, MaterialUploadState.COMPLETING) == 0) {
+                return toStatus(requireUpload(uploadId));
+            }
+            digests.invalidate(uploadId);
+            upload = requireUpload(uploadId);
+        }
+        submitCompletion(upload, partial);
+        return toStatus(upload);
+    }
+
+    private void submitCompletion(UploadSessionInfo upload, PartialDigest partial) {
+        try {
+            completionExecutor.execute(() -> finishCompletion(upload, partial));
+        } catch (RejectedExecutionException e) {
+            // Fica em COMPLETING: é retomado pela limpeza depois de completion-timeout
+            log.warn("Fila de conclusão de uploads cheia; o upload {} fica para mais tarde", upload.getId());
+        }
+    }
+
+    /**
+     * Verifica o checksum, passa o conteúdo para a loja de blobs e cria o material, fora de qualquer pedido.
+     * @param partial O SHA-256 acumulado enquanto os pedaços chegavam a este nó (recalculado se não estiver completo)
+     */
+    private void finishCompletion(UploadSessionInfo upload, PartialDigest partial) {
+        StoredBlob blob;
+        try {
+            blob = upload.getPartUploadId() != null ? adoptParts(upload, partial) : adoptFile(upload, partial);
+        } catch (ResponseStatusException e) {
+            fail(upload, e.getReason());
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Falha ao concluir o upload {}: {}", upload.getId(), e.getMessage());
+            fail(upload, "Erro ao salvar o ficheiro: " + e.getMessage());
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                MaterialResponseDTO material = materialService.createMaterial(upload.getTeacherId(), upload.getTitle(),
+                        upload.getSubjectId(), upload.getClasseId(), blob, upload.getFileName());
+                if (uploadRepository.finishCompletion(upload.getId(), upload.getAttempt(), MaterialUploadState.COMPLETED,
+                        material.getId(), null, LocalDateTime.now(), MaterialUploadState.COMPLETING) == 0) {
+                    // Outra tentativa ficou com a conclusão: este material não é gravado
+                    status.setRollbackOnly();
+                }
+            });
+        } catch (RuntimeException e) {
+            fail(upload, e.getMessage());
+        }
+    }
+
+    private StoredBlob adoptFile(UploadSessionInfo upload, PartialDigest partial) throws IOException {
+        Path file = partFile(upload.getId());
+        if (!Files.exists(file)) {
+            // Tentativa anterior interrompida depois de adotar o ficheiro
+            return findAdopted(upload);
+        }
+        if (partial == null || partial.offset != upload.getSize()) {
+            partial = new PartialDigest();
+            try (InputStream content = Files.newInputStream(file)) {
+                partial.rehash(content, upload.getSize());
+            }
+        }
+        String hash = partial.hex();
+        if (!hash.equalsIgnoreCase(upload.getSha256())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "O checksum não corresponde ao ficheiro recebido");
+        }
+        return blobStore.adopt(file, hash, upload.getSize());
+    }
+
+    private StoredBlob adoptParts(UploadSessionInfo upload, PartialDigest partial) throws IOException {
+        String stagingKey = stagingKey(upload.getId());
+        if (storage.stat(stagingKey).isEmpty()) {
+            try {
+                storage.completePartUpload(stagingKey, upload.getPartUploadId());
+            } catch (IOException e) {
+                // Tentativa anterior interrompida depois de juntar as partes e adotar o objeto
+                return findAdopted(upload);
+            }
+        }
+        if (partial == null || partial.offset != upload.getSize()) {
+            // Pedaços recebidos noutros nós: lê o objeto já montado no bucket
+            partial = new PartialDigest();
+            try (InputStream content = storage.get(stagingKey)) {
+                partial.rehash(content, upload.getSize());
+            }
+        }
+        String hash = partial.hex();
+        if (!hash.equalsIgnoreCase(upload.getSha256())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "O checksum não corresponde ao ficheiro recebido");
+        }
+        return blobStore.adoptStaged(stagingKey, hash, upload.getSize());
+    }
+
+    private StoredBlob findAdopted(UploadSessionInfo upload) throws IOException {
+        return blobStore.findStored(upload.getSha256())
+                .filter(blob -> blob.size() == upload.getSize())
+                .orElseThrow(() -> new IOException("Os bytes recebidos já não existem"));
+    }
+
+    /**
+     * Grava a falha, se esta ainda for a tentativa atual, e descarta os bytes recebidos.
+     */
+    private void fail(UploadSessionInfo upload, String error) {
+        String message = error == null ? "Erro desconhecido"
+                : error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        if (uploadRepository.finishCompletion(upload.getId(), upload.getAttempt(), MaterialUploadState.FAILED, null,
+                message, LocalDateTime.now(), MaterialUploadState.COMPLETING) == 1) {
+            discard(upload);
+        }
+    }
+
+    /**
+     * Cancela um upload a receber pedaços, ou apaga o registo de um já concluído ou falhado.
+     */
+    public void abort(String uploadId) {
+        UploadSessionInfo upload = requireUpload(uploadId);
+        if (uploadRepository.deleteSession(uploadId, MaterialUploadState.COMPLETING) == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "O upload está a ser concluído");
+        }
+        digests.invalidate(uploadId);
+        if (upload.getState() == MaterialUploadState.RECEIVING) {
+            discard(upload);
+        }
+    }
+
+    /**
+     * Apaga sessões abandonadas, com as partes e o ficheiro parcial, e os registos de uploads terminados;
+     * retoma conclusões paradas; apaga ficheiros temporários que já não pertencem a nenhuma sessão.
+     * Corre em todos os nós; cada sessão é tratada por um só.
+     */
+    @Scheduled(fixedDelayString = "${materials.uploads.cleanup-interval:PT15M}")
+    public void cleanupExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minus(sessionTtl);
+        for (MaterialUploadState state : List.of(MaterialUploadState.RECEIVING, MaterialUploadState.COMPLETED,
+                MaterialUploadState.FAILED)) {
+            List<UploadSessionInfo> stale;
+            do {
+                stale = uploadRepository.findStale(state, cutoff, Limit.of(CLEANUP_BATCH));
+                for (UploadSessionInfo upload : stale) {
+                    if (uploadRepository.deleteIfUnchanged(upload.getId(), upload.getUpdatedAt()) == 1
+                            && state == MaterialUploadState.RECEIVING) {
+                        digests.invalidate(upload.getId());
+                        discard(upload);
+                    }
+                }
+            } while (stale.size() == CLEANUP_BATCH);
+        }
+
+        for (UploadSessionInfo upload : uploadRepository.findStale(MaterialUploadState.COMPLETING,
+                now.minus(completionTimeout), Limit.of(CLEANUP_BATCH))) {
+            if (uploadRepository.retryCompletion(upload.getId(), upload.getAttempt(), now,
+                    MaterialUploadState.COMPLETING) == 1) {
+                upload.setAttempt(upload.getAttempt() + 1);
+                submitCompletion(upload, null);
+            }
+        }
+
+        Path tmpRoot = blobStore.tmpRoot();
+        if (!Files.isDirectory(tmpRoot)) {
+            return;
+        }
+        Instant fileCutoff = Instant.now().minus(sessionTtl);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tmpRoot, "*.part")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean live = name.startsWith(PART_FILE_PREFIX)
+                        && uploadRepository.existsById(name.substring(PART_FILE_PREFIX.length(), name.length() - ".part".length()));
+                if (!live && Files.getLastModifiedTime(file).toInstant().isBefore(fileCutoff)) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            // Tenta novamente na próxima execução
+        }
+    }
+
+    private UploadSessionInfo requireUpload(String uploadId) {
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
+        return uploadRepository.findInfoById(uploadId)
+                .filter(upload -> upload.getTeacherId().equals(teacher.id()))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload não encontrado"));
+    }
+
+    /**
+     * Descarta os bytes de uma sessão já removida da base de dados ou falhada.
+     */
+    private void discard(UploadSessionInfo upload) {
+        if (upload.getPartUploadId() != null) {
+            try {
+                storage.abortPartUpload(stagingKey(upload.getId()), upload.getPartUploadId());
+                // Partes já juntas num objeto que não chegou a ser adotado
+                storage.delete(stagingKey(upload.getId()));
+            } catch (IOException e) {
+                // As partes ficam até à regra de expiração de multipart uploads do bucket
+                log.warn("Não foi possível abortar o upload {}: {}", upload.getId(), e.getMessage());
+            }
+        } else {
+            deleteQuietly(partFile(upload.getId()));
+        }
+    }
+
+    private Path partFile(String uploadId) {
+        try {
+            return blobStore.tmpFile(PART_FILE_PREFIX + uploadId + ".part");
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao aceder à pasta temporária: " + e.getMessage(), e);
+        }
+    }
+
+    private static String stagingKey(String uploadId) {
+        return MaterialBlobStore.STAGING_PREFIX + uploadId;
+    }
+
+    private UploadStatusDTO toStatus(UploadSessionInfo upload) {
+        return new UploadStatusDTO(upload.getId(), upload.getFileName(), upload.getSize(), upload.getReceived(),
+                upload.getPartSize(), upload.getState(), upload.getMaterialId(), upload.getError(),
+                upload.getUpdatedAt().plus(sessionTtl).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        completionExecutor.shutdown();
+        // O que não terminar a tempo é retomado depois de completion-timeout
+        completionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Fica para a limpeza seguinte
+        }
+    }
+
+    /**
+     * SHA-256 dos primeiros offset bytes de um upload; offset -1 quando o estado não é conhecido.
+     * Só acedido com o lock do próprio objeto.
+     */
+    private static final class PartialDigest {
+        private MessageDigest digest = sha256();
+        private long offset;
+
+        void invalidate() {
+            digest = sha256();
+            offset = -1;
+        }
+
+        /**
+         * Recalcula a partir dos primeiros length bytes do conteúdo.
+         */
+        void rehash(InputStream content, long length) throws IOException {
+            digest = sha256();
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    offset = -1;
+                    throw new IOException("Conteúdo mais curto do que o esperado: faltam " + remaining + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                remaining -= read;
+            }
+            offset = length;
+        }
+
+        String hex() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
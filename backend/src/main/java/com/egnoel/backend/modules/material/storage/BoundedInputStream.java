@@ -0,0 +1,74 @@
+package com.egnoel.backend.modules.material.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lê no máximo limit bytes do stream subjacente.
+ */
+class BoundedInputStream extends FilterInputStream {
+    private final boolean closeSource;
+    private long remaining;
+
+    BoundedInputStream(InputStream in, long limit) {
+        this(in, limit, true);
+    }
+
+    /**
+     * @param closeSource Se falso, close() não fecha o stream subjacente (ex.: uma parte de um stream maior)
+     */
+    BoundedInputStream(InputStream in, long limit, boolean closeSource) {
+        super(in);
+        this.remaining = limit;
+        this.closeSource = closeSource;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int b = in.read();
+        if (b != -1) {
+            remaining--;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read > 0) {
+            remaining -= read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeSource) {
+            in.close();
+        }
+    }
+}
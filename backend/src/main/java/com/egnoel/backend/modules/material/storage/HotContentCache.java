@@ -0,0 +1,165 @@
+package com.egnoel.backend.modules.material.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache em memória dos blobs mais pedidos (ex.: o material de preparação para um exame, descarregado milhares
+ * de vezes numa hora). Os blobs são imutáveis (endereçados pelo hash), por isso nunca é preciso invalidar.
+ * <p>
+ * Blobs até materials.hot-cache.max-direct-size são copiados para ByteBuffers diretos (fora da heap); os maiores,
+ * até materials.hot-cache.max-file-size, são mapeados em memória (só com armazenamento local). O total é limitado
+ * a materials.hot-cache.max-bytes; a Caffeine decide o que fica pela frequência de acesso (W-TinyLFU), por isso
+ * uma rajada de ficheiros pedidos uma única vez não expulsa os populares. Um blob só é carregado a partir do
+ * materials.hot-cache.min-requests-ésimo pedido: os restantes seguem pelo caminho normal (sendfile ou streaming).
+ * <p>
+ * A memória de uma entrada expulsa só é devolvida quando o buffer é recolhido pelo GC; o limite de memória direta
+ * da JVM (-XX:MaxDirectMemorySize) deve ficar acima de max-bytes.
+ */
+@Component
+public class HotContentCache {
+    private static final Logger log = LoggerFactory.getLogger(HotContentCache.class);
+
+    private final MaterialStorage storage;
+    private final boolean enabled;
+    private final long maxDirectSize;
+    private final long maxFileSize;
+    private final int minRequests;
+    private final Cache<String, CachedContent> contents;
+    // Contagem de pedidos de blobs ainda fora da cache (porteiro: evita carregar ficheiros pedidos uma só vez)
+    private final Cache<String, AtomicInteger> requests;
+    private final Counter bytesServed;
+
+    public HotContentCache(MaterialStorage storage, MeterRegistry meterRegistry,
+                           @Value("${materials.hot-cache.enabled:true}") boolean enabled,
+                           @Value("${materials.hot-cache.max-bytes:268435456}") long maxBytes,
+                           @Value("${materials.hot-cache.max-direct-size:1048576}") long maxDirectSize,
+                           @Value("${materials.hot-cache.max-file-size:67108864}") long maxFileSize,
+                           @Value("${materials.hot-cache.min-requests:2}") int minRequests,
+                           @Value("${materials.hot-cache.request-window:PT1H}") Duration requestWindow) {
+        this.storage = storage;
+        this.enabled = enabled;
+        this.maxDirectSize = maxDirectSize;
+        this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+        this.minRequests = minRequests;
+        this.contents = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String hash, CachedContent content) -> content.buffer().capacity())
+                .recordStats()
+                .build();
+        this.requests = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(requestWindow)
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, contents, "materials.hot-content");
+        Gauge.builder("materials.hot-content.hit-ratio", contents, c -> c.stats().hitRate())
+                .description("Fração dos downloads de blobs servidos a partir da memória")
+                .register(meterRegistry);
+        Gauge.builder("materials.hot-content.bytes", contents,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L))
+                .description("Bytes ocupados pela cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.bytesServed = Counter.builder("materials.hot-content.bytes-served")
+                .description("Bytes de materiais enviados a partir da cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * O conteúdo do blob, se estiver (ou passar a estar) em memória. Vazio se o blob ainda não é popular,
+     * é demasiado grande ou não existe: o chamador lê-o da MaterialStorage.
+     */
+    public Optional<CachedContent> get(String hash, String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CachedContent cached = contents.getIfPresent(hash);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        AtomicInteger count = requests.get(hash, h -> new AtomicInteger());
+        if (count.incrementAndGet() < minRequests) {
+            return Optional.empty();
+        }
+        // compute em vez de get(hash, loader): o "miss" deste pedido já foi contado pelo getIfPresent
+        cached = contents.asMap().compute(hash, (h, existing) -> existing != null ? existing : load(key));
+        if (cached != null) {
+            requests.invalidate(hash);
+        }
+        return Optional.ofNullable(cached);
+    }
+
+    public void recordServed(long bytes) {
+        bytesServed.increment(bytes);
+    }
+
+    private CachedContent load(String key) {
+        try {
+            Optional<StorageObject> object = storage.stat(key);
+            if (object.isEmpty() || object.get().size() > maxFileSize) {
+                return null;
+            }
+            long size = object.get().size();
+            long lastModified = object.get().lastModified().toEpochMilli();
+
+            Optional<Path> localPath = storage.localPath(key);
+            if (localPath.isPresent()) {
+                try (FileChannel channel = FileChannel.open(localPath.get(), StandardOpenOption.READ)) {
+                    if (size > maxDirectSize) {
+                        // O mapeamento continua válido depois de fechar o canal
+                        return new CachedContent(channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer(), lastModified);
+                    }
+                    return new CachedContent(readFully(channel, size), lastModified);
+                }
+            }
+            if (size > maxDirectSize) {
+                // Sem ficheiro local não há o que mapear
+                return null;
+            }
+            try (InputStream in = storage.get(key); ReadableByteChannel channel = Channels.newChannel(in)) {
+                return new CachedContent(readFully(channel, size), lastModified);
+            }
+        } catch (IOException e) {
+            log.warn("Não foi possível carregar o blob {} para a cache: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Fim inesperado do conteúdo: " + buffer.position() + " de " + size + " bytes");
+            }
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Um blob em memória. O buffer é partilhado: quem o lê deve usar duplicate().
+     */
+    public record CachedContent(ByteBuffer buffer, long lastModified) {
+    }
+}
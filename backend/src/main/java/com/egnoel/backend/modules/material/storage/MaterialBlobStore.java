@@ -0,0 +1,442 @@
+package com.egnoel.backend.modules.material.storage;
+
+import com.egnoel.backend.modules.material.repository.MaterialBlobUseRepository;
+import com.egnoel.backend.modules.material.repository.MaterialRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Loja de conteúdos endereçada pelo SHA-256: cada conteúdo distinto é guardado uma única vez na chave
+ * ab/cd/abcd... da MaterialStorage configurada e partilhado por todos os materiais com o mesmo Material.contentHash.
+ * <p>
+ * O hash é calculado enquanto o upload é escrito num ficheiro temporário local, que depois é passado à
+ * MaterialStorage; se a chave já existir o temporário é descartado. A transferência para o armazenamento
+ * (no S3, um upload de até 5 GB) corre fora de qualquer lock: a chave é endereçada pelo conteúdo, por isso
+ * dois uploads simultâneos do mesmo conteúdo gravam os mesmos bytes. Só a confirmação final é feita com o lock.
+ * <p>
+ * Um blob só é apagado quando nenhum material o referencia (contagem na base de dados). Gravação e libertação
+ * do mesmo hash são serializadas por um lock por hash; um blob gravado ou reutilizado há menos de
+ * materials.blobs.release-grace (tabela material_blob_uses) nunca é apagado, porque o material que o usou pode
+ * ainda não estar gravado. Com uma MaterialStorage partilhada entre nós os locks só valem dentro de cada nó;
+ * entre nós a proteção é esse período de graça.
+ * <p>
+ * As libertações depois do commit correm numa fila própria (materials.blobs.release-queue-capacity), fora do
+ * pedido. Se a fila estiver cheia ou o nó parar antes de a esvaziar, o blob fica órfão até à reconciliação
+ * (MaterialStorageReconciler), que o põe de quarentena.
+ */
+@Component
+public class MaterialBlobStore {
+    private static final Logger log = LoggerFactory.getLogger(MaterialBlobStore.class);
+    private static final int LOCK_STRIPES = 64;
+    public static final String QUARANTINE_PREFIX = "quarantine/";
+    // Objetos à espera de serem movidos para a chave do seu hash (ex.: uploads por partes concluídos)
+    public static final String STAGING_PREFIX = "staging/";
+
+    private final MaterialRepository materialRepository;
+    private final MaterialBlobUseRepository blobUseRepository;
+    private final MaterialStorage storage;
+    private final Path tmpRoot;
+    private final Duration releaseGrace;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final ThreadPoolExecutor releaseExecutor;
+    private final Counter releasesDropped;
+
+    public MaterialBlobStore(MaterialRepository materialRepository, MaterialBlobUseRepository blobUseRepository,
+                             MaterialStorage storage, MeterRegistry meterRegistry,
+                             @Value("${materials.blobs.release-grace:PT10M}") Duration releaseGrace,
+                             @Value("${materials.blobs.release-queue-capacity:1000}") int releaseQueueCapacity) {
+        this.materialRepository = materialRepository;
+        this.blobUseRepository = blobUseRepository;
+        this.storage = storage;
+        this.tmpRoot = Paths.get(System.getProperty("user.dir"), "uploads", "tmp").toAbsolutePath().normalize();
+        this.releaseGrace = releaseGrace;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        // Uma só thread: as libertações são raras e cada uma é uma consulta e um delete
+        this.releaseExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(releaseQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "blob-release");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("materials.blobs.release.queue.depth", releaseExecutor, e -> e.getQueue().size())
+                .description("Ficheiros à espera de serem apagados depois do commit")
+                .register(meterRegistry);
+        this.releasesDropped = Counter.builder("materials.blobs.release.dropped")
+                .description("Libertações que não couberam na fila (ficam para a reconciliação)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Grava o conteúdo, calculando o SHA-256 durante a escrita.
+     * O stream é lido até ao fim mas não é fechado.
+     */
+    public StoredBlob store(InputStream content) {
+        MessageDigest digest = sha256();
+        Path temp = null;
+        try {
+            temp = createTempFile("upload-");
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                size = content.transferTo(out);
+            }
+            return adopt(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("Erro ao salvar o ficheiro: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Passa para a loja um ficheiro temporário cujo hash já é conhecido (ex.: upload por partes).
+     * O ficheiro deixa de existir no caminho original em qualquer caso.
+     */
+    public StoredBlob adopt(Path temp, String hash, long size) throws IOException {
+        String key = keyFor(hash);
+        try {
+            if (storage.stat(key).isEmpty()) {
+                storage.putFile(key, temp);
+                confirmStored(hash, key);
+                return new StoredBlob(hash, storage.location(key), size, false);
+            }
+            ReentrantLock lock = lockFor(hash);
+            lock.lock();
+            try {
+                // Marca a reutilização: protege o blob de uma libertação concorrente (ver release)
+                markUsed(hash);
+                if (storage.stat(key).isPresent()) {
+                    return new StoredBlob(hash, storage.location(key), size, true);
+                }
+                // Libertado entre a consulta e o lock
+                storage.putFile(key, temp);
+                return new StoredBlob(hash, storage.location(key), size, false);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Passa para a loja um objeto já gravado no armazenamento numa chave de STAGING_PREFIX, cujo hash já é
+     * conhecido. O objeto deixa de existir na chave original em qualquer caso.
+     */
+    public StoredBlob adoptStaged(String stagingKey, String hash, long size) throws IOException {
+        String key = keyFor(hash);
+        if (storage.stat(key).isEmpty()) {
+            storage.move(stagingKey, key);
+            confirmStored(hash, key);
+            return new StoredBlob(hash, storage.location(key), size, false);
+        }
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            markUsed(hash);
+            if (storage.stat(key).isPresent()) {
+                storage.delete(stagingKey);
+                return new StoredBlob(hash, storage.location(key), size, true);
+            }
+            storage.move(stagingKey, key);
+            return new StoredBlob(hash, storage.location(key), size, false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * O blob de um hash já gravado na loja (ex.: ao repetir a conclusão de um upload interrompida depois de o
+     * conteúdo ter sido adotado), marcado como usado.
+     */
+    public Optional<StoredBlob> findStored(String hash) throws IOException {
+        String key = keyFor(hash);
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            Optional<StorageObject> object = storage.stat(key);
+            if (object.isEmpty()) {
+                return Optional.empty();
+            }
+            markUsed(hash);
+            return Optional.of(new StoredBlob(hash, storage.location(key), object.get().size(), true));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Depois de uma transferência feita sem o lock: marca o uso e confirma que nenhuma libertação apagou a
+     * chave entretanto (só possível se a transferência demorar mais do que release-grace).
+     */
+    private void confirmStored(String hash, String key) throws IOException {
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            markUsed(hash);
+            if (storage.stat(key).isEmpty()) {
+                throw new IOException("O blob " + hash + " foi libertado durante a transferência");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cria um ficheiro vazio na pasta temporária da loja, de onde pode ser adotado sem cópia.
+     */
+    public Path createTempFile(String prefix) throws IOException {
+        Files.createDirectories(tmpRoot);
+        return Files.createTempFile(tmpRoot, prefix, ".part");
+    }
+
+    /**
+     * O ficheiro temporário com nome fixo, na pasta temporária da loja (ex.: as partes de um upload retomável,
+     * que têm de ser encontradas depois de um reinício).
+     */
+    public Path tmpFile(String name) throws IOException {
+        Files.createDirectories(tmpRoot);
+        Path file = tmpRoot.resolve(name).normalize();
+        if (!file.getParent().equals(tmpRoot)) {
+            throw new IllegalArgumentException("Nome inválido: " + name);
+        }
+        return file;
+    }
+
+    public Path tmpRoot() {
+        return tmpRoot;
+    }
+
+    public String keyFor(String hash) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    /**
+     * Apaga o blob se já nenhum material o referenciar.
+     */
+    public void release(String hash) {
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            String key = keyFor(hash);
+            if (isReleasable(hash, key)) {
+                storage.delete(key);
+                blobUseRepository.forget(hash);
+            }
+        } catch (IOException e) {
+            log.warn("Não foi possível apagar o blob {}: {}", hash, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Liberta o blob depois do commit da transação atual (ex.: material apagado ou ficheiro substituído).
+     */
+    public void releaseAfterCommit(String hash) {
+        afterCompletion(() -> release(hash), TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    /**
+     * Liberta o blob se a transação atual falhar (ex.: upload gravado mas material não criado).
+     */
+    public void releaseOnRollback(String hash) {
+        afterCompletion(() -> release(hash), TransactionSynchronization.STATUS_ROLLED_BACK);
+    }
+
+    /**
+     * Apaga o ficheiro de um material anterior à loja de blobs depois do commit da transação atual.
+     */
+    public void deleteLegacyFileAfterCommit(Path file) {
+        afterCompletion(() -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Não foi possível apagar o ficheiro {}: {}", file, e.getMessage());
+            }
+        }, TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    /**
+     * Move o blob para a quarentena (chave QUARANTINE_PREFIX + chave) se continuar órfão, com as mesmas
+     * verificações e o mesmo lock que release. A data do objeto passa a ser a da entrada na quarentena
+     * (ver MaterialStorage.move).
+     * @return Verdadeiro se o blob foi movido
+     */
+    public boolean quarantineIfOrphan(String hash) throws IOException {
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            String key = keyFor(hash);
+            if (!isReleasable(hash, key)) {
+                return false;
+            }
+            storage.move(key, QUARANTINE_PREFIX + key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Devolve à loja um blob de quarentena que voltou a ser referenciado.
+     * @return Verdadeiro se o blob estava na quarentena
+     */
+    public boolean restoreFromQuarantine(String hash) throws IOException {
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            String key = keyFor(hash);
+            if (storage.stat(key).isPresent() || storage.stat(QUARANTINE_PREFIX + key).isEmpty()) {
+                return false;
+            }
+            // O movimento dá ao blob a data atual, que o protege como um uso recente
+            storage.move(QUARANTINE_PREFIX + key, key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apaga definitivamente um blob da quarentena, com o lock do hash (uma recuperação simultânea não o perde).
+     */
+    public void purgeQuarantined(String hash) throws IOException {
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            String key = keyFor(hash);
+            storage.delete(QUARANTINE_PREFIX + key);
+            if (storage.stat(key).isEmpty()) {
+                blobUseRepository.forget(hash);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void afterCompletion(Runnable action, int expectedStatus) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (expectedStatus == TransactionSynchronization.STATUS_COMMITTED) {
+                submit(action);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == expectedStatus) {
+                    submit(action);
+                }
+            }
+        });
+    }
+
+    private void submit(Runnable action) {
+        try {
+            releaseExecutor.execute(action);
+        } catch (RejectedExecutionException e) {
+            // O ficheiro fica órfão: a reconciliação põe-no de quarentena
+            releasesDropped.increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        releaseExecutor.shutdown();
+        // O que não terminar a tempo fica para a reconciliação
+        releaseExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sem materiais a referenciá-lo e sem uso há mais de releaseGrace. Chamado com o lock do hash.
+     */
+    private boolean isReleasable(String hash, String key) throws IOException {
+        if (materialRepository.countByContentHash(hash) > 0) {
+            return false;
+        }
+        Optional<StorageObject> object = storage.stat(key);
+        if (object.isEmpty()) {
+            return false;
+        }
+        // O último uso é o mais recente entre a gravação do objeto e a última reutilização
+        Instant lastUsed = object.get().lastModified();
+        Optional<LocalDateTime> reused = blobUseRepository.findLastUsedAt(hash);
+        if (reused.isPresent()) {
+            Instant reusedAt = reused.get().atZone(ZoneId.systemDefault()).toInstant();
+            if (reusedAt.isAfter(lastUsed)) {
+                lastUsed = reusedAt;
+            }
+        }
+        // Usado há pouco: fica como órfão até à próxima reconciliação
+        return !lastUsed.isAfter(Instant.now().minus(releaseGrace));
+    }
+
+    private void markUsed(String hash) {
+        LocalDateTime now = LocalDateTime.now();
+        if (blobUseRepository.markUsed(hash, now) > 0) {
+            return;
+        }
+        try {
+            blobUseRepository.insertUse(hash, now);
+        } catch (DataIntegrityViolationException e) {
+            // Inserido por outro pedido ou nó entretanto
+            blobUseRepository.markUsed(hash, now);
+        }
+    }
+
+    private ReentrantLock lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // O temporário fica para a limpeza seguinte
+            }
+        }
+    }
+}
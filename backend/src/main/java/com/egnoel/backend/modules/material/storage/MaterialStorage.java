@@ -0,0 +1,132 @@
+package com.egnoel.backend.modules.material.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Onde os bytes dos materiais ficam guardados. A implementação é escolhida por storage.type
+ * (local ou s3); a deduplicação, os locks e a libertação de blobs ficam no MaterialBlobStore, por cima desta.
+ * <p>
+ * As chaves são caminhos relativos (ex.: ab/cd/abcd...). Todas as operações são por streaming:
+ * nenhum ficheiro é carregado inteiro em memória.
+ */
+public interface MaterialStorage {
+
+    /**
+     * Grava o conteúdo na chave, substituindo o que lá estiver. O stream é lido até size bytes e não é fechado.
+     */
+    void put(String key, InputStream content, long size) throws IOException;
+
+    /**
+     * Grava um ficheiro local na chave. O ficheiro deixa de existir no caminho original.
+     */
+    default void putFile(String key, Path file) throws IOException {
+        try (InputStream content = Files.newInputStream(file)) {
+            put(key, content, Files.size(file));
+        }
+        Files.delete(file);
+    }
+
+    Optional<StorageObject> stat(String key) throws IOException;
+
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Lê os bytes de start a end (inclusive).
+     */
+    InputStream getRange(String key, long start, long end) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Move o objeto para outra chave (ex.: quarentena), substituindo o que lá estiver. A data de modificação
+     * do objeto passa a ser a do movimento.
+     */
+    default void move(String fromKey, String toKey) throws IOException {
+        Optional<StorageObject> object = stat(fromKey);
+        if (object.isEmpty()) {
+            throw new IOException("Objeto inexistente: " + fromKey);
+        }
+        try (InputStream content = get(fromKey)) {
+            put(toKey, content, object.get().size());
+        }
+        delete(fromKey);
+    }
+
+    /**
+     * Suporta uploads por partes (putPart) diretamente no armazenamento, partilhados por todos os nós.
+     * Sem suporte, os uploads retomáveis juntam as partes num ficheiro local do nó.
+     */
+    default boolean supportsPartUploads() {
+        return false;
+    }
+
+    /**
+     * O tamanho de cada parte de um upload por partes; só a última pode ser menor.
+     */
+    default long partSize() {
+        throw new UnsupportedOperationException("Uploads por partes não suportados");
+    }
+
+    /**
+     * Inicia um upload por partes para a chave.
+     * @return O identificador do upload no armazenamento
+     */
+    default String startPartUpload(String key) throws IOException {
+        throw new UnsupportedOperationException("Uploads por partes não suportados");
+    }
+
+    /**
+     * Grava a parte partNumber (a partir de 1), substituindo a que lá estiver. O stream é lido até size bytes.
+     */
+    default void putPart(String key, String partUploadId, int partNumber, InputStream content, long size)
+            throws IOException {
+        throw new UnsupportedOperationException("Uploads por partes não suportados");
+    }
+
+    /**
+     * Junta as partes já gravadas, por ordem, no objeto da chave.
+     */
+    default void completePartUpload(String key, String partUploadId) throws IOException {
+        throw new UnsupportedOperationException("Uploads por partes não suportados");
+    }
+
+    /**
+     * Descarta as partes gravadas. Não falha se o upload já não existir.
+     */
+    default void abortPartUpload(String key, String partUploadId) throws IOException {
+        throw new UnsupportedOperationException("Uploads por partes não suportados");
+    }
+
+    /**
+     * Todos os objetos cuja chave começa por prefix (ex.: "ab/"), por ordem da chave.
+     * Usado pela reconciliação, um prefixo de cada vez para limitar a memória.
+     */
+    List<StorageEntry> list(String prefix) throws IOException;
+
+    /**
+     * Descrição legível da localização, guardada em Material.filePath.
+     */
+    String location(String key);
+
+    /**
+     * O ficheiro local correspondente, se existir: permite enviá-lo com sendfile.
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    /**
+     * Um URL temporário para o cliente descarregar o objeto diretamente, sem passar pela JVM.
+     * Vazio se o backend não o suportar.
+     */
+    default Optional<URI> presignedGet(String key, String fileName, String contentType, Duration ttl) {
+        return Optional.empty();
+    }
+}
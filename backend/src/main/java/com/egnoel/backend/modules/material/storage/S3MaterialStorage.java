@@ -0,0 +1,372 @@
+package com.egnoel.backend.modules.material.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Objetos guardados num bucket S3 ou compatível (MinIO, Ceph, ...), partilhado por todos os nós.
+ * Ficheiros maiores do que storage.s3.part-size são enviados por multipart upload, parte a parte,
+ * sem os ter inteiros em memória. Os uploads retomáveis usam o mesmo mecanismo, com uma parte por pedaço
+ * enviado pelo cliente (ver MaterialUploadService). As leituras podem ser servidas por URLs pré-assinados.
+ * <p>
+ * Os objetos nunca são reescritos só para lhes mudar a data: o último uso de cada blob fica na base de dados
+ * (ver MaterialBlobStore).
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+public class S3MaterialStorage implements MaterialStorage {
+    private final S3Client client;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final String prefix;
+    // Mínimo do S3 para as partes de um multipart upload, exceto a última
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    // Máximo do CopyObject e do número de partes de um multipart upload
+    private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final long partSize;
+
+    public S3MaterialStorage(@Value("${storage.s3.bucket}") String bucket,
+                             @Value("${storage.s3.prefix:materials/}") String prefix,
+                             @Value("${storage.s3.region:us-east-1}") String region,
+                             @Value("${storage.s3.endpoint:}") String endpoint,
+                             @Value("${storage.s3.access-key:}") String accessKey,
+                             @Value("${storage.s3.secret-key:}") String secretKey,
+                             @Value("${storage.s3.path-style:false}") boolean pathStyle,
+                             @Value("${storage.s3.part-size:67108864}") long partSize,
+                             @Value("${storage.s3.create-bucket:false}") boolean createBucket) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("storage.s3.part-size deve ser pelo menos " + MIN_PART_SIZE);
+        }
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.partSize = partSize;
+
+        // Sem credenciais explícitas usa a cadeia habitual (variáveis de ambiente, perfil, IAM role)
+        AwsCredentialsProvider credentials = accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        // Path-style (http://host/bucket/key) é o que a maioria dos servidores compatíveis espera
+        S3Configuration configuration = S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build();
+
+        S3ClientBuilder clientBuilder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(configuration)
+                // Checksums só quando a operação os exige: nem todos os servidores compatíveis os suportam
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED);
+        S3Presigner.Builder presignerBuilder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(configuration);
+        if (!endpoint.isBlank()) {
+            clientBuilder.endpointOverride(URI.create(endpoint));
+            presignerBuilder.endpointOverride(URI.create(endpoint));
+        }
+        this.client = clientBuilder.build();
+        this.presigner = presignerBuilder.build();
+
+        if (createBucket) {
+            try {
+                client.headBucket(b -> b.bucket(bucket));
+            } catch (NoSuchBucketException e) {
+                client.createBucket(b -> b.bucket(bucket));
+            }
+        }
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size) throws IOException {
+        String objectKey = objectKey(key);
+        try {
+            if (size <= partSize) {
+                client.putObject(r -> r.bucket(bucket).key(objectKey).contentLength(size),
+                        RequestBody.fromInputStream(content, size));
+                return;
+            }
+            putMultipart(objectKey, content, size);
+        } catch (SdkException e) {
+            throw new IOException("Erro ao gravar " + objectKey + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void putMultipart(String objectKey, InputStream content, long size) {
+        String uploadId = client.createMultipartUpload(r -> r.bucket(bucket).key(objectKey)).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            long remaining = size;
+            for (int partNumber = 1; remaining > 0; partNumber++) {
+                long length = Math.min(partSize, remaining);
+                int number = partNumber;
+                String etag = client.uploadPart(r -> r.bucket(bucket).key(objectKey).uploadId(uploadId)
+                                .partNumber(number).contentLength(length),
+                        RequestBody.fromInputStream(new BoundedInputStream(content, length, false), length)).eTag();
+                parts.add(CompletedPart.builder().partNumber(number).eTag(etag).build());
+                remaining -= length;
+            }
+            client.completeMultipartUpload(r -> r.bucket(bucket).key(objectKey).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()));
+        } catch (RuntimeException e) {
+            // As partes já enviadas ocupam espaço no bucket até o upload ser abortado
+            try {
+                client.abortMultipartUpload(r -> r.bucket(bucket).key(objectKey).uploadId(uploadId));
+            } catch (SdkException abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void putFile(String key, Path file) throws IOException {
+        long size = Files.size(file);
+        if (size <= partSize) {
+            // A partir de um ficheiro o SDK consegue repetir o pedido em caso de falha
+            try {
+                client.putObject(r -> r.bucket(bucket).key(objectKey(key)).contentLength(size), RequestBody.fromFile(file));
+            } catch (SdkException e) {
+                throw new IOException("Erro ao gravar " + objectKey(key) + ": " + e.getMessage(), e);
+            }
+        } else {
+            try (InputStream content = Files.newInputStream(file)) {
+                put(key, content, size);
+            }
+        }
+        Files.delete(file);
+    }
+
+    @Override
+    public boolean supportsPartUploads() {
+        return true;
+    }
+
+    @Override
+    public long partSize() {
+        return partSize;
+    }
+
+    @Override
+    public String startPartUpload(String key) throws IOException {
+        try {
+            return client.createMultipartUpload(r -> r.bucket(bucket).key(objectKey(key))).uploadId();
+        } catch (SdkException e) {
+            throw new IOException("Erro ao iniciar o upload de " + objectKey(key) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void putPart(String key, String partUploadId, int partNumber, InputStream content, long size)
+            throws IOException {
+        try {
+            client.uploadPart(r -> r.bucket(bucket).key(objectKey(key)).uploadId(partUploadId)
+                            .partNumber(partNumber).contentLength(size),
+                    RequestBody.fromInputStream(new BoundedInputStream(content, size, false), size));
+        } catch (SdkException e) {
+            throw new IOException("Erro ao gravar a parte " + partNumber + " de " + objectKey(key) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void completePartUpload(String key, String partUploadId) throws IOException {
+        String objectKey = objectKey(key);
+        try {
+            // As partes e os ETags ficam no S3: qualquer nó pode concluir o upload
+            List<CompletedPart> parts = new ArrayList<>();
+            for (Part part : client.listPartsPaginator(r -> r.bucket(bucket).key(objectKey).uploadId(partUploadId)).parts()) {
+                parts.add(CompletedPart.builder().partNumber(part.partNumber()).eTag(part.eTag()).build());
+            }
+            client.completeMultipartUpload(r -> r.bucket(bucket).key(objectKey).uploadId(partUploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()));
+        } catch (SdkException e) {
+            throw new IOException("Erro ao concluir o upload de " + objectKey + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void abortPartUpload(String key, String partUploadId) throws IOException {
+        try {
+            client.abortMultipartUpload(r -> r.bucket(bucket).key(objectKey(key)).uploadId(partUploadId));
+        } catch (NoSuchUploadException e) {
+            // Já concluído ou abortado
+        } catch (SdkException e) {
+            throw new IOException("Erro ao abortar o upload de " + objectKey(key) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<StorageObject> stat(String key) throws IOException {
+        try {
+            HeadObjectResponse head = client.headObject(r -> r.bucket(bucket).key(objectKey(key)));
+            return Optional.of(new StorageObject(head.contentLength(), head.lastModified()));
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException("Erro ao consultar " + objectKey(key) + ": " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Erro ao consultar " + objectKey(key) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return client.getObject(r -> r.bucket(bucket).key(objectKey(key)));
+        } catch (SdkException e) {
+            throw new IOException("Erro ao ler " + objectKey(key) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long end) throws IOException {
+        try {
+            return client.getObject(r -> r.bucket(bucket).key(objectKey(key)).range("bytes=" + start + "-" + end));
+        } catch (SdkException e) {
+            throw new IOException("Erro ao ler " + objectKey(key) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(r -> r.bucket(bucket).key(objectKey(key)));
+        } catch (SdkException e) {
+            throw new IOException("Erro ao apagar " + objectKey(key) + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void move(String fromKey, String toKey) throws IOException {
+        // Cópia no próprio S3, sem passar os bytes pela JVM
+        String source = objectKey(fromKey);
+        String target = objectKey(toKey);
+        try {
+            long size = client.headObject(r -> r.bucket(bucket).key(source)).contentLength();
+            if (size <= MAX_COPY_SIZE) {
+                client.copyObject(r -> r.sourceBucket(bucket).sourceKey(source)
+                        .destinationBucket(bucket).destinationKey(target));
+            } else {
+                copyMultipart(source, target, size);
+            }
+            client.deleteObject(r -> r.bucket(bucket).key(source));
+        } catch (SdkException e) {
+            throw new IOException("Erro ao mover " + source + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * CopyObject só aceita objetos até 5 GB: acima disso a cópia é um multipart upload cujas partes são
+     * intervalos do objeto original (UploadPartCopy).
+     */
+    private void copyMultipart(String source, String target, long size) {
+        long copyPartSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        String uploadId = client.createMultipartUpload(r -> r.bucket(bucket).key(target)).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            int partNumber = 1;
+            for (long start = 0; start < size; start += copyPartSize, partNumber++) {
+                int number = partNumber;
+                String range = "bytes=" + start + "-" + (Math.min(start + copyPartSize, size) - 1);
+                String etag = client.uploadPartCopy(r -> r.sourceBucket(bucket).sourceKey(source)
+                        .destinationBucket(bucket).destinationKey(target).uploadId(uploadId)
+                        .partNumber(number).copySourceRange(range)).copyPartResult().eTag();
+                parts.add(CompletedPart.builder().partNumber(number).eTag(etag).build());
+            }
+            client.completeMultipartUpload(r -> r.bucket(bucket).key(target).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()));
+        } catch (RuntimeException e) {
+            try {
+                client.abortMultipartUpload(r -> r.bucket(bucket).key(target).uploadId(uploadId));
+            } catch (SdkException abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<StorageEntry> list(String keyPrefix) throws IOException {
+        List<StorageEntry> entries = new ArrayList<>();
+        try {
+            // O S3 devolve as chaves por ordem; o paginador pede as páginas seguintes à medida que são lidas
+            for (S3Object object : client.listObjectsV2Paginator(r -> r.bucket(bucket).prefix(objectKey(keyPrefix))).contents()) {
+                entries.add(new StorageEntry(object.key().substring(prefix.length()), object.size(), object.lastModified()));
+            }
+        } catch (SdkException e) {
+            throw new IOException("Erro ao listar " + objectKey(keyPrefix) + ": " + e.getMessage(), e);
+        }
+        return entries;
+    }
+
+    @Override
+    public String location(String key) {
+        return "s3://" + bucket + "/" + objectKey(key);
+    }
+
+    @Override
+    public Optional<URI> presignedGet(String key, String fileName, String contentType, Duration ttl) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey(key))
+                .responseContentType(contentType)
+                .responseContentDisposition(ContentDisposition.inline()
+                        .filename(fileName, StandardCharsets.UTF_8).build().toString())
+                .build();
+        try {
+            return Optional.of(presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(ttl)
+                    .getObjectRequest(request)
+                    .build()).url().toURI());
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        presigner.close();
+        client.close();
+    }
+
+    private String objectKey(String key) {
+        return prefix + key;
+    }
+}
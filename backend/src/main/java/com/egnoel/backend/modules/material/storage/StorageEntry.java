@@ -0,0 +1,9 @@
+package com.egnoel.backend.modules.material.storage;
+
+import java.time.Instant;
+
+/**
+ * Um objeto encontrado ao listar a MaterialStorage.
+ */
+public record StorageEntry(String key, long size, Instant lastModified) {
+}
@@ -0,0 +1,9 @@
+package com.egnoel.backend.modules.material.storage;
+
+import java.time.Instant;
+
+/**
+ * Metadados de um objeto guardado numa MaterialStorage.
+ */
+public record StorageObject(long size, Instant lastModified) {
+}
@@ -0,0 +1,11 @@
+package com.egnoel.backend.modules.material.storage;
+
+/**
+ * Resultado de gravar um upload na loja de blobs.
+ * @param hash SHA-256 do conteúdo, em hexadecimal
+ * @param location Onde o conteúdo ficou guardado (caminho ou URI, ver MaterialStorage.location)
+ * @param size Tamanho em bytes
+ * @param deduplicated Verdadeiro se o conteúdo já existia e o upload não ocupou espaço novo
+ */
+public record StoredBlob(String hash, String location, long size, boolean deduplicated) {
+}
@@ -1,9 +1,14 @@
 package com.egnoel.backend.modules.quiz.controller;
 
 import com.egnoel.backend.modules.quiz.dto.AnswerCreateDTO;
+import com.egnoel.backend.modules.quiz.dto.AnswerItemDTO;
 import com.egnoel.backend.modules.quiz.dto.AnswerResponseDTO;
+import com.egnoel.backend.modules.quiz.dto.QuestionStatsDTO;
+import com.egnoel.backend.modules.quiz.dto.SubmissionReceiptDTO;
 import com.egnoel.backend.modules.quiz.dto.UpdateAnswerScoreDTO;
+import com.egnoel.backend.modules.quiz.service.AnswerItemService;
 import com.egnoel.backend.modules.quiz.service.AnswerService;
+import com.egnoel.backend.modules.quiz.submission.SubmissionIngestService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -16,10 +21,15 @@ import java.util.List;
 @RequestMapping("/api/quizzes/{quizId}/answers")
 public class AnswerController {
     private final AnswerService answerService;
+    private final SubmissionIngestService submissionIngestService;
+    private final AnswerItemService answerItemService;
 
     @Autowired
-    public AnswerController(AnswerService answerService) {
+    public AnswerController(AnswerService answerService, SubmissionIngestService submissionIngestService,
+                            AnswerItemService answerItemService) {
         this.answerService = answerService;
+        this.submissionIngestService = submissionIngestService;
+        this.answerItemService = answerItemService;
     }
 
     @PostMapping
@@ -29,6 +39,22 @@ public class AnswerController {
         return ResponseEntity.ok(answerService.submitAnswer(quizId, dto));
     }
 
+    /**
+     * Aceita a submissão para gravação em segundo plano e responde com um recibo (ver SubmissionIngestService).
+     */
+    @PostMapping("/async")
+    @PreAuthorize("hasRole('STUDENT')")
+    public ResponseEntity<SubmissionReceiptDTO> submitAnswerAsync(@PathVariable Long quizId,
+                                                                  @Valid @RequestBody AnswerCreateDTO dto) {
+        return ResponseEntity.accepted().body(submissionIngestService.submit(quizId, dto));
+    }
+
+    @GetMapping("/receipts/{receiptId}")
+    @PreAuthorize("hasRole('STUDENT')")
+    public ResponseEntity<SubmissionReceiptDTO> getReceipt(@PathVariable Long quizId, @PathVariable String receiptId) {
+        return ResponseEntity.ok(submissionIngestService.getReceipt(quizId, receiptId));
+    }
+
     @PutMapping("/{answerId}")
     @PreAuthorize("hasRole('TEACHER')")
     public ResponseEntity<AnswerResponseDTO> updateAnswerScore(@PathVariable Long quizId,
@@ -42,4 +68,16 @@ public class AnswerController {
     public ResponseEntity<List<AnswerResponseDTO>> listAnswers(@PathVariable Long quizId) {
         return ResponseEntity.ok(answerService.listAnswers(quizId));
     }
+
+    @GetMapping("/{answerId}/items")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<List<AnswerItemDTO>> listAnswerItems(@PathVariable Long quizId, @PathVariable Long answerId) {
+        return ResponseEntity.ok(answerItemService.listItems(quizId, answerId));
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('TEACHER')")
+    public ResponseEntity<List<QuestionStatsDTO>> questionStats(@PathVariable Long quizId) {
+        return ResponseEntity.ok(answerItemService.questionStats(quizId));
+    }
 }
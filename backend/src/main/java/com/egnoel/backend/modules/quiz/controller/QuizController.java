@@ -3,6 +3,7 @@ package com.egnoel.backend.modules.quiz.controller;
 import com.egnoel.backend.modules.quiz.dto.QuizCreateDTO;
 import com.egnoel.backend.modules.quiz.dto.QuizResponseDTO;
 import com.egnoel.backend.modules.quiz.dto.QuizUpdateDTO;
+import com.egnoel.backend.modules.quiz.service.PendingQuizService;
 import com.egnoel.backend.modules.quiz.service.QuizService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,10 +18,12 @@ import java.util.List;
 @RequestMapping("/api/quizzes")
 public class QuizController {
     private final QuizService quizService;
+    private final PendingQuizService pendingQuizService;
 
     @Autowired
-    public QuizController(QuizService quizService) {
+    public QuizController(QuizService quizService, PendingQuizService pendingQuizService) {
         this.quizService = quizService;
+        this.pendingQuizService = pendingQuizService;
     }
 
     @PostMapping
@@ -47,4 +50,10 @@ public class QuizController {
     public ResponseEntity<List<QuizResponseDTO>> listQuizzes() {
         return ResponseEntity.ok(quizService.listQuizzes());
     }
+
+    @GetMapping("/pending")
+    @PreAuthorize("hasAnyRole('TEACHER', 'STUDENT')")
+    public ResponseEntity<List<QuizResponseDTO>> listPendingQuizzes() {
+        return ResponseEntity.ok(pendingQuizService.listPendingQuizzes());
+    }
 }
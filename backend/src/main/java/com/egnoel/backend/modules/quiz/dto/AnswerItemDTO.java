@@ -0,0 +1,15 @@
+package com.egnoel.backend.modules.quiz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnswerItemDTO {
+    private Long questionId;
+    private String response;
+    // Nulo enquanto a pergunta (DISCURSIVA) não for pontuada pelo professor
+    private Integer points;
+}
@@ -0,0 +1,21 @@
+package com.egnoel.backend.modules.quiz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultados de uma pergunta em todas as submissões de um questionário.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuestionStatsDTO {
+    private Long questionId;
+    private Long responses;
+    // Respostas com pontos atribuídos
+    private Long correct;
+    // Respostas sem pontuação (perguntas DISCURSIVA)
+    private Long ungraded;
+    private Long totalPoints;
+}
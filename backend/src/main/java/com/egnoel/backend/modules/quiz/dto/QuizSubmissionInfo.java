@@ -0,0 +1,22 @@
+package com.egnoel.backend.modules.quiz.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * O necessário para validar e corrigir uma submissão, projetado diretamente da consulta.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuizSubmissionInfo {
+    private Long id;
+    private LocalDateTime terminationDate;
+    private Long subjectId;
+    private Long classeId;
+    private Long teacherId;
+    private long questionsVersion;
+}
@@ -0,0 +1,22 @@
+package com.egnoel.backend.modules.quiz.dto;
+
+import com.egnoel.backend.modules.quiz.submission.SubmissionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Recibo de uma submissão assíncrona: QUEUED enquanto espera pela gravação, STORED com o id da resposta
+ * gravada, ou REJECTED com o motivo.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SubmissionReceiptDTO {
+    private String receiptId;
+    private Long quizId;
+    private SubmissionStatus status;
+    private Long answerId;
+    private Integer score;
+    private String message;
+}
@@ -3,9 +3,20 @@ package com.egnoel.backend.modules.quiz.dto;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class UpdateAnswerScoreDTO {
     @NotNull(message = "A pontuação é obrigatória")
     private Integer score;
 
+    // Pontos por pergunta (ex.: as DISCURSIVA); as perguntas omitidas ficam como estão
+    private List<ItemPointsDTO> items;
+
+    @Data
+    public static class ItemPointsDTO {
+        private Long questionId;
+        private Integer points;
+
+    }
 }
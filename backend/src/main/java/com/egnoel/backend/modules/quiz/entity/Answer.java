@@ -11,12 +11,20 @@ import java.time.LocalDateTime;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "answers")
+@Table(name = "answers", indexes = {
+        // Uma submissão por aluno em cada quiz (também serve o anti-join dos quizzes pendentes)
+        @Index(name = Answer.UK_QUIZ_STUDENT, columnList = "quiz_id, student_id", unique = true),
+        // Consulta dos recibos das submissões assíncronas e reprodução idempotente do journal
+        @Index(name = "uk_answers_receipt", columnList = "receipt_id", unique = true)
+})
 @Data
 public class Answer {
+    public static final String UK_QUIZ_STUDENT = "uk_answers_quiz_student";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "answers_id")
+    @TableGenerator(name = "answers_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "answers", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -35,4 +43,12 @@ public class Answer {
 
     @Column(updatable = false)
     private LocalDateTime submittedAt = LocalDateTime.now();
+
+    // Verdadeiro enquanto a resposta tiver perguntas DISCURSIVA por corrigir pelo professor
+    @Column(name = "pending_review", nullable = false)
+    private boolean pendingReview = false;
+
+    // Recibo devolvido pela submissão assíncrona (SubmissionIngestService); nulo nas submissões síncronas
+    @Column(name = "receipt_id", length = 36, updatable = false)
+    private String receiptId;
 }
@@ -0,0 +1,40 @@
+package com.egnoel.backend.modules.quiz.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A resposta de um aluno a uma pergunta. As linhas são inseridas em lote (AnswerItemService), nunca pela entidade.
+ * <p>
+ * question_id não tem chave estrangeira: apagar uma pergunta não apaga nem bloqueia as respostas já dadas.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "answer_items", indexes = {
+        @Index(name = "idx_answer_items_answer", columnList = "answer_id"),
+        @Index(name = "idx_answer_items_question", columnList = "question_id, points")
+})
+@Data
+public class AnswerItem {
+
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "answer_id", nullable = false, updatable = false)
+    private Answer answer;
+
+    @Column(name = "question_id", nullable = false, updatable = false)
+    private Long questionId;
+
+    @Lob
+    @Column(updatable = false)
+    private String response;
+
+    // Nulo nas perguntas DISCURSIVA
+    @Column
+    private Integer points;
+}
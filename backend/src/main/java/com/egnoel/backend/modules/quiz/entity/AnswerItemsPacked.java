@@ -0,0 +1,33 @@
+package com.egnoel.backend.modules.quiz.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * As respostas por pergunta de uma submissão com muitas perguntas, numa só linha codificada com AnswerItemCodec
+ * em vez de uma linha de answer_items por pergunta (ver quiz.answer-items.pack-above).
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "answer_items_packed")
+@Data
+public class AnswerItemsPacked {
+
+    @Id
+    @Column(name = "answer_id")
+    private Long answerId;
+
+    @Column(name = "item_count", nullable = false)
+    private int itemCount;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] data;
+}
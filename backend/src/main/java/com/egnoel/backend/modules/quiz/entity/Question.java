@@ -13,7 +13,9 @@ import lombok.NoArgsConstructor;
 public class Question {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "questions_id")
+    @TableGenerator(name = "questions_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "questions", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
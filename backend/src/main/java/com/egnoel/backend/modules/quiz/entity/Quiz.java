@@ -15,12 +15,17 @@ import java.util.List;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "quiz")
+@Table(name = "quiz", indexes = {
+        @Index(name = "idx_quiz_teacher_creation", columnList = "teacher_id, creation_date"),
+        @Index(name = "idx_quiz_classe_creation", columnList = "classe_id, creation_date")
+})
 @Data
 public class Quiz {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "quiz_id")
+    @TableGenerator(name = "quiz_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "quiz", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -45,4 +50,14 @@ public class Quiz {
 
     @OneToMany(mappedBy = "quiz", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Question> questions = new ArrayList<>();
+
+    // Respostas por corrigir; mantido por incrementos atómicos (QuizRepository.adjustPendingReviewCount),
+    // por isso nunca é escrito a partir da entidade
+    @Column(name = "pending_review_count", nullable = false, updatable = false)
+    private int pendingReviewCount = 0;
+
+    // Incrementada a cada alteração das perguntas (QuizRepository.bumpQuestionsVersion); invalida o gabarito
+    // compilado em cache (AnswerKeyCache)
+    @Column(name = "questions_version", nullable = false, updatable = false)
+    private long questionsVersion = 0;
 }
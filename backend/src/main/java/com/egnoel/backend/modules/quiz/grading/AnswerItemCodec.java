@@ -0,0 +1,104 @@
+package com.egnoel.backend.modules.quiz.grading;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codificação binária compacta de uma lista de GradedItem, usada no journal de submissões e nas respostas de
+ * questionários muito grandes (tabela answer_items_packed).
+ * <p>
+ * Formato: [n.º de itens] e, por item, [id da pergunta menos o anterior, em zigzag][pontos + 1, 0 se nulo]
+ * [tamanho da resposta + 1, 0 se nula][resposta em UTF-8], todos os inteiros em varint. Os ids de perguntas do
+ * mesmo questionário são próximos, por isso a diferença ocupa normalmente um byte.
+ */
+public final class AnswerItemCodec {
+    private static final int MAX_ITEMS = 1 << 20;
+
+    private AnswerItemCodec() {
+    }
+
+    public static byte[] encode(List<GradedItem> items) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 + items.size() * 8);
+        writeVarint(out, items.size());
+        long previous = 0;
+        for (GradedItem item : items) {
+            long delta = item.questionId() - previous;
+            writeVarint(out, (delta << 1) ^ (delta >> 63));
+            previous = item.questionId();
+            writeVarint(out, item.points() == null ? 0 : Integer.toUnsignedLong(item.points()) + 1);
+            if (item.response() == null) {
+                writeVarint(out, 0);
+            } else {
+                byte[] response = item.response().getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, response.length + 1L);
+                out.write(response, 0, response.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException Se os dados estiverem truncados ou corrompidos
+     */
+    public static List<GradedItem> decode(byte[] data) {
+        Reader in = new Reader(data);
+        long count = in.readVarint();
+        if (count > MAX_ITEMS) {
+            throw new IllegalArgumentException("número de itens inválido " + count);
+        }
+        List<GradedItem> items = new ArrayList<>((int) count);
+        long questionId = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = in.readVarint();
+            questionId += (zigzag >>> 1) ^ -(zigzag & 1);
+            long points = in.readVarint();
+            long length = in.readVarint();
+            String response = length == 0 ? null : in.readString(length - 1);
+            items.add(new GradedItem(questionId, response, points == 0 ? null : (int) (points - 1)));
+        }
+        return items;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("itens truncados");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("varint inválido");
+        }
+
+        String readString(long length) {
+            if (length > data.length - position) {
+                throw new IllegalArgumentException("itens truncados");
+            }
+            String value = new String(data, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+}
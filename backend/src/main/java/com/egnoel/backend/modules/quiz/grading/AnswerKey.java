@@ -0,0 +1,152 @@
+package com.egnoel.backend.modules.quiz.grading;
+
+import com.egnoel.backend.modules.quiz.dto.AnswerCreateDTO;
+import com.egnoel.backend.modules.quiz.entity.Question;
+import com.egnoel.backend.modules.quiz.entity.QuestionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Gabarito compilado de um questionário: para cada pergunta, a resposta certa já normalizada, a pontuação e o tipo.
+ * Imutável depois de criado, por isso é partilhado entre pedidos sem sincronização.
+ * <p>
+ * As perguntas ficam numa tabela de endereçamento aberto indexada pelo id (long primitivo, sem Long nem Map.Entry),
+ * com capacidade de pelo menos o dobro das perguntas para as sondagens serem curtas.
+ */
+public final class AnswerKey {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long version;
+    private final long[] slots;
+    // Posição de cada pergunta nos arrays abaixo; válido onde slots não é EMPTY
+    private final int[] positions;
+    private final String[] correctAnswers;
+    private final int[] scores;
+    private final QuestionType[] types;
+    private final boolean hasDiscursive;
+
+    private AnswerKey(long version, List<Question> questions) {
+        this.version = version;
+        int capacity = Integer.highestOneBit(Math.max(2, questions.size()) * 2 - 1) << 1;
+        this.slots = new long[capacity];
+        Arrays.fill(slots, EMPTY);
+        this.positions = new int[capacity];
+        this.correctAnswers = new String[questions.size()];
+        this.scores = new int[questions.size()];
+        this.types = new QuestionType[questions.size()];
+
+        boolean discursive = false;
+        for (int position = 0; position < questions.size(); position++) {
+            Question question = questions.get(position);
+            int slot = slotFor(question.getId());
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = question.getId();
+            positions[slot] = position;
+            correctAnswers[position] = question.getCorrectAnswer() != null ? normalize(question.getCorrectAnswer()) : null;
+            scores[position] = question.getScore() != null ? question.getScore() : 0;
+            types[position] = question.getType();
+            discursive |= question.getType() == QuestionType.DISCURSIVA;
+        }
+        this.hasDiscursive = discursive;
+    }
+
+    /**
+     * @param version O Quiz.questionsVersion com que as perguntas foram lidas
+     */
+    public static AnswerKey compile(long version, List<Question> questions) {
+        return new AnswerKey(version, questions);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int questionCount() {
+        return correctAnswers.length;
+    }
+
+    /**
+     * Há perguntas que só o professor pode pontuar.
+     */
+    public boolean hasDiscursive() {
+        return hasDiscursive;
+    }
+
+    /**
+     * @return A posição da pergunta (0 a questionCount - 1), ou -1 se não pertencer ao questionário
+     */
+    public int indexOf(long questionId) {
+        int mask = slots.length - 1;
+        for (int slot = slotFor(questionId); ; slot = (slot + 1) & mask) {
+            long id = slots[slot];
+            // Antes da comparação: procurar o id Long.MIN_VALUE (= EMPTY) devolvia a posição de um slot vazio
+            if (id == EMPTY) {
+                return -1;
+            }
+            if (id == questionId) {
+                return positions[slot];
+            }
+        }
+    }
+
+    /**
+     * Pontuação da resposta à pergunta na posição dada: a pontuação da pergunta se for de correção automática e a
+     * resposta coincidir com a certa (sem distinguir maiúsculas nem espaços nas pontas), senão 0.
+     */
+    public int score(int position, String answer) {
+        String correct = correctAnswers[position];
+        if (types[position] == QuestionType.DISCURSIVA || correct == null || answer == null) {
+            return 0;
+        }
+        return correct.equals(normalize(answer)) ? scores[position] : 0;
+    }
+
+    /**
+     * Corrige uma submissão numa única passagem: cada pergunta pontua uma só vez, mesmo que venha repetida
+     * (conta a primeira resposta).
+     * @throws RuntimeException Se alguma pergunta não pertencer ao questionário
+     */
+    public GradedSubmission grade(List<AnswerCreateDTO.QuestionAnswerDTO> answers) {
+        BitSet answered = new BitSet(questionCount());
+        int totalScore = 0;
+        StringBuilder answersString = new StringBuilder();
+        List<GradedItem> items = new ArrayList<>(Math.min(answers.size(), questionCount()));
+
+        for (AnswerCreateDTO.QuestionAnswerDTO answerDTO : answers) {
+            int position = answerDTO.getQuestionId() != null ? indexOf(answerDTO.getQuestionId()) : -1;
+            if (position < 0) {
+                throw new RuntimeException("Pergunta não encontrada: " + answerDTO.getQuestionId());
+            }
+
+            answersString.append("Q").append(answerDTO.getQuestionId()).append(": ").append(answerDTO.getAnswer()).append("; ");
+
+            // Correção automática para MULTIPLA_ESCOLHA e VERDADEIRO_FALSO
+            if (!answered.get(position)) {
+                answered.set(position);
+                // Perguntas DISCURSIVA só são pontuadas pelo professor
+                Integer points = types[position] == QuestionType.DISCURSIVA ? null : score(position, answerDTO.getAnswer());
+                if (points != null) {
+                    totalScore += points;
+                }
+                items.add(new GradedItem(answerDTO.getQuestionId(), answerDTO.getAnswer(), points));
+            }
+        }
+        return new GradedSubmission(answersString.toString(), totalScore, hasDiscursive, items);
+    }
+
+    static String normalize(String answer) {
+        return answer.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private int slotFor(long questionId) {
+        // Mistura os bits (ids alocados em blocos são sequenciais)
+        long h = questionId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (slots.length - 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.egnoel.backend.modules.quiz.grading;
+
+import com.egnoel.backend.modules.quiz.entity.Quiz;
+import com.egnoel.backend.modules.quiz.repository.QuestionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Gabaritos compilados por questionário (chave: id do questionário).
+ * Cada gabarito guarda o Quiz.questionsVersion com que foi compilado; QuestionService incrementa essa versão na
+ * mesma transação em que altera as perguntas, por isso um gabarito de versão diferente da do questionário
+ * é recompilado e nunca é preciso invalidar entradas noutros nós.
+ */
+@Component
+public class AnswerKeyCache {
+    private final QuestionRepository questionRepository;
+    private final Cache<Long, AnswerKey> keys;
+
+    @Autowired
+    public AnswerKeyCache(QuestionRepository questionRepository, MeterRegistry meterRegistry,
+                          @Value("${quiz.answer-key-cache.max-size:10000}") long maxSize,
+                          @Value("${quiz.answer-key-cache.ttl:PT1H}") Duration ttl) {
+        this.questionRepository = questionRepository;
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, keys, "quiz.answer-keys");
+    }
+
+    /**
+     * O gabarito do questionário, compilado a partir das perguntas só se o da cache for de outra versão.
+     * @param quiz O questionário já carregado (a versão vem dele, sem consulta extra)
+     */
+    public AnswerKey get(Quiz quiz) {
+        return get(quiz.getId(), quiz.getQuestionsVersion());
+    }
+
+    /**
+     * @param questionsVersion O Quiz.questionsVersion atual do questionário
+     */
+    public AnswerKey get(Long quizId, long questionsVersion) {
+        AnswerKey cached = keys.getIfPresent(quizId);
+        if (cached != null && cached.version() == questionsVersion) {
+            return cached;
+        }
+        AnswerKey compiled = AnswerKey.compile(questionsVersion, questionRepository.findByQuizId(quizId));
+        // Não substitui um gabarito mais recente compilado entretanto por outro pedido
+        keys.asMap().merge(quizId, compiled,
+                (current, candidate) -> current.version() > candidate.version() ? current : candidate);
+        return compiled;
+    }
+}
@@ -0,0 +1,8 @@
+package com.egnoel.backend.modules.quiz.grading;
+
+/**
+ * A resposta a uma pergunta, já corrigida.
+ * @param points Os pontos atribuídos; nulo nas perguntas DISCURSIVA, que só o professor pontua
+ */
+public record GradedItem(long questionId, String response, Integer points) {
+}
@@ -0,0 +1,12 @@
+package com.egnoel.backend.modules.quiz.grading;
+
+import java.util.List;
+
+/**
+ * Uma submissão corrigida pelo gabarito.
+ * @param answers As respostas no formato guardado em Answer.answers
+ * @param pendingReview Há perguntas DISCURSIVA por pontuar pelo professor
+ * @param items Uma por pergunta respondida, pela ordem da submissão (gravadas em answer_items)
+ */
+public record GradedSubmission(String answers, int score, boolean pendingReview, List<GradedItem> items) {
+}
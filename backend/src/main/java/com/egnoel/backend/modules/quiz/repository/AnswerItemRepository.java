@@ -0,0 +1,24 @@
+package com.egnoel.backend.modules.quiz.repository;
+
+import com.egnoel.backend.modules.quiz.dto.AnswerItemDTO;
+import com.egnoel.backend.modules.quiz.dto.QuestionStatsDTO;
+import com.egnoel.backend.modules.quiz.entity.AnswerItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface AnswerItemRepository extends JpaRepository<AnswerItem, Long> {
+
+    // Os ids são reservados pela ordem da submissão
+    @Query("SELECT new com.egnoel.backend.modules.quiz.dto.AnswerItemDTO(i.questionId, i.response, i.points) " +
+            "FROM AnswerItem i WHERE i.answer.id = :answerId ORDER BY i.id")
+    List<AnswerItemDTO> findItemsByAnswerId(Long answerId);
+
+    // Agregado na base de dados, sem ler as respostas
+    @Query("SELECT new com.egnoel.backend.modules.quiz.dto.QuestionStatsDTO(i.questionId, COUNT(i), " +
+            "SUM(CASE WHEN i.points > 0 THEN 1 ELSE 0 END), SUM(CASE WHEN i.points IS NULL THEN 1 ELSE 0 END), " +
+            "COALESCE(SUM(i.points), 0)) " +
+            "FROM AnswerItem i WHERE i.answer.quiz.id = :quizId GROUP BY i.questionId ORDER BY i.questionId")
+    List<QuestionStatsDTO> findQuestionStatsByQuizId(Long quizId);
+}
@@ -0,0 +1,14 @@
+package com.egnoel.backend.modules.quiz.repository;
+
+import com.egnoel.backend.modules.quiz.entity.AnswerItemsPacked;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface AnswerItemsPackedRepository extends JpaRepository<AnswerItemsPacked, Long> {
+
+    @Query("SELECT p.data FROM AnswerItemsPacked p WHERE p.answerId IN " +
+            "(SELECT a.id FROM Answer a WHERE a.quiz.id = :quizId)")
+    List<byte[]> findDataByQuizId(Long quizId);
+}
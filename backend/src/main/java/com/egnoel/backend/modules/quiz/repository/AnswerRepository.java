@@ -1,11 +1,33 @@
 package com.egnoel.backend.modules.quiz.repository;
 
+import com.egnoel.backend.modules.quiz.dto.AnswerResponseDTO;
 import com.egnoel.backend.modules.quiz.entity.Answer;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface AnswerRepository extends JpaRepository<Answer, Long> {
     List<Answer> findByQuizId(Long quizId);
     List<Answer> findByStudentId(Long studentId);
+    boolean existsByQuizIdAndStudentId(Long quizId, Long studentId);
+    boolean existsByIdAndQuizId(Long id, Long quizId);
+
+    // Só as colunas da listagem, com o nome do aluno na mesma consulta
+    @Query("SELECT new com.egnoel.backend.modules.quiz.dto.AnswerResponseDTO(a.id, a.answers, a.score, a.submittedAt, s.firstName) " +
+            "FROM Answer a JOIN a.student s WHERE a.quiz.id = :quizId")
+    List<AnswerResponseDTO> findResponsesByQuizId(Long quizId);
+
+    @Query("SELECT a.student.id FROM Answer a WHERE a.quiz.id = :quizId")
+    List<Long> findStudentIdsByQuizId(Long quizId);
+
+    @Query("SELECT a.id FROM Answer a WHERE a.receiptId = :receiptId AND a.quiz.id = :quizId AND a.student.id = :studentId")
+    Optional<Long> findIdByReceipt(String receiptId, Long quizId, Long studentId);
+
+    // Bloqueia a linha: duas correções simultâneas não podem decrementar o contador de pendentes duas vezes
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Answer> findWithLockById(Long id);
 }
@@ -1,13 +1,64 @@
 package com.egnoel.backend.modules.quiz.repository;
 
+import com.egnoel.backend.modules.quiz.dto.QuizResponseDTO;
+import com.egnoel.backend.modules.quiz.dto.QuizSubmissionInfo;
 import com.egnoel.backend.modules.quiz.entity.Quiz;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface QuizRepository extends JpaRepository<Quiz, Long> {
     List<Quiz> findByTeacherId(Long teacherId);
     List<Quiz> findBySubjectId(Long subjectId);
     List<Quiz> findByClasseId(Long classeId);
     List<Quiz> findByClasseIdIn(List<Long> classeIds);
+
+    /**
+     * Quizzes abertos das turmas do aluno sem submissão dele: um único anti-join,
+     * resolvido pelo índice answers(quiz_id, student_id).
+     */
+    @Query("SELECT new com.egnoel.backend.modules.quiz.dto.QuizResponseDTO(q.id, q.title, q.creationDate, " +
+            "q.terminationDate, t.firstName, s.name, cl.name) " +
+            "FROM Quiz q JOIN q.classe cl JOIN cl.students st JOIN q.teacher t JOIN q.subject s " +
+            "WHERE st.id = :studentId " +
+            "AND (q.terminationDate IS NULL OR q.terminationDate > :now) " +
+            "AND NOT EXISTS (SELECT a.id FROM Answer a WHERE a.quiz.id = q.id AND a.student.id = :studentId) " +
+            "ORDER BY q.terminationDate ASC NULLS LAST, q.id ASC")
+    List<QuizResponseDTO> findPendingForStudent(Long studentId, LocalDateTime now);
+
+    /**
+     * Quizzes do professor com respostas DISCURSIVA por corrigir, lidos do contador mantido em cada quiz.
+     */
+    @Query("SELECT new com.egnoel.backend.modules.quiz.dto.QuizResponseDTO(q.id, q.title, q.creationDate, " +
+            "q.terminationDate, t.firstName, s.name, cl.name) " +
+            "FROM Quiz q JOIN q.teacher t JOIN q.subject s LEFT JOIN q.classe cl " +
+            "WHERE t.id = :teacherId AND q.pendingReviewCount > 0 " +
+            "ORDER BY q.creationDate DESC, q.id DESC")
+    List<QuizResponseDTO> findPendingReviewForTeacher(Long teacherId);
+
+    /**
+     * Soma delta ao contador de respostas por corrigir numa única instrução, sem perder atualizações concorrentes.
+     */
+    @Modifying
+    @Query("UPDATE Quiz q SET q.pendingReviewCount = q.pendingReviewCount + :delta WHERE q.id = :quizId")
+    int adjustPendingReviewCount(Long quizId, int delta);
+
+    /**
+     * O necessário para validar uma submissão, numa consulta pela chave primária sem carregar entidades.
+     */
+    @Query("SELECT new com.egnoel.backend.modules.quiz.dto.QuizSubmissionInfo(q.id, q.terminationDate, s.id, " +
+            "cl.id, t.id, q.questionsVersion) " +
+            "FROM Quiz q JOIN q.subject s JOIN q.teacher t LEFT JOIN q.classe cl WHERE q.id = :quizId")
+    Optional<QuizSubmissionInfo> findSubmissionInfo(Long quizId);
+
+    /**
+     * Marca as perguntas do quiz como alteradas: os gabaritos compilados com a versão anterior deixam de valer.
+     */
+    @Modifying
+    @Query("UPDATE Quiz q SET q.questionsVersion = q.questionsVersion + 1 WHERE q.id = :quizId")
+    int bumpQuestionsVersion(Long quizId);
 }
@@ -0,0 +1,192 @@
+package com.egnoel.backend.modules.quiz.service;
+
+import com.egnoel.backend.core.util.SequenceBlockAllocator;
+import com.egnoel.backend.modules.quiz.dto.AnswerItemDTO;
+import com.egnoel.backend.modules.quiz.dto.QuestionStatsDTO;
+import com.egnoel.backend.modules.quiz.entity.AnswerItemsPacked;
+import com.egnoel.backend.modules.quiz.grading.AnswerItemCodec;
+import com.egnoel.backend.modules.quiz.grading.GradedItem;
+import com.egnoel.backend.modules.quiz.repository.AnswerItemRepository;
+import com.egnoel.backend.modules.quiz.repository.AnswerItemsPackedRepository;
+import com.egnoel.backend.modules.quiz.repository.AnswerRepository;
+import com.egnoel.backend.modules.quiz.repository.QuizRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Respostas por pergunta de cada submissão (answer_items), para corrigir, recorrigir e analisar uma pergunta sem
+ * interpretar o texto de Answer.answers.
+ * <p>
+ * Submissões com mais de quiz.answer-items.pack-above perguntas ficam numa só linha de answer_items_packed
+ * (AnswerItemCodec); as leituras abaixo juntam as duas formas.
+ */
+@Service
+public class AnswerItemService {
+    private static final String INSERT_ITEM =
+            "INSERT INTO answer_items (id, answer_id, question_id, response, points) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_PACKED =
+            "INSERT INTO answer_items_packed (answer_id, item_count, data) VALUES (?, ?, ?)";
+    private static final String UPDATE_POINTS =
+            "UPDATE answer_items SET points = ? WHERE answer_id = ? AND question_id = ?";
+
+    private final AnswerItemRepository answerItemRepository;
+    private final AnswerItemsPackedRepository answerItemsPackedRepository;
+    private final AnswerRepository answerRepository;
+    private final QuizRepository quizRepository;
+    private final SequenceBlockAllocator sequenceBlockAllocator;
+    private final JdbcTemplate jdbcTemplate;
+    private final int packAbove;
+
+    @Autowired
+    public AnswerItemService(AnswerItemRepository answerItemRepository,
+                             AnswerItemsPackedRepository answerItemsPackedRepository,
+                             AnswerRepository answerRepository, QuizRepository quizRepository,
+                             SequenceBlockAllocator sequenceBlockAllocator, JdbcTemplate jdbcTemplate,
+                             @Value("${quiz.answer-items.pack-above:200}") int packAbove) {
+        this.answerItemRepository = answerItemRepository;
+        this.answerItemsPackedRepository = answerItemsPackedRepository;
+        this.answerRepository = answerRepository;
+        this.quizRepository = quizRepository;
+        this.sequenceBlockAllocator = sequenceBlockAllocator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.packAbove = packAbove;
+    }
+
+    /**
+     * Grava as respostas por pergunta de várias submissões já inseridas em answers, na transação de quem chama:
+     * um único batch para as linhas de answer_items (com um só bloco de ids) e outro para as codificadas.
+     * @param itemsByAnswer Os itens de cada submissão, pelo id da resposta
+     */
+    public void write(Map<Long, List<GradedItem>> itemsByAnswer) {
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> packed = new ArrayList<>();
+        itemsByAnswer.forEach((answerId, items) -> {
+            if (packAbove > 0 && items.size() > packAbove) {
+                packed.add(new Object[]{answerId, items.size(), AnswerItemCodec.encode(items)});
+            } else {
+                for (GradedItem item : items) {
+                    rows.add(new Object[]{null, answerId, item.questionId(), item.response(), item.points()});
+                }
+            }
+        });
+
+        if (!rows.isEmpty()) {
+            long firstId = sequenceBlockAllocator.allocate("answer_items", rows.size(), this::maxItemId);
+            for (int i = 0; i < rows.size(); i++) {
+                rows.get(i)[0] = firstId + i;
+            }
+            jdbcTemplate.batchUpdate(INSERT_ITEM, rows,
+                    new int[]{Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.CLOB, Types.INTEGER});
+        }
+        if (!packed.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_PACKED, packed, new int[]{Types.BIGINT, Types.INTEGER, Types.BLOB});
+        }
+    }
+
+    /**
+     * Atribui os pontos dados pelo professor a perguntas de uma submissão, na transação de quem chama: reescreve a
+     * linha codificada, se a submissão estiver em answer_items_packed, ou atualiza as linhas de answer_items num batch.
+     * @param pointsByQuestion Os pontos de cada pergunta, pelo id da pergunta
+     * @throws RuntimeException Se alguma das perguntas não fizer parte da submissão
+     */
+    public void updatePoints(Long answerId, Map<Long, Integer> pointsByQuestion) {
+        if (pointsByQuestion.isEmpty()) {
+            return;
+        }
+        Optional<AnswerItemsPacked> packed = answerItemsPackedRepository.findById(answerId);
+        if (packed.isPresent()) {
+            List<GradedItem> items = AnswerItemCodec.decode(packed.get().getData());
+            requireQuestions(pointsByQuestion, items.stream().map(GradedItem::questionId).toList());
+            List<GradedItem> updated = items.stream()
+                    .map(item -> pointsByQuestion.containsKey(item.questionId())
+                            ? new GradedItem(item.questionId(), item.response(), pointsByQuestion.get(item.questionId()))
+                            : item)
+                    .toList();
+            packed.get().setData(AnswerItemCodec.encode(updated));
+            answerItemsPackedRepository.save(packed.get());
+            return;
+        }
+
+        requireQuestions(pointsByQuestion, jdbcTemplate.queryForList(
+                "SELECT question_id FROM answer_items WHERE answer_id = ?", Long.class, answerId));
+        List<Object[]> rows = new ArrayList<>(pointsByQuestion.size());
+        pointsByQuestion.forEach((questionId, points) -> rows.add(new Object[]{points, answerId, questionId}));
+        jdbcTemplate.batchUpdate(UPDATE_POINTS, rows, new int[]{Types.INTEGER, Types.BIGINT, Types.BIGINT});
+    }
+
+    /**
+     * As respostas de uma submissão, pergunta a pergunta, pela ordem em que foram dadas.
+     */
+    @Transactional(readOnly = true)
+    public List<AnswerItemDTO> listItems(Long quizId, Long answerId) {
+        if (!answerRepository.existsByIdAndQuizId(answerId, quizId)) {
+            throw new RuntimeException("Resposta não encontrada");
+        }
+        return answerItemsPackedRepository.findById(answerId)
+                .map(packed -> AnswerItemCodec.decode(packed.getData()).stream()
+                        .map(item -> new AnswerItemDTO(item.questionId(), item.response(), item.points()))
+                        .toList())
+                .orElseGet(() -> answerItemRepository.findItemsByAnswerId(answerId));
+    }
+
+    /**
+     * Resultados por pergunta em todas as submissões do questionário, agregados na base de dados.
+     */
+    @Transactional(readOnly = true)
+    public List<QuestionStatsDTO> questionStats(Long quizId) {
+        if (!quizRepository.existsById(quizId)) {
+            throw new RuntimeException("Questionário não encontrado");
+        }
+        List<QuestionStatsDTO> stats = answerItemRepository.findQuestionStatsByQuizId(quizId);
+        List<byte[]> packed = answerItemsPackedRepository.findDataByQuizId(quizId);
+        if (packed.isEmpty()) {
+            return stats;
+        }
+
+        Map<Long, QuestionStatsDTO> merged = new TreeMap<>();
+        stats.forEach(s -> merged.put(s.getQuestionId(), s));
+        for (byte[] data : packed) {
+            for (GradedItem item : AnswerItemCodec.decode(data)) {
+                QuestionStatsDTO s = merged.computeIfAbsent(item.questionId(),
+                        id -> new QuestionStatsDTO(id, 0L, 0L, 0L, 0L));
+                s.setResponses(s.getResponses() + 1);
+                if (item.points() == null) {
+                    s.setUngraded(s.getUngraded() + 1);
+                } else {
+                    s.setTotalPoints(s.getTotalPoints() + item.points());
+                    if (item.points() > 0) {
+                        s.setCorrect(s.getCorrect() + 1);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private static void requireQuestions(Map<Long, Integer> pointsByQuestion, Collection<Long> answered) {
+        Set<Long> questions = new HashSet<>(answered);
+        for (Long questionId : pointsByQuestion.keySet()) {
+            if (!questions.contains(questionId)) {
+                throw new RuntimeException("A pergunta " + questionId + " não faz parte desta resposta");
+            }
+        }
+    }
+
+    private long maxItemId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM answer_items", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+}
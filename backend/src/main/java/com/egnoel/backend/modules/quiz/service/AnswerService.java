@@ -2,40 +2,59 @@ package com.egnoel.backend.modules.quiz.service;
 
 import com.egnoel.backend.modules.auth.entity.Student;
 import com.egnoel.backend.modules.auth.repository.StudentRepository;
+import com.egnoel.backend.modules.classe.entity.Classe;
+import com.egnoel.backend.modules.classe.repository.ClasseRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
 import com.egnoel.backend.modules.quiz.dto.AnswerCreateDTO;
 import com.egnoel.backend.modules.quiz.dto.AnswerResponseDTO;
 import com.egnoel.backend.modules.quiz.dto.UpdateAnswerScoreDTO;
 import com.egnoel.backend.modules.quiz.entity.Answer;
-import com.egnoel.backend.modules.quiz.entity.Question;
-import com.egnoel.backend.modules.quiz.entity.QuestionType;
 import com.egnoel.backend.modules.quiz.entity.Quiz;
+import com.egnoel.backend.modules.quiz.grading.AnswerKeyCache;
+import com.egnoel.backend.modules.quiz.grading.GradedSubmission;
 import com.egnoel.backend.modules.quiz.repository.AnswerRepository;
-import com.egnoel.backend.modules.quiz.repository.QuestionRepository;
 import com.egnoel.backend.modules.quiz.repository.QuizRepository;
+import com.egnoel.backend.modules.quiz.submission.SubmissionGuard;
 import com.egnoel.backend.modules.subject.entity.Subject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 public class AnswerService {
+    private static final String ALREADY_SUBMITTED = "O aluno já submeteu uma resposta para este questionário";
+
     private final AnswerRepository answerRepository;
     private final QuizRepository quizRepository;
     private final StudentRepository studentRepository;
-    private final QuestionRepository questionRepository;
+    private final AnswerKeyCache answerKeyCache;
+    private final SubmissionGuard submissionGuard;
+    private final AnswerItemService answerItemService;
+    private final ClasseRepository classeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public AnswerService(AnswerRepository answerRepository, QuizRepository quizRepository,
-                         StudentRepository studentRepository, QuestionRepository questionRepository) {
+                         StudentRepository studentRepository, AnswerKeyCache answerKeyCache,
+                         SubmissionGuard submissionGuard, AnswerItemService answerItemService,
+                         ClasseRepository classeRepository,
+                         ApplicationEventPublisher eventPublisher) {
         this.answerRepository = answerRepository;
         this.quizRepository = quizRepository;
         this.studentRepository = studentRepository;
-        this.questionRepository = questionRepository;
+        this.answerKeyCache = answerKeyCache;
+        this.submissionGuard = submissionGuard;
+        this.answerItemService = answerItemService;
+        this.classeRepository = classeRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -53,55 +72,54 @@ public class AnswerService {
         }
 
         // Verifica se o aluno está na disciplina ou na turma (se especificada)
+        // Inscrições vivem em classe_students (Classe.students), a mesma tabela usada ao adicionar alunos
         Subject subject = quiz.getSubject();
-        boolean isStudentInSubject = student.getClasses().stream()
+        List<Classe> studentClasses = classeRepository.findByStudentId(student.getId());
+        boolean isStudentInSubject = studentClasses.stream()
                 .anyMatch(classe -> classe.getSubject().getId().equals(subject.getId()));
         if (!isStudentInSubject) {
             throw new RuntimeException("O aluno não está inscrito na disciplina deste questionário");
         }
 
         if (quiz.getClasse() != null) {
-            boolean isStudentInClasse = student.getClasses().stream()
+            boolean isStudentInClasse = studentClasses.stream()
                     .anyMatch(classe -> classe.getId().equals(quiz.getClasse().getId()));
             if (!isStudentInClasse) {
                 throw new RuntimeException("O aluno não está na turma deste questionário");
             }
         }
 
-        // Verifica se o aluno já submeteu
-        List<Answer> existingAnswers = answerRepository.findByQuizId(quizId);
-        if (existingAnswers.stream().anyMatch(a -> a.getStudent().getId().equals(student.getId()))) {
-            throw new RuntimeException("O aluno já submeteu uma resposta para este questionário");
+        // Verifica se o aluno já submeteu, em memória; a restrição única apanha o resto (ver SubmissionGuard)
+        if (submissionGuard.hasSubmitted(quizId, student.getId())) {
+            throw new RuntimeException(ALREADY_SUBMITTED);
         }
 
-        // Calcular pontuação
-        int totalScore = 0;
-        List<Question> questions = questionRepository.findByQuizId(quizId);
-        StringBuilder answersString = new StringBuilder();
-
-        for (AnswerCreateDTO.QuestionAnswerDTO answerDTO : dto.getAnswers()) {
-            Question question = questions.stream()
-                    .filter(q -> q.getId().equals(answerDTO.getQuestionId()))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Pergunta não encontrada: " + answerDTO.getQuestionId()));
-
-            answersString.append("Q").append(question.getId()).append(": ").append(answerDTO.getAnswer()).append("; ");
-
-            // Correção automática para MULTIPLA_ESCOLHA e VERDADEIRO_FALSO
-            if (question.getType() != QuestionType.DISCURSIVA && question.getCorrectAnswer() != null) {
-                if (question.getCorrectAnswer().equalsIgnoreCase(answerDTO.getAnswer())) {
-                    totalScore += question.getScore();
-                }
-            }
-        }
+        // Calcular pontuação numa única passagem pelo gabarito compilado (sem ler as perguntas da base de dados)
+        GradedSubmission graded = answerKeyCache.get(quiz).grade(dto.getAnswers());
 
         Answer answer = new Answer();
         answer.setQuiz(quiz);
         answer.setStudent(student);
-        answer.setAnswers(answersString.toString());
-        answer.setScore(totalScore); // Define a pontuação calculada
-
-        answer = answerRepository.save(answer);
+        answer.setAnswers(graded.answers());
+        answer.setScore(graded.score()); // Define a pontuação calculada
+        answer.setPendingReview(graded.pendingReview());
+
+        try {
+            // Flush imediato: uma submissão simultânea do mesmo aluno falha aqui, pela restrição única
+            answer = answerRepository.saveAndFlush(answer);
+        } catch (DataIntegrityViolationException e) {
+            if (!SubmissionGuard.isDuplicateSubmission(e)) {
+                throw e;
+            }
+            submissionGuard.markSubmitted(quizId, student.getId());
+            throw new RuntimeException(ALREADY_SUBMITTED);
+        }
+        answerItemService.write(Map.of(answer.getId(), graded.items()));
+        submissionGuard.markSubmittedAfterCommit(quizId, student.getId());
+        if (answer.isPendingReview()) {
+            quizRepository.adjustPendingReviewCount(quizId, 1);
+        }
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(student.getId(), quiz.getTeacher().getId()));
 
         return new AnswerResponseDTO(
                 answer.getId(),
@@ -123,15 +141,22 @@ public class AnswerService {
             throw new RuntimeException("Apenas professores podem atualizar pontuações");
         }
 
-        Answer answer = answerRepository.findById(answerId)
+        Answer answer = answerRepository.findWithLockById(answerId)
                 .orElseThrow(() -> new RuntimeException("Resposta não encontrada"));
 
         if (!answer.getQuiz().getId().equals(quizId)) {
             throw new RuntimeException("A resposta não pertence a este questionário");
         }
 
+        answerItemService.updatePoints(answerId, pointsByQuestion(dto));
         answer.setScore(dto.getScore());
+        boolean reviewed = answer.isPendingReview();
+        answer.setPendingReview(false);
         answer = answerRepository.save(answer);
+        if (reviewed) {
+            quizRepository.adjustPendingReviewCount(quizId, -1);
+        }
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(answer.getStudent().getId(), quiz.getTeacher().getId()));
 
         return new AnswerResponseDTO(
                 answer.getId(),
@@ -153,16 +178,22 @@ public class AnswerService {
             throw new RuntimeException("Apenas professores podem listar respostas");
         }
 
-        List<Answer> answers = answerRepository.findByQuizId(quizId);
-
-        return answers.stream()
-                .map(a -> new AnswerResponseDTO(
-                        a.getId(),
-                        a.getAnswers(),
-                        a.getScore(),
-                        a.getSubmittedAt(),
-                        a.getStudent().getFirstName()
-                ))
-                .collect(Collectors.toList());
+        return answerRepository.findResponsesByQuizId(quizId);
+    }
+
+    private static Map<Long, Integer> pointsByQuestion(UpdateAnswerScoreDTO dto) {
+        if (dto.getItems() == null) {
+            return Map.of();
+        }
+        Map<Long, Integer> points = new LinkedHashMap<>();
+        for (UpdateAnswerScoreDTO.ItemPointsDTO item : dto.getItems()) {
+            if (item.getQuestionId() == null || item.getPoints() == null) {
+                throw new RuntimeException("Cada pergunta pontuada precisa do id da pergunta e dos pontos");
+            }
+            if (points.put(item.getQuestionId(), item.getPoints()) != null) {
+                throw new RuntimeException("A pergunta " + item.getQuestionId() + " foi pontuada mais de uma vez");
+            }
+        }
+        return points;
     }
 }
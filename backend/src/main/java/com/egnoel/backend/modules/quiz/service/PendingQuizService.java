@@ -0,0 +1,37 @@
+package com.egnoel.backend.modules.quiz.service;
+
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
+import com.egnoel.backend.modules.quiz.dto.QuizResponseDTO;
+import com.egnoel.backend.modules.quiz.repository.QuizRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trabalho pendente sobre quizzes: para o aluno, quizzes abertos ainda sem resposta;
+ * para o professor, quizzes com respostas DISCURSIVA por corrigir.
+ */
+@Service
+public class PendingQuizService {
+    private final QuizRepository quizRepository;
+    private final CurrentUserResolver currentUserResolver;
+
+    @Autowired
+    public PendingQuizService(QuizRepository quizRepository, CurrentUserResolver currentUserResolver) {
+        this.quizRepository = quizRepository;
+        this.currentUserResolver = currentUserResolver;
+    }
+
+    public List<QuizResponseDTO> listPendingQuizzes() {
+        AuthenticatedUser user = currentUserResolver.resolve();
+        if (user.isTeacher()) {
+            return quizRepository.findPendingReviewForTeacher(user.id());
+        } else if (user.isStudent()) {
+            return quizRepository.findPendingForStudent(user.id(), LocalDateTime.now());
+        }
+        throw new RuntimeException("Papel de utilizador não suportado");
+    }
+}
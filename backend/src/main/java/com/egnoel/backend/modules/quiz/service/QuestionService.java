@@ -1,7 +1,7 @@
 package com.egnoel.backend.modules.quiz.service;
 
-import com.egnoel.backend.modules.auth.entity.Teacher;
-import com.egnoel.backend.modules.auth.repository.TeacherRepository;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
 import com.egnoel.backend.modules.quiz.dto.QuestionCreateDTO;
 import com.egnoel.backend.modules.quiz.dto.QuestionResponseDTO;
 import com.egnoel.backend.modules.quiz.dto.QuestionUpdateDTO;
@@ -9,8 +9,9 @@ import com.egnoel.backend.modules.quiz.entity.Question;
 import com.egnoel.backend.modules.quiz.entity.Quiz;
 import com.egnoel.backend.modules.quiz.repository.QuestionRepository;
 import com.egnoel.backend.modules.quiz.repository.QuizRepository;
+import com.egnoel.backend.modules.search.event.SearchIndexEvent;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,26 +22,26 @@ import java.util.stream.Collectors;
 public class QuestionService {
     private final QuestionRepository questionRepository;
     private final QuizRepository quizRepository;
-    private final TeacherRepository teacherRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public QuestionService(QuestionRepository questionRepository, QuizRepository quizRepository,
-                           TeacherRepository teacherRepository) {
+                           CurrentUserResolver currentUserResolver, ApplicationEventPublisher eventPublisher) {
         this.questionRepository = questionRepository;
         this.quizRepository = quizRepository;
-        this.teacherRepository = teacherRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
     public QuestionResponseDTO createQuestion(Long quizId, QuestionCreateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Quiz quiz = quizRepository.findById(quizId)
                 .orElseThrow(() -> new RuntimeException("Questionário não encontrado"));
 
-        if (!quiz.getTeacher().getId().equals(teacher.getId())) {
+        if (!quiz.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o autor pode adicionar perguntas a este questionário");
         }
 
@@ -53,6 +54,8 @@ public class QuestionService {
         question.setQuiz(quiz);
 
         question = questionRepository.save(question);
+        quizRepository.bumpQuestionsVersion(quizId);
+        eventPublisher.publishEvent(SearchIndexEvent.question(question.getId()));
 
         return new QuestionResponseDTO(
                 question.getId(),
@@ -66,14 +69,12 @@ public class QuestionService {
 
     @Transactional
     public QuestionResponseDTO updateQuestion(Long quizId, Long questionId, QuestionUpdateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Quiz quiz = quizRepository.findById(quizId)
                 .orElseThrow(() -> new RuntimeException("Questionário não encontrado"));
 
-        if (!quiz.getTeacher().getId().equals(teacher.getId())) {
+        if (!quiz.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o autor pode editar perguntas deste questionário");
         }
 
@@ -91,6 +92,8 @@ public class QuestionService {
         question.setScore(dto.getScore());
 
         question = questionRepository.save(question);
+        quizRepository.bumpQuestionsVersion(quizId);
+        eventPublisher.publishEvent(SearchIndexEvent.question(question.getId()));
 
         return new QuestionResponseDTO(
                 question.getId(),
@@ -104,14 +107,12 @@ public class QuestionService {
 
     @Transactional
     public void deleteQuestion(Long quizId, Long questionId) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Quiz quiz = quizRepository.findById(quizId)
                 .orElseThrow(() -> new RuntimeException("Questionário não encontrado"));
 
-        if (!quiz.getTeacher().getId().equals(teacher.getId())) {
+        if (!quiz.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o autor pode excluir perguntas deste questionário");
         }
 
@@ -123,6 +124,8 @@ public class QuestionService {
         }
 
         questionRepository.delete(question);
+        quizRepository.bumpQuestionsVersion(quizId);
+        eventPublisher.publishEvent(SearchIndexEvent.question(questionId));
     }
 
     public List<QuestionResponseDTO> listQuestions(Long quizId) {
@@ -1,17 +1,21 @@
 package com.egnoel.backend.modules.quiz.service;
 
-import com.egnoel.backend.modules.auth.entity.Teacher;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
 import com.egnoel.backend.modules.auth.repository.TeacherRepository;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
 import com.egnoel.backend.modules.classe.entity.Classe;
 import com.egnoel.backend.modules.classe.repository.ClasseRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
 import com.egnoel.backend.modules.quiz.dto.QuizCreateDTO;
 import com.egnoel.backend.modules.quiz.dto.QuizResponseDTO;
 import com.egnoel.backend.modules.quiz.dto.QuizUpdateDTO;
 import com.egnoel.backend.modules.quiz.entity.Quiz;
 import com.egnoel.backend.modules.quiz.repository.QuizRepository;
+import com.egnoel.backend.modules.search.event.SearchIndexEvent;
 import com.egnoel.backend.modules.subject.entity.Subject;
 import com.egnoel.backend.modules.subject.repository.SubjectRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,21 +29,24 @@ public class QuizService {
     private final TeacherRepository teacherRepository;
     private final SubjectRepository subjectRepository;
     private final ClasseRepository classeRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public QuizService(QuizRepository quizRepository, TeacherRepository teacherRepository,
-                       SubjectRepository subjectRepository, ClasseRepository classeRepository) {
+                       SubjectRepository subjectRepository, ClasseRepository classeRepository,
+                       CurrentUserResolver currentUserResolver, ApplicationEventPublisher eventPublisher) {
         this.quizRepository = quizRepository;
         this.teacherRepository = teacherRepository;
         this.subjectRepository = subjectRepository;
         this.classeRepository = classeRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
     public QuizResponseDTO createQuiz(QuizCreateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Subject subject = subjectRepository.findById(dto.getSubjectId())
                 .orElseThrow(() -> new RuntimeException("Disciplina não encontrada"));
@@ -56,18 +63,20 @@ public class QuizService {
         Quiz quiz = new Quiz();
         quiz.setTitle(dto.getTitle());
         quiz.setTerminationDate(dto.getTerminationDate());
-        quiz.setTeacher(teacher);
+        quiz.setTeacher(teacherRepository.getReferenceById(teacher.id()));
         quiz.setSubject(subject);
         quiz.setClasse(classe);
 
         quiz = quizRepository.save(quiz);
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forClasse(teacher.id(), dto.getClasseId()));
+        eventPublisher.publishEvent(SearchIndexEvent.quiz(quiz.getId()));
 
         return new QuizResponseDTO(
                 quiz.getId(),
                 quiz.getTitle(),
                 quiz.getCreationDate(),
                 quiz.getTerminationDate(),
-                teacher.getFirstName(),
+                teacher.firstName(),
                 subject.getName(),
                 classe != null ? classe.getName() : null
         );
@@ -75,14 +84,12 @@ public class QuizService {
 
     @Transactional
     public QuizResponseDTO updateQuiz(Long id, QuizUpdateDTO dto) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Quiz quiz = quizRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Questionário não encontrado"));
 
-        if (!quiz.getTeacher().getId().equals(teacher.getId())) {
+        if (!quiz.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o autor pode editar este questionário");
         }
 
@@ -90,13 +97,16 @@ public class QuizService {
         quiz.setTerminationDate(dto.getTerminationDate());
 
         quiz = quizRepository.save(quiz);
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forClasse(teacher.id(),
+                quiz.getClasse() != null ? quiz.getClasse().getId() : null));
+        eventPublisher.publishEvent(SearchIndexEvent.quiz(quiz.getId()));
 
         return new QuizResponseDTO(
                 quiz.getId(),
                 quiz.getTitle(),
                 quiz.getCreationDate(),
                 quiz.getTerminationDate(),
-                teacher.getFirstName(),
+                teacher.firstName(),
                 quiz.getSubject().getName(),
                 quiz.getClasse() != null ? quiz.getClasse().getName() : null
         );
@@ -104,28 +114,28 @@ public class QuizService {
 
     @Transactional
     public void deleteQuiz(Long id) {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        Teacher teacher = teacherRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
+        AuthenticatedUser teacher = currentUserResolver.requireTeacher();
 
         Quiz quiz = quizRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Questionário não encontrado"));
 
-        if (!quiz.getTeacher().getId().equals(teacher.getId())) {
+        if (!quiz.getTeacher().getId().equals(teacher.id())) {
             throw new RuntimeException("Apenas o autor pode excluir este questionário");
         }
 
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forClasse(teacher.id(),
+                quiz.getClasse() != null ? quiz.getClasse().getId() : null));
+        // Remove também as perguntas do índice
+        eventPublisher.publishEvent(SearchIndexEvent.quiz(quiz.getId()));
         quizRepository.delete(quiz);
     }
 
     public List<QuizResponseDTO> listQuizzes() {
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
         List<Quiz> quizzes;
         if (SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_TEACHER"))) {
-            Teacher teacher = teacherRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Professor não encontrado"));
-            quizzes = quizRepository.findByTeacherId(teacher.getId());
+            AuthenticatedUser teacher = currentUserResolver.requireTeacher();
+            quizzes = quizRepository.findByTeacherId(teacher.id());
         } else {
             quizzes = quizRepository.findAll();
         }
@@ -0,0 +1,17 @@
+package com.egnoel.backend.modules.quiz.submission;
+
+import java.time.LocalDateTime;
+
+/**
+ * Uma submissão já validada e corrigida, à espera de ser gravada na tabela answers.
+ * @param items As respostas por pergunta, codificadas com AnswerItemCodec
+ * @param segment O segmento do journal onde ficou registada
+ */
+record PendingSubmission(String receiptId, long quizId, long studentId, long teacherId, String answers, byte[] items,
+                         int score, boolean pendingReview, LocalDateTime submittedAt, long segment) {
+
+    PendingSubmission inSegment(long segment) {
+        return new PendingSubmission(receiptId, quizId, studentId, teacherId, answers, items, score, pendingReview,
+                submittedAt, segment);
+    }
+}
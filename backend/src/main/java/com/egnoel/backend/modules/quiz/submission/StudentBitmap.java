@@ -0,0 +1,33 @@
+package com.egnoel.backend.modules.quiz.submission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Conjunto concorrente de ids de alunos, em blocos de CHUNK_BITS bits criados à medida: os ids de uma instituição
+ * ficam próximos (são reservados em blocos), por isso poucos blocos cobrem uma turma inteira.
+ * Leituras e escritas não bloqueiam; só não há remoções.
+ */
+final class StudentBitmap {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_BITS = 1 << CHUNK_SHIFT;
+    private static final int WORDS_PER_CHUNK = CHUNK_BITS / Long.SIZE;
+
+    private final Map<Long, AtomicLongArray> chunks = new ConcurrentHashMap<>();
+
+    boolean contains(long studentId) {
+        AtomicLongArray chunk = chunks.get(studentId >>> CHUNK_SHIFT);
+        if (chunk == null) {
+            return false;
+        }
+        int bit = (int) (studentId & (CHUNK_BITS - 1));
+        return (chunk.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    void add(long studentId) {
+        AtomicLongArray chunk = chunks.computeIfAbsent(studentId >>> CHUNK_SHIFT, c -> new AtomicLongArray(WORDS_PER_CHUNK));
+        int bit = (int) (studentId & (CHUNK_BITS - 1));
+        chunk.accumulateAndGet(bit >>> 6, 1L << bit, (word, mask) -> word | mask);
+    }
+}
@@ -0,0 +1,147 @@
+package com.egnoel.backend.modules.quiz.submission;
+
+import com.egnoel.backend.modules.quiz.entity.Answer;
+import com.egnoel.backend.modules.quiz.repository.AnswerRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Verificação de submissões repetidas sem ir à base de dados: para cada questionário, o conjunto dos alunos que já
+ * submeteram, carregado na primeira verificação (uma consulta pelo índice answers(quiz_id, student_id)) e atualizado
+ * depois de cada commit.
+ * <p>
+ * Um aluno só entra no conjunto depois de a sua resposta estar gravada, por isso "já submeteu" é sempre verdade;
+ * o contrário pode falhar (ex.: resposta gravada noutro nó), e aí decide a restrição única de answers(quiz_id,
+ * student_id), que também impede duas linhas em submissões simultâneas. Sem essa restrição o conjunto deixaria de
+ * ser fiável, por isso o arranque falha se ela não existir.
+ */
+@Component
+public class SubmissionGuard {
+    private static final Set<String> UNIQUE_COLUMNS = Set.of("quiz_id", "student_id");
+
+    private final AnswerRepository answerRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, StudentBitmap> submitted;
+
+    @Autowired
+    public SubmissionGuard(AnswerRepository answerRepository, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                           @Value("${quiz.submitted-students.max-quizzes:2000}") long maxQuizzes,
+                           @Value("${quiz.submitted-students.ttl:PT6H}") Duration ttl) {
+        this.answerRepository = answerRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.submitted = Caffeine.newBuilder()
+                .maximumSize(maxQuizzes)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, submitted, "quiz.submitted-students");
+    }
+
+    /**
+     * Confirma no arranque que answers tem um índice único em (quiz_id, student_id). O ddl-auto=update não o cria
+     * se já houver linhas repetidas, e aí duas submissões simultâneas gravariam duas respostas.
+     */
+    @PostConstruct
+    public void verifyUniqueIndex() {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String table : new String[]{"answers", "ANSWERS"}) {
+                Map<String, Set<String>> columnsByIndex = new HashMap<>();
+                try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, true, false)) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        String column = rs.getString("COLUMN_NAME");
+                        if (index != null && column != null && !rs.getBoolean("NON_UNIQUE")) {
+                            columnsByIndex.computeIfAbsent(index, i -> new HashSet<>())
+                                    .add(column.toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+                if (columnsByIndex.containsValue(UNIQUE_COLUMNS)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        if (!Boolean.TRUE.equals(found)) {
+            throw new IllegalStateException("Falta o índice único " + Answer.UK_QUIZ_STUDENT
+                    + " em answers(quiz_id, student_id): remova as respostas repetidas e crie-o antes de arrancar");
+        }
+    }
+
+    /**
+     * Se a falha ao gravar uma resposta foi a restrição única de answers(quiz_id, student_id), ou seja, o aluno já
+     * tinha submetido. Outras violações (ex.: recibo repetido, chave estrangeira) não o são.
+     */
+    public static boolean isDuplicateSubmission(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return mentionsUniqueIndex(violation.getConstraintName());
+            }
+        }
+        // Sem o nome extraído pelo Hibernate, fica a mensagem do driver (MySQL: "for key 'answers.uk_...'")
+        return mentionsUniqueIndex(e.getMostSpecificCause().getMessage());
+    }
+
+    private static boolean mentionsUniqueIndex(String text) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(Answer.UK_QUIZ_STUDENT);
+    }
+
+    public boolean hasSubmitted(Long quizId, Long studentId) {
+        return submitted.get(quizId, this::load).contains(studentId);
+    }
+
+    /**
+     * Regista uma resposta já gravada. Se o questionário não estiver carregado não faz nada: a próxima
+     * verificação lê-o da base de dados, já com esta resposta.
+     */
+    public void markSubmitted(Long quizId, Long studentId) {
+        StudentBitmap students = submitted.getIfPresent(quizId);
+        if (students != null) {
+            students.add(studentId);
+        }
+    }
+
+    /**
+     * Regista a resposta depois do commit da transação atual.
+     */
+    public void markSubmittedAfterCommit(Long quizId, Long studentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            markSubmitted(quizId, studentId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                markSubmitted(quizId, studentId);
+            }
+        });
+    }
+
+    private StudentBitmap load(Long quizId) {
+        StudentBitmap students = new StudentBitmap();
+        answerRepository.findStudentIdsByQuizId(quizId).forEach(students::add);
+        return students;
+    }
+}
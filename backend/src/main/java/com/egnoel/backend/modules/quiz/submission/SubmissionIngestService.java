@@ -0,0 +1,444 @@
+package com.egnoel.backend.modules.quiz.submission;
+
+import com.egnoel.backend.core.util.SequenceBlockAllocator;
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
+import com.egnoel.backend.modules.classe.repository.ClasseRepository;
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
+import com.egnoel.backend.modules.quiz.dto.AnswerCreateDTO;
+import com.egnoel.backend.modules.quiz.dto.QuizSubmissionInfo;
+import com.egnoel.backend.modules.quiz.dto.SubmissionReceiptDTO;
+import com.egnoel.backend.modules.quiz.grading.AnswerItemCodec;
+import com.egnoel.backend.modules.quiz.grading.AnswerKeyCache;
+import com.egnoel.backend.modules.quiz.grading.GradedItem;
+import com.egnoel.backend.modules.quiz.grading.GradedSubmission;
+import com.egnoel.backend.modules.quiz.repository.AnswerRepository;
+import com.egnoel.backend.modules.quiz.repository.QuizRepository;
+import com.egnoel.backend.modules.quiz.service.AnswerItemService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submissão assíncrona de respostas, para os picos junto ao prazo dos questionários.
+ * <p>
+ * O pedido valida a submissão com consultas pontuais (questionário, inscrição) e o SubmissionGuard, corrige-a
+ * com o gabarito em cache, regista-a no journal local (com fsync) e responde com um recibo. Uma thread própria
+ * esvazia a fila e grava as respostas em batches JDBC, uma transação por lote. Com a fila cheia
+ * (quiz.submissions.async.queue-capacity) o pedido é rejeitado com 429 antes de ser registado.
+ * <p>
+ * O journal é reproduzido no arranque: as submissões aceites e não gravadas antes de uma paragem ou crash são
+ * gravadas nessa altura; as que já estavam gravadas são reconhecidas pelo recibo (answers.receipt_id).
+ * O journal é local a cada nó.
+ */
+@Service
+public class SubmissionIngestService {
+    private static final Logger log = LoggerFactory.getLogger(SubmissionIngestService.class);
+    private static final String INSERT_ANSWER = "INSERT INTO answers (id, quiz_id, student_id, answers, score, " +
+            "submitted_at, pending_review, receipt_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String ALREADY_SUBMITTED = "O aluno já submeteu uma resposta para este questionário";
+
+    private final boolean enabled;
+    private final QuizRepository quizRepository;
+    private final AnswerRepository answerRepository;
+    private final ClasseRepository classeRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final AnswerKeyCache answerKeyCache;
+    private final SubmissionGuard submissionGuard;
+    private final AnswerItemService answerItemService;
+    private final SequenceBlockAllocator sequenceBlockAllocator;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SubmissionJournal journal;
+    private final int batchSize;
+    private final Duration retryDelay;
+
+    private final ArrayBlockingQueue<PendingSubmission> queue;
+    // Lugares livres na fila, reservados antes do registo no journal: uma submissão registada nunca é rejeitada
+    private final Semaphore capacity;
+    // (quiz, aluno) com submissão na fila, para rejeitar duplicados que ainda não estão na base de dados
+    private final Set<StudentQuiz> inFlight = ConcurrentHashMap.newKeySet();
+    private final Cache<String, Receipt> receipts;
+    private final Counter storedCounter;
+    private final Counter rejectedCounter;
+    private final Timer batchTimer;
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public SubmissionIngestService(QuizRepository quizRepository, AnswerRepository answerRepository,
+                                   ClasseRepository classeRepository, CurrentUserResolver currentUserResolver,
+                                   AnswerKeyCache answerKeyCache, SubmissionGuard submissionGuard,
+                                   AnswerItemService answerItemService,
+                                   SequenceBlockAllocator sequenceBlockAllocator,
+                                   JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                                   @Value("${quiz.submissions.async.enabled:false}") boolean enabled,
+                                   @Value("${quiz.submissions.async.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${quiz.submissions.async.batch-size:200}") int batchSize,
+                                   @Value("${quiz.submissions.async.retry-delay:PT5S}") Duration retryDelay,
+                                   @Value("${quiz.submissions.async.receipt-ttl:PT1H}") Duration receiptTtl,
+                                   @Value("${quiz.submissions.async.journal-dir:data/submissions}") String journalDir,
+                                   @Value("${quiz.submissions.async.journal-segment-size:16777216}") long segmentSize) {
+        this.enabled = enabled;
+        this.quizRepository = quizRepository;
+        this.answerRepository = answerRepository;
+        this.classeRepository = classeRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.answerKeyCache = answerKeyCache;
+        this.submissionGuard = submissionGuard;
+        this.answerItemService = answerItemService;
+        this.sequenceBlockAllocator = sequenceBlockAllocator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.journal = new SubmissionJournal(Paths.get(journalDir).toAbsolutePath().normalize(), segmentSize);
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.capacity = new Semaphore(queueCapacity);
+        // Os recibos gravados continuam a ser consultáveis na base de dados depois de sair da cache
+        this.receipts = Caffeine.newBuilder()
+                .expireAfterWrite(receiptTtl)
+                .build();
+
+        Gauge.builder("quiz.submissions.queue.depth", queue, ArrayBlockingQueue::size)
+                .description("Submissões aceites à espera de serem gravadas")
+                .register(meterRegistry);
+        this.storedCounter = Counter.builder("quiz.submissions.stored").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("quiz.submissions.rejected")
+                .description("Submissões aceites que não foi possível gravar (ex.: questionário apagado)")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("quiz.submissions.batch").register(meterRegistry);
+    }
+
+    /**
+     * Reproduz o journal e começa a aceitar submissões.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        List<PendingSubmission> replay = journal.open();
+        if (!replay.isEmpty()) {
+            log.info("A gravar {} submissões do journal", replay.size());
+            for (int from = 0; from < replay.size(); from += batchSize) {
+                writeWithRetry(replay.subList(from, Math.min(replay.size(), from + batchSize)));
+            }
+        }
+        running = true;
+        writer = new Thread(this::drain, "answer-writer");
+        writer.setDaemon(true);
+        writer.start();
+        accepting = true;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        accepting = false;
+        running = false;
+        if (writer != null) {
+            // O que ficar na fila continua no journal e é gravado no próximo arranque
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        journal.close();
+    }
+
+    public SubmissionReceiptDTO submit(Long quizId, AnswerCreateDTO dto) {
+        if (!enabled) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Submissão assíncrona desativada");
+        }
+        if (!accepting) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Submissões ainda não disponíveis");
+        }
+        AuthenticatedUser student = currentUserResolver.requireStudent();
+        QuizSubmissionInfo quiz = quizRepository.findSubmissionInfo(quizId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Questionário não encontrado"));
+
+        if (quiz.getTerminationDate() != null && quiz.getTerminationDate().isBefore(LocalDateTime.now())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "O prazo para submissão deste questionário expirou");
+        }
+        if (!classeRepository.isEnrolled(student.id(), quiz.getSubjectId(), quiz.getClasseId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "O aluno não está inscrito na turma deste questionário");
+        }
+
+        GradedSubmission graded;
+        try {
+            graded = answerKeyCache.get(quizId, quiz.getQuestionsVersion()).grade(dto.getAnswers());
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        StudentQuiz key = new StudentQuiz(quizId, student.id());
+        if (!inFlight.add(key)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ALREADY_SUBMITTED);
+        }
+        boolean queued = false;
+        try {
+            if (submissionGuard.hasSubmitted(quizId, student.id())) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, ALREADY_SUBMITTED);
+            }
+            if (!capacity.tryAcquire()) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Demasiadas submissões em espera. Tente novamente dentro de instantes.");
+            }
+            PendingSubmission submission;
+            try {
+                submission = journal.append(new PendingSubmission(UUID.randomUUID().toString(), quizId, student.id(),
+                        quiz.getTeacherId(), graded.answers(), AnswerItemCodec.encode(graded.items()),
+                        graded.score(), graded.pendingReview(),
+                        LocalDateTime.now(), 0));
+            } catch (IOException e) {
+                capacity.release();
+                log.error("Não foi possível registar a submissão no journal: {}", e.getMessage());
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Não foi possível registar a submissão");
+            }
+            SubmissionReceiptDTO receipt = new SubmissionReceiptDTO(submission.receiptId(), quizId,
+                    SubmissionStatus.QUEUED, null, submission.score(), null);
+            receipts.put(submission.receiptId(), new Receipt(student.id(), receipt));
+            queue.add(submission);
+            queued = true;
+            return receipt;
+        } finally {
+            if (!queued) {
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    /**
+     * O estado de uma submissão do aluno autenticado.
+     */
+    public SubmissionReceiptDTO getReceipt(Long quizId, String receiptId) {
+        AuthenticatedUser student = currentUserResolver.requireStudent();
+        Receipt receipt = receipts.getIfPresent(receiptId);
+        if (receipt != null && receipt.studentId() == student.id() && quizId.equals(receipt.dto().getQuizId())) {
+            return receipt.dto();
+        }
+        // Fora da cache (ex.: depois de um reinício): se a resposta foi gravada, o recibo está na tabela answers
+        return answerRepository.findIdByReceipt(receiptId, quizId, student.id())
+                .map(answerId -> new SubmissionReceiptDTO(receiptId, quizId, SubmissionStatus.STORED, answerId, null, null))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recibo não encontrado"));
+    }
+
+    private void drain() {
+        List<PendingSubmission> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSubmission first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                capacity.release(batch.size());
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Não perde a thread: as submissões continuam no journal
+                log.error("Erro inesperado ao gravar submissões", e);
+            } finally {
+                batch.forEach(submission -> inFlight.remove(new StudentQuiz(submission.quizId(), submission.studentId())));
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Grava o lote; enquanto a base de dados estiver indisponível tenta de novo a cada retryDelay, porque as
+     * submissões já foram confirmadas aos alunos. Se o lote violar uma restrição, grava as submissões uma a uma
+     * para que uma linha inválida (ex.: questionário apagado entretanto) não trave as outras.
+     */
+    private void writeWithRetry(List<PendingSubmission> batch) {
+        while (true) {
+            try {
+                Map<PendingSubmission, SubmissionReceiptDTO> outcomes = batchTimer.record(() -> write(batch));
+                outcomes.forEach(this::complete);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (batch.size() > 1) {
+                    batch.forEach(submission -> writeWithRetry(List.of(submission)));
+                    return;
+                }
+                PendingSubmission submission = batch.get(0);
+                log.warn("Submissão {} rejeitada: {}", submission.receiptId(), e.getMostSpecificCause().getMessage());
+                // A restrição única de answers(quiz_id, student_id) ou outra (ex.: questionário apagado)
+                boolean duplicate = answerRepository.existsByQuizIdAndStudentId(submission.quizId(), submission.studentId());
+                complete(submission, rejected(submission, duplicate ? ALREADY_SUBMITTED : "Não foi possível gravar a submissão"));
+                return;
+            } catch (DataAccessException e) {
+                log.warn("Base de dados indisponível para gravar {} submissões; nova tentativa em {}: {}",
+                        batch.size(), retryDelay, e.getMessage());
+                try {
+                    Thread.sleep(retryDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Grava o lote numa transação.
+     * @return O recibo final de cada submissão, a aplicar só depois do commit
+     */
+    private Map<PendingSubmission, SubmissionReceiptDTO> write(List<PendingSubmission> batch) {
+        return transactionTemplate.execute(status -> {
+            Map<PendingSubmission, SubmissionReceiptDTO> outcomes = new HashMap<>();
+
+            // Já gravadas: reproduzidas do journal depois de um crash a seguir ao commit
+            Map<String, Long> existingReceipts = new HashMap<>();
+            namedParameterJdbcTemplate.query("SELECT receipt_id, id FROM answers WHERE receipt_id IN (:receipts)",
+                    Map.of("receipts", batch.stream().map(PendingSubmission::receiptId).toList()),
+                    row -> {
+                        existingReceipts.put(row.getString(1), row.getLong(2));
+                    });
+            // Submissões anteriores dos mesmos alunos, numa só consulta sobre o índice answers(quiz_id, student_id)
+            Set<StudentQuiz> submitted = new HashSet<>();
+            namedParameterJdbcTemplate.query("SELECT quiz_id, student_id FROM answers " +
+                            "WHERE quiz_id IN (:quizIds) AND student_id IN (:studentIds)",
+                    Map.of("quizIds", batch.stream().map(PendingSubmission::quizId).distinct().toList(),
+                            "studentIds", batch.stream().map(PendingSubmission::studentId).distinct().toList()),
+                    row -> {
+                        submitted.add(new StudentQuiz(row.getLong(1), row.getLong(2)));
+                    });
+
+            List<PendingSubmission> toInsert = new ArrayList<>(batch.size());
+            for (PendingSubmission submission : batch) {
+                Long answerId = existingReceipts.get(submission.receiptId());
+                if (answerId != null) {
+                    outcomes.put(submission, stored(submission, answerId));
+                } else if (submitted.add(new StudentQuiz(submission.quizId(), submission.studentId()))) {
+                    toInsert.add(submission);
+                } else {
+                    // Ex.: submissão síncrona e assíncrona do mesmo aluno ao mesmo tempo; fica a primeira
+                    outcomes.put(submission, rejected(submission, ALREADY_SUBMITTED));
+                }
+            }
+            if (toInsert.isEmpty()) {
+                return outcomes;
+            }
+
+            // Ids reservados no mesmo segmento do @TableGenerator de Answer: sem chaves geradas a recolher
+            long firstId = sequenceBlockAllocator.allocate("answers", toInsert.size(), this::maxAnswerId);
+            jdbcTemplate.batchUpdate(INSERT_ANSWER, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    PendingSubmission submission = toInsert.get(i);
+                    ps.setLong(1, firstId + i);
+                    ps.setLong(2, submission.quizId());
+                    ps.setLong(3, submission.studentId());
+                    ps.setString(4, submission.answers());
+                    ps.setInt(5, submission.score());
+                    ps.setTimestamp(6, Timestamp.valueOf(submission.submittedAt()));
+                    ps.setBoolean(7, submission.pendingReview());
+                    ps.setString(8, submission.receiptId());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return toInsert.size();
+                }
+            });
+
+            Map<Long, List<GradedItem>> items = new HashMap<>();
+            Map<Long, Integer> pendingReviews = new HashMap<>();
+            Set<Long> users = new HashSet<>();
+            for (int i = 0; i < toInsert.size(); i++) {
+                PendingSubmission submission = toInsert.get(i);
+                outcomes.put(submission, stored(submission, firstId + i));
+                items.put(firstId + i, AnswerItemCodec.decode(submission.items()));
+                if (submission.pendingReview()) {
+                    pendingReviews.merge(submission.quizId(), 1, Integer::sum);
+                }
+                users.add(submission.studentId());
+                users.add(submission.teacherId());
+            }
+            answerItemService.write(items);
+            pendingReviews.forEach(quizRepository::adjustPendingReviewCount);
+            eventPublisher.publishEvent(DashboardInvalidationEvent.forUsers(users));
+            return outcomes;
+        });
+    }
+
+    private static SubmissionReceiptDTO stored(PendingSubmission submission, long answerId) {
+        return new SubmissionReceiptDTO(submission.receiptId(), submission.quizId(), SubmissionStatus.STORED,
+                answerId, submission.score(), null);
+    }
+
+    private static SubmissionReceiptDTO rejected(PendingSubmission submission, String message) {
+        return new SubmissionReceiptDTO(submission.receiptId(), submission.quizId(), SubmissionStatus.REJECTED,
+                null, null, message);
+    }
+
+    private void complete(PendingSubmission submission, SubmissionReceiptDTO receipt) {
+        if (receipt.getStatus() == SubmissionStatus.STORED) {
+            storedCounter.increment();
+            submissionGuard.markSubmitted(submission.quizId(), submission.studentId());
+        } else {
+            rejectedCounter.increment();
+        }
+        receipts.put(submission.receiptId(), new Receipt(submission.studentId(), receipt));
+        journal.persisted(submission.segment(), 1);
+    }
+
+    private long maxAnswerId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM answers", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    private record StudentQuiz(long quizId, long studentId) {
+    }
+
+    private record Receipt(long studentId, SubmissionReceiptDTO dto) {
+    }
+}
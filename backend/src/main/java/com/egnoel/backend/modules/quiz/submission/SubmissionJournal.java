@@ -0,0 +1,333 @@
+package com.egnoel.backend.modules.quiz.submission;
+
+import com.egnoel.backend.modules.quiz.grading.AnswerItemCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal local, só de acréscimo, das submissões aceites e ainda não gravadas na base de dados.
+ * Uma submissão só é confirmada ao aluno depois de o seu registo estar no disco (fsync), por isso sobrevive a
+ * um crash do processo ou da máquina e é gravada quando a aplicação volta a arrancar.
+ * <p>
+ * Cada registo é [tamanho][CRC32C][conteúdo]; um registo incompleto ou corrompido no fim de um segmento
+ * (escrita interrompida) termina a leitura desse segmento. Um registo corrompido a meio do segmento é saltado e o
+ * segmento é copiado para recuperação manual (ver read). Os fsyncs são agrupados: quem chega enquanto outro
+ * pedido está a fazer fsync espera por ele e, se o seu registo já ficou coberto, não faz outro.
+ * <p>
+ * O journal divide-se em segmentos de até segmentSize bytes. Um segmento é apagado quando todos os seus registos
+ * estão gravados na base de dados; o segmento atual é truncado nessa situação.
+ */
+final class SubmissionJournal implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SubmissionJournal.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("submissions-(\\d{12})\\.journal");
+    // 2: acrescenta as respostas por pergunta (AnswerItemCodec); os registos da versão 1 continuam legíveis
+    private static final int FORMAT_VERSION = 2;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Object appendLock = new Object();
+    private final Object forceLock = new Object();
+    // Registos de cada segmento ainda por gravar na base de dados
+    private final Map<Long, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+    private final AtomicLong forced = new AtomicLong();
+    private FileChannel channel;
+    private volatile long currentSegment;
+    private long appended;
+
+    SubmissionJournal(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Lê os segmentos existentes e abre um segmento novo para as próximas submissões.
+     * @return As submissões registadas antes do arranque, pela ordem em que foram aceites (algumas podem já
+     * estar gravadas na base de dados)
+     */
+    List<PendingSubmission> open() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+
+        List<PendingSubmission> replay = new ArrayList<>();
+        for (long segment : segments) {
+            List<PendingSubmission> records = read(segment);
+            if (records.isEmpty()) {
+                Files.deleteIfExists(segmentPath(segment));
+            } else {
+                outstanding.put(segment, new AtomicInteger(records.size()));
+                replay.addAll(records);
+            }
+        }
+
+        synchronized (appendLock) {
+            currentSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+            channel = openSegment(currentSegment);
+        }
+        return replay;
+    }
+
+    /**
+     * Acrescenta a submissão e espera que esteja no disco.
+     * @return A submissão com o segmento onde ficou registada
+     */
+    PendingSubmission append(PendingSubmission submission) throws IOException {
+        byte[] payload = encode(submission);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+
+        long sequence;
+        long segment;
+        synchronized (appendLock) {
+            if (channel.position() > 0 && channel.position() + record.remaining() > segmentSize) {
+                roll();
+            }
+            segment = currentSegment;
+            outstanding.computeIfAbsent(segment, s -> new AtomicInteger()).incrementAndGet();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            sequence = ++appended;
+        }
+        sync(sequence);
+        return submission.inSegment(segment);
+    }
+
+    /**
+     * Marca registos de um segmento como gravados na base de dados.
+     */
+    void persisted(long segment, int count) {
+        AtomicInteger remaining = outstanding.get(segment);
+        if (remaining == null || remaining.addAndGet(-count) > 0) {
+            return;
+        }
+        synchronized (appendLock) {
+            if (remaining.get() > 0) {
+                return;
+            }
+            try {
+                if (segment == currentSegment) {
+                    channel.truncate(0);
+                    channel.position(0);
+                } else if (outstanding.remove(segment, remaining)) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+            } catch (IOException e) {
+                // O segmento é relido no próximo arranque; os registos já gravados são ignorados pelo recibo
+                log.warn("Não foi possível limpar o segmento {} do journal de submissões: {}", segment, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private void sync(long sequence) throws IOException {
+        synchronized (forceLock) {
+            if (forced.get() >= sequence) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (appendLock) {
+                target = appended;
+                current = channel;
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // O segmento foi fechado por roll(), que já fez fsync de tudo o que tinha
+            }
+            forced.accumulateAndGet(target, Math::max);
+        }
+    }
+
+    /**
+     * Fecha o segmento atual (com fsync) e abre o seguinte. Chamado com appendLock.
+     */
+    private void roll() throws IOException {
+        long previous = currentSegment;
+        channel.force(false);
+        channel.close();
+        forced.accumulateAndGet(appended, Math::max);
+        currentSegment = previous + 1;
+        channel = openSegment(currentSegment);
+
+        AtomicInteger remaining = outstanding.get(previous);
+        if (remaining == null || (remaining.get() == 0 && outstanding.remove(previous, remaining))) {
+            Files.deleteIfExists(segmentPath(previous));
+        }
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("submissions-%012d.journal", segment));
+    }
+
+    /**
+     * Lê os registos de um segmento. Um registo inválido seguido apenas de bytes que não formam registos é uma
+     * escrita interrompida no fim do segmento e termina a leitura. Se depois dele ainda houver registos válidos,
+     * o segmento foi corrompido a meio: esses registos também são lidos e fica uma cópia do segmento (.corrupt)
+     * para recuperação manual, porque o registo estragado pode já ter sido confirmado a um aluno.
+     */
+    private List<PendingSubmission> read(long segment) throws IOException {
+        Path path = segmentPath(segment);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<PendingSubmission> records = new ArrayList<>();
+        int skipped = 0;
+        while (data.hasRemaining()) {
+            int start = data.position();
+            PendingSubmission record = readRecord(data);
+            if (record != null) {
+                records.add(record.inSegment(segment));
+                continue;
+            }
+            int next = findRecord(data, start + 1);
+            if (next < 0) {
+                // Escrita interrompida: o aluno não chegou a receber o recibo deste registo
+                log.warn("Journal de submissões: segmento {} lido até ao registo {} ({} bytes finais ignorados)",
+                        segment, records.size(), data.limit() - start);
+                break;
+            }
+            skipped += next - start;
+            data.position(next);
+        }
+        if (skipped > 0) {
+            Path copy = directory.resolve(path.getFileName() + ".corrupt");
+            Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+            log.error("Journal de submissões: segmento {} corrompido a meio ({} bytes ignorados entre registos " +
+                    "válidos); cópia em {} para recuperação manual", segment, skipped, copy);
+        }
+        return records;
+    }
+
+    /**
+     * Lê o registo na posição atual e avança para o seguinte.
+     * @return null, sem avançar, se ali não começar um registo completo e válido
+     */
+    private static PendingSubmission readRecord(ByteBuffer data) {
+        int start = data.position();
+        if (data.remaining() < 8) {
+            return null;
+        }
+        int length = data.getInt(start);
+        int checksum = data.getInt(start + 4);
+        if (length <= 0 || length > MAX_RECORD_SIZE || length > data.remaining() - 8) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data.array(), start + 8, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        try {
+            PendingSubmission submission = decode(Arrays.copyOfRange(data.array(), start + 8, start + 8 + length));
+            data.position(start + 8 + length);
+            return submission;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A primeira posição a partir de from onde começa um registo válido, ou -1.
+     */
+    private static int findRecord(ByteBuffer data, int from) {
+        for (int position = from; position + 8 <= data.limit(); position++) {
+            if (readRecord(data.duplicate().position(position)) != null) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] encode(PendingSubmission submission) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + submission.answers().length() * 2
+                + submission.items().length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(submission.receiptId());
+            out.writeLong(submission.quizId());
+            out.writeLong(submission.studentId());
+            out.writeLong(submission.teacherId());
+            out.writeInt(submission.score());
+            out.writeBoolean(submission.pendingReview());
+            out.writeUTF(submission.submittedAt().toString());
+            byte[] answers = submission.answers().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(answers.length);
+            out.write(answers);
+            out.writeInt(submission.items().length);
+            out.write(submission.items());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PendingSubmission decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("versão de registo desconhecida " + version);
+        }
+        String receiptId = in.readUTF();
+        long quizId = in.readLong();
+        long studentId = in.readLong();
+        long teacherId = in.readLong();
+        int score = in.readInt();
+        boolean pendingReview = in.readBoolean();
+        LocalDateTime submittedAt = LocalDateTime.parse(in.readUTF());
+        String answers = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+        byte[] items = version >= 2 ? in.readNBytes(in.readInt()) : AnswerItemCodec.encode(List.of());
+        return new PendingSubmission(receiptId, quizId, studentId, teacherId, answers, items, score, pendingReview,
+                submittedAt, 0);
+    }
+}
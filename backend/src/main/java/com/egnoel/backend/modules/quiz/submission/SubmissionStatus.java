@@ -0,0 +1,7 @@
+package com.egnoel.backend.modules.quiz.submission;
+
+public enum SubmissionStatus {
+    QUEUED,
+    STORED,
+    REJECTED
+}
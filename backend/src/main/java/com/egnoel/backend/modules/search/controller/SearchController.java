@@ -0,0 +1,33 @@
+package com.egnoel.backend.modules.search.controller;
+
+import com.egnoel.backend.modules.search.dto.SearchPageDTO;
+import com.egnoel.backend.modules.search.index.SearchDocumentType;
+import com.egnoel.backend.modules.search.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+    private final SearchService searchService;
+
+    @Autowired
+    public SearchController(SearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole('TEACHER', 'STUDENT')")
+    public ResponseEntity<SearchPageDTO> search(@RequestParam("q") String query,
+                                                @RequestParam(required = false) SearchDocumentType type,
+                                                @RequestParam(required = false) Long classeId,
+                                                @RequestParam(defaultValue = "0") int page,
+                                                @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(searchService.search(query, type, classeId, page, size));
+    }
+}
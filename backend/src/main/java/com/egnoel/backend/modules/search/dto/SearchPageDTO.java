@@ -0,0 +1,17 @@
+package com.egnoel.backend.modules.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchPageDTO {
+    private List<SearchResultDTO> items;
+    private int page;
+    private int size;
+    private long total;
+}
@@ -0,0 +1,20 @@
+package com.egnoel.backend.modules.search.dto;
+
+import com.egnoel.backend.modules.search.index.SearchDocumentType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchResultDTO {
+    private SearchDocumentType type;
+    private Long id;
+    // Título do material ou questionário, ou o enunciado da pergunta
+    private String title;
+    // Preenchido nas perguntas: o questionário onde abri-las
+    private Long quizId;
+    private Long classeId;
+    private float score;
+}
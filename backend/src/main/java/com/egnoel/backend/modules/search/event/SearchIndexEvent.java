@@ -0,0 +1,22 @@
+package com.egnoel.backend.modules.search.event;
+
+import com.egnoel.backend.modules.search.index.SearchDocumentType;
+
+/**
+ * Publicado pelos serviços quando criam, alteram ou apagam um material, questionário ou pergunta.
+ * Depois do commit o documento é relido da base de dados e reindexado, ou removido se já não existir.
+ */
+public record SearchIndexEvent(SearchDocumentType type, Long id) {
+
+    public static SearchIndexEvent material(Long id) {
+        return new SearchIndexEvent(SearchDocumentType.MATERIAL, id);
+    }
+
+    public static SearchIndexEvent quiz(Long id) {
+        return new SearchIndexEvent(SearchDocumentType.QUIZ, id);
+    }
+
+    public static SearchIndexEvent question(Long id) {
+        return new SearchIndexEvent(SearchDocumentType.QUESTION, id);
+    }
+}
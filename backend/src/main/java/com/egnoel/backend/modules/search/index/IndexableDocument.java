@@ -0,0 +1,8 @@
+package com.egnoel.backend.modules.search.index;
+
+/**
+ * Um documento a indexar: o título conta mais do que o corpo (ex.: o texto extraído de um material).
+ * @param body Texto adicional; pode ser nulo
+ */
+public record IndexableDocument(SearchDocument document, String body) {
+}
@@ -0,0 +1,265 @@
+package com.egnoel.backend.modules.search.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Índice invertido em memória: para cada termo, a lista dos documentos que o contêm e quantas vezes.
+ * Os resultados são ordenados por BM25, com os termos do título a contar TITLE_WEIGHT vezes.
+ * <p>
+ * Cada documento recebe um número interno crescente, por isso as listas de cada termo ficam ordenadas e
+ * acrescentar é barato. Atualizar um documento marca a versão anterior como apagada e acrescenta a nova;
+ * as entradas apagadas são descartadas de uma vez quando passam a ser mais do que as válidas.
+ * Pesquisas concorrentes partilham o read lock; só as alterações o bloqueiam, e a análise do texto
+ * é feita antes de o adquirir.
+ */
+public class InvertedIndex {
+    private static final int TITLE_WEIGHT = 3;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_DELETED_FOR_COMPACTION = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    // Indexados pelo número interno do documento
+    private final List<SearchDocument> documents = new ArrayList<>();
+    private int[] lengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+    private final Map<DocumentKey, Integer> ordinals = new HashMap<>();
+    private int deletedCount;
+    // Soma dos comprimentos dos documentos válidos, para o comprimento médio do BM25
+    private long totalLength;
+
+    /**
+     * Acrescenta o documento, substituindo a versão anterior se já estiver indexado.
+     */
+    public void put(IndexableDocument indexable) {
+        SearchDocument document = indexable.document();
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = TextAnalyzer.addTermFrequencies(document.title(), TITLE_WEIGHT, frequencies) * TITLE_WEIGHT
+                + TextAnalyzer.addTermFrequencies(indexable.body(), 1, frequencies);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(new DocumentKey(document.type(), document.id()));
+            int ordinal = documents.size();
+            documents.add(document);
+            if (ordinal == lengths.length) {
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+            lengths[ordinal] = length;
+            totalLength += length;
+            ordinals.put(new DocumentKey(document.type(), document.id()), ordinal);
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(ordinal, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(SearchDocumentType type, long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(new DocumentKey(type, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove as perguntas de um questionário apagado (a base de dados apaga-as em cascata, sem eventos próprios).
+     */
+    public void removeQuestionsOfQuiz(long quizId) {
+        lock.writeLock().lock();
+        try {
+            Iterator<Map.Entry<DocumentKey, Integer>> iterator = ordinals.entrySet().iterator();
+            while (iterator.hasNext()) {
+                int ordinal = iterator.next().getValue();
+                SearchDocument document = documents.get(ordinal);
+                if (document.type() == SearchDocumentType.QUESTION && Long.valueOf(quizId).equals(document.quizId())) {
+                    iterator.remove();
+                    markDeleted(ordinal);
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Documentos que contêm pelo menos um dos termos da pesquisa, do mais para o menos relevante.
+     * @param visible Filtro aplicado antes da paginação (ex.: acesso do utilizador)
+     */
+    public SearchResults search(String query, Predicate<SearchDocument> visible, int offset, int limit) {
+        List<String> terms = TextAnalyzer.queryTerms(query);
+        if (terms.isEmpty()) {
+            return new SearchResults(0, List.of());
+        }
+
+        lock.readLock().lock();
+        try {
+            int live = ordinals.size();
+            if (live == 0) {
+                return new SearchResults(0, List.of());
+            }
+            float averageLength = Math.max(1f, (float) totalLength / live);
+            float[] scores = new float[documents.size()];
+            BitSet matched = new BitSet(documents.size());
+
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                int documentFrequency = 0;
+                for (int i = 0; i < list.size; i++) {
+                    if (!deleted.get(list.documents[i])) {
+                        documentFrequency++;
+                    }
+                }
+                if (documentFrequency == 0) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (live - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int ordinal = list.documents[i];
+                    if (deleted.get(ordinal)) {
+                        continue;
+                    }
+                    int tf = list.frequencies[i];
+                    float norm = K1 * (1 - B + B * lengths[ordinal] / averageLength);
+                    scores[ordinal] += idf * tf * (K1 + 1) / (tf + norm);
+                    matched.set(ordinal);
+                }
+            }
+
+            // Pontuação (positiva, por isso os bits do float ordenam como o próprio float) e número interno
+            // num único long: ordenar um array primitivo evita objetos por resultado. Empates: o mais recente primeiro.
+            long[] candidates = new long[matched.cardinality()];
+            int total = 0;
+            for (int ordinal = matched.nextSetBit(0); ordinal >= 0; ordinal = matched.nextSetBit(ordinal + 1)) {
+                if (visible.test(documents.get(ordinal))) {
+                    candidates[total++] = ((long) Float.floatToIntBits(scores[ordinal]) << 32) | ordinal;
+                }
+            }
+            Arrays.sort(candidates, 0, total);
+
+            List<SearchHit> hits = new ArrayList<>(Math.max(0, Math.min(limit, total - offset)));
+            for (int i = total - 1 - offset; i >= 0 && hits.size() < limit; i--) {
+                int ordinal = (int) candidates[i];
+                hits.add(new SearchHit(documents.get(ordinal), scores[ordinal]));
+            }
+            return new SearchResults(total, hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(DocumentKey key) {
+        Integer ordinal = ordinals.remove(key);
+        if (ordinal != null) {
+            markDeleted(ordinal);
+            compactIfNeeded();
+        }
+    }
+
+    private void markDeleted(int ordinal) {
+        deleted.set(ordinal);
+        deletedCount++;
+        totalLength -= lengths[ordinal];
+    }
+
+    /**
+     * Renumera os documentos válidos e reescreve as listas sem as entradas apagadas.
+     */
+    private void compactIfNeeded() {
+        if (deletedCount < MIN_DELETED_FOR_COMPACTION || deletedCount < ordinals.size()) {
+            return;
+        }
+        int[] remap = new int[documents.size()];
+        List<SearchDocument> compacted = new ArrayList<>(ordinals.size());
+        int[] compactedLengths = new int[Math.max(1024, ordinals.size() * 2)];
+        for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+            if (deleted.get(ordinal)) {
+                remap[ordinal] = -1;
+            } else {
+                remap[ordinal] = compacted.size();
+                compactedLengths[compacted.size()] = lengths[ordinal];
+                compacted.add(documents.get(ordinal));
+            }
+        }
+        postings.values().removeIf(list -> list.compact(remap) == 0);
+        ordinals.replaceAll((key, ordinal) -> remap[ordinal]);
+        documents.clear();
+        documents.addAll(compacted);
+        lengths = compactedLengths;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private record DocumentKey(SearchDocumentType type, long id) {
+    }
+
+    /**
+     * Lista de um termo em arrays primitivos: números internos (crescentes) e frequências.
+     */
+    private static final class Postings {
+        private int[] documents = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int ordinal, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = ordinal;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        /**
+         * @return Quantas entradas ficaram
+         */
+        int compact(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int ordinal = remap[documents[i]];
+                if (ordinal >= 0) {
+                    documents[kept] = ordinal;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+}
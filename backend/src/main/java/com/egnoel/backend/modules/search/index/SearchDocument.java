@@ -0,0 +1,15 @@
+package com.egnoel.backend.modules.search.index;
+
+/**
+ * O que o índice guarda de cada documento: o necessário para filtrar por acesso e para mostrar o resultado.
+ * @param institutionId Instituição da disciplina do documento
+ * @param classeId Turma do documento; nulo se for visível a toda a instituição
+ * @param quizId Para perguntas, o questionário a que pertencem
+ */
+public record SearchDocument(SearchDocumentType type,
+                             long id,
+                             Long institutionId,
+                             Long classeId,
+                             Long quizId,
+                             String title) {
+}
@@ -0,0 +1,7 @@
+package com.egnoel.backend.modules.search.index;
+
+public enum SearchDocumentType {
+    MATERIAL,
+    QUIZ,
+    QUESTION
+}
@@ -0,0 +1,4 @@
+package com.egnoel.backend.modules.search.index;
+
+public record SearchHit(SearchDocument document, float score) {
+}
@@ -0,0 +1,10 @@
+package com.egnoel.backend.modules.search.index;
+
+import java.util.List;
+
+/**
+ * @param total Quantos documentos visíveis correspondem à pesquisa
+ * @param hits A página pedida, por relevância
+ */
+public record SearchResults(int total, List<SearchHit> hits) {
+}
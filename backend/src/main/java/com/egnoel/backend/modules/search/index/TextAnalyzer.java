@@ -0,0 +1,91 @@
+package com.egnoel.backend.modules.search.index;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Divide o texto em termos: minúsculas, sem acentos (a pesquisa "equacao" encontra "Equação") e sem as palavras
+ * mais comuns do português, que aparecem em quase todos os documentos e não ajudam a ordenar.
+ * Não há stemming: "equação" e "equações" continuam a ser termos diferentes.
+ */
+final class TextAnalyzer {
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+
+    // Já sem acentos, tal como os termos com que são comparadas
+    private static final Set<String> STOPWORDS = Set.of(
+            "as", "os", "um", "uma", "uns", "umas", "de", "do", "da", "dos", "das", "em", "no", "na", "nos", "nas",
+            "num", "numa", "por", "pelo", "pela", "pelos", "pelas", "para", "pra", "com", "sem", "sob", "sobre",
+            "ao", "aos", "ou", "que", "se", "ser", "sao", "foi", "era", "como", "mais", "mas", "nao", "sim", "ja",
+            "ate", "entre", "quando", "qual", "quais", "seu", "sua", "seus", "suas", "ele", "ela", "eles", "elas",
+            "isso", "isto", "este", "esta", "estes", "estas", "esse", "essa", "esses", "essas", "aquele", "aquela",
+            "lhe", "me", "te", "nem", "ha", "muito", "tambem", "so", "tem", "the", "of", "and", "to", "in", "is");
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Soma a frequência de cada termo do texto em frequencies, multiplicada pelo peso.
+     * @return O número de termos do texto (o comprimento usado na normalização do BM25)
+     */
+    static int addTermFrequencies(String text, int weight, Map<String, Integer> frequencies) {
+        if (text == null) {
+            return 0;
+        }
+        int[] count = {0};
+        tokenize(text, term -> {
+            frequencies.merge(term, weight, Integer::sum);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Os termos distintos de uma pesquisa, pela ordem em que aparecem.
+     */
+    static List<String> queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        tokenize(query, terms::add);
+        return List.copyOf(terms);
+    }
+
+    private static void tokenize(String text, Consumer<String> sink) {
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            if (i < folded.length() && Character.isLetterOrDigit(folded.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    String term = folded.substring(start, i);
+                    if (!STOPWORDS.contains(term)) {
+                        sink.accept(term);
+                    }
+                }
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Minúsculas e sem marcas diacríticas: a decomposição NFD separa "ç" em "c" mais a cedilha, que é descartada.
+     */
+    private static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(Character.toLowerCase(c));
+            }
+        }
+        return folded.toString();
+    }
+}
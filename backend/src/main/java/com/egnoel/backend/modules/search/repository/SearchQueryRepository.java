@@ -0,0 +1,110 @@
+package com.egnoel.backend.modules.search.repository;
+
+import com.egnoel.backend.modules.search.index.IndexableDocument;
+import com.egnoel.backend.modules.search.index.SearchDocument;
+import com.egnoel.backend.modules.search.index.SearchDocumentType;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Lê os documentos a indexar como projeções (sem carregar entidades), por lotes ordenados pelo id para
+ * a reconstrução do índice, ou um de cada vez para as atualizações.
+ */
+@Repository
+public class SearchQueryRepository {
+    private static final String MATERIALS =
+            "SELECT m.id, m.title, i.id, cl.id, t.content FROM Material m JOIN m.subject s LEFT JOIN s.institution i " +
+                    "LEFT JOIN m.classe cl LEFT JOIN MaterialText t ON t.materialId = m.id ";
+    private static final String QUIZZES =
+            "SELECT q.id, q.title, i.id, cl.id FROM Quiz q JOIN q.subject s LEFT JOIN s.institution i " +
+                    "LEFT JOIN q.classe cl ";
+    private static final String QUESTIONS =
+            "SELECT qu.id, qu.text, i.id, cl.id, q.id FROM Question qu JOIN qu.quiz q JOIN q.subject s " +
+                    "LEFT JOIN s.institution i LEFT JOIN q.classe cl ";
+
+    private final EntityManager entityManager;
+
+    public SearchQueryRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public List<IndexableDocument> findMaterials(long afterId, int limit) {
+        return page(MATERIALS + "WHERE m.id > :afterId ORDER BY m.id", afterId, limit, SearchQueryRepository::material);
+    }
+
+    public Optional<IndexableDocument> findMaterial(Long id) {
+        return one(MATERIALS + "WHERE m.id = :id", id, SearchQueryRepository::material);
+    }
+
+    public List<IndexableDocument> findQuizzes(long afterId, int limit) {
+        return page(QUIZZES + "WHERE q.id > :afterId ORDER BY q.id", afterId, limit, SearchQueryRepository::quiz);
+    }
+
+    public Optional<IndexableDocument> findQuiz(Long id) {
+        return one(QUIZZES + "WHERE q.id = :id", id, SearchQueryRepository::quiz);
+    }
+
+    public List<IndexableDocument> findQuestions(long afterId, int limit) {
+        return page(QUESTIONS + "WHERE qu.id > :afterId ORDER BY qu.id", afterId, limit, SearchQueryRepository::question);
+    }
+
+    public Optional<IndexableDocument> findQuestion(Long id) {
+        return one(QUESTIONS + "WHERE qu.id = :id", id, SearchQueryRepository::question);
+    }
+
+    /**
+     * Turmas que o utilizador leciona ou onde está inscrito.
+     */
+    public Set<Long> findUserClasseIds(Long userId) {
+        List<?> ids = entityManager.createNativeQuery(
+                        "SELECT c.id FROM classes c WHERE c.teacher_id = :userId " +
+                                "UNION SELECT cs.classe_id FROM classe_students cs WHERE cs.student_id = :userId")
+                .setParameter("userId", userId)
+                .getResultList();
+        return ids.stream()
+                .map(id -> ((Number) id).longValue())
+                .collect(Collectors.toSet());
+    }
+
+    private List<IndexableDocument> page(String query, long afterId, int limit,
+                                         Function<Object[], IndexableDocument> mapper) {
+        return entityManager.createQuery(query, Object[].class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(mapper)
+                .toList();
+    }
+
+    private Optional<IndexableDocument> one(String query, Long id,
+                                            Function<Object[], IndexableDocument> mapper) {
+        return entityManager.createQuery(query, Object[].class)
+                .setParameter("id", id)
+                .getResultList()
+                .stream()
+                .findFirst()
+                .map(mapper);
+    }
+
+    private static IndexableDocument material(Object[] row) {
+        return new IndexableDocument(new SearchDocument(SearchDocumentType.MATERIAL, (Long) row[0], (Long) row[2],
+                (Long) row[3], null, (String) row[1]), (String) row[4]);
+    }
+
+    private static IndexableDocument quiz(Object[] row) {
+        return new IndexableDocument(new SearchDocument(SearchDocumentType.QUIZ, (Long) row[0], (Long) row[2],
+                (Long) row[3], null, (String) row[1]), null);
+    }
+
+    private static IndexableDocument question(Object[] row) {
+        return new IndexableDocument(new SearchDocument(SearchDocumentType.QUESTION, (Long) row[0], (Long) row[2],
+                (Long) row[3], (Long) row[4], (String) row[1]), null);
+    }
+}
@@ -0,0 +1,129 @@
+package com.egnoel.backend.modules.search.service;
+
+import com.egnoel.backend.modules.search.event.SearchIndexEvent;
+import com.egnoel.backend.modules.search.index.IndexableDocument;
+import com.egnoel.backend.modules.search.index.InvertedIndex;
+import com.egnoel.backend.modules.search.index.SearchDocumentType;
+import com.egnoel.backend.modules.search.repository.SearchQueryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Mantém o índice de pesquisa. Os serviços publicam SearchIndexEvent e, depois do commit, o documento alterado
+ * é relido e reindexado. O índice é também reconstruído de raiz no arranque e a cada
+ * search.index.rebuild-interval, o que recupera alterações que não publicam eventos (ex.: mudança de
+ * instituição de uma disciplina).
+ * <p>
+ * A reconstrução prepara um índice novo ao lado do atual, que continua a responder, e troca-os no fim.
+ * As alterações feitas entretanto são reaplicadas ao índice novo, porque o lote que as continha pode ter
+ * sido lido antes do commit.
+ */
+@Service
+public class SearchIndexService {
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+    // Os materiais trazem o texto extraído (até materials.processing.max-text-chars): lotes mais pequenos
+    private static final int MATERIAL_BATCH_SIZE = 50;
+    private static final int BATCH_SIZE = 1000;
+
+    private final SearchQueryRepository searchQueryRepository;
+    private final Timer rebuildTimer;
+    private volatile InvertedIndex index = new InvertedIndex();
+    // Não nulo durante uma reconstrução
+    private volatile Set<SearchIndexEvent> changedDuringRebuild;
+    private final Object rebuildLock = new Object();
+
+    @Autowired
+    public SearchIndexService(SearchQueryRepository searchQueryRepository, MeterRegistry meterRegistry) {
+        this.searchQueryRepository = searchQueryRepository;
+        Gauge.builder("search.index.documents", this, s -> s.index.documentCount())
+                .description("Documentos no índice de pesquisa")
+                .register(meterRegistry);
+        Gauge.builder("search.index.terms", this, s -> s.index.termCount())
+                .description("Termos distintos no índice de pesquisa")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("search.index.rebuild")
+                .register(meterRegistry);
+    }
+
+    public InvertedIndex index() {
+        return index;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChange(SearchIndexEvent event) {
+        Set<SearchIndexEvent> pending = changedDuringRebuild;
+        if (pending != null) {
+            pending.add(event);
+        }
+        try {
+            apply(index, event);
+        } catch (RuntimeException e) {
+            // A escrita já está gravada: o documento fica desatualizado no índice até à próxima reconstrução
+            log.warn("Não foi possível atualizar o índice de pesquisa ({} {}): {}", event.type(), event.id(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.rebuild-interval:PT6H}",
+            initialDelayString = "${search.index.rebuild-initial-delay:PT0S}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            Set<SearchIndexEvent> pending = ConcurrentHashMap.newKeySet();
+            changedDuringRebuild = pending;
+            try {
+                InvertedIndex fresh = new InvertedIndex();
+                rebuildTimer.record(() -> {
+                    load(fresh, searchQueryRepository::findMaterials, MATERIAL_BATCH_SIZE);
+                    load(fresh, searchQueryRepository::findQuizzes, BATCH_SIZE);
+                    load(fresh, searchQueryRepository::findQuestions, BATCH_SIZE);
+                });
+                index = fresh;
+                for (SearchIndexEvent event : pending) {
+                    apply(fresh, event);
+                }
+                log.info("Índice de pesquisa reconstruído: {} documentos, {} termos", fresh.documentCount(), fresh.termCount());
+            } catch (RuntimeException e) {
+                log.warn("Falha ao reconstruir o índice de pesquisa; mantém-se o anterior: {}", e.getMessage());
+            } finally {
+                changedDuringRebuild = null;
+            }
+        }
+    }
+
+    private void load(InvertedIndex target, BiFunction<Long, Integer, List<IndexableDocument>> source, int batchSize) {
+        long afterId = 0;
+        List<IndexableDocument> batch;
+        do {
+            batch = source.apply(afterId, batchSize);
+            for (IndexableDocument document : batch) {
+                target.put(document);
+                afterId = document.document().id();
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    private void apply(InvertedIndex target, SearchIndexEvent event) {
+        switch (event.type()) {
+            case MATERIAL -> searchQueryRepository.findMaterial(event.id()).ifPresentOrElse(target::put,
+                    () -> target.remove(SearchDocumentType.MATERIAL, event.id()));
+            case QUIZ -> searchQueryRepository.findQuiz(event.id()).ifPresentOrElse(target::put, () -> {
+                target.remove(SearchDocumentType.QUIZ, event.id());
+                target.removeQuestionsOfQuiz(event.id());
+            });
+            case QUESTION -> searchQueryRepository.findQuestion(event.id()).ifPresentOrElse(target::put,
+                    () -> target.remove(SearchDocumentType.QUESTION, event.id()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.egnoel.backend.modules.search.service;
+
+import com.egnoel.backend.modules.auth.dto.AuthenticatedUser;
+import com.egnoel.backend.modules.auth.service.CurrentUserResolver;
+import com.egnoel.backend.modules.search.dto.SearchPageDTO;
+import com.egnoel.backend.modules.search.dto.SearchResultDTO;
+import com.egnoel.backend.modules.search.index.SearchDocument;
+import com.egnoel.backend.modules.search.index.SearchDocumentType;
+import com.egnoel.backend.modules.search.index.SearchResults;
+import com.egnoel.backend.modules.search.repository.SearchQueryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Pesquisa de texto sobre materiais (título e texto extraído), questionários e perguntas.
+ * A pesquisa corre no índice em memória; a base de dados só é consultada para as turmas do utilizador.
+ * Cada utilizador vê os documentos da sua instituição que não têm turma e os das turmas que leciona ou
+ * onde está inscrito, as mesmas regras do acesso aos ficheiros dos materiais.
+ */
+@Service
+public class SearchService {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final SearchIndexService searchIndexService;
+    private final SearchQueryRepository searchQueryRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final Timer queryTimer;
+
+    @Autowired
+    public SearchService(SearchIndexService searchIndexService, SearchQueryRepository searchQueryRepository,
+                         CurrentUserResolver currentUserResolver, MeterRegistry meterRegistry) {
+        this.searchIndexService = searchIndexService;
+        this.searchQueryRepository = searchQueryRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.queryTimer = Timer.builder("search.query.duration")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param type Restringe a um tipo de documento; nulo para todos
+     * @param classeId Restringe a uma turma; nulo para todas as visíveis
+     */
+    public SearchPageDTO search(String query, SearchDocumentType type, Long classeId, int page, int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Página inválida: page deve ser >= 0 e size entre 1 e " + MAX_PAGE_SIZE);
+        }
+        AuthenticatedUser user = currentUserResolver.resolve();
+        Set<Long> classeIds = searchQueryRepository.findUserClasseIds(user.id());
+
+        Predicate<SearchDocument> visible = document -> Objects.equals(document.institutionId(), user.institutionId())
+                && (document.classeId() == null || classeIds.contains(document.classeId()))
+                && (type == null || document.type() == type)
+                && (classeId == null || classeId.equals(document.classeId()));
+        int offset = (int) Math.min((long) page * size, Integer.MAX_VALUE);
+        SearchResults results = queryTimer.record(() -> searchIndexService.index().search(query, visible, offset, size));
+
+        return new SearchPageDTO(
+                results.hits().stream()
+                        .map(hit -> new SearchResultDTO(
+                                hit.document().type(),
+                                hit.document().id(),
+                                hit.document().title(),
+                                hit.document().quizId(),
+                                hit.document().classeId(),
+                                hit.score()))
+                        .toList(),
+                page,
+                size,
+                results.total()
+        );
+    }
+}
@@ -20,7 +20,9 @@ import java.util.List;
 public class Subject {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "subjects_id")
+    @TableGenerator(name = "subjects_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "subjects", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -1,5 +1,6 @@
 package com.egnoel.backend.modules.subject.service;
 
+import com.egnoel.backend.modules.dashboard.event.DashboardInvalidationEvent;
 import com.egnoel.backend.modules.institution.entity.Institution;
 import com.egnoel.backend.modules.institution.repository.InstitutionRepository;
 import com.egnoel.backend.modules.subject.dto.SubjectCreateDTO;
@@ -9,6 +10,7 @@ import com.egnoel.backend.modules.subject.entity.Subject;
 import com.egnoel.backend.modules.subject.repository.SubjectRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
@@ -20,11 +22,14 @@ public class SubjectService {
 
     private final SubjectRepository subjectRepository;
     private final InstitutionRepository institutionRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public SubjectService(SubjectRepository subjectRepository, InstitutionRepository institutionRepository) {
+    public SubjectService(SubjectRepository subjectRepository, InstitutionRepository institutionRepository,
+                          ApplicationEventPublisher eventPublisher) {
         this.subjectRepository = subjectRepository;
         this.institutionRepository = institutionRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -79,6 +84,8 @@ public class SubjectService {
         }
 
         subject = subjectRepository.save(subject);
+        // O nome da disciplina aparece nos dashboards; mudanças raras, descarta todos os snapshots
+        eventPublisher.publishEvent(DashboardInvalidationEvent.forAllUsers());
 
         return new SubjectResponseDTO(
                 subject.getId(),
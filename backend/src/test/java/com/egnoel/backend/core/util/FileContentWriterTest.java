@@ -0,0 +1,260 @@
+package com.egnoel.backend.core.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+
+class FileContentWriterTest {
+    private static final long LAST_MODIFIED = 1_760_000_000_000L;
+    private static final byte[] CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+    // Abaixo do tamanho do ficheiro, para o sendfile ser usado quando o Tomcat o suporta
+    private static final long SENDFILE_THRESHOLD = 16;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = directory.resolve("apontamentos.pdf");
+        Files.write(file, CONTENT);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(LAST_MODIFIED));
+        mockMvc = MockMvcBuilders.standaloneSetup(new DownloadController()).build();
+    }
+
+    @Test
+    void sendsTheWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = perform(get("/file"));
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals("application/pdf", response.getContentType());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("private, no-cache", response.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertEquals(etag(), response.getHeader(HttpHeaders.ETAG));
+        assertEquals(LAST_MODIFIED, response.getDateHeader(HttpHeaders.LAST_MODIFIED));
+        assertTrue(response.getHeader(HttpHeaders.CONTENT_DISPOSITION).startsWith("inline"));
+    }
+
+    @Test
+    void headSendsHeadersWithoutBody() throws Exception {
+        MockHttpServletResponse response = perform(head("/file"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void matchingEtagIsNotModified() throws Exception {
+        MockHttpServletResponse response = perform(get("/file").header(HttpHeaders.IF_NONE_MATCH, etag()));
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(etag(), response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void unchangedDateIsNotModified() throws Exception {
+        MockHttpServletResponse response = perform(get("/file").header(HttpHeaders.IF_MODIFIED_SINCE, httpDate(LAST_MODIFIED)));
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void changedContentIsSentAgain() throws Exception {
+        MockHttpServletResponse response = perform(get("/file")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"outro\"")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, httpDate(LAST_MODIFIED)));
+
+        // If-None-Match tem precedência sobre If-Modified-Since
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void singleRangeIsPartialContent() throws Exception {
+        MockHttpServletResponse response = perform(get("/file").header(HttpHeaders.RANGE, "bytes=2-5"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/" + CONTENT.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 2, 6), response.getContentAsByteArray());
+    }
+
+    @Test
+    void openAndSuffixRangesReachTheEndOfTheFile() throws Exception {
+        MockHttpServletResponse open = perform(get("/file").header(HttpHeaders.RANGE, "bytes=30-"));
+        MockHttpServletResponse suffix = perform(get("/file").header(HttpHeaders.RANGE, "bytes=-3"));
+        MockHttpServletResponse clipped = perform(get("/file").header(HttpHeaders.RANGE, "bytes=34-1000"));
+
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 30, CONTENT.length), open.getContentAsByteArray());
+        assertEquals("bytes 33-35/36", suffix.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 33, CONTENT.length), suffix.getContentAsByteArray());
+        assertEquals("bytes 34-35/36", clipped.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void unsatisfiableRangeIs416() throws Exception {
+        MockHttpServletResponse beyond = perform(get("/file").header(HttpHeaders.RANGE, "bytes=36-40"));
+        MockHttpServletResponse malformed = perform(get("/file").header(HttpHeaders.RANGE, "bytes=abc"));
+
+        for (MockHttpServletResponse response : new MockHttpServletResponse[]{beyond, malformed}) {
+            assertEquals(416, response.getStatus());
+            assertEquals("bytes */" + CONTENT.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+            assertEquals(0, response.getContentAsByteArray().length);
+        }
+    }
+
+    @Test
+    void multipleRangesFallBackToTheWholeFile() throws Exception {
+        MockHttpServletResponse response = perform(get("/file").header(HttpHeaders.RANGE, "bytes=0-1,4-5"));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRangeWithCurrentValidatorKeepsTheRange() throws Exception {
+        MockHttpServletResponse byEtag = perform(get("/file")
+                .header(HttpHeaders.RANGE, "bytes=0-3").header(HttpHeaders.IF_RANGE, etag()));
+        MockHttpServletResponse byDate = perform(get("/file")
+                .header(HttpHeaders.RANGE, "bytes=0-3").header(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED)));
+
+        assertEquals(206, byEtag.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 0, 4), byEtag.getContentAsByteArray());
+        assertEquals(206, byDate.getStatus());
+    }
+
+    @Test
+    void ifRangeWithStaleOrWeakValidatorSendsTheWholeFile() throws Exception {
+        String[] validators = {"\"antigo\"", "W/" + etag(), httpDate(LAST_MODIFIED - 60_000), "não é uma data"};
+        for (String validator : validators) {
+            MockHttpServletResponse response = perform(get("/file")
+                    .header(HttpHeaders.RANGE, "bytes=0-3").header(HttpHeaders.IF_RANGE, validator));
+
+            assertEquals(200, response.getStatus(), validator);
+            assertArrayEquals(CONTENT, response.getContentAsByteArray(), validator);
+        }
+    }
+
+    @Test
+    void sendfileHandsTheFileToTomcatWithoutWritingTheBody() throws Exception {
+        MvcResult result = mockMvc.perform(get("/file").requestAttr(SENDFILE_SUPPORT, true)).andReturn();
+
+        assertEquals(200, result.getResponse().getStatus());
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+        assertEquals(CONTENT.length, result.getResponse().getContentLengthLong());
+        HttpServletRequest request = result.getRequest();
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(0L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) CONTENT.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void sendfileCarriesTheRequestedRange() throws Exception {
+        MvcResult result = mockMvc.perform(get("/file").requestAttr(SENDFILE_SUPPORT, true)
+                .header(HttpHeaders.RANGE, "bytes=10-29")).andReturn();
+
+        assertEquals(206, result.getResponse().getStatus());
+        assertEquals(20, result.getResponse().getContentLengthLong());
+        assertEquals(10L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.start"));
+        // O fim do sendfile é exclusivo
+        assertEquals(30L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void rangesBelowTheThresholdAreWrittenDirectlyEvenWithSendfile() throws Exception {
+        MvcResult result = mockMvc.perform(get("/file").requestAttr(SENDFILE_SUPPORT, true)
+                .header(HttpHeaders.RANGE, "bytes=0-9")).andReturn();
+
+        assertNull(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 0, 10), result.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void bufferContentIsSlicedWithoutMovingTheBuffer() throws Exception {
+        MockHttpServletResponse response = perform(get("/buffer").header(HttpHeaders.RANGE, "bytes=5-9"));
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 5, 10), response.getContentAsByteArray());
+        assertEquals("5", response.getHeader("X-Sent"));
+        assertEquals("0-36", response.getHeader("X-Buffer"));
+    }
+
+    @Test
+    void emptyFileHasNoBodyAndIgnoresRanges() throws Exception {
+        Files.write(file, new byte[0]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(LAST_MODIFIED));
+
+        MockHttpServletResponse response = perform(get("/file").header(HttpHeaders.RANGE, "bytes=0-10"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(0, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    private MockHttpServletResponse perform(RequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private static String etag() {
+        return "\"" + Long.toHexString(CONTENT.length) + "-" + Long.toHexString(LAST_MODIFIED) + "\"";
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    // Classe interna não estática: o component scan ignora-a, por isso não entra nos contextos dos testes @SpringBootTest
+    @RestController
+    class DownloadController {
+        private final FileContentWriter writer = new FileContentWriter(SENDFILE_THRESHOLD);
+
+        @GetMapping("/file")
+        void file(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            writer.write(request, response, file, "apontamentos.pdf");
+        }
+
+        @GetMapping("/buffer")
+        void buffer(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            ByteBuffer content = ByteBuffer.wrap(CONTENT);
+            response.setHeader("X-Sent", String.valueOf(
+                    writer.write(request, response, content, LAST_MODIFIED, "apontamentos.pdf", null)));
+            response.setHeader("X-Buffer", content.position() + "-" + content.limit());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.egnoel.backend.core.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HmacSecretsTest {
+    private static final String DEV_SECRET = "dev-only-secret-change-me-0123456789abcdef";
+
+    @Test
+    void textSecretsAreUtf8Bytes() {
+        String secret = "segredo-de-produção-com-mais-de-32-bytes";
+
+        assertArrayEquals(secret.getBytes(StandardCharsets.UTF_8), HmacSecrets.decode("teste", secret, environment()));
+    }
+
+    @Test
+    void base64SecretsAreDecoded() {
+        byte[] key = new byte[48];
+        key[0] = 7;
+
+        byte[] decoded = HmacSecrets.decode("teste", "base64:" + Base64.getEncoder().encodeToString(key), environment());
+
+        assertArrayEquals(key, decoded);
+    }
+
+    @Test
+    void secretsShorterThan256BitsAreRefused() {
+        assertThrows(IllegalStateException.class, () -> HmacSecrets.decode("teste", "curto", environment()));
+        assertThrows(IllegalStateException.class, () -> HmacSecrets.decode("teste", "x".repeat(31), environment()));
+        assertThrows(IllegalStateException.class, () -> HmacSecrets.decode("teste",
+                "base64:" + Base64.getEncoder().encodeToString(new byte[31]), environment()));
+        assertEquals(32, HmacSecrets.decode("teste", "x".repeat(32), environment()).length);
+        // O limite vale também no perfil dev
+        assertThrows(IllegalStateException.class, () -> HmacSecrets.decode("teste", "dev-only-curto", environment("dev")));
+    }
+
+    @Test
+    void invalidBase64IsRefused() {
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> HmacSecrets.decode("jwt.secret", "base64:não é base64!", environment()));
+
+        assertTrue(e.getMessage().startsWith("jwt.secret"));
+    }
+
+    @Test
+    void devSecretsAreAcceptedOnlyInTheDevProfile() {
+        assertThrows(IllegalStateException.class, () -> HmacSecrets.decode("teste", DEV_SECRET, environment()));
+        assertThrows(IllegalStateException.class, () -> HmacSecrets.decode("teste", DEV_SECRET, environment("prod")));
+        assertDoesNotThrow(() -> HmacSecrets.decode("teste", DEV_SECRET, environment("dev")));
+        assertDoesNotThrow(() -> HmacSecrets.decode("teste", DEV_SECRET, environment("prod", "dev")));
+    }
+
+    private static MockEnvironment environment(String... profiles) {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles(profiles);
+        return environment;
+    }
+}
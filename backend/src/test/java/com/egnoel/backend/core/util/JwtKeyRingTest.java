@@ -0,0 +1,75 @@
+package com.egnoel.backend.core.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTest {
+    private static final String SECRET = "segredo-de-producao-com-mais-de-32-bytes";
+    private static final String DEV_SECRET = "dev-only-jwt-secret-change-me-0123456789";
+
+    @Test
+    void activeAndPreviousKeysAreLoaded() {
+        JwtKeyRing ring = ring(environment("prod"), SECRET, "antiga=base64:" + "A".repeat(44));
+
+        assertEquals("atual", ring.activeKid());
+        assertSame(ring.activeKey(), ring.verificationKey(null));
+        assertNotNull(ring.verificationKey("antiga"));
+        assertNull(ring.verificationKey("desconhecida"));
+    }
+
+    @Test
+    void devSecretIsRefusedOutsideTheDevProfile() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> ring(environment(), DEV_SECRET, ""));
+        assertTrue(e.getMessage().contains("JWT_SECRET"));
+        assertThrows(IllegalStateException.class, () -> ring(environment("prod"), DEV_SECRET, ""));
+        assertDoesNotThrow(() -> ring(environment("dev"), DEV_SECRET, ""));
+    }
+
+    @Test
+    void devPreviousKeyIsRefusedOutsideTheDevProfile() {
+        String previous = "antiga=" + DEV_SECRET;
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> ring(environment("prod"), SECRET, previous));
+        assertTrue(e.getMessage().contains("'antiga'"));
+        assertDoesNotThrow(() -> ring(environment("dev"), SECRET, previous));
+    }
+
+    @Test
+    void shortSecretsAreRefused() {
+        assertThrows(IllegalStateException.class, () -> ring(environment("prod"), "curto", ""));
+        assertThrows(IllegalStateException.class, () -> ring(environment("prod"), SECRET, "antiga=curto"));
+    }
+
+    @Test
+    void committedPropertiesDoNotStartWithoutAConfiguredSecret() throws IOException {
+        // As propriedades reais, sem variáveis de ambiente: um deploy que não definiu nada
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().remove(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME);
+        environment.getPropertySources().remove(StandardEnvironment.SYSTEM_PROPERTIES_PROPERTY_SOURCE_NAME);
+        environment.getPropertySources().addLast(new ResourcePropertySource("classpath:application.properties"));
+        String secret = environment.getRequiredProperty("jwt.secret");
+        String previous = environment.getRequiredProperty("jwt.previous-keys");
+
+        assertThrows(IllegalStateException.class, () -> ring(environment, secret, previous));
+        environment.setActiveProfiles("dev");
+        assertDoesNotThrow(() -> ring(environment, secret, previous));
+    }
+
+    private static JwtKeyRing ring(Environment environment, String secret, String previousKeys) {
+        return new JwtKeyRing(environment, secret, "atual", previousKeys, "", "PKCS12", "");
+    }
+
+    private static MockEnvironment environment(String... profiles) {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles(profiles);
+        return environment;
+    }
+}
@@ -0,0 +1,65 @@
+package com.egnoel.backend.modules.material.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaterialLinkServiceTest {
+    private static final String DEV_SECRET = "dev-only-material-links-secret-change-me";
+    private static final String PRODUCTION_SECRET = "segredo-de-producao-com-mais-de-32-bytes";
+
+    @Test
+    void devSecretIsAcceptedInTheDevProfile() {
+        assertDoesNotThrow(() -> service(DEV_SECRET, "dev"));
+        assertDoesNotThrow(() -> service(DEV_SECRET, "dev", "local"));
+    }
+
+    @Test
+    void devSecretIsRefusedOutsideTheDevProfile() {
+        IllegalStateException noProfile = assertThrows(IllegalStateException.class, () -> service(DEV_SECRET));
+        assertTrue(noProfile.getMessage().contains("MATERIAL_LINKS_SECRET"));
+        assertThrows(IllegalStateException.class, () -> service(DEV_SECRET, "prod"));
+        assertThrows(IllegalStateException.class, () -> service("dev-only-outro-segredo-com-mais-de-32-bytes", "prod"));
+    }
+
+    @Test
+    void committedPropertiesDoNotStartWithoutAConfiguredSecret() throws IOException {
+        // As propriedades reais, sem variáveis de ambiente: um deploy que não definiu nada
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().remove(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME);
+        environment.getPropertySources().remove(StandardEnvironment.SYSTEM_PROPERTIES_PROPERTY_SOURCE_NAME);
+        environment.getPropertySources().addLast(new ResourcePropertySource("classpath:application.properties"));
+        String secret = environment.getRequiredProperty("materials.links.secret");
+
+        assertThrows(IllegalStateException.class,
+                () -> new MaterialLinkService(null, null, environment, secret, Duration.ofMinutes(10)));
+        environment.setActiveProfiles("dev");
+        assertDoesNotThrow(() -> new MaterialLinkService(null, null, environment, secret, Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void forgedSignaturesAreRejected() {
+        MaterialLinkService service = service(PRODUCTION_SECRET, "prod");
+        long expires = System.currentTimeMillis() / 1000 + 60;
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[32]);
+
+        assertThrows(ResponseStatusException.class,
+                () -> service.verify(1L, 2L, expires, "a".repeat(64), "notas.pdf", forged));
+        assertThrows(ResponseStatusException.class,
+                () -> service.verify(1L, 2L, expires, "a".repeat(64), "notas.pdf", "não é base64"));
+    }
+
+    private static MaterialLinkService service(String secret, String... profiles) {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles(profiles);
+        return new MaterialLinkService(null, null, environment, secret, Duration.ofMinutes(10));
+    }
+}
@@ -0,0 +1,158 @@
+package com.egnoel.backend.modules.material.storage;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * S3MaterialStorage contra um MinIO real. Precisa de Docker; sem ele os testes são ignorados.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class S3MaterialStorageTest {
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    @Container
+    static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2024-12-18T13-15-44Z");
+
+    static S3MaterialStorage storage;
+
+    @BeforeAll
+    static void createStorage() {
+        storage = new S3MaterialStorage("materials", "test/", "us-east-1", MINIO.getS3URL(),
+                MINIO.getUserName(), MINIO.getPassword(), true, PART_SIZE, true);
+    }
+
+    @AfterAll
+    static void closeStorage() {
+        storage.close();
+    }
+
+    @Test
+    void putAndGetSmallObject() throws IOException {
+        byte[] data = randomBytes(1000);
+        storage.put("small/a", new ByteArrayInputStream(data), data.length);
+
+        assertArrayEquals(data, read(storage.get("small/a")));
+        assertEquals(data.length, storage.stat("small/a").orElseThrow().size());
+        assertTrue(storage.stat("small/missing").isEmpty());
+    }
+
+    @Test
+    void putAboveThePartSizeUsesMultipart() throws IOException {
+        byte[] data = randomBytes(2 * PART_SIZE + 123);
+        storage.put("multi/a", new ByteArrayInputStream(data), data.length);
+
+        assertArrayEquals(data, read(storage.get("multi/a")));
+    }
+
+    @Test
+    void putFileDeletesTheLocalFile() throws IOException {
+        byte[] data = randomBytes(4096);
+        Path file = Files.createTempFile("s3-test-", ".part");
+        Files.write(file, data);
+
+        storage.putFile("file/a", file);
+
+        assertFalse(Files.exists(file));
+        assertArrayEquals(data, read(storage.get("file/a")));
+    }
+
+    @Test
+    void getRangeReturnsTheInclusiveRange() throws IOException {
+        byte[] data = randomBytes(10_000);
+        storage.put("range/a", new ByteArrayInputStream(data), data.length);
+
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 200), read(storage.getRange("range/a", 100, 199)));
+        assertArrayEquals(Arrays.copyOfRange(data, 9_999, 10_000), read(storage.getRange("range/a", 9_999, 9_999)));
+    }
+
+    @Test
+    void listReturnsKeysUnderThePrefixInOrder() throws IOException {
+        for (String key : List.of("list/b", "list/a", "list/c/d", "other/a")) {
+            storage.put(key, new ByteArrayInputStream(new byte[]{1}), 1);
+        }
+
+        List<String> keys = storage.list("list/").stream().map(StorageEntry::key).toList();
+
+        assertEquals(List.of("list/a", "list/b", "list/c/d"), keys);
+    }
+
+    @Test
+    void moveCopiesAndDeletesTheSource() throws IOException {
+        byte[] data = randomBytes(2048);
+        storage.put("move/from", new ByteArrayInputStream(data), data.length);
+
+        storage.move("move/from", "move/to");
+
+        assertTrue(storage.stat("move/from").isEmpty());
+        assertArrayEquals(data, read(storage.get("move/to")));
+    }
+
+    @Test
+    void partUploadsAreJoinedInOrder() throws IOException {
+        byte[] data = randomBytes(PART_SIZE + 1000);
+        String uploadId = storage.startPartUpload("parts/a");
+        // Fora de ordem, como quando os pedaços chegam a nós diferentes
+        storage.putPart("parts/a", uploadId, 2, new ByteArrayInputStream(data, PART_SIZE, 1000), 1000);
+        storage.putPart("parts/a", uploadId, 1, new ByteArrayInputStream(data, 0, PART_SIZE), PART_SIZE);
+
+        storage.completePartUpload("parts/a", uploadId);
+
+        assertArrayEquals(data, read(storage.get("parts/a")));
+    }
+
+    @Test
+    void abortingAnUnknownPartUploadIsIgnored() throws IOException {
+        String uploadId = storage.startPartUpload("parts/aborted");
+        storage.abortPartUpload("parts/aborted", uploadId);
+
+        assertDoesNotThrow(() -> storage.abortPartUpload("parts/aborted", uploadId));
+        assertTrue(storage.stat("parts/aborted").isEmpty());
+    }
+
+    @Test
+    void presignedGetDownloadsWithoutCredentials() throws Exception {
+        byte[] data = randomBytes(512);
+        storage.put("presign/a", new ByteArrayInputStream(data), data.length);
+
+        URI uri = storage.presignedGet("presign/a", "aula 1.pdf", "application/pdf", Duration.ofMinutes(1)).orElseThrow();
+        HttpResponse<byte[]> response = HttpClient.newHttpClient()
+                .send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(data, response.body());
+        assertEquals("application/pdf", response.headers().firstValue("Content-Type").orElse(null));
+        assertTrue(response.headers().firstValue("Content-Disposition").orElse("").startsWith("inline"));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.egnoel.backend.modules.quiz.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerItemCodecTest {
+
+    @Test
+    void emptyListRoundTrips() {
+        byte[] data = AnswerItemCodec.encode(List.of());
+
+        assertEquals(1, data.length);
+        assertEquals(List.of(), AnswerItemCodec.decode(data));
+    }
+
+    @Test
+    void nullAndEmptyValuesStayDistinct() {
+        List<GradedItem> items = List.of(
+                new GradedItem(1, null, null),
+                new GradedItem(2, "", 0),
+                new GradedItem(3, "B", null));
+
+        assertEquals(items, AnswerItemCodec.decode(AnswerItemCodec.encode(items)));
+    }
+
+    @Test
+    void negativeAndExtremePointsRoundTrip() {
+        List<GradedItem> items = List.of(
+                new GradedItem(10, "a", -1),
+                new GradedItem(11, "b", -5),
+                new GradedItem(12, "c", Integer.MIN_VALUE),
+                new GradedItem(13, "d", Integer.MAX_VALUE));
+
+        assertEquals(items, AnswerItemCodec.decode(AnswerItemCodec.encode(items)));
+    }
+
+    @Test
+    void unorderedAndLargeQuestionIdsRoundTrip() {
+        List<GradedItem> items = List.of(
+                new GradedItem(Long.MAX_VALUE, "x", 1),
+                new GradedItem(1, "y", 2),
+                new GradedItem(Long.MAX_VALUE - 1, "z", 3),
+                new GradedItem(1, "repetida", 4));
+
+        assertEquals(items, AnswerItemCodec.decode(AnswerItemCodec.encode(items)));
+    }
+
+    @Test
+    void largeResponsesAndManyItemsRoundTrip() {
+        char[] text = new char[70_000];
+        Arrays.fill(text, 'ç');
+        List<GradedItem> items = new ArrayList<>();
+        items.add(new GradedItem(1, new String(text), 3));
+        for (int i = 0; i < 5_000; i++) {
+            items.add(new GradedItem(1_000_000L + i, "resposta " + i, i % 3 == 0 ? null : i));
+        }
+
+        assertEquals(items, AnswerItemCodec.decode(AnswerItemCodec.encode(items)));
+    }
+
+    @Test
+    void consecutiveQuestionIdsTakeOneByteEach() {
+        List<GradedItem> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(new GradedItem(500_000L + i, null, null));
+        }
+
+        // Contagem (1) + primeiro id (3) + 99 diferenças de 1 + pontos e tamanho nulos (2 por item)
+        assertEquals(1 + 3 + 99 + 200, AnswerItemCodec.encode(items).length);
+    }
+
+    @Test
+    void truncatedDataIsRejected() {
+        byte[] data = AnswerItemCodec.encode(List.of(new GradedItem(7, "resposta", 2)));
+
+        for (int length = 0; length < data.length; length++) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThrows(IllegalArgumentException.class, () -> AnswerItemCodec.decode(truncated));
+        }
+    }
+
+    @Test
+    void oversizedCountIsRejected() {
+        // Varint de 2^21 itens, acima do limite
+        byte[] data = {(byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+
+        assertThrows(IllegalArgumentException.class, () -> AnswerItemCodec.decode(data));
+    }
+
+    @Test
+    void overlongVarintIsRejected() {
+        byte[] data = new byte[11];
+        Arrays.fill(data, (byte) 0xFF);
+
+        assertThrows(IllegalArgumentException.class, () -> AnswerItemCodec.decode(data));
+    }
+}
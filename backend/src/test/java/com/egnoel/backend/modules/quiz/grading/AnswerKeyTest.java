@@ -0,0 +1,167 @@
+package com.egnoel.backend.modules.quiz.grading;
+
+import com.egnoel.backend.modules.quiz.dto.AnswerCreateDTO;
+import com.egnoel.backend.modules.quiz.entity.Question;
+import com.egnoel.backend.modules.quiz.entity.QuestionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerKeyTest {
+
+    @Test
+    void findsEveryQuestionDespiteCollidingSlots() {
+        // Ids sequenciais (blocos do gerador), múltiplos da capacidade e extremos: várias sondagens lineares
+        List<Question> questions = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            questions.add(question(id, QuestionType.MULTIPLA_ESCOLHA, "A", 1));
+        }
+        for (long id = 1; id <= 500; id++) {
+            questions.add(question(id << 20, QuestionType.MULTIPLA_ESCOLHA, "A", 1));
+        }
+        questions.add(question(Long.MAX_VALUE, QuestionType.MULTIPLA_ESCOLHA, "A", 1));
+        questions.add(question(-1, QuestionType.MULTIPLA_ESCOLHA, "A", 1));
+        questions.add(question(0, QuestionType.MULTIPLA_ESCOLHA, "A", 1));
+
+        AnswerKey key = AnswerKey.compile(1, questions);
+
+        assertEquals(questions.size(), key.questionCount());
+        Set<Integer> positions = new HashSet<>();
+        for (int position = 0; position < questions.size(); position++) {
+            assertEquals(position, key.indexOf(questions.get(position).getId()));
+            positions.add(position);
+        }
+        assertEquals(questions.size(), positions.size());
+    }
+
+    @Test
+    void unknownQuestionsAreNotFound() {
+        AnswerKey key = AnswerKey.compile(1, List.of(
+                question(10, QuestionType.MULTIPLA_ESCOLHA, "A", 1),
+                question(11, QuestionType.MULTIPLA_ESCOLHA, "B", 1)));
+
+        assertEquals(-1, key.indexOf(12));
+        assertEquals(-1, key.indexOf(-10));
+        assertEquals(-1, key.indexOf(Long.MAX_VALUE));
+        assertEquals(-1, key.indexOf(Long.MIN_VALUE));
+    }
+
+    @Test
+    void emptyQuizFindsNothing() {
+        AnswerKey key = AnswerKey.compile(3, List.of());
+
+        assertEquals(0, key.questionCount());
+        assertEquals(3, key.version());
+        assertEquals(-1, key.indexOf(1));
+        assertFalse(key.hasDiscursive());
+    }
+
+    @Test
+    void gradingRejectsQuestionsOutsideTheQuiz() {
+        AnswerKey key = AnswerKey.compile(1, List.of(question(1, QuestionType.MULTIPLA_ESCOLHA, "A", 1)));
+
+        RuntimeException missing = assertThrows(RuntimeException.class,
+                () -> key.grade(List.of(answer(1L, "A"), answer(2L, "A"))));
+        assertEquals("Pergunta não encontrada: 2", missing.getMessage());
+        assertThrows(RuntimeException.class, () -> key.grade(List.of(answer(null, "A"))));
+        assertThrows(RuntimeException.class, () -> key.grade(List.of(answer(Long.MIN_VALUE, "A"))));
+    }
+
+    @Test
+    void repeatedQuestionScoresOnlyItsFirstAnswer() {
+        AnswerKey key = AnswerKey.compile(1, List.of(
+                question(1, QuestionType.MULTIPLA_ESCOLHA, "B", 2),
+                question(2, QuestionType.VERDADEIRO_FALSO, "Verdadeiro", 3)));
+
+        GradedSubmission wrongFirst = key.grade(List.of(answer(1L, "A"), answer(1L, "B"), answer(2L, "verdadeiro")));
+        GradedSubmission rightFirst = key.grade(List.of(answer(1L, "B"), answer(1L, "B"), answer(1L, "B")));
+
+        assertEquals(3, wrongFirst.score());
+        assertEquals(List.of(new GradedItem(1, "A", 0), new GradedItem(2, "verdadeiro", 3)), wrongFirst.items());
+        assertEquals("Q1: A; Q1: B; Q2: verdadeiro; ", wrongFirst.answers());
+        assertEquals(2, rightFirst.score());
+        assertEquals(1, rightFirst.items().size());
+    }
+
+    @Test
+    void answersAreComparedIgnoringCaseAndSurroundingWhitespace() {
+        AnswerKey key = AnswerKey.compile(1, List.of(
+                question(1, QuestionType.MULTIPLA_ESCOLHA, "  Opção B ", 5),
+                question(2, QuestionType.VERDADEIRO_FALSO, "Falso", 1)));
+
+        assertEquals(5, key.score(0, "opção b"));
+        assertEquals(5, key.score(0, "\tOPÇÃO B\n"));
+        assertEquals(5, key.score(0, " Opção B "));
+        assertEquals(0, key.score(0, "Opção  B"));
+        assertEquals(0, key.score(0, "OpçãoB"));
+        assertEquals(1, key.score(1, " FALSO "));
+        assertEquals(0, key.score(1, ""));
+        assertEquals(0, key.score(1, null));
+    }
+
+    @Test
+    void normalizationDoesNotDependOnTheDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            AnswerKey key = AnswerKey.compile(1, List.of(question(1, QuestionType.MULTIPLA_ESCOLHA, "I", 1)));
+
+            // Em turco "I".toLowerCase() é "ı" (sem ponto)
+            assertEquals(1, key.score(0, "i"));
+            assertEquals(1, key.score(0, "I"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void discursiveQuestionsAreLeftForTheTeacher() {
+        AnswerKey key = AnswerKey.compile(1, List.of(
+                question(1, QuestionType.MULTIPLA_ESCOLHA, "A", 2),
+                question(2, QuestionType.DISCURSIVA, "texto", 5)));
+
+        GradedSubmission graded = key.grade(List.of(answer(1L, "a"), answer(2L, "texto")));
+
+        assertTrue(key.hasDiscursive());
+        assertTrue(graded.pendingReview());
+        assertEquals(2, graded.score());
+        assertEquals(List.of(new GradedItem(1, "a", 2), new GradedItem(2, "texto", null)), graded.items());
+        assertEquals(0, key.score(1, "texto"));
+    }
+
+    @Test
+    void questionsWithoutAnswerOrScoreAwardNothing() {
+        Question noScore = question(2, QuestionType.MULTIPLA_ESCOLHA, "A", 1);
+        noScore.setScore(null);
+        AnswerKey key = AnswerKey.compile(1, List.of(question(1, QuestionType.MULTIPLA_ESCOLHA, null, 4), noScore));
+
+        GradedSubmission graded = key.grade(List.of(answer(1L, "A"), answer(2L, "A"), answer(1L, null)));
+
+        assertEquals(0, graded.score());
+        assertFalse(graded.pendingReview());
+        assertEquals(List.of(new GradedItem(1, "A", 0), new GradedItem(2, "A", 0)), graded.items());
+    }
+
+    private static Question question(long id, QuestionType type, String correctAnswer, Integer score) {
+        Question question = new Question();
+        question.setId(id);
+        question.setText("Pergunta " + id);
+        question.setType(type);
+        question.setCorrectAnswer(correctAnswer);
+        question.setScore(score);
+        return question;
+    }
+
+    private static AnswerCreateDTO.QuestionAnswerDTO answer(Long questionId, String answer) {
+        AnswerCreateDTO.QuestionAnswerDTO dto = new AnswerCreateDTO.QuestionAnswerDTO();
+        dto.setQuestionId(questionId);
+        dto.setAnswer(answer);
+        return dto;
+    }
+}
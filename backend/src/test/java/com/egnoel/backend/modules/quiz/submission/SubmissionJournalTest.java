@@ -0,0 +1,228 @@
+package com.egnoel.backend.modules.quiz.submission;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubmissionJournalTest {
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private final List<SubmissionJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() throws IOException {
+        for (SubmissionJournal journal : opened) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void replaysRecordsInOrderWithAllFields() throws IOException {
+        SubmissionJournal journal = open(SEGMENT_SIZE);
+        assertTrue(journal.open().isEmpty());
+        PendingSubmission first = submission(1, "resposta com acentuação");
+        PendingSubmission second = submission(2, "");
+        journal.append(first);
+        journal.append(second);
+        journal.close();
+
+        List<PendingSubmission> replay = open(SEGMENT_SIZE).open();
+
+        assertEquals(2, replay.size());
+        assertSameSubmission(first, replay.get(0));
+        assertSameSubmission(second, replay.get(1));
+        assertEquals(replay.get(0).segment(), replay.get(1).segment());
+    }
+
+    @Test
+    void tornTailEndsTheSegmentWithoutACorruptCopy() throws IOException {
+        SubmissionJournal journal = open(SEGMENT_SIZE);
+        journal.open();
+        journal.append(submission(1, "a"));
+        journal.append(submission(2, "b"));
+        PendingSubmission last = journal.append(submission(3, "c"));
+        journal.close();
+        Path segment = segmentFile(last.segment());
+        // Escrita interrompida a meio do último registo
+        truncate(segment, Files.size(segment) - 5);
+
+        List<PendingSubmission> replay = open(SEGMENT_SIZE).open();
+
+        assertEquals(List.of(1L, 2L), studentIds(replay));
+        assertFalse(Files.exists(corruptCopy(segment)));
+    }
+
+    @Test
+    void tornHeaderEndsTheSegment() throws IOException {
+        SubmissionJournal journal = open(SEGMENT_SIZE);
+        journal.open();
+        PendingSubmission only = journal.append(submission(1, "a"));
+        journal.close();
+        Path segment = segmentFile(only.segment());
+        // Só parte do cabeçalho do registo seguinte chegou ao disco
+        Files.write(segment, new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of(1L), studentIds(open(SEGMENT_SIZE).open()));
+    }
+
+    @Test
+    void crcMismatchInTheMiddleKeepsLaterRecordsAndACopy() throws IOException {
+        SubmissionJournal journal = open(SEGMENT_SIZE);
+        journal.open();
+        journal.append(submission(1, "a"));
+        long firstEnd = Files.size(segmentFile(1));
+        journal.append(submission(2, "b"));
+        PendingSubmission last = journal.append(submission(3, "c"));
+        journal.close();
+        Path segment = segmentFile(last.segment());
+        // Um byte do conteúdo do segundo registo (depois do cabeçalho de 8 bytes)
+        flipByte(segment, firstEnd + 12);
+
+        List<PendingSubmission> replay = open(SEGMENT_SIZE).open();
+
+        assertEquals(List.of(1L, 3L), studentIds(replay));
+        assertTrue(Files.exists(corruptCopy(segment)));
+    }
+
+    @Test
+    void crcMismatchInTheLastRecordIsTreatedAsATornTail() throws IOException {
+        SubmissionJournal journal = open(SEGMENT_SIZE);
+        journal.open();
+        journal.append(submission(1, "a"));
+        PendingSubmission last = journal.append(submission(2, "b"));
+        journal.close();
+        Path segment = segmentFile(last.segment());
+        flipByte(segment, Files.size(segment) - 1);
+
+        List<PendingSubmission> replay = open(SEGMENT_SIZE).open();
+
+        assertEquals(List.of(1L), studentIds(replay));
+        assertFalse(Files.exists(corruptCopy(segment)));
+    }
+
+    @Test
+    void persistedSegmentsAreNotReplayedAgain() throws IOException {
+        SubmissionJournal journal = open(SEGMENT_SIZE);
+        journal.open();
+        journal.append(submission(1, "a"));
+        journal.append(submission(2, "b"));
+        journal.close();
+
+        SubmissionJournal restarted = open(SEGMENT_SIZE);
+        List<PendingSubmission> replay = restarted.open();
+        assertEquals(2, replay.size());
+        long replayedSegment = replay.get(0).segment();
+        restarted.persisted(replayedSegment, 2);
+        PendingSubmission pending = restarted.append(submission(3, "c"));
+        restarted.close();
+
+        assertFalse(Files.exists(segmentFile(replayedSegment)));
+        List<PendingSubmission> again = open(SEGMENT_SIZE).open();
+        assertEquals(List.of(3L), studentIds(again));
+        assertEquals(pending.segment(), again.get(0).segment());
+    }
+
+    @Test
+    void partiallyPersistedSegmentIsReplayedWhole() throws IOException {
+        SubmissionJournal journal = open(SEGMENT_SIZE);
+        journal.open();
+        PendingSubmission first = journal.append(submission(1, "a"));
+        journal.append(submission(2, "b"));
+        journal.persisted(first.segment(), 1);
+        journal.close();
+
+        // Os já gravados voltam a ser lidos; o recibo torna a gravação idempotente
+        assertEquals(List.of(1L, 2L), studentIds(open(SEGMENT_SIZE).open()));
+    }
+
+    @Test
+    void fullSegmentsRollOverAndAreDeletedOncePersisted() throws IOException {
+        SubmissionJournal journal = open(200);
+        journal.open();
+        List<PendingSubmission> appended = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            appended.add(journal.append(submission(i, "resposta " + i)));
+        }
+        long firstSegment = appended.get(0).segment();
+        long lastSegment = appended.get(3).segment();
+        assertTrue(lastSegment > firstSegment);
+
+        for (PendingSubmission submission : appended) {
+            if (submission.segment() != lastSegment) {
+                journal.persisted(submission.segment(), 1);
+            }
+        }
+        journal.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(segmentFile(lastSegment)), files.toList());
+        }
+        List<Long> unpersisted = appended.stream()
+                .filter(submission -> submission.segment() == lastSegment)
+                .map(PendingSubmission::studentId)
+                .toList();
+        assertEquals(unpersisted, studentIds(open(200).open()));
+    }
+
+    private SubmissionJournal open(long segmentSize) {
+        SubmissionJournal journal = new SubmissionJournal(directory, segmentSize);
+        opened.add(journal);
+        return journal;
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("submissions-%012d.journal", segment));
+    }
+
+    private static Path corruptCopy(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + ".corrupt");
+    }
+
+    private static PendingSubmission submission(long studentId, String answers) {
+        return new PendingSubmission("recibo-" + studentId, 10, studentId, 99, answers, new byte[]{1, 2, 3},
+                (int) studentId * 2, studentId % 2 == 0, LocalDateTime.of(2026, 10, 18, 9, 30, (int) studentId), 0);
+    }
+
+    private static List<Long> studentIds(List<PendingSubmission> submissions) {
+        return submissions.stream().map(PendingSubmission::studentId).toList();
+    }
+
+    private static void assertSameSubmission(PendingSubmission expected, PendingSubmission actual) {
+        assertEquals(expected.receiptId(), actual.receiptId());
+        assertEquals(expected.quizId(), actual.quizId());
+        assertEquals(expected.studentId(), actual.studentId());
+        assertEquals(expected.teacherId(), actual.teacherId());
+        assertEquals(expected.answers(), actual.answers());
+        assertArrayEquals(expected.items(), actual.items());
+        assertEquals(expected.score(), actual.score());
+        assertEquals(expected.pendingReview(), actual.pendingReview());
+        assertEquals(expected.submittedAt(), actual.submittedAt());
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        data[(int) position] ^= 0x5A;
+        Files.write(file, data);
+    }
+}
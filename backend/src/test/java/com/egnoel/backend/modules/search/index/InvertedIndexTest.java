@@ -0,0 +1,206 @@
+package com.egnoel.backend.modules.search.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+    // MIN_DELETED_FOR_COMPACTION: a última de MANY remoções compacta o índice
+    private static final int MANY = 1024;
+
+    private final InvertedIndex index = new InvertedIndex();
+
+    @Test
+    void findsDocumentsByFoldedTermsInTitleAndBody() {
+        index.put(material(1, "Equação do segundo grau", "exercícios resolvidos"));
+        index.put(material(2, "História", null));
+
+        assertEquals(List.of(1L), ids(index.search("EQUACAO", d -> true, 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("exercicios", d -> true, 0, 10)));
+        assertEquals(0, index.search("de do da", d -> true, 0, 10).total());
+        assertEquals(0, index.search("geografia", d -> true, 0, 10).total());
+    }
+
+    @Test
+    void removedDocumentsAreTombstonedUntilCompaction() {
+        index.put(material(1, "álgebra linear", null));
+        index.put(material(2, "álgebra abstrata", null));
+        int terms = index.termCount();
+
+        index.remove(SearchDocumentType.MATERIAL, 1);
+
+        assertEquals(1, index.documentCount());
+        assertEquals(List.of(2L), ids(index.search("algebra", d -> true, 0, 10)));
+        assertEquals(0, index.search("linear", d -> true, 0, 10).total());
+        // Poucas remoções: a entrada fica marcada como apagada, sem reescrever as listas
+        assertEquals(terms, index.termCount());
+        index.remove(SearchDocumentType.MATERIAL, 1);
+        assertEquals(1, index.documentCount());
+    }
+
+    @Test
+    void updatingADocumentReplacesItsPreviousVersion() {
+        index.put(material(1, "funções", null));
+        index.put(material(1, "derivadas", null));
+
+        assertEquals(1, index.documentCount());
+        assertEquals(0, index.search("funcoes", d -> true, 0, 10).total());
+        SearchResults results = index.search("derivadas", d -> true, 0, 10);
+        assertEquals(List.of(1L), ids(results));
+        assertEquals("derivadas", results.hits().get(0).document().title());
+    }
+
+    @Test
+    void sameIdWithDifferentTypesAreDifferentDocuments() {
+        index.put(material(5, "geometria", null));
+        index.put(new IndexableDocument(new SearchDocument(SearchDocumentType.QUIZ, 5, 1L, null, null, "geometria"), null));
+
+        index.remove(SearchDocumentType.QUIZ, 5);
+
+        SearchResults results = index.search("geometria", d -> true, 0, 10);
+        assertEquals(1, results.total());
+        assertEquals(SearchDocumentType.MATERIAL, results.hits().get(0).document().type());
+    }
+
+    @Test
+    void bm25RanksTitleMatchesAboveBodyMatches() {
+        index.put(material(1, "apontamentos", "revolução francesa"));
+        index.put(material(2, "revolução francesa", "apontamentos"));
+
+        assertEquals(List.of(2L, 1L), ids(index.search("revolucao", d -> true, 0, 10)));
+    }
+
+    @Test
+    void bm25RanksFrequentTermsAndShortDocumentsHigher() {
+        index.put(material(1, "resumo", "célula"));
+        index.put(material(2, "resumo", "célula célula célula"));
+        index.put(material(3, "resumo", "célula " + "texto longo ".repeat(40)));
+
+        assertEquals(List.of(2L, 1L, 3L), ids(index.search("celula", d -> true, 0, 10)));
+    }
+
+    @Test
+    void bm25WeighsRareTermsAboveCommonOnes() {
+        for (long id = 1; id <= 10; id++) {
+            index.put(material(id, "química", null));
+        }
+        index.put(material(11, "química orgânica", null));
+        index.put(material(12, "orgânica", null));
+
+        List<Long> ranked = ids(index.search("quimica organica", d -> true, 0, 20));
+
+        // Os documentos com o termo raro ficam à frente de todos os que só têm o comum
+        assertEquals(12, ranked.size());
+        assertEquals(Set.of(11L, 12L), new HashSet<>(ranked.subList(0, 2)));
+    }
+
+    @Test
+    void tiesGoToTheMostRecentDocument() {
+        index.put(material(1, "trigonometria", null));
+        index.put(material(2, "trigonometria", null));
+        index.put(material(3, "trigonometria", null));
+
+        assertEquals(List.of(3L, 2L, 1L), ids(index.search("trigonometria", d -> true, 0, 10)));
+    }
+
+    @Test
+    void filterIsAppliedBeforePaging() {
+        for (long id = 1; id <= 6; id++) {
+            index.put(material(id, "estatística", null));
+        }
+
+        SearchResults results = index.search("estatistica", d -> d.id() % 2 == 0, 0, 2);
+
+        assertEquals(3, results.total());
+        assertEquals(List.of(6L, 4L), ids(results));
+        assertEquals(List.of(2L), ids(index.search("estatistica", d -> d.id() % 2 == 0, 2, 2)));
+    }
+
+    @Test
+    void pagesWalkTheRankingAndStopAtTheTotal() {
+        for (long id = 1; id <= 5; id++) {
+            index.put(material(id, "probabilidade", null));
+        }
+
+        assertEquals(List.of(5L, 4L), ids(index.search("probabilidade", d -> true, 0, 2)));
+        assertEquals(List.of(3L, 2L), ids(index.search("probabilidade", d -> true, 2, 2)));
+        assertEquals(List.of(1L), ids(index.search("probabilidade", d -> true, 4, 2)));
+
+        SearchResults beyond = index.search("probabilidade", d -> true, 5, 2);
+        assertEquals(5, beyond.total());
+        assertTrue(beyond.hits().isEmpty());
+        SearchResults farBeyond = index.search("probabilidade", d -> true, Integer.MAX_VALUE, 10);
+        assertEquals(5, farBeyond.total());
+        assertTrue(farBeyond.hits().isEmpty());
+    }
+
+    @Test
+    void compactionRemapsTheDocumentsThatRemain() {
+        index.put(material(1, "vetores", "matrizes"));
+        for (long id = 100; id < 100 + MANY; id++) {
+            index.put(material(id, "descartável termo" + id, null));
+        }
+        index.put(material(2, "matrizes", null));
+        int termsBefore = index.termCount();
+
+        for (long id = 100; id < 100 + MANY; id++) {
+            index.remove(SearchDocumentType.MATERIAL, id);
+        }
+
+        assertEquals(2, index.documentCount());
+        // As listas dos termos só dos documentos apagados desaparecem
+        assertEquals(termsBefore - MANY - 1, index.termCount());
+        assertEquals(0, index.search("descartavel termo100", d -> true, 0, 10).total());
+        assertEquals(List.of(2L, 1L), ids(index.search("matrizes", d -> true, 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("vetores", d -> true, 0, 10)));
+
+        // Os números internos remapeados continuam a servir para atualizar e remover
+        index.put(material(1, "tensores", null));
+        assertEquals(0, index.search("vetores", d -> true, 0, 10).total());
+        assertEquals(List.of(1L), ids(index.search("tensores", d -> true, 0, 10)));
+        index.remove(SearchDocumentType.MATERIAL, 2);
+        assertEquals(0, index.search("matrizes", d -> true, 0, 10).total());
+        assertEquals(1, index.documentCount());
+    }
+
+    @Test
+    void removeQuestionsOfQuizKeepsOtherDocumentsThroughCompaction() {
+        index.put(new IndexableDocument(new SearchDocument(SearchDocumentType.QUIZ, 7, 1L, null, 7L, "mecânica"), null));
+        index.put(question(1, 8L, "mecânica quântica"));
+        for (long id = 10; id < 10 + MANY; id++) {
+            index.put(question(id, 7L, "mecânica pergunta" + id));
+        }
+        index.put(question(2, null, "mecânica clássica"));
+
+        index.removeQuestionsOfQuiz(7);
+
+        assertEquals(3, index.documentCount());
+        // Compactado: ficam só mecanica, quantica e classica
+        assertEquals(3, index.termCount());
+        SearchResults results = index.search("mecanica", d -> true, 0, 10);
+        assertEquals(List.of(7L, 2L, 1L), ids(results));
+        assertEquals(SearchDocumentType.QUIZ, results.hits().get(0).document().type());
+        assertEquals(0, index.search("pergunta10", d -> true, 0, 10).total());
+
+        index.removeQuestionsOfQuiz(8);
+        assertEquals(List.of(7L, 2L), ids(index.search("mecanica", d -> true, 0, 10)));
+        index.put(question(3, 7L, "mecânica relativista"));
+        assertEquals(List.of(3L), ids(index.search("relativista", d -> true, 0, 10)));
+    }
+
+    private static IndexableDocument material(long id, String title, String body) {
+        return new IndexableDocument(new SearchDocument(SearchDocumentType.MATERIAL, id, 1L, null, null, title), body);
+    }
+
+    private static IndexableDocument question(long id, Long quizId, String text) {
+        return new IndexableDocument(new SearchDocument(SearchDocumentType.QUESTION, id, 1L, null, quizId, text), null);
+    }
+
+    private static List<Long> ids(SearchResults results) {
+        return results.hits().stream().map(hit -> hit.document().id()).toList();
+    }
+}
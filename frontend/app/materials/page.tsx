@@ -54,11 +54,26 @@ interface Subject {
   name: string;
 }
 
+function materialsUrl(classeId: string | null, cursor: string | null) {
+  const params = new URLSearchParams();
+  if (classeId) {
+    params.set('classeId', classeId);
+  }
+  if (cursor) {
+    params.set('cursor', cursor);
+  }
+  const query = params.toString();
+  return query ? `/materials?${query}` : '/materials';
+}
+
 export default function MaterialsPage() {
   const searchParams = useSearchParams();
   const classeId = searchParams.get('classeId');
 
   const [materials, setMaterials] = useState<Material[]>([]);
+  // Cursor da página seguinte da listagem (cabeçalho X-Next-Cursor); null na última página
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
   const [classes, setClasses] = useState<Class[]>([]);
   const [subjects, setSubjects] = useState<Subject[]>([]);
   const [isLoading, setIsLoading] = useState(true);
@@ -81,12 +96,9 @@ export default function MaterialsPage() {
 
     const fetchMaterials = async () => {
       try {
-        let url = '/materials';
-        if (classeId) {
-          url += `?classeId=${classeId}`;
-        }
-        const response = await api.get(url);
-        setMaterials(response);
+        const page = await api.getPage<Material>(materialsUrl(classeId, null));
+        setMaterials(page.items);
+        setNextCursor(page.nextCursor);
       } catch (error) {
         toast({
           variant: 'destructive',
@@ -122,6 +134,26 @@ export default function MaterialsPage() {
     fetchClassesAndSubjects();
   }, [classeId, isAuthenticated, isTeacher, router, toast]);
 
+  const handleLoadMore = async () => {
+    if (!nextCursor) {
+      return;
+    }
+    setIsLoadingMore(true);
+    try {
+      const page = await api.getPage<Material>(materialsUrl(classeId, nextCursor));
+      setMaterials((current) => [...current, ...page.items]);
+      setNextCursor(page.nextCursor);
+    } catch (error) {
+      toast({
+        variant: 'destructive',
+        title: 'Erro',
+        description: 'Não foi possível carregar mais materiais.',
+      });
+    } finally {
+      setIsLoadingMore(false);
+    }
+  };
+
   const handleCreateMaterial = async () => {
     if (!title || !content || !selectedClass || !selectedSubject) {
       toast({
@@ -305,6 +337,17 @@ export default function MaterialsPage() {
                 </CardFooter>
               </Card>
             ))}
+            {nextCursor && (
+              <div className="md:col-span-2 lg:col-span-3 flex justify-center">
+                <Button
+                  variant="outline"
+                  onClick={handleLoadMore}
+                  disabled={isLoadingMore}
+                >
+                  {isLoadingMore ? 'A carregar...' : 'Carregar mais'}
+                </Button>
+              </div>
+            )}
           </div>
         ) : (
           <div className="text-center py-12">
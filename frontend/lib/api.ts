@@ -19,6 +19,23 @@ export const api = {
     })
   },
 
+  /**
+   * Make a GET request to a cursor-paginated endpoint
+   * @param endpoint - API endpoint to call
+   * @param options - Additional fetch options
+   * @returns Promise with the page items and the cursor of the next page (null on the last page)
+   */
+  async getPage<T = any>(endpoint: string, options = {}): Promise<{ items: T[]; nextCursor: string | null }> {
+    const response = await send(endpoint, {
+      method: "GET",
+      ...options,
+    })
+    return {
+      items: await parseBody(response),
+      nextCursor: response.headers.get("X-Next-Cursor"),
+    }
+  },
+
   /**
    * Make a POST request
    * @param endpoint - API endpoint to call
@@ -67,6 +84,13 @@ export const api = {
  * Base request function that handles authentication and error handling
  */
 async function request(endpoint: string, options = {}) {
+  return await parseBody(await send(endpoint, options))
+}
+
+/**
+ * Sends the request and checks the status; returns the response so callers can also read its headers
+ */
+async function send(endpoint: string, options = {}) {
  // const url = `${API_URL}${endpoint.startsWith("/") ? endpoint : `/${endpoint}`}`
   const url = `${API_URL}${endpoint}`
   const token = getToken()
@@ -115,15 +139,19 @@ async function request(endpoint: string, options = {}) {
       throw new Error(`Request failed with status ${response.status}`)
     }
 
-    // Check if the response is JSON
-    const contentType = response.headers.get("content-type")
-    if (contentType && contentType.includes("application/json")) {
-      return await response.json()
-    }
-
-    return await response.text()
+    return response
   } catch (error) {
     console.error("API request error:", error)
     throw error
   }
 }
+
+async function parseBody(response: Response) {
+  // Check if the response is JSON
+  const contentType = response.headers.get("content-type")
+  if (contentType && contentType.includes("application/json")) {
+    return await response.json()
+  }
+
+  return await response.text()
+}